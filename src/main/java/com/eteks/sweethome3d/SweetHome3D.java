@@ -80,6 +80,7 @@ import com.eteks.sweethome3d.io.AutoRecoveryManager;
 import com.eteks.sweethome3d.io.FileUserPreferences;
 import com.eteks.sweethome3d.io.HomeFileRecorder;
 import com.eteks.sweethome3d.j3d.Component3DManager;
+import com.eteks.sweethome3d.j3d.ModelManager;
 import com.eteks.sweethome3d.model.CollectionEvent;
 import com.eteks.sweethome3d.model.CollectionListener;
 import com.eteks.sweethome3d.model.Home;
@@ -91,6 +92,7 @@ import com.eteks.sweethome3d.model.UserPreferences;
 import com.eteks.sweethome3d.plugin.HomePluginController;
 import com.eteks.sweethome3d.plugin.PluginManager;
 import com.eteks.sweethome3d.swing.FileContentManager;
+import com.eteks.sweethome3d.swing.IconManager;
 import com.eteks.sweethome3d.swing.SwingTools;
 import com.eteks.sweethome3d.swing.SwingViewFactory;
 import com.eteks.sweethome3d.tools.OperatingSystem;
@@ -109,7 +111,8 @@ import com.eteks.sweethome3d.viewcontroller.ViewFactory;
  * <code>furniture</code>, SH3T textures library files stored in a subfolder named <code>textures</code>, 
  * SH3L language library files stored in a subfolder named <code>languages</code>, SH3P application plug-in 
  * files stored in a subfolder named <code>plugins</code> and SH3D files automatically created for recovery 
- * purpose stored in a subfolder named <code>recovery</code>.<br>
+ * purpose stored in a subfolder named <code>recovery</code>. 3D models read from furniture files are cached
+ * in a subfolder named <code>models</code>.<br>
  * If this property describes more than one folder, they should be separated by a semicolon (;) under Windows
  * or by a colon (:) under Mac OS X and Unix systems. The first folder listed in this property is used
  * as the folder where will be stored recovered SH3D files and SH3F, SH3T, SH3L, SH3P files imported by the user.
@@ -188,7 +191,7 @@ public class SweetHome3D extends HomeApplication {
     if (type == HomeRecorder.Type.COMPRESSED) {
       // Initialize compressedHomeRecorder lazily
       if (this.compressedHomeRecorder == null) {
-        this.compressedHomeRecorder = new HomeFileRecorder(9, false, getUserPreferences(), false, true, true);
+        this.compressedHomeRecorder = new HomeFileRecorder(9, false, getUserPreferences(), false, true, true, true);
       }
       return this.compressedHomeRecorder;
     } else {
@@ -468,6 +471,8 @@ public class SweetHome3D extends HomeApplication {
     addComponent3DRenderingErrorObserver();
 
     getUserPreferences();
+    setModelCacheFolder();
+    setIconCacheFolder();
     try {
       // Set User Agent to follow statistics on used operating systems 
       System.setProperty("http.agent", getId() + "/" + getVersion()  
@@ -653,6 +658,32 @@ public class SweetHome3D extends HomeApplication {
     }
   }
 
+  /**
+   * Sets the folder where 3D models read from furniture files are cached.
+   */
+  private void setModelCacheFolder() {
+    if (!Boolean.getBoolean("com.eteks.sweethome3d.no3D")) {
+      try {
+        File applicationFolder = ((FileUserPreferences)getUserPreferences()).getApplicationFolder();
+        ModelManager.getInstance().setModelCacheFolder(new File(applicationFolder, "models"));
+      } catch (IOException ex) {
+        // Don't cache models if application folder isn't available
+      }
+    }
+  }
+
+  /**
+   * Sets the folder where the icons displayed in catalog and furniture list are cached.
+   */
+  private void setIconCacheFolder() {
+    try {
+      File applicationFolder = ((FileUserPreferences)getUserPreferences()).getApplicationFolder();
+      IconManager.getInstance().setIconCacheFolder(new File(applicationFolder, "icons"));
+    } catch (IOException ex) {
+      // Don't cache icons if application folder isn't available
+    }
+  }
+
   /**
    * Displays a message to user about a 3D error, saves modified homes and
    * forces exit.
@@ -22,11 +22,20 @@ package com.eteks.sweethome3d.io;
 import java.awt.EventQueue;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
 import java.nio.channels.OverlappingFileLockException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -34,6 +43,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.UUID;
@@ -43,6 +53,7 @@ import java.util.concurrent.ThreadFactory;
 
 import com.eteks.sweethome3d.model.CollectionEvent;
 import com.eteks.sweethome3d.model.CollectionListener;
+import com.eteks.sweethome3d.model.Content;
 import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.HomeApplication;
 import com.eteks.sweethome3d.model.HomeRecorder;
@@ -51,12 +62,17 @@ import com.eteks.sweethome3d.model.RecorderException;
 import com.eteks.sweethome3d.model.UserPreferences;
 import com.eteks.sweethome3d.model.UserPreferences.Property;
 import com.eteks.sweethome3d.tools.OperatingSystem;
+import com.eteks.sweethome3d.tools.TemporaryURLContent;
+import com.eteks.sweethome3d.tools.URLContent;
 
 /**
  * Manager able to automatically save open homes in recovery folder with a timer.
  * The delay between two automatic save operations is specified by 
  * {@link UserPreferences#getAutoSaveDelayForRecovery() auto save delay for recovery}
- * property.
+ * property. Only the homes changed since their last automatic save are saved again.
+ * Once a home was fully saved in a recovery file, its next changes are appended
+ * to a journal file as entries containing home data without content, until the journal
+ * is compacted with a new full save of home.
  * @author Emmanuel Puybaret
  */
 public class AutoRecoveryManager {
@@ -64,13 +80,21 @@ public class AutoRecoveryManager {
   private static final String RECOVERY_SUB_FOLDER      = "recovery";
   private static final String RECOVERED_FILE_EXTENSION = ".recovered";
   private static final String UNRECOVERABLE_FILE_EXTENSION = ".unrecoverable";
+  private static final String JOURNAL_FILE_EXTENSION   = ".journal";
+  private static final String JOURNAL_CONTENT_URL_PREFIX = "jar:file:recovery!/";
+  private static final int    MAXIMUM_JOURNAL_ENTRY_COUNT = 16;
+  // Count of auto save delays after which a modified home is saved even if no change was tracked 
+  private static final int    UNTRACKED_CHANGES_SAVE_DELAY_COUNT = 4;
 
   private final HomeApplication             application;
   private final List<Home>                  recoveredHomes      = new ArrayList<Home>();
-  // The auto saved files and their locked output streams are handled 
+  // The auto saved files, their locked output streams and their journals are handled 
   // only in autoSaveForRecoveryExecutor single thread executor
   private final Map<Home, File>             autoSavedFiles      = new HashMap<Home, File>();
   private final Map<File, FileOutputStream> lockedOutputStreams = new HashMap<File, FileOutputStream>();
+  private final Map<Home, RecoveryJournal>  journals            = new HashMap<Home, RecoveryJournal>();
+  // The change trackers of homes are handled only in Event Dispatch Thread
+  private final Map<Home, HomeChangeTracker> changeTrackers     = new HashMap<Home, HomeChangeTracker>();
   private final ExecutorService             autoSaveForRecoveryExecutor;
   private Timer                             timer;
   private long                              lastAutoSaveTime;
@@ -105,6 +129,10 @@ public class AutoRecoveryManager {
         public void collectionChanged(CollectionEvent<Home> ev) {
           if (ev.getType() == CollectionEvent.Type.DELETE) {
             final Home home = ev.getItem();
+            HomeChangeTracker changeTracker = changeTrackers.remove(home);
+            if (changeTracker != null) {
+              changeTracker.dispose();
+            }
             autoSaveForRecoveryExecutor.submit(new Runnable() {
                 public void run() {
                   try {
@@ -112,7 +140,9 @@ public class AutoRecoveryManager {
                     if (homeFile != null) {
                       freeLockedFile(homeFile);
                       homeFile.delete();
+                      getJournalFile(homeFile).delete();
                       autoSavedFiles.remove(home);
+                      journals.remove(home);
                     }
                   } catch (RecorderException ex) {
                   }
@@ -154,8 +184,13 @@ public class AutoRecoveryManager {
         });
       for (final File file : recoveredFiles) {
         if (!isFileLocked(file)) {
+          final File journalFile = getJournalFile(file);
           try {
-            final Home home = this.application.getHomeRecorder().readHome(file.getPath());
+            Home home = this.application.getHomeRecorder().readHome(file.getPath());
+            if (journalFile.exists()) {
+              home = readJournal(journalFile, home);
+            }
+            final Home recoveredHome = home;
             // Recovered homes are the ones with a name different from the file path 
             if (home.getName() == null 
                 || !file.equals(new File(home.getName()))) {
@@ -163,8 +198,9 @@ public class AutoRecoveryManager {
               // Delete recovered file once home isn't recovered anymore
               home.addPropertyChangeListener(Home.Property.RECOVERED, new PropertyChangeListener() {
                   public void propertyChange(PropertyChangeEvent evt) {
-                    if (!home.isRecovered()) {
+                    if (!recoveredHome.isRecovered()) {
                       file.delete();
+                      journalFile.delete();
                     }
                   }
                 });
@@ -172,6 +208,7 @@ public class AutoRecoveryManager {
             }
           } catch (RecorderException ex) {
             ex.printStackTrace();
+            journalFile.delete();
             // Rename file to avoid it to be read again at next launch
             file.renameTo(new File(recoveryFolder, 
                 file.getName().replace(RECOVERED_FILE_EXTENSION, UNRECOVERABLE_FILE_EXTENSION)));
@@ -252,14 +289,29 @@ public class AutoRecoveryManager {
   }
 
   /**
-   * Clones application homes and saves them in automatic save executor.
+   * Clones application homes changed since their last save and saves them in automatic save executor.
    */
   private void cloneAndSaveHomes() {
     try {
       EventQueue.invokeAndWait(new Runnable() {
           public void run() {
             // Handle and clone application homes in Event Dispatch Thread
+            long untrackedChangesSaveDelay = (long)UNTRACKED_CHANGES_SAVE_DELAY_COUNT 
+                * application.getUserPreferences().getAutoSaveDelayForRecovery();
             for (final Home home : application.getHomes()) {
+              HomeChangeTracker changeTracker = changeTrackers.get(home);
+              if (changeTracker == null) {
+                changeTracker = new HomeChangeTracker(home);
+                changeTrackers.put(home, changeTracker);
+              } else if (!changeTracker.isChanged()
+                  && (!home.isModified()
+                      || System.currentTimeMillis() - changeTracker.getLastClearTime() < untrackedChangesSaveDelay)) {
+                // Avoid to clone and save again an unchanged home, but save regularly modified homes
+                // because some changes like the ones of home and items properties aren't notified
+                continue;
+              }
+              changeTracker.clearChanges();
+              final HomeChangeTracker savedHomeChangeTracker = changeTracker;
               final Home autoSavedHome = home.clone();
               final HomeRecorder homeRecorder = application.getHomeRecorder();
               autoSaveForRecoveryExecutor.submit(new Runnable() {
@@ -269,6 +321,12 @@ public class AutoRecoveryManager {
                     saveHome(home, autoSavedHome, homeRecorder);
                   } catch (RecorderException ex) {
                     ex.printStackTrace();
+                    // Try to save home again at next auto save
+                    EventQueue.invokeLater(new Runnable() {
+                        public void run() {
+                          savedHomeChangeTracker.setChanged();
+                        }
+                      });
                   }
                 }
               });
@@ -308,12 +366,38 @@ public class AutoRecoveryManager {
             UUID.randomUUID() + RECOVERED_FILE_EXTENSION);
       }
     }
-    freeLockedFile(autoSavedHomeFile);        
     if (autoSavedHome.isModified()) {
+      RecoveryJournal journal = this.journals.get(home);
+      if (journal != null) {
+        try {
+          if (journal.entryCount < MAXIMUM_JOURNAL_ENTRY_COUNT
+              && journal.file.length() < autoSavedHomeFile.length()
+              && appendToJournal(journal, autoSavedHome)) {
+            this.lastAutoSaveTime = Math.max(this.lastAutoSaveTime, System.currentTimeMillis());
+            return;
+          }
+        } catch (IOException ex) {
+          // Compact journal with a full save
+        }
+      }
+
+      // Delete the journal before saving home to avoid to recover its outdated entries
+      this.journals.remove(home);
+      File journalFile = getJournalFile(autoSavedHomeFile);
+      if (journalFile.exists() && !journalFile.delete()) {
+        throw new RecorderException("Can't delete journal " + journalFile);
+      }
+      freeLockedFile(autoSavedHomeFile);        
       this.autoSavedFiles.put(home, autoSavedHomeFile);
       try {
         // Save home and lock the saved file to avoid possible auto recovery processes to read it 
         homeRecorder.writeHome(autoSavedHome, autoSavedHomeFile.getPath());
+        try {
+          // Start a new journal for the next changes of home
+          this.journals.put(home, new RecoveryJournal(journalFile, getContentDigests(autoSavedHome).keySet()));
+        } catch (IOException ex) {
+          // Home will be fully saved again at next change
+        }
         
         FileOutputStream lockedOutputStream = null;
         try {
@@ -336,12 +420,129 @@ public class AutoRecoveryManager {
         // Forget exception that probably happen because of shutdown hook management
       } 
     } else {
+      freeLockedFile(autoSavedHomeFile);        
       autoSavedHomeFile.delete();
+      getJournalFile(autoSavedHomeFile).delete();
       this.autoSavedFiles.remove(home);
+      this.journals.remove(home);
     }
     this.lastAutoSaveTime = Math.max(this.lastAutoSaveTime, System.currentTimeMillis());
   }
 
+  /**
+   * Returns the journal file associated to the given recovered file.
+   */
+  private File getJournalFile(File recoveredFile) {
+    return new File(recoveredFile.getPath() + JOURNAL_FILE_EXTENSION);
+  }
+
+  /**
+   * Appends the data of the given home to its journal, and returns <code>false</code>
+   * if home references some content which wasn't saved in the recovered file.
+   * Must be run only from auto save thread.
+   */
+  private boolean appendToJournal(RecoveryJournal journal, Home autoSavedHome) throws IOException {
+    ByteArrayOutputStream entryOut = new ByteArrayOutputStream();
+    JournalObjectOutputStream objectOut = new JournalObjectOutputStream(entryOut, journal.contentDigests);
+    objectOut.writeObject(autoSavedHome);
+    objectOut.close();
+    if (objectOut.isContentMissing()) {
+      return false;
+    }
+    // Write entry prefixed by its length to be able to ignore a partially written entry
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(journal.file, true));
+    try {
+      out.writeInt(entryOut.size());
+      entryOut.writeTo(out);
+    } finally {
+      out.close();
+    }
+    journal.entryCount++;
+    return true;
+  }
+
+  /**
+   * Returns the content referenced by the given <code>home</code> mapped to their digest
+   * encoded in Base64.
+   */
+  private static Map<String, Content> getContentDigests(Home home) throws IOException {
+    Map<String, Content> contentDigests = new HashMap<String, Content>();
+    for (Content content : HomeContentCollector.getContents(home)) {
+      String digest = getContentDigest(content);
+      if (digest != null) {
+        contentDigests.put(digest, content);
+      }
+    }
+    return contentDigests;
+  }
+
+  /**
+   * Returns the digest of the given <code>content</code> encoded in Base64,
+   * or <code>null</code> if it can't be read.
+   */
+  private static String getContentDigest(Content content) {
+    byte [] digest = ContentDigestManager.getInstance().getContentDigest(content);
+    return digest.length > 0
+        ? Base64.encodeBytes(digest)
+        : null;
+  }
+
+  /**
+   * Returns the home stored in the last entry of the given journal which could be read,
+   * or <code>recoveredHome</code> if the journal doesn't contain any valid entry.
+   */
+  private static Home readJournal(File journalFile, Home recoveredHome) {
+    try {
+      // Search the complete entries of the journal
+      List<Long> entryOffsets = new ArrayList<Long>();
+      RandomAccessFile journal = new RandomAccessFile(journalFile, "r");
+      try {
+        long journalLength = journal.length();
+        for (long offset = 0; offset + 4 <= journalLength; ) {
+          journal.seek(offset);
+          int entryLength = journal.readInt();
+          long nextOffset = offset + 4 + entryLength;
+          if (entryLength < 0
+              || nextOffset <= offset) {
+            // Stop at a corrupted length which would prevent to reach next entry
+            break;
+          } else if (nextOffset > journalLength) {
+            // Ignore last entry if it was partially written
+            break;
+          }
+          entryOffsets.add(offset);
+          offset = nextOffset;
+        }
+
+        Map<String, Content> contentDigests = null;
+        // Each entry stores all home data, so replay only the last valid one
+        for (int i = entryOffsets.size() - 1; i >= 0; i--) {
+          try {
+            journal.seek(entryOffsets.get(i));
+            byte [] entry = new byte [journal.readInt()];
+            journal.readFully(entry);
+            if (contentDigests == null) {
+              contentDigests = getContentDigests(recoveredHome);
+            }
+            ObjectInputStream in = new JournalObjectInputStream(new ByteArrayInputStream(entry), contentDigests);
+            return (Home)in.readObject();
+          } catch (IOException ex) {
+            ex.printStackTrace();
+          } catch (ClassNotFoundException ex) {
+            ex.printStackTrace();
+          } catch (ClassCastException ex) {
+            ex.printStackTrace();
+          }
+        }
+      } finally {
+        journal.close();
+      }
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+    return recoveredHome;
+  }
+
   /**
    * Frees the given <code>file</code> if it's locked.
    * Must be run only from auto save thread.
@@ -372,4 +573,86 @@ public class AutoRecoveryManager {
       throw new RecorderException("Can't retrieve recovered files folder", ex);
     }
   }
+
+  /**
+   * The journal of the changes of a home saved since its last full save in a recovered file.
+   */
+  private static class RecoveryJournal {
+    private final File        file;
+    private final Set<String> contentDigests;
+    private int               entryCount;
+
+    public RecoveryJournal(File file, Set<String> contentDigests) {
+      this.file = file;
+      this.contentDigests = contentDigests;
+    }
+  }
+
+  /**
+   * An object output stream which replaces the content of a home saved in its recovered file
+   * by a URL referencing it with its digest.
+   */
+  private static class JournalObjectOutputStream extends ObjectOutputStream {
+    private final Set<String> savedContentDigests;
+    private boolean           contentMissing;
+
+    public JournalObjectOutputStream(OutputStream out, Set<String> savedContentDigests) throws IOException {
+      super(out);
+      this.savedContentDigests = savedContentDigests;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) throws IOException {
+      if (obj instanceof Content) {
+        String digest = getContentDigest((Content)obj);
+        if (digest != null
+            && this.savedContentDigests.contains(digest)) {
+          return new URLContent(new URL(JOURNAL_CONTENT_URL_PREFIX + digest));
+        } else if (obj instanceof TemporaryURLContent
+                   || obj instanceof HomeURLContent) {
+          // Content which may not be available anymore at recovery time
+          this.contentMissing = true;
+        }
+      }
+      return obj;
+    }
+
+    /**
+     * Returns <code>true</code> if the written home references some content
+     * which should be saved in its recovered file.
+     */
+    public boolean isContentMissing() {
+      return this.contentMissing;
+    }
+  }
+
+  /**
+   * An object input stream which replaces the content references written by
+   * <code>JournalObjectOutputStream</code> by the matching content of a recovered home.
+   */
+  private static class JournalObjectInputStream extends ObjectInputStream {
+    private final Map<String, Content> contentDigests;
+
+    public JournalObjectInputStream(InputStream in, Map<String, Content> contentDigests) throws IOException {
+      super(in);
+      this.contentDigests = contentDigests;
+      enableResolveObject(true);
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) throws IOException {
+      if (obj instanceof URLContent) {
+        String url = ((URLContent)obj).getURL().toString();
+        if (url.startsWith(JOURNAL_CONTENT_URL_PREFIX)) {
+          Content content = this.contentDigests.get(url.substring(JOURNAL_CONTENT_URL_PREFIX.length()));
+          if (content == null) {
+            throw new IOException("Missing content in recovered home");
+          }
+          return content;
+        }
+      }
+      return obj;
+    }
+  }
 }
\ No newline at end of file
@@ -22,6 +22,8 @@ package com.eteks.sweethome3d.io;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLEncoder;
@@ -29,11 +31,23 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
@@ -45,6 +59,8 @@ import com.eteks.sweethome3d.tools.URLContent;
 
 /**
  * Manager able to store and compute content digest to compare content data faster.  
+ * Digests are computed outside of any lock, and each digest requested at the same time
+ * by different threads is computed only once.
  * @author Emmanuel Puybaret
  */
 public class ContentDigestManager {
@@ -53,13 +69,18 @@ public class ContentDigestManager {
 
   private static ContentDigestManager instance;
   
+  // Weak maps accessed in blocks synchronized on contentDigestsCache or zipUrlEntriesCache
   private Map<Content, byte []>  contentDigestsCache;
+  private ConcurrentMap<Content, FutureTask<byte []>> pendingContentDigests;
   
   private Map<URLContent, URL>   zipUrlsCache;
   private Map<URL, List<ZipEntryData>> zipUrlEntriesCache;
 
+  private ExecutorService        contentDigestsExecutor;
+
   private ContentDigestManager() {
     this.contentDigestsCache = new WeakHashMap<Content, byte[]>();
+    this.pendingContentDigests = new ConcurrentHashMap<Content, FutureTask<byte []>>();
     this.zipUrlsCache = new WeakHashMap<URLContent, URL>();
     this.zipUrlEntriesCache = new WeakHashMap<URL, List<ZipEntryData>>();
   }
@@ -109,43 +130,187 @@ public class ContentDigestManager {
   /**
    * Sets the SHA-1 digest of the given <code>content</code>.
    */
-  public synchronized void setContentDigest(Content content, byte [] digest) {
-    this.contentDigestsCache.put(content, digest);
+  public void setContentDigest(Content content, byte [] digest) {
+    synchronized (this.contentDigestsCache) {
+      this.contentDigestsCache.put(content, digest);
+    }
   }
   
   /**
    * Returns the SHA-1 digest of the given <code>content</code>, computing it 
-   * if it wasn't set.
+   * if it wasn't set. If an other thread is already computing the same digest, 
+   * this method waits for its result.
    */
-  public synchronized byte [] getContentDigest(Content content) {
-    byte [] digest = this.contentDigestsCache.get(content);
+  public byte [] getContentDigest(final Content content) {
+    byte [] digest = getCachedContentDigest(content);
     if (digest == null) {
-      try {
-        if (content instanceof ResourceURLContent) {
-          digest = getResourceContentDigest((ResourceURLContent)content);
-        } else if (content instanceof URLContent
-                   && !(content instanceof SimpleURLContent)
-                   && ((URLContent)content).isJAREntry()) {
-          URLContent urlContent = (URLContent)content;
-          // If content comes from a home stream
-          if (urlContent instanceof HomeURLContent) {
-            digest = getHomeContentDigest((HomeURLContent)urlContent);            
-          } else {
-            digest = getZipContentDigest(urlContent);
+      FutureTask<byte []> digestTask = new FutureTask<byte []>(new Callable<byte []>() {
+          public byte [] call() {
+            // Check again the cache in case the digest was computed in the mean time
+            byte [] digest = getCachedContentDigest(content);
+            if (digest == null) {
+              digest = readContentDigest(content);
+              setContentDigest(content, digest);
+            }
+            return digest;
           }
-        } else {
-          digest = computeContentDigest(content);
+        });
+      FutureTask<byte []> pendingDigestTask = this.pendingContentDigests.putIfAbsent(content, digestTask);
+      if (pendingDigestTask == null) {
+        try {
+          digestTask.run();
+        } finally {
+          this.pendingContentDigests.remove(content, digestTask);
         }
-      } catch (NoSuchAlgorithmException ex) {
-        throw new InternalError("No SHA-1 message digest is available");
-      } catch (IOException ex) {
-        digest = INVALID_CONTENT_DIGEST;
+        pendingDigestTask = digestTask;
       }
-      this.contentDigestsCache.put(content, digest);
+      digest = getDigest(pendingDigestTask);
     }
     return digest;
   }
 
+  /**
+   * Starts to compute in a background thread the digest of the given <code>content</code>
+   * if it's not cached or computed yet.
+   */
+  void computeContentDigestInBackground(final Content content) {
+    if (getCachedContentDigest(content) == null
+        && !this.pendingContentDigests.containsKey(content)) {
+      getContentDigestsExecutor().execute(new Runnable() {
+          public void run() {
+            getContentDigest(content);
+          }
+        });
+    }
+  }
+
+  /**
+   * Returns the digests of the given <code>contents</code>, computing in parallel 
+   * the ones that weren't set.
+   * @throws InterruptedIOException if current thread was interrupted while waiting for digests.
+   * @since 6.1
+   */
+  public Map<Content, byte []> getContentDigests(Collection<? extends Content> contents) throws InterruptedIOException {
+    Map<Content, byte []> contentDigests = new LinkedHashMap<Content, byte []>();
+    Map<Content, Future<byte []>> computedDigests = new LinkedHashMap<Content, Future<byte []>>();
+    for (final Content content : contents) {
+      byte [] digest = getCachedContentDigest(content);
+      contentDigests.put(content, digest);
+      if (digest == null
+          && !computedDigests.containsKey(content)) {
+        computedDigests.put(content, getContentDigestsExecutor().submit(new Callable<byte []>() {
+            public byte [] call() {
+              return getContentDigest(content);
+            }
+          }));
+      }
+    }
+    try {
+      for (Map.Entry<Content, Future<byte []>> entry : computedDigests.entrySet()) {
+        contentDigests.put(entry.getKey(), entry.getValue().get());
+      }
+      return contentDigests;
+    } catch (InterruptedException ex) {
+      for (Future<byte []> digestFuture : computedDigests.values()) {
+        digestFuture.cancel(true);
+      }
+      throw new InterruptedIOException();
+    } catch (ExecutionException ex) {
+      throw getUncheckedCause(ex);
+    }
+  }
+
+  /**
+   * Returns the executor used to compute digests in parallel.
+   */
+  private synchronized ExecutorService getContentDigestsExecutor() {
+    if (this.contentDigestsExecutor == null) {
+      this.contentDigestsExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), 
+          new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "Content digest");
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+    }
+    return this.contentDigestsExecutor;
+  }
+
+  /**
+   * Returns the digest of the given <code>content</code> stored in cache or <code>null</code>.
+   */
+  private byte [] getCachedContentDigest(Content content) {
+    synchronized (this.contentDigestsCache) {
+      return this.contentDigestsCache.get(content);
+    }
+  }
+
+  /**
+   * Returns the digest computed by the given task, waiting for its end without being interrupted
+   * like when a lock is acquired.
+   */
+  private byte [] getDigest(FutureTask<byte []> digestTask) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return digestTask.get();
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        } catch (ExecutionException ex) {
+          throw getUncheckedCause(ex);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Returns the unchecked cause of the given exception, thrown by a digest computation.
+   */
+  private RuntimeException getUncheckedCause(ExecutionException ex) {
+    Throwable cause = ex.getCause();
+    if (cause instanceof Error) {
+      throw (Error)cause;
+    } else if (cause instanceof RuntimeException) {
+      return (RuntimeException)cause;
+    } else {
+      return new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Returns the digest of the given <code>content</code> computed from its data,
+   * or an empty array if it couldn't be read.
+   */
+  private byte [] readContentDigest(Content content) {
+    try {
+      if (content instanceof ResourceURLContent) {
+        return getResourceContentDigest((ResourceURLContent)content);
+      } else if (content instanceof URLContent
+                 && !(content instanceof SimpleURLContent)
+                 && ((URLContent)content).isJAREntry()) {
+        URLContent urlContent = (URLContent)content;
+        // If content comes from a home stream
+        if (urlContent instanceof HomeURLContent) {
+          return getHomeContentDigest((HomeURLContent)urlContent);            
+        } else {
+          return getZipContentDigest(urlContent);
+        }
+      } else {
+        return computeContentDigest(content);
+      }
+    } catch (NoSuchAlgorithmException ex) {
+      throw new InternalError("No SHA-1 message digest is available");
+    } catch (IOException ex) {
+      return INVALID_CONTENT_DIGEST;
+    }
+  }
+
   /**
    * Returns the digest of a content coming from a resource file.
    */
@@ -257,71 +422,243 @@ public class ContentDigestManager {
   /**
    * Returns the list of entries contained in <code>zipUrl</code>.
    */
-  synchronized List<ZipEntryData> getZipURLEntries(URLContent urlContent) throws IOException {
-    URL zipUrl = this.zipUrlsCache.get(urlContent);
-    if (zipUrl != null) {
-      return this.zipUrlEntriesCache.get(zipUrl); 
+  List<ZipEntryData> getZipURLEntries(URLContent urlContent) throws IOException {
+    URL zipUrl = urlContent.getJAREntryURL(); 
+    synchronized (this.zipUrlEntriesCache) {
+      List<ZipEntryData> zipUrlEntries = getCachedZipURLEntries(urlContent, zipUrl);
+      if (zipUrlEntries != null) {
+        return zipUrlEntries;
+      }
+    }
+    
+    // Read entries out of synchronized block
+    List<ZipEntryData> zipUrlEntries = readZipURLEntries(zipUrl);
+    synchronized (this.zipUrlEntriesCache) {
+      // Prefer entries that may have been read in the mean time by an other thread
+      List<ZipEntryData> cachedZipUrlEntries = getCachedZipURLEntries(urlContent, zipUrl);
+      if (cachedZipUrlEntries != null) {
+        return cachedZipUrlEntries;
+      }
+      // Store retrieved entries in the map with a URL key  
+      this.zipUrlEntriesCache.put(zipUrl, zipUrlEntries);
+      // Store URL in a map with keys that will be referenced as long as they are needed in the program
+      // This second map allows to use a weak hash map for zipUrlEntriesCache that will be cleaned
+      // only once all the URLContent objects sharing a same URL are not used anymore 
+      this.zipUrlsCache.put(urlContent, zipUrl);
+      return zipUrlEntries;
+    }
+  }
+
+  /**
+   * Returns the cached list of entries contained in <code>zipUrl</code> or <code>null</code>.
+   * Should be called in a block synchronized on <code>zipUrlEntriesCache</code>.
+   */
+  private List<ZipEntryData> getCachedZipURLEntries(URLContent urlContent, URL zipUrl) {
+    URL cachedZipUrl = this.zipUrlsCache.get(urlContent);
+    if (cachedZipUrl != null) {
+      return this.zipUrlEntriesCache.get(cachedZipUrl); 
     } else {
-      zipUrl = urlContent.getJAREntryURL(); 
       for (Map.Entry<URL, List<ZipEntryData>> entry : this.zipUrlEntriesCache.entrySet()) {
         if (zipUrl.equals(entry.getKey())) {
           this.zipUrlsCache.put(urlContent, entry.getKey());
           return entry.getValue();
         }
       }
-      List<ZipEntryData> zipUrlEntries = new ArrayList<ZipEntryData>();
-      if (zipUrl.getProtocol().equals("file")) {
-        // Prefer to retrieve entries in zip files with ZipFile class because it runs much faster
-        ZipFile zipFile = null;
-        try {
-          zipFile = new ZipFile(new File(zipUrl.toURI()));
-          for (Enumeration<? extends ZipEntry> enumEntries = zipFile.entries(); enumEntries.hasMoreElements(); ) {
-            ZipEntry entry = enumEntries.nextElement();
+      return null;
+    }
+  }
+
+  /**
+   * Returns the sorted list of entries read in <code>zipUrl</code>.
+   */
+  private List<ZipEntryData> readZipURLEntries(URL zipUrl) throws IOException {
+    List<ZipEntryData> zipUrlEntries = new ArrayList<ZipEntryData>();
+    if (zipUrl.getProtocol().equals("file")) {
+      // Prefer to retrieve entries in zip files with ZipFile class because it runs much faster
+      ZipFile zipFile = null;
+      try {
+        File file = new File(zipUrl.toURI());
+        zipFile = new ZipFile(file);
+        Map<String, Long> localHeaderOffsets = getLocalHeaderOffsets(file);
+        for (Enumeration<? extends ZipEntry> enumEntries = zipFile.entries(); enumEntries.hasMoreElements(); ) {
+          ZipEntry entry = enumEntries.nextElement();
+          Long localHeaderOffset = localHeaderOffsets.get(entry.getName());
+          if (localHeaderOffset != null) {
+            zipUrlEntries.add(new ZipEntryData(entry.getName(), entry.getSize(), entry.getCompressedSize(), 
+                entry.getCrc(), entry.getMethod(), localHeaderOffset));
+          } else {
             zipUrlEntries.add(new ZipEntryData(entry.getName(), entry.getSize()));
           }
-        } catch (URISyntaxException ex) {
-          IOException ex2 = new IOException("Can't retrieve zip file");
-          ex2.initCause(ex);
-          throw ex2;
-        } finally {
-          if (zipFile != null) {
-            zipFile.close();
-          }
         }
-      } else {
-        ZipInputStream zipIn = null;
-        try {
-          // Search all entries of zip url
-          zipIn = new ZipInputStream(zipUrl.openStream());
-          for (ZipEntry entry; (entry = zipIn.getNextEntry()) != null; ) {
-            long size = entry.getSize(); 
-            if (size == -1) {
-              size = 0;
-              byte [] bytes = new byte [8192];
-              for (int length; (length = zipIn.read(bytes)) != -1; ) {
-                size += length;
-              }
+      } catch (URISyntaxException ex) {
+        IOException ex2 = new IOException("Can't retrieve zip file");
+        ex2.initCause(ex);
+        throw ex2;
+      } finally {
+        if (zipFile != null) {
+          zipFile.close();
+        }
+      }
+    } else {
+      ZipInputStream zipIn = null;
+      try {
+        // Search all entries of zip url
+        zipIn = new ZipInputStream(zipUrl.openStream());
+        for (ZipEntry entry; (entry = zipIn.getNextEntry()) != null; ) {
+          long size = entry.getSize(); 
+          if (size == -1) {
+            size = 0;
+            byte [] bytes = new byte [8192];
+            for (int length; (length = zipIn.read(bytes)) != -1; ) {
+              size += length;
             }
-            zipUrlEntries.add(new ZipEntryData(entry.getName(), size));
-          }
-        } finally {
-          if (zipIn != null) {
-            zipIn.close();
           }
+          zipUrlEntries.add(new ZipEntryData(entry.getName(), size));
+        }
+      } finally {
+        if (zipIn != null) {
+          zipIn.close();
         }
       }
+    }
+
+    // Sort entries to ensure the files of multi part content are always listed 
+    // in the same order whatever its source
+    Collections.sort(zipUrlEntries);
+    return zipUrlEntries;
+  }
+
+  /**
+   * Returns the entry of the zip file matching <code>urlContent</code> or <code>null</code> if it doesn't exist.
+   */
+  ZipEntryData getZipURLEntry(URLContent urlContent) throws IOException {
+    List<ZipEntryData> zipEntries = getZipURLEntries(urlContent);
+    int index = Collections.binarySearch(zipEntries, new ZipEntryData(urlContent.getJAREntryName()));
+    return index >= 0 
+        ? zipEntries.get(index)
+        : null;
+  }
+
+  /**
+   * Returns the offsets of the local headers of the entries listed in the central directory 
+   * of the given zip <code>file</code>, or an empty map if they can't be read.
+   */
+  private Map<String, Long> getLocalHeaderOffsets(File file) {
+    Map<String, Long> localHeaderOffsets = new HashMap<String, Long>();
+    RandomAccessFile zipIn = null;
+    try {
+      zipIn = new RandomAccessFile(file, "r");
+      // Search the end of central directory record from the end of file
+      long fileLength = zipIn.length();
+      int endLength = (int)Math.min(fileLength, 22 + 0xFFFF);
+      byte [] end = new byte [endLength];
+      zipIn.seek(fileLength - endLength);
+      zipIn.readFully(end);
+      int endIndex = endLength - 22;
+      while (endIndex >= 0 && getInt(end, endIndex) != 0x06054b50) {
+        endIndex--;
+      }
+      if (endIndex < 0) {
+        return localHeaderOffsets;
+      }
+      long centralDirectorySize = getInt(end, endIndex + 12);
+      long centralDirectoryOffset = getInt(end, endIndex + 16);
+      if (centralDirectorySize == 0xFFFFFFFFL 
+          || centralDirectoryOffset == 0xFFFFFFFFL) {
+        // Read Zip64 end of central directory record found with its locator
+        long locatorOffset = fileLength - endLength + endIndex - 20;
+        byte [] locator = new byte [20];
+        zipIn.seek(locatorOffset);
+        zipIn.readFully(locator);
+        if (getInt(locator, 0) != 0x07064b50) {
+          return localHeaderOffsets;
+        }
+        byte [] zip64End = new byte [56];
+        zipIn.seek(getLong(locator, 8));
+        zipIn.readFully(zip64End);
+        if (getInt(zip64End, 0) != 0x06064b50) {
+          return localHeaderOffsets;
+        }
+        centralDirectorySize = getLong(zip64End, 40);
+        centralDirectoryOffset = getLong(zip64End, 48);
+      }
+      if (centralDirectorySize > Integer.MAX_VALUE 
+          || centralDirectoryOffset + centralDirectorySize > fileLength) {
+        return localHeaderOffsets;
+      }
       
-      // Sort entries to ensure the files of multi part content are always listed 
-      // in the same order whatever its source
-      Collections.sort(zipUrlEntries);
-      // Store retrieved entries in the map with a URL key  
-      this.zipUrlEntriesCache.put(zipUrl, zipUrlEntries);
-      // Store URL in a map with keys that will be referenced as long as they are needed in the program
-      // This second map allows to use a weak hash map for zipUrlEntriesCache that will be cleaned
-      // only once all the URLContent objects sharing a same URL are not used anymore 
-      this.zipUrlsCache.put(urlContent, zipUrl);
-      return zipUrlEntries;
+      byte [] centralDirectory = new byte [(int)centralDirectorySize];
+      zipIn.seek(centralDirectoryOffset);
+      zipIn.readFully(centralDirectory);
+      for (int i = 0; i + 46 <= centralDirectory.length && getInt(centralDirectory, i) == 0x02014b50; ) {
+        int nameLength = getShort(centralDirectory, i + 28);
+        int extraLength = getShort(centralDirectory, i + 30);
+        int commentLength = getShort(centralDirectory, i + 32);
+        String name = new String(centralDirectory, i + 46, nameLength, "UTF-8");
+        long localHeaderOffset = getInt(centralDirectory, i + 42);
+        if (localHeaderOffset == 0xFFFFFFFFL) {
+          // Search offset in Zip64 extra field after the sizes stored in it
+          int zip64FieldIndex = 0;
+          if (getInt(centralDirectory, i + 24) == 0xFFFFFFFFL) {
+            zip64FieldIndex += 8;
+          }
+          if (getInt(centralDirectory, i + 20) == 0xFFFFFFFFL) {
+            zip64FieldIndex += 8;
+          }
+          localHeaderOffset = -1;
+          for (int j = i + 46 + nameLength; j + 4 <= i + 46 + nameLength + extraLength; ) {
+            int fieldId = getShort(centralDirectory, j);
+            int fieldLength = getShort(centralDirectory, j + 2);
+            if (fieldId == 0x0001 
+                && zip64FieldIndex + 8 <= fieldLength) {
+              localHeaderOffset = getLong(centralDirectory, j + 4 + zip64FieldIndex);
+              break;
+            }
+            j += 4 + fieldLength;
+          }
+        }
+        if (localHeaderOffset >= 0) {
+          localHeaderOffsets.put(name, localHeaderOffset);
+        }
+        i += 46 + nameLength + extraLength + commentLength;
+      }
+    } catch (IOException ex) {
+      // Ignore offsets that can't be read 
+      localHeaderOffsets.clear();
+    } catch (IndexOutOfBoundsException ex) {
+      // Ignore offsets of a damaged central directory
+      localHeaderOffsets.clear();
+    } finally {
+      if (zipIn != null) {
+        try {
+          zipIn.close();
+        } catch (IOException ex) {
+          // Forget exception
+        }
+      }
     }
+    return localHeaderOffsets;
+  }
+
+  /**
+   * Returns the unsigned little endian short stored at the given <code>index</code>.
+   */
+  static int getShort(byte [] b, int index) {
+    return (b [index] & 0xFF) | (b [index + 1] & 0xFF) << 8;
+  }
+
+  /**
+   * Returns the unsigned little endian int stored at the given <code>index</code>.
+   */
+  static long getInt(byte [] b, int index) {
+    return getShort(b, index) | (long)getShort(b, index + 2) << 16;
+  }
+
+  /**
+   * Returns the little endian long stored at the given <code>index</code>.
+   */
+  static long getLong(byte [] b, int index) {
+    return getInt(b, index) | getInt(b, index + 4) << 32;
   }
 
   /**
@@ -352,10 +689,51 @@ public class ContentDigestManager {
     }
   }
   
+  /**
+   * Returns the size of the data from which the digest of the given <code>content</code> is computed,
+   * or <code>null</code> if it can't be obtained without reading that data or
+   * if this digest is computed from several entries.
+   * Contents with a different digested data size can't have the same digest.
+   */
+  Long getDigestedDataSize(Content content) {
+    if (content instanceof URLContent) {
+      URLContent urlContent = (URLContent)content;
+      try {
+        if (urlContent.isJAREntry()) {
+          String entryName = urlContent.getJAREntryName();
+          if ((urlContent instanceof ResourceURLContent
+                && (!((ResourceURLContent)urlContent).isMultiPartResource() || entryName.lastIndexOf('/') == -1))
+              || (urlContent instanceof HomeURLContent
+                  && entryName.indexOf('/') <= 0)) {
+            List<ZipEntryData> zipEntries = getZipURLEntries(urlContent);
+            int index = Collections.binarySearch(zipEntries, new ZipEntryData(entryName));
+            if (index >= 0 && zipEntries.get(index).getSize() >= 0) {
+              return zipEntries.get(index).getSize();
+            }
+          }
+        } else if (!(urlContent instanceof ResourceURLContent 
+                     && ((ResourceURLContent)urlContent).isMultiPartResource())
+                   && urlContent.getURL().getProtocol().equals("file")) {
+          File file = new File(urlContent.getURL().toURI());
+          if (file.isFile()) {
+            return file.length();
+          }
+        }
+      } catch (IOException ex) {
+        // Size unknown
+      } catch (URISyntaxException ex) {
+        // Size unknown
+      } catch (IllegalArgumentException ex) {
+        // Size unknown
+      }
+    }
+    return null;
+  }
+
   /**
    * Returns the size of the given <code>content</code>.
    */
-  public synchronized Long getContentSize(Content content) {
+  public Long getContentSize(Content content) {
     try {
       if (content instanceof ResourceURLContent) {
         return getResourceContentSize((ResourceURLContent)content);
@@ -459,14 +837,27 @@ public class ContentDigestManager {
   static class ZipEntryData implements Comparable<ZipEntryData> {
     private String name;
     private long   size;
+    private long   compressedSize;
+    private long   crc;
+    private int    method;
+    private long   localHeaderOffset;
     
     private ZipEntryData(String name) {
       this(name, -1);
     }
     
     private ZipEntryData(String name, long size) {
+      this(name, size, -1, -1, -1, -1);
+    }
+    
+    private ZipEntryData(String name, long size, long compressedSize, 
+                         long crc, int method, long localHeaderOffset) {
       this.name = name;
       this.size = size;
+      this.compressedSize = compressedSize;
+      this.crc = crc;
+      this.method = method;
+      this.localHeaderOffset = localHeaderOffset;
     }
     
     public String getName() {
@@ -477,6 +868,35 @@ public class ContentDigestManager {
       return this.size;
     }
 
+    /**
+     * Returns the compressed size of this entry or -1 if it's unknown.
+     */
+    public long getCompressedSize() {
+      return this.compressedSize;
+    }
+
+    /**
+     * Returns the CRC-32 of the uncompressed data of this entry or -1 if it's unknown.
+     */
+    public long getCrc() {
+      return this.crc;
+    }
+
+    /**
+     * Returns the compression method of this entry or -1 if it's unknown.
+     */
+    public int getMethod() {
+      return this.method;
+    }
+
+    /**
+     * Returns the offset of the local header of this entry in its zip file 
+     * or -1 if it's unknown.
+     */
+    public long getLocalHeaderOffset() {
+      return this.localHeaderOffset;
+    }
+
     public int compareTo(ZipEntryData entry) {
       return this.name.compareTo(entry.name);
     }
@@ -20,7 +20,6 @@
 package com.eteks.sweethome3d.io;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -37,6 +36,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
@@ -135,6 +136,8 @@ public class DefaultHomeInputStream extends FilterInputStream {
   /**
    * Creates a home input stream able to read a home and its content from the given file.
    * The file will be read directly without using a temporary copy except if it contains some invalid entries.
+   * As the content of the read home will reference the entries of this file, the file shouldn't
+   * be overwritten in place as long as this home is used.
    * @param zipFile  the zipped file from which the home will be read
    * @param contentRecording  specifies whether content referenced by the read home is included
    *            or not in the stream.
@@ -155,7 +158,7 @@ public class DefaultHomeInputStream extends FilterInputStream {
                                 HomeXMLHandler xmlHandler,
                                 UserPreferences preferences,
                                 boolean preferPreferencesContent) throws FileNotFoundException {
-    super(new FileInputStream(zipFile));
+    super(new PushbackInputStream(new FileInputStream(zipFile), 5));
     this.zipFile = zipFile;
     this.contentRecording = contentRecording;
     this.xmlHandler = xmlHandler;
@@ -213,6 +216,10 @@ public class DefaultHomeInputStream extends FilterInputStream {
   /**
    * Reads home from a zipped stream containing a <code>Home.xml</code> or <code>Home</code> entry,
    * or if the stream isn't zipped, reads the input stream as a XML input stream.
+   * The home entry of a zipped stream is searched first in the central directory of the zip file,
+   * and the entries of its content are checked only when the read home references them.
+   * If the zip file or the home entry is damaged, the valid entries of the zip file are
+   * searched and copied in a temporary file from which home is read.
    */
   public Home readHome() throws IOException, ClassNotFoundException {
     boolean zipContent = true;
@@ -220,25 +227,29 @@ public class DefaultHomeInputStream extends FilterInputStream {
     URL homeUrl = null;
     HomeContentContext contentContext = null;
     if (this.contentRecording != ContentRecording.INCLUDE_NO_CONTENT) {
-      InputStream homeIn = null;
-      if (this.zipFile == null) {
-        if (isZipPrefix()) {
-          // If it's a zipped content stream, copy home stream in a temporary file
-          this.zipFile = OperatingSystem.createTemporaryFile("open", ".sweethome3d");
-          OutputStream fileCopyOut = new BufferedOutputStream(new FileOutputStream(this.zipFile));
-          homeIn = new CopiedInputStream(new BufferedInputStream(this.in), fileCopyOut);
-        } else {
-          zipContent = false;
-          validZipFile = false;
-        }
-      } else {
-        homeIn = this.in;
+      if (!isZipPrefix()) {
+        zipContent = false;
+        validZipFile = false;
+      } else if (this.zipFile == null) {
+        // If it's a zipped content stream, copy home stream in a temporary file
+        this.zipFile = OperatingSystem.createTemporaryFile("open", ".sweethome3d");
+        copyInputStream(this.zipFile);
       }
 
       if (validZipFile) {
+        // Try to read home without inflating all the entries of the file,
+        // checking its content in other threads
+        Home home = readHomeFromZipFile(true);
+        if (home != null) {
+          // Check model sizes are updated
+          checkModelSizes(home.getFurniture());
+          return home;
+        }
+
         // Check if all entries in the home file can be fully read using a zipped input stream
         List<ZipEntry> validEntries = new ArrayList<ZipEntry>();
-        validZipFile = isZipFileValidUsingInputStream(homeIn, validEntries) && validEntries.size() > 0;
+        validZipFile = isZipFileValidUsingInputStream(
+            new BufferedInputStream(new FileInputStream(this.zipFile)), validEntries) && validEntries.size() > 0;
         if (!validZipFile) {
           int validEntriesCount = validEntries.size();
           validEntries.clear();
@@ -341,6 +352,110 @@ public class DefaultHomeInputStream extends FilterInputStream {
     }
   }
 
+  /**
+   * Copies the read input stream to the given file.
+   */
+  private void copyInputStream(File file) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      byte [] buffer = new byte [8192];
+      int size;
+      while ((size = this.in.read(buffer)) != -1) {
+        out.write(buffer, 0, size);
+        checkCurrentThreadIsntInterrupted();
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Returns the home read from the <code>Home.xml</code> or <code>Home</code> entry
+   * found in the central directory of the zip file, or <code>null</code> if the central directory
+   * can't be read or if this entry is missing or damaged.
+   * The entries of each content are checked only once it's looked up by the content context,
+   * with its digest if available or with its CRC.
+   * @param backgroundValidation if <code>true</code>, content is checked in other threads while home is read,
+   *          and home is read again with a synchronous check if some content is invalid, 
+   *          to be able to replace or report damaged content.
+   */
+  private Home readHomeFromZipFile(boolean backgroundValidation) throws IOException, ClassNotFoundException {
+    ZipFile zipFile;
+    try {
+      zipFile = new ZipFile(this.zipFile);
+    } catch (IOException ex) {
+      return null;
+    }
+    try {
+      // Give a higher priority to Home.xml entry
+      ZipEntry homeEntry = this.xmlHandler != null
+          ? zipFile.getEntry("Home.xml")
+          : null;
+      boolean homeXmlEntry = homeEntry != null;
+      if (!homeXmlEntry) {
+        homeEntry = zipFile.getEntry("Home");
+        if (homeEntry == null) {
+          return null;
+        }
+      }
+
+      HomeContentContext contentContext = new HomeContentContext(this.zipFile.toURI().toURL(),
+          zipFile, this.preferences, this.preferPreferencesContent, backgroundValidation);
+      Home home;
+      boolean validContents;
+      CheckedInputStream checkedIn = new CheckedInputStream(zipFile.getInputStream(homeEntry), new CRC32());
+      try {
+        // Keep the stream open when the parser closes it to be able to check the end of the entry
+        InputStream homeIn = new FilterInputStream(checkedIn) {
+            @Override
+            public void close() throws IOException {
+            }
+          };
+        checkCurrentThreadIsntInterrupted();
+        if (homeXmlEntry) {
+          home = readHomeXML(homeIn, contentContext);
+        } else {
+          home = readHomeObject(homeIn, contentContext);
+        }
+        // Read the end of the entry and check its CRC
+        byte [] buffer = new byte [8192];
+        while (checkedIn.read(buffer) != -1) {
+        }
+        if (homeEntry.getCrc() != -1
+            && checkedIn.getChecksum().getValue() != homeEntry.getCrc()) {
+          return null;
+        }
+        validContents = home == null
+            || contentContext.waitForContentsValidation();
+      } catch (InterruptedIOException ex) {
+        throw ex;
+      } catch (IOException ex) {
+        // Damaged home entry
+        return null;
+      } finally {
+        // Ensure no content is checked once zip file is closed
+        contentContext.cancelContentsValidation();
+        checkedIn.close();
+      }
+
+      if (!validContents) {
+        // Read home again to replace damaged content or list it
+        return readHomeFromZipFile(false);
+      }
+      // Check all content is valid
+      if (home != null && contentContext.containsInvalidContents()) {
+        if (contentContext.containsCheckedContents()) {
+          home.setRepaired(true);
+        } else {
+          throw new DamagedHomeIOException(home, contentContext.getInvalidContents());
+        }
+      }
+      return home;
+    } finally {
+      zipFile.close();
+    }
+  }
+
   /**
    * Returns the home read from the given serialized input stream.
    */
@@ -532,52 +647,6 @@ public class DefaultHomeInputStream extends FilterInputStream {
     return false;
   }
 
-  /**
-   * An input stream filter that copies to a given output stream all read data.
-   */
-  private class CopiedInputStream extends FilterInputStream {
-    private OutputStream out;
-
-    protected CopiedInputStream(InputStream in, OutputStream out) {
-      super(in);
-      this.out = out;
-    }
-
-    @Override
-    public int read() throws IOException {
-      int b = super.read();
-      if (b != -1) {
-        this.out.write(b);
-      }
-      return b;
-    }
-
-    @Override
-    public int read(byte [] b, int off, int len) throws IOException {
-      int size = super.read(b, off, len);
-      if (size != -1) {
-        this.out.write(b, off, size);
-      }
-      return size;
-    }
-
-    @Override
-    public void close() throws IOException {
-      try {
-        // Copy remaining bytes
-        byte [] buffer = new byte [8192];
-        int size;
-        while ((size = this.in.read(buffer)) != -1) {
-          this.out.write(buffer, 0, size);
-        }
-        this.out.flush();
-      } finally {
-        this.out.close();
-        super.close();
-      }
-    }
-  }
-
   /**
    * <code>ObjectInputStream</code> that replaces temporary <code>URLContent</code>
    * objects by <code>URLContent</code> objects that points to file.
@@ -22,7 +22,6 @@ package com.eteks.sweethome3d.io;
 import java.io.File;
 import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
@@ -36,7 +35,6 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import com.eteks.sweethome3d.model.Content;
 import com.eteks.sweethome3d.model.Home;
@@ -56,6 +54,7 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
   private ContentRecording contentRecording;
   private boolean          serializedHome;
   private HomeXMLExporter  homeXmlExporter;
+  private boolean          parallelCompression;
   
   /**
    * Creates a stream that will save a home and all the contents it references
@@ -113,6 +112,30 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
                                  ContentRecording contentRecording,
                                  boolean          serializedHome,
                                  HomeXMLExporter  homeXmlExporter) throws IOException {
+    this(out, compressionLevel, contentRecording, serializedHome, homeXmlExporter, false);
+  }
+
+  /**
+   * Creates a stream that will serialize a home in a zip stream. Home data will be serialized 
+   * in an entry named <code>Home</code> if <code>serializedHome</code> is <code>true</code>, 
+   * and saved in <code>Home.xml</code> entry at XML format if <code>homeXmlExporter</code> is not <code>null</code>.
+   * @param compressionLevel 0-9
+   * @param contentRecording specifies how content should be recorded with home  
+   * @param serializedHome if <code>true</code>, zip stream will include a <code>Home</code> 
+   *            entry containing the serialized home
+   * @param homeXmlExporter  if not <code>null</code>, sets how a home will be saved
+   *            in an additional <code>Home.xml</code> entry
+   * @param parallelCompression if <code>true</code>, the entries of the content saved with home
+   *            will be compressed in parallel threads, and the ones containing data already compressed 
+   *            like JPEG or PNG images will be stored without compression. The digests of 
+   *            this content will be computed in parallel threads too.
+   */
+  public DefaultHomeOutputStream(OutputStream out,
+                                 int          compressionLevel, 
+                                 ContentRecording contentRecording,
+                                 boolean          serializedHome,
+                                 HomeXMLExporter  homeXmlExporter,
+                                 boolean          parallelCompression) throws IOException {
     super(out);
     if (!serializedHome && homeXmlExporter == null) {
       throw new IllegalArgumentException("No entry specified for home data");
@@ -121,6 +144,7 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
     this.contentRecording = contentRecording;
     this.serializedHome = serializedHome;
     this.homeXmlExporter = homeXmlExporter;
+    this.parallelCompression = parallelCompression;
   }
 
   /**
@@ -140,27 +164,48 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
    */
   public void writeHome(Home home) throws IOException {
     // Create a zip output on out stream 
-    ZipOutputStream zipOut = new ZipOutputStream(this.out);
-    zipOut.setLevel(this.compressionLevel);
-    checkCurrentThreadIsntInterrupted();
-    // Track content that must be saved in the zip stream with a dummy output stream 
-    HomeContentObjectsTracker contentTracker = new HomeContentObjectsTracker(new OutputStream() {
-        @Override
-        public void write(int b) throws IOException {
-          // Don't write anything
-        }
-      });
-    contentTracker.writeObject(home);
-    Map<Content, String> savedContentNames = contentTracker.getSavedContentNames();
+    ParallelZipOutputStream zipOut = new ParallelZipOutputStream(this.out, this.compressionLevel, 
+        this.parallelCompression 
+            ? ParallelZipOutputStream.getDefaultCompressionThreadCount() 
+            : 1);
+    try {
+      writeHome(zipOut, home);
+    } finally {
+      zipOut.dispose();
+    }
+  }
 
+  /**
+   * Writes home in the given zipped stream followed by <code>Content</code> objects 
+   * it points to.
+   */
+  private void writeHome(ParallelZipOutputStream zipOut, Home home) throws IOException {
+    checkCurrentThreadIsntInterrupted();
+    Map<Content, String> savedContentNames;
     if (this.serializedHome) {
-      // Write home in the first entry named "Home"
+      // Write home in the first entry named "Home", tracking the content that must be saved 
+      // in the zip stream and replacing Content objects if needed during the same pass
       zipOut.putNextEntry(new ZipEntry("Home"));
-      // Save home replacing Content objects if needed
-      HomeObjectOutputStream objectOut = new HomeObjectOutputStream(zipOut, savedContentNames);
+      HomeObjectOutputStream objectOut = new HomeObjectOutputStream(zipOut, true);
       objectOut.writeObject(home);
       objectOut.flush();
       zipOut.closeEntry();
+      savedContentNames = objectOut.getSavedContentNames();
+    } else {
+      // Track content that must be saved in the zip stream with a dummy output stream 
+      HomeObjectOutputStream contentTracker = new HomeObjectOutputStream(new OutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            // Don't write anything
+          }
+
+          @Override
+          public void write(byte [] b, int off, int len) throws IOException {
+            // Don't write anything
+          }
+        }, false);
+      contentTracker.writeObject(home);
+      savedContentNames = contentTracker.getSavedContentNames();
     }
 
     if (this.homeXmlExporter != null) {
@@ -175,25 +220,29 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
     }
     
     if (savedContentNames.size() > 0) {
-      Set<String> contentEntryNames = new HashSet<String>(); 
+      // Compute in parallel the digests of the first content saved in each entry
+      Map<String, Content> entryContents = new LinkedHashMap<String, Content>();
+      for (Map.Entry<Content, String> savedContent : savedContentNames.entrySet()) {
+        if (!entryContents.containsKey(savedContent.getValue())) {
+          entryContents.put(savedContent.getValue(), savedContent.getKey());
+        }
+      }
+      Map<Content, byte []> contentDigests = ContentDigestManager.getInstance().getContentDigests(entryContents.values());
+      checkCurrentThreadIsntInterrupted();
+      
       // In the next entry named "ContentDigests", write content digests to help repair damaged files     
       zipOut.putNextEntry(new ZipEntry("ContentDigests"));
       OutputStreamWriter writer = new OutputStreamWriter(zipOut, "UTF-8");
-      ContentDigestManager digestManager = ContentDigestManager.getInstance();
       writer.write("ContentDigests-Version: 1.0\n\n");
-      for (Map.Entry<Content, String> savedContent : savedContentNames.entrySet()) {
-        String contentEntryName = savedContent.getValue();
-        if (!contentEntryNames.contains(contentEntryName)) {
-          contentEntryNames.add(contentEntryName);
-          writer.write("Name: " + contentEntryName + "\n");
-          writer.write("SHA-1-Digest: " + Base64.encodeBytes(digestManager.getContentDigest(savedContent.getKey())) + "\n\n");
-        }
+      for (Map.Entry<String, Content> entryContent : entryContents.entrySet()) {
+        writer.write("Name: " + entryContent.getKey() + "\n");
+        writer.write("SHA-1-Digest: " + Base64.encodeBytes(contentDigests.get(entryContent.getValue())) + "\n\n");
       }
       writer.flush();
       zipOut.closeEntry();
     
       // Write Content objects in additional zip entries
-      contentEntryNames.clear(); 
+      Set<String> contentEntryNames = new HashSet<String>(); 
       for (Map.Entry<Content, String> savedContent : savedContentNames.entrySet()) {
         String contentEntryName = savedContent.getValue();
         if (!contentEntryNames.contains(contentEntryName)) {
@@ -229,7 +278,7 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
    * Writes in <code>zipOut</code> stream one or more entries matching the content
    * <code>urlContent</code> coming from a resource file.
    */
-  private void writeResourceZipEntries(ZipOutputStream zipOut,
+  private void writeResourceZipEntries(ParallelZipOutputStream zipOut,
                                        String entryNameOrDirectory,
                                        ResourceURLContent urlContent) throws IOException {
     if (urlContent.isMultiPartResource()) {
@@ -281,7 +330,7 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
    * Writes in <code>zipOut</code> stream one or more entries matching the content
    * <code>urlContent</code> coming from a home file.
    */
-  private void writeHomeZipEntries(ZipOutputStream zipOut,
+  private void writeHomeZipEntries(ParallelZipOutputStream zipOut,
                                    String entryNameOrDirectory,
                                    HomeURLContent urlContent) throws IOException {
     String entryName = urlContent.getJAREntryName();
@@ -294,13 +343,16 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
       for (ContentDigestManager.ZipEntryData zipEntry : ContentDigestManager.getInstance().getZipURLEntries(urlContent)) {
         String zipEntryName = zipEntry.getName();
         if (zipEntryName.startsWith(entryDirectory)) {
-          Content siblingContent = new URLContent(new URL("jar:" + zipUrl + "!/" 
-              + URLEncoder.encode(zipEntryName, "UTF-8").replace("+", "%20")));
-          writeZipEntry(zipOut, entryNameOrDirectory + zipEntryName.substring(slashIndex), siblingContent);
+          writeZipEntry(zipOut, entryNameOrDirectory + zipEntryName.substring(slashIndex), zipUrl, zipEntry);
         }
       }
     } else {
-      writeZipEntry(zipOut, entryNameOrDirectory, urlContent);
+      ContentDigestManager.ZipEntryData zipEntry = ContentDigestManager.getInstance().getZipURLEntry(urlContent);
+      if (zipEntry != null) {
+        writeZipEntry(zipOut, entryNameOrDirectory, urlContent.getJAREntryURL(), zipEntry);
+      } else {
+        writeZipEntry(zipOut, entryNameOrDirectory, urlContent);
+      }
     }
   }
 
@@ -308,15 +360,12 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
    * Writes in <code>zipOut</code> stream all the sibling files of the zipped 
    * <code>urlContent</code>.
    */
-  private void writeZipEntries(ZipOutputStream zipOut, 
+  private void writeZipEntries(ParallelZipOutputStream zipOut, 
                                String directory,
                                URLContent urlContent) throws IOException {
     // Write in alphabetic order each zipped stream entry in home stream
     for (ContentDigestManager.ZipEntryData zipEntry : ContentDigestManager.getInstance().getZipURLEntries(urlContent)) {
-      String zipEntryName = zipEntry.getName();
-      Content siblingContent = new URLContent(new URL("jar:" + urlContent.getJAREntryURL() + "!/" 
-          + URLEncoder.encode(zipEntryName, "UTF-8").replace("+", "%20")));
-      writeZipEntry(zipOut, directory + "/" + zipEntryName, siblingContent);
+      writeZipEntry(zipOut, directory + "/" + zipEntry.getName(), urlContent.getJAREntryURL(), zipEntry);
     }
   }
 
@@ -324,35 +373,53 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
    * Writes in <code>zipOut</code> stream a new entry named <code>entryName</code> that 
    * contains a given <code>content</code>.
    */
-  private void writeZipEntry(ZipOutputStream zipOut, String entryName, Content content) throws IOException {
+  private void writeZipEntry(ParallelZipOutputStream zipOut, String entryName, Content content) throws IOException {
     checkCurrentThreadIsntInterrupted();
-    byte [] buffer = new byte [8192];
-    InputStream contentIn = null;
-    try {
-      zipOut.putNextEntry(new ZipEntry(entryName));
-      contentIn = content.openStream();          
-      int size; 
-      while ((size = contentIn.read(buffer)) != -1) {
-        zipOut.write(buffer, 0, size);
-      }
-      zipOut.closeEntry();  
-    } finally {
-      if (contentIn != null) {          
-        contentIn.close();
+    zipOut.putNextEntry(entryName, content);
+  }
+
+  /**
+   * Writes in <code>zipOut</code> stream a new entry named <code>entryName</code> that 
+   * contains the entry <code>zipEntry</code> of the zip file at <code>zipUrl</code>.
+   * If this zip file is a local file, the compressed data of the entry will be copied 
+   * as is when possible. 
+   */
+  private void writeZipEntry(ParallelZipOutputStream zipOut, String entryName, 
+                             URL zipUrl, ContentDigestManager.ZipEntryData zipEntry) throws IOException {
+    checkCurrentThreadIsntInterrupted();
+    boolean entryCopied = false;
+    if ("file".equals(zipUrl.getProtocol())) {
+      try {
+        entryCopied = zipOut.putNextEntry(entryName, new File(zipUrl.toURI()), zipEntry);
+      } catch (URISyntaxException ex) {
+        // Write entry from its content
+      } catch (IllegalArgumentException ex) {
+        // Write entry from its content
       }
     }
+    if (!entryCopied) {
+      Content content = new URLContent(new URL("jar:" + zipUrl + "!/" 
+          + URLEncoder.encode(zipEntry.getName(), "UTF-8").replace("+", "%20")));
+      writeZipEntry(zipOut, entryName, content);
+    }
   }
 
   /**
-   * A dummy <code>ObjectOutputStream</code> that keeps track of the <code>Content</code> 
-   * objects of a home that should be saved.
+   * <code>ObjectOutputStream</code> that keeps track of the <code>Content</code> 
+   * objects of a home that should be saved, and replaces them 
+   * by temporary <code>URLContent</code> objects if requested.
    */
-  private class HomeContentObjectsTracker extends ObjectOutputStream {
-    private Map<Content, String> savedContentNames = new LinkedHashMap<Content, String>();
-    private int savedContentIndex = 0;
+  private class HomeObjectOutputStream extends ObjectOutputStream {
+    private boolean                 replaceContent;
+    private Map<Content, String>    savedContentNames = new LinkedHashMap<Content, String>();
+    private Map<String, URLContent> replacedContents = new HashMap<String, URLContent>();
+    private Map<Content, Long>      digestedDataSizes = new HashMap<Content, Long>();
+    private int                     savedContentIndex = 0;
 
-    public HomeContentObjectsTracker(OutputStream out) throws IOException {
+    public HomeObjectOutputStream(OutputStream out, 
+                                  boolean replaceContent) throws IOException {
       super(out);
+      this.replaceContent = replaceContent;
       if (contentRecording != ContentRecording.INCLUDE_NO_CONTENT) {
         enableReplaceObject(true);
       }
@@ -360,18 +427,53 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
 
     @Override
     protected Object replaceObject(Object obj) throws IOException {
+      if (obj instanceof Content) {
+        String savedContentName = this.savedContentNames.get((Content)obj);
+        if (savedContentName == null) {
+          savedContentName = trackContent(obj);
+        }
+        if (savedContentName != null
+            && this.replaceContent) {
+          checkCurrentThreadIsntInterrupted();
+          // Ensure that the duplicated content share the same replaced URLContent instance
+          URLContent replacedContent = this.replacedContents.get(savedContentName);
+          if (replacedContent == null) {
+            replacedContent = new URLContent(new URL("jar:file:temp!/" + savedContentName));
+            this.replacedContents.put(savedContentName, replacedContent);
+          }
+          return replacedContent;          
+        }
+      }
+      return obj;
+    }
+
+    /**
+     * Stores the name under which the given content will be saved if it should be saved,
+     * and returns this name or <code>null</code>.
+     */
+    private String trackContent(Object obj) throws IOException {
       if (obj instanceof TemporaryURLContent 
           || obj instanceof HomeURLContent
           || (contentRecording == ContentRecording.INCLUDE_ALL_CONTENT && obj instanceof Content)) {
         String subEntryName = "";
         if (obj instanceof URLContent) {
           URLContent urlContent = (URLContent)obj;
-          // Check if duplicated content can be avoided 
           ContentDigestManager contentDigestManager = ContentDigestManager.getInstance();
+          if (parallelCompression) {
+            // Digest content while home is serialized, digests being required at least for ContentDigests entry
+            contentDigestManager.computeContentDigestInBackground(urlContent);
+          }
+          // Check if duplicated content can be avoided, comparing digests only of contents with the same size
+          Long digestedDataSize = contentDigestManager.getDigestedDataSize(urlContent);
+          this.digestedDataSizes.put(urlContent, digestedDataSize);
           for (Map.Entry<Content, String> contentEntry : this.savedContentNames.entrySet()) {
-            if (contentDigestManager.equals(urlContent, contentEntry.getKey())) {
+            Long savedContentDigestedDataSize = this.digestedDataSizes.get(contentEntry.getKey());
+            if ((digestedDataSize == null
+                  || savedContentDigestedDataSize == null
+                  || digestedDataSize.equals(savedContentDigestedDataSize))
+                && contentDigestManager.equals(urlContent, contentEntry.getKey())) {
               this.savedContentNames.put((Content)obj, contentEntry.getValue());
-              return obj;
+              return contentEntry.getValue();
             }
           }
           checkCurrentThreadIsntInterrupted();
@@ -418,8 +520,9 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
         // Build a relative URL that points to content object 
         String homeContentPath = this.savedContentIndex++ + subEntryName;
         this.savedContentNames.put((Content)obj, homeContentPath);
+        return homeContentPath;
       } 
-      return obj;
+      return null;
     }
     
     /**
@@ -429,40 +532,4 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
       return this.savedContentNames;
     }
   }
-  
-  /**
-   * <code>ObjectOutputStream</code> that replaces <code>Content</code> objects
-   * by temporary <code>URLContent</code> objects and stores them in a list.
-   */
-  private class HomeObjectOutputStream extends ObjectOutputStream {
-    private Map<Content, String>    savedContentNames;
-    private Map<String, URLContent> replacedContents = new HashMap<String, URLContent>();
-
-    public HomeObjectOutputStream(OutputStream out,
-                                  Map<Content, String> savedContentNames) throws IOException {
-      super(out);
-      this.savedContentNames = savedContentNames;
-      if (contentRecording != ContentRecording.INCLUDE_NO_CONTENT) {
-        enableReplaceObject(true);
-      }
-    }
-
-    @Override
-    protected Object replaceObject(Object obj) throws IOException {
-      if (obj instanceof Content) {
-        String savedContentName = this.savedContentNames.get((Content)obj);
-        if (savedContentName != null) {
-          checkCurrentThreadIsntInterrupted();
-          // Ensure that the duplicated content share the same replaced URLContent instance
-          URLContent replacedContent = this.replacedContents.get(savedContentName);
-          if (replacedContent == null) {
-            replacedContent = new URLContent(new URL("jar:file:temp!/" + savedContentName));
-            this.replacedContents.put(savedContentName, replacedContent);
-          }
-          return replacedContent;          
-        }
-      }
-      return obj;
-    }
-  }
 }
\ No newline at end of file
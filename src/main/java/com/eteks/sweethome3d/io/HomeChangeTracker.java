@@ -0,0 +1,310 @@
+/*
+ * HomeChangeTracker.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.io;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
+import com.eteks.sweethome3d.model.CollectionEvent;
+import com.eteks.sweethome3d.model.CollectionListener;
+import com.eteks.sweethome3d.model.DimensionLine;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomeEnvironment;
+import com.eteks.sweethome3d.model.HomeFurnitureGroup;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Label;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Polyline;
+import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Wall;
+
+/**
+ * A tracker of the changes of a home, its items, its cameras and its environment.
+ * The changes of the properties set with <code>setProperty</code> methods aren't tracked
+ * because they're not notified to listeners.
+ * As its listeners are notified in the thread where home is modified, this tracker
+ * should be used only from that thread, usually the Event Dispatch Thread.
+ * @author Emmanuel Puybaret
+ */
+class HomeChangeTracker {
+  private final Home                                     home;
+  private final PropertyChangeListener                   changeListener;
+  private final PropertyChangeListener                   furnitureChangeListener;
+  private final CollectionListener<HomePieceOfFurniture> furnitureListener;
+  private final CollectionListener<Wall>                 wallsListener;
+  private final CollectionListener<Room>                 roomsListener;
+  private final CollectionListener<Polyline>             polylinesListener;
+  private final CollectionListener<DimensionLine>        dimensionLinesListener;
+  private final CollectionListener<Label>                labelsListener;
+  private final CollectionListener<Level>                levelsListener;
+  private boolean                                        changed;
+  private long                                           lastClearTime;
+
+  /**
+   * Creates a tracker of the changes of <code>home</code>, considered as changed
+   * until the first call to {@link #clearChanges() clearChanges}.
+   */
+  public HomeChangeTracker(Home home) {
+    this.home = home;
+    this.changed = true;
+    this.changeListener = new PropertyChangeListener() {
+        public void propertyChange(PropertyChangeEvent ev) {
+          changed = true;
+        }
+      };
+    this.furnitureChangeListener = new PropertyChangeListener() {
+        public void propertyChange(PropertyChangeEvent ev) {
+          changed = true;
+          if (ev.getSource() instanceof HomeFurnitureGroup) {
+            // Listen to the pieces that may have been added to the group
+            addPieceListener((HomeFurnitureGroup)ev.getSource());
+          }
+        }
+      };
+    this.furnitureListener = new ItemsListener<HomePieceOfFurniture>() {
+        @Override
+        protected void addListener(HomePieceOfFurniture piece) {
+          addPieceListener(piece);
+        }
+
+        @Override
+        protected void removeListener(HomePieceOfFurniture piece) {
+          removePieceListener(piece);
+        }
+      };
+    this.wallsListener = new ItemsListener<Wall>() {
+        @Override
+        protected void addListener(Wall wall) {
+          wall.addPropertyChangeListener(changeListener);
+        }
+
+        @Override
+        protected void removeListener(Wall wall) {
+          wall.removePropertyChangeListener(changeListener);
+        }
+      };
+    this.roomsListener = new ItemsListener<Room>() {
+        @Override
+        protected void addListener(Room room) {
+          room.addPropertyChangeListener(changeListener);
+        }
+
+        @Override
+        protected void removeListener(Room room) {
+          room.removePropertyChangeListener(changeListener);
+        }
+      };
+    this.polylinesListener = new ItemsListener<Polyline>() {
+        @Override
+        protected void addListener(Polyline polyline) {
+          polyline.addPropertyChangeListener(changeListener);
+        }
+
+        @Override
+        protected void removeListener(Polyline polyline) {
+          polyline.removePropertyChangeListener(changeListener);
+        }
+      };
+    this.dimensionLinesListener = new ItemsListener<DimensionLine>() {
+        @Override
+        protected void addListener(DimensionLine dimensionLine) {
+          dimensionLine.addPropertyChangeListener(changeListener);
+        }
+
+        @Override
+        protected void removeListener(DimensionLine dimensionLine) {
+          dimensionLine.removePropertyChangeListener(changeListener);
+        }
+      };
+    this.labelsListener = new ItemsListener<Label>() {
+        @Override
+        protected void addListener(Label label) {
+          label.addPropertyChangeListener(changeListener);
+        }
+
+        @Override
+        protected void removeListener(Label label) {
+          label.removePropertyChangeListener(changeListener);
+        }
+      };
+    this.levelsListener = new ItemsListener<Level>() {
+        @Override
+        protected void addListener(Level level) {
+          level.addPropertyChangeListener(changeListener);
+        }
+
+        @Override
+        protected void removeListener(Level level) {
+          level.removePropertyChangeListener(changeListener);
+        }
+      };
+    addListeners();
+  }
+
+  /**
+   * A collection listener which adds or removes a property listener to the added or deleted items.
+   */
+  private abstract class ItemsListener<T> implements CollectionListener<T> {
+    public void collectionChanged(CollectionEvent<T> ev) {
+      changed = true;
+      if (ev.getType() == CollectionEvent.Type.ADD) {
+        addListener(ev.getItem());
+      } else {
+        removeListener(ev.getItem());
+      }
+    }
+
+    protected abstract void addListener(T item);
+
+    protected abstract void removeListener(T item);
+  }
+
+  private void addPieceListener(HomePieceOfFurniture piece) {
+    // Remove listener first to avoid to add it twice
+    removePieceListener(piece);
+    piece.addPropertyChangeListener(this.furnitureChangeListener);
+    if (piece instanceof HomeFurnitureGroup) {
+      for (HomePieceOfFurniture childPiece : ((HomeFurnitureGroup)piece).getAllFurniture()) {
+        childPiece.addPropertyChangeListener(this.furnitureChangeListener);
+      }
+    }
+  }
+
+  private void removePieceListener(HomePieceOfFurniture piece) {
+    piece.removePropertyChangeListener(this.furnitureChangeListener);
+    if (piece instanceof HomeFurnitureGroup) {
+      for (HomePieceOfFurniture childPiece : ((HomeFurnitureGroup)piece).getAllFurniture()) {
+        childPiece.removePropertyChangeListener(this.furnitureChangeListener);
+      }
+    }
+  }
+
+  private void addListeners() {
+    for (Home.Property property : Home.Property.values()) {
+      this.home.addPropertyChangeListener(property, this.changeListener);
+    }
+    for (HomeEnvironment.Property property : HomeEnvironment.Property.values()) {
+      this.home.getEnvironment().addPropertyChangeListener(property, this.changeListener);
+    }
+    this.home.getCompass().addPropertyChangeListener(this.changeListener);
+    this.home.getObserverCamera().addPropertyChangeListener(this.changeListener);
+    this.home.getTopCamera().addPropertyChangeListener(this.changeListener);
+    for (HomePieceOfFurniture piece : this.home.getFurniture()) {
+      addPieceListener(piece);
+    }
+    this.home.addFurnitureListener(this.furnitureListener);
+    for (Wall wall : this.home.getWalls()) {
+      wall.addPropertyChangeListener(this.changeListener);
+    }
+    this.home.addWallsListener(this.wallsListener);
+    for (Room room : this.home.getRooms()) {
+      room.addPropertyChangeListener(this.changeListener);
+    }
+    this.home.addRoomsListener(this.roomsListener);
+    for (Polyline polyline : this.home.getPolylines()) {
+      polyline.addPropertyChangeListener(this.changeListener);
+    }
+    this.home.addPolylinesListener(this.polylinesListener);
+    for (DimensionLine dimensionLine : this.home.getDimensionLines()) {
+      dimensionLine.addPropertyChangeListener(this.changeListener);
+    }
+    this.home.addDimensionLinesListener(this.dimensionLinesListener);
+    for (Label label : this.home.getLabels()) {
+      label.addPropertyChangeListener(this.changeListener);
+    }
+    this.home.addLabelsListener(this.labelsListener);
+    for (Level level : this.home.getLevels()) {
+      level.addPropertyChangeListener(this.changeListener);
+    }
+    this.home.addLevelsListener(this.levelsListener);
+  }
+
+  /**
+   * Removes the listeners this tracker added to its home.
+   */
+  public void dispose() {
+    for (Home.Property property : Home.Property.values()) {
+      this.home.removePropertyChangeListener(property, this.changeListener);
+    }
+    for (HomeEnvironment.Property property : HomeEnvironment.Property.values()) {
+      this.home.getEnvironment().removePropertyChangeListener(property, this.changeListener);
+    }
+    this.home.getCompass().removePropertyChangeListener(this.changeListener);
+    this.home.getObserverCamera().removePropertyChangeListener(this.changeListener);
+    this.home.getTopCamera().removePropertyChangeListener(this.changeListener);
+    for (HomePieceOfFurniture piece : this.home.getFurniture()) {
+      removePieceListener(piece);
+    }
+    this.home.removeFurnitureListener(this.furnitureListener);
+    for (Wall wall : this.home.getWalls()) {
+      wall.removePropertyChangeListener(this.changeListener);
+    }
+    this.home.removeWallsListener(this.wallsListener);
+    for (Room room : this.home.getRooms()) {
+      room.removePropertyChangeListener(this.changeListener);
+    }
+    this.home.removeRoomsListener(this.roomsListener);
+    for (Polyline polyline : this.home.getPolylines()) {
+      polyline.removePropertyChangeListener(this.changeListener);
+    }
+    this.home.removePolylinesListener(this.polylinesListener);
+    for (DimensionLine dimensionLine : this.home.getDimensionLines()) {
+      dimensionLine.removePropertyChangeListener(this.changeListener);
+    }
+    this.home.removeDimensionLinesListener(this.dimensionLinesListener);
+    for (Label label : this.home.getLabels()) {
+      label.removePropertyChangeListener(this.changeListener);
+    }
+    this.home.removeLabelsListener(this.labelsListener);
+    for (Level level : this.home.getLevels()) {
+      level.removePropertyChangeListener(this.changeListener);
+    }
+    this.home.removeLevelsListener(this.levelsListener);
+  }
+
+  /**
+   * Returns <code>true</code> if home changed since the last call to {@link #clearChanges() clearChanges}.
+   */
+  public boolean isChanged() {
+    return this.changed;
+  }
+
+  /**
+   * Forgets the changes of home notified until now.
+   */
+  public void clearChanges() {
+    this.changed = false;
+    this.lastClearTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Returns the time of the last call to {@link #clearChanges() clearChanges}.
+   */
+  public long getLastClearTime() {
+    return this.lastClearTime;
+  }
+
+  /**
+   * Marks home as changed, for example when its previous changes couldn't be saved.
+   */
+  public void setChanged() {
+    this.changed = true;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * HomeContentCollector.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.io;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.eteks.sweethome3d.model.Content;
+import com.eteks.sweethome3d.model.Home;
+
+/**
+ * A collector of the <code>Content</code> objects referenced by a home.
+ * @author Emmanuel Puybaret
+ */
+class HomeContentCollector {
+  private HomeContentCollector() {
+    // This class contains only tools
+  }
+
+  /**
+   * Returns the content referenced by the given <code>home</code> in the order they're serialized.
+   */
+  public static List<Content> getContents(Home home) throws IOException {
+    final List<Content> contents = new ArrayList<Content>();
+    // Browse home content with an object output stream writing nowhere
+    ObjectOutputStream contentCollector = new ObjectOutputStream(new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          // Don't write anything
+        }
+
+        @Override
+        public void write(byte [] b, int off, int len) throws IOException {
+          // Don't write anything
+        }
+      }) {
+        {
+          enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+          if (obj instanceof Content) {
+            contents.add((Content)obj);
+          }
+          return obj;
+        }
+      };
+    contentCollector.writeObject(home);
+    contentCollector.close();
+    return contents;
+  }
+}
@@ -26,13 +26,25 @@ import java.io.InputStreamReader;
 import java.io.InterruptedIOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
@@ -48,10 +60,14 @@ import com.eteks.sweethome3d.tools.URLContent;
  * @author Emmanuel Puybaret
  */
 class HomeContentContext {
+  private static ExecutorService   contentsValidationExecutor;
+
   private URL                      homeUrl;
+  private ZipFile                  homeZipFile;
   private boolean                  containsInvalidContents;
   private List<Content>            invalidContents;
   private List<URLContent>         validContentsNotInPreferences;
+  private Map<URLContent, Future<Boolean>> pendingContentsValidation;
 
   private Map<URLContent, byte []> contentDigests;
   private Set<URLContent>          preferencesContentsCache;
@@ -60,7 +76,39 @@ class HomeContentContext {
   public HomeContentContext(URL homeSource,
                             UserPreferences preferences,
                             boolean preferPreferencesContent) {
+    this(homeSource, null, preferences, preferPreferencesContent);
+  }
+
+  /**
+   * Creates a context for the home stored in the given zip file, opened with its central directory.
+   * As the entries of <code>homeZipFile</code> weren't checked yet, the entries of each content
+   * without digest will be checked against their CRC when the content is looked up.
+   */
+  public HomeContentContext(URL homeSource,
+                            ZipFile homeZipFile,
+                            UserPreferences preferences,
+                            boolean preferPreferencesContent) {
+    this(homeSource, homeZipFile, preferences, preferPreferencesContent, false);
+  }
+
+  /**
+   * Creates a context for the home stored in the given zip file, opened with its central directory.
+   * If <code>backgroundValidation</code> is <code>true</code>, the digest or the CRC of each
+   * looked up content is checked in other threads while home is read, and looked up contents
+   * are supposed to be valid until {@link #waitForContentsValidation() waitForContentsValidation}
+   * is called. As damaged contents can't be replaced once home is read, home should be read
+   * again with a context checking them synchronously if this method finds invalid contents.
+   */
+  public HomeContentContext(URL homeSource,
+                            ZipFile homeZipFile,
+                            UserPreferences preferences,
+                            boolean preferPreferencesContent,
+                            boolean backgroundValidation) {
+    if (backgroundValidation) {
+      this.pendingContentsValidation = new LinkedHashMap<URLContent, Future<Boolean>>();
+    }
     this.homeUrl = homeSource;
+    this.homeZipFile = homeZipFile;
     this.preferPreferencesContent = preferPreferencesContent;
     this.contentDigests = readContentDigests(homeSource);
     this.invalidContents = new ArrayList<Content>();
@@ -76,44 +124,32 @@ class HomeContentContext {
    * <code>null</code> if this information doesn't exist in the home file.
    */
   private Map<URLContent, byte []> readContentDigests(URL homeUrl) {
-    ZipInputStream zipIn = null;
+    InputStream in = null;
     try {
-      zipIn = new ZipInputStream(homeUrl.openStream());
-      // Read the content of the entry named "ContentDigests" if it exists
-      ZipEntry entry = null;
-      while ((entry = zipIn.getNextEntry()) != null) {
-        if ("ContentDigests".equals(entry.getName())) {
-          BufferedReader reader = new BufferedReader(new InputStreamReader(zipIn, "UTF-8"));
-          String line = reader.readLine();
-          if (line != null
-              && line.trim().startsWith("ContentDigests-Version: 1")) {
-            Map<URLContent, byte []> contentDigests = new HashMap<URLContent, byte[]>();
-            // Read Name / SHA-1-Digest lines  
-            String entryName = null;
-            while ((line = reader.readLine()) != null) {
-              if (line.startsWith("Name:")) {
-                entryName = line.substring("Name:".length()).trim();
-              } else if (line.startsWith("SHA-1-Digest:")) {
-                byte [] digest = Base64.decode(line.substring("SHA-1-Digest:".length()).trim());
-                if (entryName == null) {
-                  throw new IOException("Missing entry name");
-                } else {
-                  URL url = new URL("jar:" + homeUrl + "!/" + entryName);
-                  contentDigests.put(new HomeURLContent(url), digest);
-                  entryName = null;
-                }
-              }
-            }
-            return contentDigests;
+      if (this.homeZipFile != null) {
+        // Read directly the entry named "ContentDigests" if it exists
+        ZipEntry entry = this.homeZipFile.getEntry("ContentDigests");
+        if (entry != null) {
+          in = this.homeZipFile.getInputStream(entry);
+          return readContentDigests(in, homeUrl);
+        }
+      } else {
+        ZipInputStream zipIn = new ZipInputStream(homeUrl.openStream());
+        in = zipIn;
+        // Read the content of the entry named "ContentDigests" if it exists
+        ZipEntry entry = null;
+        while ((entry = zipIn.getNextEntry()) != null) {
+          if ("ContentDigests".equals(entry.getName())) {
+            return readContentDigests(zipIn, homeUrl);
           }
         }
       }
     } catch (IOException ex) {
       // Ignore issues in ContentDigests (this entry exists only from version 4.4)
     } finally {
-      if (zipIn != null) {
+      if (in != null) {
         try {
-          zipIn.close();
+          in.close();
         } catch (IOException ex) {
         }
       }
@@ -121,6 +157,37 @@ class HomeContentContext {
     return null;
   }
 
+  /**
+   * Returns the content digests read from the given <code>ContentDigests</code> entry stream,
+   * or <code>null</code> if its version isn't supported.
+   */
+  private Map<URLContent, byte []> readContentDigests(InputStream in, URL homeUrl) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    String line = reader.readLine();
+    if (line != null
+        && line.trim().startsWith("ContentDigests-Version: 1")) {
+      Map<URLContent, byte []> contentDigests = new HashMap<URLContent, byte[]>();
+      // Read Name / SHA-1-Digest lines  
+      String entryName = null;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("Name:")) {
+          entryName = line.substring("Name:".length()).trim();
+        } else if (line.startsWith("SHA-1-Digest:")) {
+          byte [] digest = Base64.decode(line.substring("SHA-1-Digest:".length()).trim());
+          if (entryName == null) {
+            throw new IOException("Missing entry name");
+          } else {
+            URL url = new URL("jar:" + homeUrl + "!/" + entryName);
+            contentDigests.put(new HomeURLContent(url), digest);
+            entryName = null;
+          }
+        }
+      }
+      return contentDigests;
+    }
+    return null;
+  }
+
   /**
    * Returns the {@link Content} instance matching the given entry name in home stream.
    */
@@ -141,19 +208,30 @@ class HomeContentContext {
     } else {
       // Check if duplicated content can be avoided 
       // (coming from files older than version 4.4)
-      for (URLContent content : this.validContentsNotInPreferences) {
-        if (contentDigestManager.equals(urlContent, content)) {
-          return content;
-        }
+      URLContent duplicatedContent = findDuplicatedContent(urlContent);
+      if (duplicatedContent != null) {
+        return duplicatedContent;
       }
       if (Thread.interrupted()) {
         throw new InterruptedIOException();
       }
-      // If content digests information is available, check the digest against read content 
-      byte [] contentDigest;
-      if (this.contentDigests != null
-          && (contentDigest = this.contentDigests.get(urlContent)) != null
-          && !contentDigestManager.isContentDigestEqual(urlContent, contentDigest)) {
+      // If content digests information is available, check the digest against read content,
+      // otherwise check the CRC of its entries if they weren't checked yet
+      final byte [] contentDigest = this.contentDigests != null
+          ? this.contentDigests.get(urlContent)
+          : null;
+      if (this.pendingContentsValidation != null) {
+        // Check content in an other thread and consider it as valid until then
+        if (!this.pendingContentsValidation.containsKey(urlContent)) {
+          final HomeURLContent validatedContent = urlContent;
+          this.pendingContentsValidation.put(urlContent, getContentsValidationExecutor().submit(
+              new Callable<Boolean>() {
+                public Boolean call() throws IOException {
+                  return isContentValid(validatedContent, contentDigest);
+                }
+              }));
+        }
+      } else if (!isContentValid(urlContent, contentDigest)) {
         this.containsInvalidContents = true;
         // Try to find in user preferences a content with the same digest  
         URLContent preferencesContent = findUserPreferencesContent(urlContent);
@@ -162,22 +240,128 @@ class HomeContentContext {
         } else {
           this.invalidContents.add(urlContent);
         }
-      } else {
-        if (this.preferencesContentsCache != null
-            && this.preferPreferencesContent) {
-          // Check if user preferences contains the same content to share it
-          for (URLContent preferencesContent : this.preferencesContentsCache) {
-            if (contentDigestManager.equals(urlContent, preferencesContent)) {
-              return preferencesContent;
-            }
+        return urlContent;
+      }
+      
+      if (this.preferencesContentsCache != null
+          && this.preferPreferencesContent) {
+        // Check if user preferences contains the same content to share it
+        for (URLContent preferencesContent : this.preferencesContentsCache) {
+          if (contentDigest != null
+                ? contentDigestManager.isContentDigestEqual(preferencesContent, contentDigest)
+                : contentDigestManager.equals(urlContent, preferencesContent)) {
+            return preferencesContent;
           }
         }
-        this.validContentsNotInPreferences.add(urlContent);
       }
+      this.validContentsNotInPreferences.add(urlContent);
     }
     return urlContent;
   }
 
+  /**
+   * Returns the content equal to the given one among the valid contents already looked up
+   * which aren't in preferences, or <code>null</code> if it doesn't exist.
+   */
+  private URLContent findDuplicatedContent(URLContent urlContent) {
+    ContentDigestManager contentDigestManager = ContentDigestManager.getInstance();
+    byte [] contentDigest = this.contentDigests != null
+        ? this.contentDigests.get(urlContent)
+        : null;
+    for (URLContent content : this.validContentsNotInPreferences) {
+      // Compare the digests stored in home file if they're available, 
+      // to avoid computing the digests of contents which may be validated later  
+      byte [] otherContentDigest = contentDigest != null
+          ? this.contentDigests.get(content)
+          : null;
+      if (otherContentDigest != null
+            ? Arrays.equals(contentDigest, otherContentDigest)
+            : contentDigestManager.equals(urlContent, content)) {
+        return content;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns <code>true</code> if the given content matches its digest if it's not <code>null</code>,
+   * or if its entries match their CRC when they weren't checked yet.
+   */
+  private boolean isContentValid(URLContent urlContent, byte [] contentDigest) throws InterruptedIOException {
+    if (contentDigest != null) {
+      return ContentDigestManager.getInstance().isContentDigestEqual(urlContent, contentDigest);
+    } else {
+      return this.homeZipFile == null || isZipEntryValid(urlContent);
+    }
+  }
+
+  /**
+   * Waits for the end of the checks of contents run in other threads, and returns <code>false</code>
+   * if some of the looked up contents are invalid, in which case they are listed in
+   * {@linkplain #getInvalidContents() invalid contents}.
+   * @throws InterruptedIOException if current thread was interrupted while waiting.
+   */
+  public boolean waitForContentsValidation() throws InterruptedIOException {
+    boolean validContents = true;
+    if (this.pendingContentsValidation != null) {
+      try {
+        for (Map.Entry<URLContent, Future<Boolean>> entry : this.pendingContentsValidation.entrySet()) {
+          if (!entry.getValue().get()) {
+            this.containsInvalidContents = true;
+            this.invalidContents.add(entry.getKey());
+            validContents = false;
+          }
+        }
+      } catch (InterruptedException ex) {
+        throw new InterruptedIOException();
+      } catch (ExecutionException ex) {
+        if (ex.getCause() instanceof InterruptedIOException) {
+          throw (InterruptedIOException)ex.getCause();
+        } else if (ex.getCause() instanceof RuntimeException) {
+          throw (RuntimeException)ex.getCause();
+        } else if (ex.getCause() instanceof Error) {
+          throw (Error)ex.getCause();
+        } else {
+          // Consider content as invalid
+          this.containsInvalidContents = true;
+          validContents = false;
+        }
+      } finally {
+        cancelContentsValidation();
+      }
+    }
+    return validContents;
+  }
+
+  /**
+   * Cancels the checks of contents run in other threads.
+   */
+  public void cancelContentsValidation() {
+    if (this.pendingContentsValidation != null) {
+      for (Future<Boolean> validation : this.pendingContentsValidation.values()) {
+        validation.cancel(true);
+      }
+      this.pendingContentsValidation.clear();
+    }
+  }
+
+  /**
+   * Returns the executor used to check contents in background.
+   */
+  private static synchronized ExecutorService getContentsValidationExecutor() {
+    if (contentsValidationExecutor == null) {
+      contentsValidationExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), 
+          new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "Content validation");
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+    }
+    return contentsValidationExecutor;
+  }
+
   /**
    * Returns <code>true</code> if the given <code>content</code> exists.
    */
@@ -194,6 +378,55 @@ class HomeContentContext {
     return false;
   }
 
+  /**
+   * Returns <code>true</code> if the entries of the given <code>content</code> stored
+   * in home zip file can be fully read and match their CRC.
+   */
+  private boolean isZipEntryValid(URLContent content) throws InterruptedIOException {
+    String entryName = content.getJAREntryName();
+    int slashIndex = entryName.indexOf('/');
+    try {
+      // If content comes from a directory of a home file
+      if (slashIndex > 0) {
+        String entryDirectory = entryName.substring(0, slashIndex + 1);
+        for (Enumeration<? extends ZipEntry> enumEntries = this.homeZipFile.entries(); enumEntries.hasMoreElements(); ) {
+          ZipEntry zipEntry = enumEntries.nextElement();
+          if (zipEntry.getName().startsWith(entryDirectory)
+              && !isCrcValid(zipEntry)) {
+            return false;
+          }
+        }
+        return true;
+      } else {
+        ZipEntry zipEntry = this.homeZipFile.getEntry(entryName);
+        return zipEntry != null && isCrcValid(zipEntry);
+      }
+    } catch (InterruptedIOException ex) {
+      throw ex;
+    } catch (IOException ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if the CRC of the data of the given entry is the expected one.
+   */
+  private boolean isCrcValid(ZipEntry zipEntry) throws IOException {
+    CheckedInputStream in = new CheckedInputStream(this.homeZipFile.getInputStream(zipEntry), new CRC32());
+    try {
+      byte [] buffer = new byte [8192];
+      while (in.read(buffer) != -1) {
+      }
+      if (Thread.interrupted()) {
+        throw new InterruptedIOException();
+      }
+      return zipEntry.getCrc() == -1
+          || in.getChecksum().getValue() == zipEntry.getCrc();
+    } finally {
+      in.close();
+    }
+  }
+
   /**
    * Returns <code>true</code> if all contents is valid whether it was replaced or correct.
    */
@@ -27,8 +27,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
 import com.eteks.sweethome3d.model.DamagedHomeRecorderException;
 import com.eteks.sweethome3d.model.Home;
@@ -45,12 +55,16 @@ import com.eteks.sweethome3d.tools.OperatingSystem;
  * @author Emmanuel Puybaret
  */
 public class HomeFileRecorder implements HomeRecorder {
+  // Links to home files created in temporary folder to read homes without copying their file
+  private static final List<File> homeFileLinks = new ArrayList<File>();
+
   private final int             compressionLevel;
   private final boolean         includeOnlyTemporaryContent;
   private final UserPreferences preferences;
   private final boolean         preferPreferencesContent;
   private final boolean         preferXmlEntry;
   private final boolean         acceptUrl;
+  private final boolean         parallelCompression;
 
   /**
    * Creates a home recorder able to write and read homes in uncompressed files.
@@ -161,16 +175,54 @@ public class HomeFileRecorder implements HomeRecorder {
                           boolean         preferPreferencesContent,
                           boolean         preferXmlEntry,
                           boolean         acceptUrl) {
+    this(compressionLevel, includeOnlyTemporaryContent, preferences, preferPreferencesContent, preferXmlEntry, acceptUrl, false);
+  }
+
+  /**
+   * Creates a home recorder able to write and read homes in files compressed
+   * at a level from 0 to 9.
+   * @param compressionLevel 0-9
+   * @param includeOnlyTemporaryContent if <code>true</code>, content instances of
+   *            <code>TemporaryURLContent</code> class referenced by the saved home
+   *            as well as the content previously saved with it will be written.
+   *            If <code>false</code>, all the content instances
+   *            referenced by the saved home will be written in the zip stream.
+   * @param preferences If not <code>null</code>, the furniture and textures contents
+   *            it references might be used to replace the one of read homes
+   *            when they are equal.
+   * @param preferPreferencesContent If <code>true</code>, the furniture and textures contents
+   *            referenced by <code>preferences</code> will replace the one of read homes
+   *            as often as possible when they are equal. Otherwise, these contents will be
+   *            used only to replace damaged content that might be found in read home files.
+   * @param preferXmlEntry If <code>true</code>, an additional <code>Home.xml</code> entry
+   *            will be saved in files and read in priority from saved files.
+   * @param acceptUrl If <code>true</code>, this recorder will try to read a home from a URL
+   *            if the path passed as parameter to {@link #readHome(String) readHome} isn't a file.
+   * @param parallelCompression If <code>true</code>, the content saved with homes will be 
+   *            compressed in parallel threads.
+   */
+  public HomeFileRecorder(int             compressionLevel,
+                          boolean         includeOnlyTemporaryContent,
+                          UserPreferences preferences,
+                          boolean         preferPreferencesContent,
+                          boolean         preferXmlEntry,
+                          boolean         acceptUrl,
+                          boolean         parallelCompression) {
     this.compressionLevel = compressionLevel;
     this.includeOnlyTemporaryContent = includeOnlyTemporaryContent;
     this.preferences = preferences;
     this.preferPreferencesContent = preferPreferencesContent;
     this.preferXmlEntry = preferXmlEntry;
     this.acceptUrl = acceptUrl;
+    this.parallelCompression = parallelCompression;
   }
 
   /**
    * Writes home data.
+   * Home is written first in a temporary file stored in the same directory as the
+   * file <code>name</code>, then this temporary file is renamed with an atomic move.
+   * If the temporary file can't be created in that directory or can't be renamed,
+   * home is written in a temporary file which is copied to the file <code>name</code>.
    * @throws RecorderException if a problem occurred while writing home.
    */
   public void writeHome(Home home, String name) throws RecorderException {
@@ -180,12 +232,60 @@ public class HomeFileRecorder implements HomeRecorder {
       throw new RecorderException("Can't write over file " + name);
     }
 
-    DefaultHomeOutputStream homeOut = null;
+    // Retrieve the real file to replace in case home file is a link
+    File savedFile = homeFile;
+    try {
+      if (homeFile.exists()) {
+        savedFile = homeFile.toPath().toRealPath().toFile();
+      }
+    } catch (IOException ex) {
+      // Keep home file
+    }
+
     File tempFile = null;
     try {
-      // Open a stream on a temporary file
-      tempFile = OperatingSystem.createTemporaryFile("save", ".sweethome3d");
-      homeOut = new DefaultHomeOutputStream(new FileOutputStream(tempFile),
+      // Open a stream on a temporary file in the same directory as the saved file 
+      tempFile = File.createTempFile("~" + savedFile.getName(), ".tmp", savedFile.getAbsoluteFile().getParentFile());
+    } catch (IOException ex) {
+      // Directory isn't writable
+    } catch (SecurityException ex) {
+      // Directory isn't writable
+    }
+
+    boolean tempFileInSameFolder = tempFile != null;
+    if (!tempFileInSameFolder) {
+      try {
+        // Open a stream on a temporary file
+        tempFile = OperatingSystem.createTemporaryFile("save", ".sweethome3d");
+      } catch (IOException ex) {
+        throw new RecorderException("Can't save home " + name, ex);
+      }
+    }
+
+    try {
+      writeHome(home, tempFile, name);
+      if (tempFileInSameFolder) {
+        checkPrefix(tempFile);
+        if (moveFile(tempFile, savedFile)) {
+          // Finally check prefix of home file to ensure file is not completely false
+          checkPrefix(homeFile);
+          return;
+        }
+      }
+      copyFile(tempFile, homeFile, name);
+    } finally {
+      // Delete temporary file if it wasn't moved
+      tempFile.delete();
+    }
+  }
+
+  /**
+   * Writes <code>home</code> in the given file.
+   */
+  private void writeHome(Home home, File file, String name) throws RecorderException {
+    DefaultHomeOutputStream homeOut = null;
+    try {
+      homeOut = new DefaultHomeOutputStream(new FileOutputStream(file),
           this.compressionLevel,
           this.includeOnlyTemporaryContent
               ? ContentRecording.INCLUDE_TEMPORARY_CONTENT
@@ -193,23 +293,74 @@ public class HomeFileRecorder implements HomeRecorder {
           true,
           this.preferXmlEntry
               ? getHomeXMLExporter()
-              : null);
+              : null,
+          this.parallelCompression);
       // Write home with HomeOuputStream
       homeOut.writeHome(home);
     } catch (InterruptedIOException ex) {
+      closeAndDelete(homeOut, file);
       throw new InterruptedRecorderException("Save " + name + " interrupted");
     } catch (IOException ex) {
+      closeAndDelete(homeOut, file);
       throw new RecorderException("Can't save home " + name, ex);
-    } finally {
-      try {
-        if (homeOut != null) {
-          homeOut.close();
+    } catch (RuntimeException ex) {
+      closeAndDelete(homeOut, file);
+      throw ex;
+    } 
+    
+    try {
+      homeOut.close();
+    } catch (IOException ex) {
+      file.delete();
+      throw new RecorderException("Can't close temporary file " + name, ex);
+    }
+  }
+
+  /**
+   * Closes the given stream and deletes <code>file</code>.
+   */
+  private void closeAndDelete(OutputStream out, File file) {
+    try {
+      if (out != null) {
+        out.close();
+      }
+    } catch (IOException ex) {
+      // Forget exception
+    }
+    file.delete();
+  }
+
+  /**
+   * Renames <code>tempFile</code> as <code>file</code> with an atomic move, 
+   * keeping the permissions of <code>file</code> if it exists. 
+   * @return <code>false</code> if the file couldn't be renamed.
+   */
+  private boolean moveFile(File tempFile, File file) {
+    Path tempPath = tempFile.toPath();
+    Path path = file.toPath();
+    try {
+      if (file.exists()) {
+        try {
+          Files.setPosixFilePermissions(tempPath, Files.getPosixFilePermissions(path));
+        } catch (UnsupportedOperationException ex) {
+          // No POSIX permissions to keep
         }
-      } catch (IOException ex) {
-        throw new RecorderException("Can't close temporary file " + name, ex);
       }
+      Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      return true;
+    } catch (IOException ex) {
+      // Includes AtomicMoveNotSupportedException
+      return false;
+    } catch (SecurityException ex) {
+      return false;
     }
+  }
 
+  /**
+   * Copies <code>tempFile</code> to <code>homeFile</code> once the disk space 
+   * and the prefix of <code>tempFile</code> were checked.
+   */
+  private void copyFile(File tempFile, File homeFile, String name) throws RecorderException {
     try {
       // Check disk space under Java 1.6
       long usableSpace = (Long)File.class.getMethod("getUsableSpace").invoke(homeFile);
@@ -224,53 +375,45 @@ public class HomeFileRecorder implements HomeRecorder {
     } catch (NoSuchMethodException ex) {
       // The method File#getUsableSpace doesn't exist under Java 5
     } catch (NotEnoughSpaceRecorderException ex) {
-      if (tempFile != null) {
-        tempFile.delete();
-      }
       throw ex;
     } catch (Exception ex) {
       // Too bad let's not check and take the risk
       ex.printStackTrace();
     }
 
+    checkPrefix(tempFile);
+    // Overwriting home file in place requires to copy it for the homes read from a link to that file
+    copyLinkedHomeFile(homeFile, name);
+
     // Open destination file
-    OutputStream out;
+    FileOutputStream out;
     try {
       out = new FileOutputStream(homeFile);
     } catch (FileNotFoundException ex) {
-      if (tempFile != null) {
-        tempFile.delete();
-      }
       throw new RecorderException("Can't save file " + name, ex);
     }
 
     // Copy temporary file to home file
     // Overwriting home file will ensure that its rights are kept
-    byte [] buffer = new byte [8192];
-    DefaultHomeInputStream in = null;
+    FileInputStream in = null;
     try {
-      in = new DefaultHomeInputStream(new FileInputStream(tempFile));
-      if (!in.isPrefixCorrect()) {
-        throw new RecorderException("Incorrect prefix in file " + tempFile);
-      }
-      int size;
-      while ((size = in.read(buffer)) != -1) {
-        out.write(buffer, 0, size);
+      in = new FileInputStream(tempFile);
+      FileChannel inChannel = in.getChannel();
+      FileChannel outChannel = out.getChannel();
+      for (long position = 0, size = inChannel.size(); position < size; ) {
+        position += inChannel.transferTo(position, size - position, outChannel);
       }
     } catch (IOException ex) {
       throw new RecorderException("Can't copy file " + tempFile + " to " + name);
     } finally {
       try {
-        if (out != null) {
-          out.close();
-        }
+        out.close();
       } catch (IOException ex) {
         throw new RecorderException("Can't close file " + name, ex);
       }
       try {
         if (in != null) {
           in.close();
-          tempFile.delete();
         }
       } catch (IOException ex) {
         // Forget exception
@@ -279,13 +422,127 @@ public class HomeFileRecorder implements HomeRecorder {
 
     // Finally check prefix of home file to ensure file is not completely false
     // (some users reported some files containing only 0 for unknown reasons)
+    checkPrefix(homeFile);
+  }
+
+  /**
+   * Replaces the links to the given <code>file</code> by a copy of that file,
+   * to keep unchanged the content of the homes read from these links.
+   */
+  private static void copyLinkedHomeFile(File file, String name) throws RecorderException {
+    if (file.exists()) {
+      synchronized (homeFileLinks) {
+        for (Iterator<File> it = homeFileLinks.iterator(); it.hasNext(); ) {
+          File link = it.next();
+          if (!link.exists()) {
+            it.remove();
+          } else {
+            File copy = null;
+            try {
+              if (Files.isSameFile(link.toPath(), file.toPath())) {
+                copy = OperatingSystem.createTemporaryFile("open", ".sweethome3d");
+                Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Files.move(copy.toPath(), link.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                it.remove();
+                // Close the JAR file that may be cached for the link and that still reads the overwritten file
+                URLConnection connection = new URL("jar:" + link.toURI().toURL() + "!/").openConnection();
+                if (connection instanceof JarURLConnection) {
+                  ((JarURLConnection)connection).getJarFile().close();
+                }
+              }
+            } catch (IOException ex) {
+              if (copy != null) {
+                copy.delete();
+              }
+              throw new RecorderException("Can't copy file " + name + " used by an open home", ex);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a new link in temporary folder to the given home <code>file</code>,
+   * or <code>null</code> if the file system doesn't support links to that file
+   * or if the file may be written by other users or shared with other links.
+   * Reading a home from a link avoids to copy its file while ensuring its content
+   * won't change when the file is replaced by an other one or overwritten by this recorder.
+   * Note that a link shares the data of the file: if an other program of the same user
+   * overwrites the file in place rather than replacing it, the content of the home read
+   * from that link will change too.
+   */
+  private static File createHomeFileLink(File file) {
+    File link = null;
     try {
-      in = new DefaultHomeInputStream(new FileInputStream(homeFile));
+      Path realPath = file.toPath().toRealPath();
+      if (!isFileExclusivelyOwned(realPath)) {
+        return null;
+      }
+      link = OperatingSystem.createTemporaryFile("open", ".sweethome3d");
+      link.delete();
+      Files.createLink(link.toPath(), realPath);
+      synchronized (homeFileLinks) {
+        homeFileLinks.add(link);
+      }
+      return link;
+    } catch (IOException ex) {
+      // Includes FileSystemException thrown when file and link aren't in the same file system
+    } catch (UnsupportedOperationException ex) {
+    } catch (SecurityException ex) {
+    }
+    if (link != null) {
+      link.delete();
+    }
+    return null;
+  }
+
+  /**
+   * Returns <code>true</code> if the file at the given <code>path</code> belongs to the current user,
+   * can't be written by other users and has no other link than its path and the links of this recorder.
+   * Returns <code>false</code> if these conditions can't be checked, like on Windows file systems
+   * where the home will be read from a temporary copy.
+   */
+  private static boolean isFileExclusivelyOwned(Path path) throws IOException {
+    try {
+      Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path);
+      if (permissions.contains(PosixFilePermission.GROUP_WRITE)
+          || permissions.contains(PosixFilePermission.OTHERS_WRITE)
+          || !Files.getOwner(path).getName().equals(System.getProperty("user.name"))) {
+        return false;
+      }
+      int linkCount = ((Number)Files.getAttribute(path, "unix:nlink")).intValue();
+      synchronized (homeFileLinks) {
+        for (File link : homeFileLinks) {
+          if (link.exists() 
+              && Files.isSameFile(link.toPath(), path)) {
+            linkCount--;
+          }
+        }
+      }
+      return linkCount == 1;
+    } catch (UnsupportedOperationException ex) {
+      // No POSIX permissions to check
+      return false;
+    } catch (IllegalArgumentException ex) {
+      // No link count to check
+      return false;
+    }
+  }
+
+  /**
+   * Checks the prefix of the given file is correct.
+   * @throws RecorderException if the prefix is incorrect or the file can't be read.
+   */
+  private void checkPrefix(File file) throws RecorderException {
+    DefaultHomeInputStream in = null;
+    try {
+      in = new DefaultHomeInputStream(new FileInputStream(file));
       if (!in.isPrefixCorrect()) {
-        throw new RecorderException("Incorrect prefix in file " + homeFile);
+        throw new RecorderException("Incorrect prefix in file " + file);
       }
     } catch (IOException ex) {
-      throw new RecorderException("Can't check file " + name);
+      throw new RecorderException("Can't check file " + file);
     } finally {
       try {
         if (in != null) {
@@ -312,24 +569,34 @@ public class HomeFileRecorder implements HomeRecorder {
   public Home readHome(String name) throws RecorderException {
     DefaultHomeInputStream homeInputStream = null;
     try {
-      InputStream in;
-      try {
-        // Open a stream on file
-        in = new FileInputStream(name);
-      } catch (FileNotFoundException ex) {
-        if (this.acceptUrl) {
-          // Then try to open file as a URL
-          URLConnection connection = new URL(name).openConnection();
-          connection.setUseCaches(false);
-          in = connection.getInputStream();
-        } else {
-          throw ex;
+      File homeFile = new File(name);
+      File homeFileLink;
+      if (homeFile.isFile()
+          && (homeFileLink = createHomeFileLink(homeFile)) != null) {
+        // Read home directly from the link to its file
+        homeInputStream = new DefaultHomeInputStream(homeFileLink, ContentRecording.INCLUDE_ALL_CONTENT,
+            this.preferXmlEntry ? getHomeXMLHandler() : null,
+            this.preferences, this.preferPreferencesContent);
+      } else {
+        InputStream in;
+        try {
+          // Open a stream on file
+          in = new FileInputStream(name);
+        } catch (FileNotFoundException ex) {
+          if (this.acceptUrl) {
+            // Then try to open file as a URL
+            URLConnection connection = new URL(name).openConnection();
+            connection.setUseCaches(false);
+            in = connection.getInputStream();
+          } else {
+            throw ex;
+          }
         }
+        // Read home with HomeInputStream from a temporary copy
+        homeInputStream = new DefaultHomeInputStream(in, ContentRecording.INCLUDE_ALL_CONTENT,
+            this.preferXmlEntry ? getHomeXMLHandler() : null,
+            this.preferences, this.preferPreferencesContent);
       }
-      // Read home with HomeInputStream
-      homeInputStream = new DefaultHomeInputStream(in, ContentRecording.INCLUDE_ALL_CONTENT,
-          this.preferXmlEntry ? getHomeXMLHandler() : null,
-          this.preferences, this.preferPreferencesContent);
       Home home = homeInputStream.readHome();
       return home;
     } catch (InterruptedIOException ex) {
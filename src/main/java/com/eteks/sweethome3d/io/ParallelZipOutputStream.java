@@ -0,0 +1,976 @@
+/*
+ * ParallelZipOutputStream.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import com.eteks.sweethome3d.model.Content;
+
+/**
+ * A zip output stream able to compress the entries added with {@link #putNextEntry(String, Content) putNextEntry}
+ * in parallel threads. These entries are written in the order they were added, and are stored
+ * without compression when their data is already compressed, like JPEG or PNG images.
+ * Entries added with {@link #putNextEntry(ZipEntry) putNextEntry(ZipEntry)} are compressed
+ * in the calling thread as they are written, and entries coming from other zip files may be 
+ * copied without being decompressed and compressed again.
+ * @author Emmanuel Puybaret
+ */
+class ParallelZipOutputStream extends ZipOutputStream {
+  private static final int  LOCAL_FILE_HEADER_SIGNATURE      = 0x04034b50;
+  private static final int  DATA_DESCRIPTOR_SIGNATURE        = 0x08074b50;
+  private static final int  CENTRAL_FILE_HEADER_SIGNATURE    = 0x02014b50;
+  private static final int  END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int  ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+  private static final int  ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int  ZIP64_EXTRA_FIELD_ID             = 0x0001;
+  private static final int  DATA_DESCRIPTOR_FLAG             = 0x0008;
+  private static final int  UTF8_FLAG                        = 0x0800;
+  private static final int  VERSION_DEFAULT                  = 20;
+  private static final int  VERSION_ZIP64                    = 45;
+  private static final long ZIP64_MAGIC_VALUE                = 0xFFFFFFFFL;
+  private static final int  ZIP64_MAGIC_COUNT                = 0xFFFF;
+  // Maximum size of the data of a pending entry kept in memory
+  private static final int  MAXIMUM_BUFFERED_DATA_SIZE       = 1024 * 1024;
+
+  private final int                    level;
+  private final int                    dosTime;
+  private final ExecutorService        compressionExecutor;
+  private final int                    maxPendingEntries;
+  private final LinkedList<Future<CompressedEntry>> pendingEntries = new LinkedList<Future<CompressedEntry>>();
+  private final List<CentralDirectoryEntry>         writtenEntries = new ArrayList<CentralDirectoryEntry>();
+  private final byte []                singleByteBuffer = new byte [1];
+  private final byte []                deflaterBuffer = new byte [8192];
+  // Temporary files storing the data of large entries, also used as a lock for disposed field
+  private final Set<File>              temporaryFiles = new HashSet<File>();
+  private boolean                      disposed;
+  private long                         writtenBytes;
+  private CentralDirectoryEntry        currentEntry;
+  private Deflater                     currentDeflater;
+  private CRC32                        currentCrc;
+  private boolean                      finished;
+
+  /**
+   * Creates a zip stream that will compress entries at the given <code>level</code>
+   * with <code>compressionThreadCount</code> threads.
+   * @param level 0-9
+   * @param compressionThreadCount  the count of threads used to compress entries in parallel.
+   *            If smaller than 2, entries will be compressed in the calling thread.
+   */
+  public ParallelZipOutputStream(OutputStream out, int level, int compressionThreadCount) {
+    super(out);
+    if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level " + level);
+    }
+    this.level = level;
+    this.dosTime = getDosTime(System.currentTimeMillis());
+    if (compressionThreadCount > 1) {
+      this.compressionExecutor = Executors.newFixedThreadPool(compressionThreadCount, new ThreadFactory() {
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Zip entry compression");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      // Limit the count of compressed entries kept in memory, each one keeping 
+      // at most MAXIMUM_BUFFERED_DATA_SIZE bytes
+      this.maxPendingEntries = compressionThreadCount * 2;
+    } else {
+      this.compressionExecutor = null;
+      this.maxPendingEntries = 0;
+    }
+  }
+
+  /**
+   * Returns the count of threads that should be used to compress zip entries in parallel,
+   * i.e. the count of available processors.
+   */
+  public static int getDefaultCompressionThreadCount() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Returns the MS-DOS date and time matching the given time.
+   */
+  private static int getDosTime(long time) {
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(time);
+    int year = calendar.get(Calendar.YEAR);
+    if (year < 1980) {
+      return (1 << 21) | (1 << 16);
+    }
+    return (year - 1980) << 25
+        | (calendar.get(Calendar.MONTH) + 1) << 21
+        | calendar.get(Calendar.DAY_OF_MONTH) << 16
+        | calendar.get(Calendar.HOUR_OF_DAY) << 11
+        | calendar.get(Calendar.MINUTE) << 5
+        | calendar.get(Calendar.SECOND) >> 1;
+  }
+
+  /**
+   * Throws an <code>IOException</code> if this stream is finished.
+   */
+  private void ensureOpen() throws IOException {
+    if (this.finished) {
+      throw new IOException("Stream finished");
+    }
+  }
+
+  /**
+   * Ignored method since compression level is set at construction time.
+   */
+  @Override
+  public void setLevel(int level) {
+  }
+
+  /**
+   * Ignored method since entries are always compressed, except those containing compressed data.
+   */
+  @Override
+  public void setMethod(int method) {
+  }
+
+  /**
+   * Ignored method since no comment is written by this stream.
+   */
+  @Override
+  public void setComment(String comment) {
+  }
+
+  /**
+   * Starts writing a new zip entry which data will be compressed with the current thread
+   * while it's written with <code>write</code> methods.
+   * All the entries previously added to this stream will be written before this entry.
+   */
+  @Override
+  public void putNextEntry(ZipEntry entry) throws IOException {
+    ensureOpen();
+    closeEntry();
+    writePendingEntries();
+    this.currentEntry = new CentralDirectoryEntry(entry.getName(),
+        ZipEntry.DEFLATED, DATA_DESCRIPTOR_FLAG, this.writtenBytes);
+    this.currentDeflater = new Deflater(this.level, true);
+    this.currentCrc = new CRC32();
+    writeLocalFileHeader(this.currentEntry);
+  }
+
+  /**
+   * Adds a new zip entry containing the given <code>content</code>. Its data will be read and compressed
+   * by a compression thread, and written in this stream once all the entries previously added
+   * are written.
+   */
+  public void putNextEntry(String entryName, final Content content) throws IOException {
+    ensureOpen();
+    closeEntry();
+    if (this.compressionExecutor == null) {
+      // Compress content while it's read
+      InputStream contentIn = null;
+      try {
+        putNextEntry(new ZipEntry(entryName));
+        contentIn = content.openStream();
+        byte [] buffer = new byte [8192];
+        int size;
+        while ((size = contentIn.read(buffer)) != -1) {
+          write(buffer, 0, size);
+        }
+        closeEntry();
+      } finally {
+        if (contentIn != null) {
+          contentIn.close();
+        }
+      }
+    } else {
+      final String name = entryName;
+      final int level = this.level;
+      this.pendingEntries.add(this.compressionExecutor.submit(new Callable<CompressedEntry>() {
+          public CompressedEntry call() throws IOException {
+            return compressEntry(name, content, level);
+          }
+        }));
+      while (this.pendingEntries.size() > this.maxPendingEntries) {
+        writeNextPendingEntry();
+      }
+    }
+  }
+
+  /**
+   * Adds a new zip entry containing the data of the given entry of a zip file, copied
+   * without decompressing it. Its data is copied only if the compression method of 
+   * <code>zipEntry</code> is compatible with the compression level of this stream 
+   * and if its local header can be found in the zip file. Stored entries are accepted
+   * by a stream with a compression level different from 0 only if their data is already 
+   * compressed, like JPEG or PNG images that this stream wouldn't compress either.
+   * @return <code>true</code> if the entry was added, or <code>false</code> if
+   *      it should be added with {@link #putNextEntry(String, Content) putNextEntry}.
+   */
+  public boolean putNextEntry(String entryName, 
+                              File zipFile, 
+                              ContentDigestManager.ZipEntryData zipEntry) throws IOException {
+    ensureOpen();
+    if (zipEntry.getLocalHeaderOffset() < 0
+        || zipEntry.getCompressedSize() < 0
+        || zipEntry.getSize() >= ZIP64_MAGIC_VALUE
+        || zipEntry.getCompressedSize() >= ZIP64_MAGIC_VALUE
+        || this.level != 0 && zipEntry.getMethod() != ZipEntry.DEFLATED 
+           && zipEntry.getMethod() != ZipEntry.STORED
+        || this.level == 0 && zipEntry.getMethod() != ZipEntry.STORED
+           && !(zipEntry.getMethod() == ZipEntry.DEFLATED && zipEntry.getCompressedSize() >= zipEntry.getSize())) {
+      return false;
+    }
+    // Check local header matches zip entry and search where its data starts
+    long dataOffset;
+    RandomAccessFile zipIn = new RandomAccessFile(zipFile, "r");
+    try {
+      byte [] nameBytes = zipEntry.getName().getBytes("UTF-8");
+      byte [] localHeader = new byte [30 + nameBytes.length];
+      zipIn.seek(zipEntry.getLocalHeaderOffset());
+      zipIn.readFully(localHeader);
+      if (ContentDigestManager.getInt(localHeader, 0) != LOCAL_FILE_HEADER_SIGNATURE
+          || ContentDigestManager.getShort(localHeader, 8) != zipEntry.getMethod()
+          || ContentDigestManager.getShort(localHeader, 26) != nameBytes.length
+          || !Arrays.equals(nameBytes, Arrays.copyOfRange(localHeader, 30, localHeader.length))) {
+        return false;
+      }
+      dataOffset = zipEntry.getLocalHeaderOffset() + localHeader.length 
+          + ContentDigestManager.getShort(localHeader, 28);
+      if (dataOffset + zipEntry.getCompressedSize() > zipIn.length()) {
+        return false;
+      }
+      if (this.level != 0 
+          && zipEntry.getMethod() == ZipEntry.STORED) {
+        // Accept stored data only if it wouldn't be compressed
+        byte [] signature = new byte [(int)Math.min(4, zipEntry.getCompressedSize())];
+        zipIn.seek(dataOffset);
+        zipIn.readFully(signature);
+        if (!isCompressedData(signature, signature.length)) {
+          return false;
+        }
+      }
+    } catch (EOFException ex) {
+      return false;
+    } finally {
+      zipIn.close();
+    }
+
+    closeEntry();
+    CompressedEntry entry = new CompressedEntry(entryName, zipEntry.getMethod(), 
+        zipFile, dataOffset, zipEntry.getCompressedSize(), zipEntry.getSize(), zipEntry.getCrc(), false);
+    if (this.compressionExecutor == null) {
+      writeCompressedEntry(entry);
+    } else {
+      // Add an already computed entry to keep entries order
+      FutureTask<CompressedEntry> copiedEntry = new FutureTask<CompressedEntry>(new Runnable() {
+          public void run() {
+          }
+        }, entry);
+      copiedEntry.run();
+      this.pendingEntries.add(copiedEntry);
+      while (this.pendingEntries.size() > this.maxPendingEntries) {
+        writeNextPendingEntry();
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    this.singleByteBuffer [0] = (byte)b;
+    write(this.singleByteBuffer, 0, 1);
+  }
+
+  @Override
+  public void write(byte [] b, int off, int len) throws IOException {
+    ensureOpen();
+    if (this.currentEntry == null) {
+      throw new ZipException("No current zip entry");
+    }
+    if (len > 0) {
+      this.currentCrc.update(b, off, len);
+      this.currentEntry.size += len;
+      this.currentDeflater.setInput(b, off, len);
+      while (!this.currentDeflater.needsInput()) {
+        deflateCurrentEntry();
+      }
+    }
+  }
+
+  /**
+   * Writes compressed data of the current entry.
+   */
+  private void deflateCurrentEntry() throws IOException {
+    int length = this.currentDeflater.deflate(this.deflaterBuffer, 0, this.deflaterBuffer.length);
+    if (length > 0) {
+      writeBytes(this.deflaterBuffer, 0, length);
+      this.currentEntry.compressedSize += length;
+    }
+  }
+
+  /**
+   * Closes the entry added with {@link #putNextEntry(ZipEntry)} if it exists.
+   */
+  @Override
+  public void closeEntry() throws IOException {
+    ensureOpen();
+    if (this.currentEntry != null) {
+      try {
+        this.currentDeflater.finish();
+        while (!this.currentDeflater.finished()) {
+          deflateCurrentEntry();
+        }
+      } finally {
+        this.currentDeflater.end();
+      }
+      if (this.currentEntry.size >= ZIP64_MAGIC_VALUE
+          || this.currentEntry.compressedSize >= ZIP64_MAGIC_VALUE) {
+        throw new ZipException("Entry " + this.currentEntry.name + " too large");
+      }
+      this.currentEntry.crc = this.currentCrc.getValue();
+      writeInt(DATA_DESCRIPTOR_SIGNATURE);
+      writeInt(this.currentEntry.crc);
+      writeInt(this.currentEntry.compressedSize);
+      writeInt(this.currentEntry.size);
+      this.writtenEntries.add(this.currentEntry);
+      this.currentEntry = null;
+      this.currentDeflater = null;
+      this.currentCrc = null;
+    }
+  }
+
+  /**
+   * Returns the entry matching the given <code>content</code> compressed at <code>level</code>.
+   * Data is compressed while it's read, and compressed data larger than {@link #MAXIMUM_BUFFERED_DATA_SIZE}
+   * is saved in a temporary file to limit the memory used by pending entries. Data that is stored
+   * without compression isn't kept in memory once it's larger than this size, and will be read 
+   * again from <code>content</code> when the entry is written.
+   * This method may be called by any thread.
+   */
+  private CompressedEntry compressEntry(String entryName, Content content, int level) throws IOException {
+    InputStream contentIn = null;
+    EntryDataOutputStream dataOut = new EntryDataOutputStream();
+    Deflater deflater = null;
+    CRC32 crc = new CRC32();
+    long size = 0;
+    try {
+      contentIn = content.openStream();
+      byte [] buffer = new byte [8192];
+      int length = readSignature(contentIn, buffer);
+      if (level != 0
+          && !isCompressedData(buffer, length)) {
+        deflater = new Deflater(level, true);
+      }
+      byte [] deflaterBuffer = new byte [8192];
+      while (length != -1) {
+        if (Thread.interrupted()) {
+          throw new InterruptedIOException();
+        }
+        crc.update(buffer, 0, length);
+        size += length;
+        if (deflater != null) {
+          deflater.setInput(buffer, 0, length);
+          while (!deflater.needsInput()) {
+            dataOut.write(deflaterBuffer, 0, deflater.deflate(deflaterBuffer));
+          }
+        } else if (dataOut != null) {
+          if (size <= MAXIMUM_BUFFERED_DATA_SIZE) {
+            dataOut.write(buffer, 0, length);
+          } else {
+            // Keep on computing CRC without storing data 
+            dataOut.close();
+            dataOut = null;
+          }
+        }
+        length = contentIn.read(buffer);
+      }
+      if (deflater != null) {
+        deflater.finish();
+        while (!deflater.finished()) {
+          dataOut.write(deflaterBuffer, 0, deflater.deflate(deflaterBuffer));
+        }
+        if (dataOut.getSize() >= size) {
+          // Keep compressed data only if it's smaller
+          dataOut.close();
+          dataOut.delete();
+          dataOut = null;
+        }
+      }
+      if (dataOut != null) {
+        dataOut.close();
+        CompressedEntry entry;
+        if (dataOut.getFile() != null) {
+          if (isDisposed()) {
+            throw new InterruptedIOException();
+          }
+          entry = new CompressedEntry(entryName, deflater != null ? ZipEntry.DEFLATED : ZipEntry.STORED,
+              dataOut.getFile(), 0, dataOut.getSize(), size, crc.getValue(), true);
+        } else {
+          entry = new CompressedEntry(entryName, deflater != null ? ZipEntry.DEFLATED : ZipEntry.STORED,
+              dataOut.getData(), size, crc.getValue());
+        }
+        dataOut = null;
+        return entry;
+      } else {
+        return new CompressedEntry(entryName, content, size, crc.getValue());
+      }
+    } finally {
+      if (contentIn != null) {
+        contentIn.close();
+      }
+      if (deflater != null) {
+        deflater.end();
+      }
+      if (dataOut != null) {
+        dataOut.close();
+        dataOut.delete();
+      }
+    }
+  }
+
+  /**
+   * Reads in <code>buffer</code> enough bytes to recognize the signature of a file format, 
+   * and returns the count of read bytes or -1 if <code>in</code> is empty.
+   */
+  private static int readSignature(InputStream in, byte [] buffer) throws IOException {
+    int length = 0;
+    while (length < 4) {
+      int size = in.read(buffer, length, buffer.length - length);
+      if (size == -1) {
+        return length == 0 ? -1 : length;
+      }
+      length += size;
+    }
+    return length;
+  }
+
+  /**
+   * Returns <code>true</code> if the given data starts with the signature of a file format
+   * that is already compressed.
+   */
+  private static boolean isCompressedData(byte [] data, int length) {
+    return startsWith(data, length, 0xFF, 0xD8, 0xFF)      // JPEG
+        || startsWith(data, length, 0x89, 'P', 'N', 'G')   // PNG
+        || startsWith(data, length, 'G', 'I', 'F', '8')    // GIF
+        || startsWith(data, length, 'P', 'K', 0x03, 0x04)  // ZIP
+        || startsWith(data, length, 0x1F, 0x8B);           // GZIP
+  }
+
+  private static boolean startsWith(byte [] data, int length, int ... signature) {
+    if (length < signature.length) {
+      return false;
+    }
+    for (int i = 0; i < signature.length; i++) {
+      if ((data [i] & 0xFF) != signature [i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes all the entries waiting to be written.
+   */
+  private void writePendingEntries() throws IOException {
+    while (!this.pendingEntries.isEmpty()) {
+      writeNextPendingEntry();
+    }
+  }
+
+  /**
+   * Waits for the compression of the first pending entry and writes it.
+   */
+  private void writeNextPendingEntry() throws IOException {
+    try {
+      writeCompressedEntry(this.pendingEntries.getFirst().get());
+      this.pendingEntries.removeFirst();
+    } catch (InterruptedException ex) {
+      cancelPendingEntries();
+      throw new InterruptedIOException();
+    } catch (ExecutionException ex) {
+      cancelPendingEntries();
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException)cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      } else if (cause instanceof Error) {
+        throw (Error)cause;
+      } else {
+        IOException ex2 = new IOException("Can't compress entry");
+        ex2.initCause(cause);
+        throw ex2;
+      }
+    }
+  }
+
+  /**
+   * Cancels the compression of pending entries.
+   */
+  private void cancelPendingEntries() {
+    for (Future<CompressedEntry> pendingEntry : this.pendingEntries) {
+      if (!pendingEntry.cancel(true)) {
+        try {
+          CompressedEntry entry = pendingEntry.get();
+          if (entry.temporary) {
+            deleteTemporaryFile(entry.sourceFile);
+          }
+        } catch (InterruptedException ex) {
+          // Temporary file will be deleted by dispose
+        } catch (ExecutionException ex) {
+          // No temporary file to delete
+        }
+      }
+    }
+    this.pendingEntries.clear();
+  }
+
+  /**
+   * Returns a new temporary file used to store the data of a large entry.
+   * This method may be called by any thread.
+   */
+  private File createTemporaryFile() throws IOException {
+    synchronized (this.temporaryFiles) {
+      if (this.disposed) {
+        throw new InterruptedIOException();
+      }
+      File file = File.createTempFile("entry", ".tmp");
+      this.temporaryFiles.add(file);
+      return file;
+    }
+  }
+
+  /**
+   * Deletes the given temporary file.
+   * This method may be called by any thread.
+   */
+  private void deleteTemporaryFile(File file) {
+    synchronized (this.temporaryFiles) {
+      if (file.delete() || !file.exists()) {
+        this.temporaryFiles.remove(file);
+      }
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if this stream was disposed.
+   * This method may be called by any thread.
+   */
+  private boolean isDisposed() {
+    synchronized (this.temporaryFiles) {
+      return this.disposed;
+    }
+  }
+
+  /**
+   * Writes the given entry with its local header.
+   */
+  private void writeCompressedEntry(CompressedEntry entry) throws IOException {
+    CentralDirectoryEntry centralDirectoryEntry = new CentralDirectoryEntry(
+        entry.name, entry.method, 0, this.writtenBytes);
+    centralDirectoryEntry.crc = entry.crc;
+    centralDirectoryEntry.size = entry.size;
+    centralDirectoryEntry.compressedSize = entry.compressedSize;
+    writeLocalFileHeader(centralDirectoryEntry);
+    if (entry.data != null) {
+      writeBytes(entry.data, 0, entry.data.length);
+    } else if (entry.content != null) {
+      // Read again uncompressed data
+      InputStream contentIn = entry.content.openStream();
+      try {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        int length;
+        while ((length = contentIn.read(this.deflaterBuffer)) != -1) {
+          crc.update(this.deflaterBuffer, 0, length);
+          size += length;
+          if (size > entry.size) {
+            break;
+          }
+          writeBytes(this.deflaterBuffer, 0, length);
+        }
+        if (size != entry.size
+            || crc.getValue() != entry.crc) {
+          throw new ZipException("Content of entry " + entry.name + " changed");
+        }
+      } finally {
+        contentIn.close();
+      }
+    } else {
+      // Copy compressed data from source file
+      FileInputStream zipIn = new FileInputStream(entry.sourceFile);
+      try {
+        FileChannel zipChannel = zipIn.getChannel();
+        WritableByteChannel outChannel = Channels.newChannel(this.out);
+        for (long position = entry.sourceOffset, end = entry.sourceOffset + entry.compressedSize; 
+             position < end; ) {
+          long length = zipChannel.transferTo(position, end - position, outChannel);
+          if (length <= 0) {
+            throw new EOFException("Unexpected end of file " + entry.sourceFile);
+          }
+          position += length;
+          this.writtenBytes += length;
+        }
+      } finally {
+        zipIn.close();
+        if (entry.temporary) {
+          deleteTemporaryFile(entry.sourceFile);
+        }
+      }
+    }
+    this.writtenEntries.add(centralDirectoryEntry);
+  }
+
+  /**
+   * Writes the local header of the given entry.
+   */
+  private void writeLocalFileHeader(CentralDirectoryEntry entry) throws IOException {
+    writeInt(LOCAL_FILE_HEADER_SIGNATURE);
+    writeShort(VERSION_DEFAULT);
+    writeShort(entry.flag);
+    writeShort(entry.method);
+    writeInt(this.dosTime);
+    if ((entry.flag & DATA_DESCRIPTOR_FLAG) != 0) {
+      // CRC and sizes will be written in data descriptor
+      writeInt(0);
+      writeInt(0);
+      writeInt(0);
+    } else {
+      writeInt(entry.crc);
+      writeInt(entry.compressedSize);
+      writeInt(entry.size);
+    }
+    writeShort(entry.nameBytes.length);
+    writeShort(0);
+    writeBytes(entry.nameBytes, 0, entry.nameBytes.length);
+  }
+
+  /**
+   * Writes the central directory of this zip stream after all its pending entries.
+   */
+  @Override
+  public void finish() throws IOException {
+    if (!this.finished) {
+      closeEntry();
+      writePendingEntries();
+      long centralDirectoryOffset = this.writtenBytes;
+      for (CentralDirectoryEntry entry : this.writtenEntries) {
+        writeCentralFileHeader(entry);
+      }
+      long centralDirectorySize = this.writtenBytes - centralDirectoryOffset;
+      int entryCount = this.writtenEntries.size();
+      if (entryCount >= ZIP64_MAGIC_COUNT
+          || centralDirectoryOffset >= ZIP64_MAGIC_VALUE
+          || centralDirectorySize >= ZIP64_MAGIC_VALUE) {
+        long zip64EndOffset = this.writtenBytes;
+        writeInt(ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        writeLong(44);
+        writeShort(VERSION_ZIP64);
+        writeShort(VERSION_ZIP64);
+        writeInt(0);
+        writeInt(0);
+        writeLong(entryCount);
+        writeLong(entryCount);
+        writeLong(centralDirectorySize);
+        writeLong(centralDirectoryOffset);
+        writeInt(ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE);
+        writeInt(0);
+        writeLong(zip64EndOffset);
+        writeInt(1);
+      }
+      writeInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+      writeShort(0);
+      writeShort(0);
+      writeShort(Math.min(entryCount, ZIP64_MAGIC_COUNT));
+      writeShort(Math.min(entryCount, ZIP64_MAGIC_COUNT));
+      writeInt(Math.min(centralDirectorySize, ZIP64_MAGIC_VALUE));
+      writeInt(Math.min(centralDirectoryOffset, ZIP64_MAGIC_VALUE));
+      writeShort(0);
+      this.out.flush();
+      this.finished = true;
+      shutdownExecutor();
+    }
+  }
+
+  /**
+   * Writes the central directory header of the given entry.
+   */
+  private void writeCentralFileHeader(CentralDirectoryEntry entry) throws IOException {
+    boolean zip64Offset = entry.offset >= ZIP64_MAGIC_VALUE;
+    writeInt(CENTRAL_FILE_HEADER_SIGNATURE);
+    writeShort(zip64Offset ? VERSION_ZIP64 : VERSION_DEFAULT);
+    writeShort(zip64Offset ? VERSION_ZIP64 : VERSION_DEFAULT);
+    writeShort(entry.flag);
+    writeShort(entry.method);
+    writeInt(this.dosTime);
+    writeInt(entry.crc);
+    writeInt(entry.compressedSize);
+    writeInt(entry.size);
+    writeShort(entry.nameBytes.length);
+    writeShort(zip64Offset ? 12 : 0);
+    writeShort(0);
+    writeShort(0);
+    writeShort(0);
+    writeInt(0);
+    writeInt(zip64Offset ? ZIP64_MAGIC_VALUE : entry.offset);
+    writeBytes(entry.nameBytes, 0, entry.nameBytes.length);
+    if (zip64Offset) {
+      writeShort(ZIP64_EXTRA_FIELD_ID);
+      writeShort(8);
+      writeLong(entry.offset);
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    this.out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (!this.finished) {
+        finish();
+      }
+    } finally {
+      dispose();
+      this.out.close();
+    }
+  }
+
+  /**
+   * Cancels the compression of pending entries and frees the resources used by this stream
+   * without closing the underlying stream.
+   */
+  public void dispose() {
+    cancelPendingEntries();
+    shutdownExecutor();
+    if (this.currentDeflater != null) {
+      this.currentDeflater.end();
+      this.currentDeflater = null;
+    }
+    // Free the deflater allocated by super class
+    this.def.end();
+    synchronized (this.temporaryFiles) {
+      this.disposed = true;
+      for (File file : this.temporaryFiles) {
+        file.delete();
+      }
+      this.temporaryFiles.clear();
+    }
+  }
+
+  private void shutdownExecutor() {
+    if (this.compressionExecutor != null) {
+      this.compressionExecutor.shutdownNow();
+    }
+  }
+
+  private void writeBytes(byte [] b, int off, int len) throws IOException {
+    this.out.write(b, off, len);
+    this.writtenBytes += len;
+  }
+
+  private void writeShort(int value) throws IOException {
+    this.out.write(value & 0xFF);
+    this.out.write((value >>> 8) & 0xFF);
+    this.writtenBytes += 2;
+  }
+
+  private void writeInt(long value) throws IOException {
+    writeShort((int)(value & 0xFFFF));
+    writeShort((int)((value >>> 16) & 0xFFFF));
+  }
+
+  private void writeLong(long value) throws IOException {
+    writeInt(value & 0xFFFFFFFFL);
+    writeInt(value >>> 32);
+  }
+
+  /**
+   * The data of an entry ready to be written.
+   */
+  private static class CompressedEntry {
+    private final String  name;
+    private final int     method;
+    private final byte [] data;
+    private final File    sourceFile;
+    private final long    sourceOffset;
+    private final boolean temporary;
+    private final Content content;
+    private final long    compressedSize;
+    private final long    size;
+    private final long    crc;
+
+    public CompressedEntry(String name, int method, byte [] data, long size, long crc) {
+      this(name, method, data, null, -1, false, null, data.length, size, crc);
+    }
+
+    /**
+     * Creates an entry which data is stored in <code>sourceFile</code> at the given offset.
+     * @param temporary if <code>true</code>, <code>sourceFile</code> will be deleted once written
+     */
+    public CompressedEntry(String name, int method, File sourceFile, long sourceOffset, 
+                           long compressedSize, long size, long crc, boolean temporary) {
+      this(name, method, null, sourceFile, sourceOffset, temporary, null, compressedSize, size, crc);
+    }
+
+    /**
+     * Creates a stored entry which data will be read from <code>content</code>.
+     */
+    public CompressedEntry(String name, Content content, long size, long crc) {
+      this(name, ZipEntry.STORED, null, null, -1, false, content, size, size, crc);
+    }
+
+    private CompressedEntry(String name, int method, byte [] data, File sourceFile, long sourceOffset, 
+                            boolean temporary, Content content, long compressedSize, long size, long crc) {
+      this.name = name;
+      this.method = method;
+      this.data = data;
+      this.sourceFile = sourceFile;
+      this.sourceOffset = sourceOffset;
+      this.temporary = temporary;
+      this.content = content;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.crc = crc;
+    }
+  }
+
+  /**
+   * An output stream that keeps data in memory until its size exceeds 
+   * {@link #MAXIMUM_BUFFERED_DATA_SIZE} bytes, then writes it to a temporary file.
+   */
+  private class EntryDataOutputStream extends OutputStream {
+    private ByteArrayOutputStream bufferOut = new ByteArrayOutputStream();
+    private File                  file;
+    private OutputStream          fileOut;
+    private long                  size;
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte [] {(byte)b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte [] b, int off, int len) throws IOException {
+      if (this.bufferOut != null
+          && this.size + len > MAXIMUM_BUFFERED_DATA_SIZE) {
+        this.file = createTemporaryFile();
+        this.fileOut = new BufferedOutputStream(new FileOutputStream(this.file), 65536);
+        this.bufferOut.writeTo(this.fileOut);
+        this.bufferOut = null;
+      }
+      if (this.bufferOut != null) {
+        this.bufferOut.write(b, off, len);
+      } else {
+        this.fileOut.write(b, off, len);
+      }
+      this.size += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (this.fileOut != null) {
+        this.fileOut.close();
+        this.fileOut = null;
+      }
+    }
+
+    public long getSize() {
+      return this.size;
+    }
+
+    /**
+     * Returns the data written in this stream if it's kept in memory, or <code>null</code>.
+     */
+    public byte [] getData() {
+      return this.bufferOut != null
+          ? this.bufferOut.toByteArray()
+          : null;
+    }
+
+    /**
+     * Returns the temporary file where data was written, or <code>null</code>.
+     */
+    public File getFile() {
+      return this.file;
+    }
+
+    /**
+     * Deletes the temporary file of this stream if it exists.
+     */
+    public void delete() {
+      if (this.file != null) {
+        deleteTemporaryFile(this.file);
+      }
+    }
+  }
+
+  /**
+   * The information of a written entry stored in central directory.
+   */
+  private static class CentralDirectoryEntry {
+    private final String  name;
+    private final byte [] nameBytes;
+    private final int     method;
+    private final int     flag;
+    private final long    offset;
+    private long          crc;
+    private long          size;
+    private long          compressedSize;
+
+    public CentralDirectoryEntry(String name, int method, int flag, long offset) throws IOException {
+      this.name = name;
+      this.nameBytes = name.getBytes("UTF-8");
+      this.method = method;
+      this.flag = flag | UTF8_FLAG;
+      this.offset = offset;
+    }
+  }
+}
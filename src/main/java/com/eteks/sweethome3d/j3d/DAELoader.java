@@ -31,6 +31,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -227,6 +228,13 @@ public class DAELoader extends LoaderBase implements Loader {
     private final Map<String, TransformGroup> visualScenes = new HashMap<String, TransformGroup>();
     private TransformGroup visualScene;
     private float [] floats;
+    private boolean  floatsElement;
+    private boolean  integersElement;
+    private float [] parsedFloats;
+    private int   [] parsedIntegers;
+    private int      parsedNumberCount;
+    private char []  numberCharacters = new char [32];
+    private int      numberLength;
     private float [] geometryVertices;
     private float [] geometryNormals;
     private float [] geometryTextureCoordinates;
@@ -266,6 +274,25 @@ public class DAELoader extends LoaderBase implements Loader {
     @Override
     public void startElement(String uri, String localName, String name, Attributes attributes) throws SAXException {
       this.buffer.setLength(0);
+      // Prepare arrays where numbers of elements will be stored as they're read
+      this.floatsElement = "color".equals(name)
+          || "float_array".equals(name)
+          || "matrix".equals(name)
+          || "rotate".equals(name)
+          || "scale".equals(name)
+          || "translate".equals(name);
+      this.integersElement = this.geometryId != null
+          && ("p".equals(name)
+              || "h".equals(name)
+              || "vcount".equals(name));
+      if (this.floatsElement) {
+        this.parsedFloats = new float [getInitialCapacity(attributes)];
+      } else if (this.integersElement) {
+        this.parsedIntegers = new int [getInitialCapacity(attributes)];
+      }
+      this.parsedNumberCount = 0;
+      this.numberLength = 0;
+
       String parent = this.parentElements.isEmpty() ? null : this.parentElements.peek();
       if (parent == null && !"COLLADA".equals(name)) {
         throw new SAXException("Expected COLLADA element");
@@ -501,9 +528,130 @@ public class DAELoader extends LoaderBase implements Loader {
       this.parentElements.push(name);
     }
     
+    /**
+     * Returns the capacity of the array used to store the numbers of an element,
+     * evaluated from its <code>count</code> attribute if it exists.
+     */
+    private int getInitialCapacity(Attributes attributes) {
+      String count = attributes.getValue("count");
+      if (count != null) {
+        try {
+          // Don't trust too large values
+          return Math.max(0, Math.min(Integer.parseInt(count.trim()), 1 << 24));
+        } catch (NumberFormatException ex) {
+        }
+      }
+      return 16;
+    }
+
     @Override
     public void characters(char [] ch, int start, int length) throws SAXException {
-      this.buffer.append(ch, start, length);
+      if (this.floatsElement || this.integersElement) {
+        parseNumbers(ch, start, length);
+      } else {
+        this.buffer.append(ch, start, length);
+      }
+    }
+
+    /**
+     * Parses the numbers separated by white spaces in the given characters,
+     * keeping the characters at the end which may be continued in the next call.
+     */
+    private void parseNumbers(char [] ch, int start, int length) {
+      int end = start + length;
+      for (int i = start; i < end; ) {
+        if (isWhitespace(ch [i])) {
+          if (this.numberLength > 0) {
+            addNumber(this.numberCharacters, 0, this.numberLength);
+            this.numberLength = 0;
+          }
+          i++;
+        } else {
+          int numberStart = i;
+          while (i < end && !isWhitespace(ch [i])) {
+            i++;
+          }
+          if (i < end && this.numberLength == 0) {
+            addNumber(ch, numberStart, i);
+          } else {
+            int numberLength = this.numberLength + i - numberStart;
+            if (numberLength > this.numberCharacters.length) {
+              this.numberCharacters = Arrays.copyOf(this.numberCharacters, Math.max(numberLength, this.numberCharacters.length * 2));
+            }
+            System.arraycopy(ch, numberStart, this.numberCharacters, this.numberLength, i - numberStart);
+            this.numberLength = numberLength;
+            if (i < end) {
+              addNumber(this.numberCharacters, 0, this.numberLength);
+              this.numberLength = 0;
+            }
+          }
+        }
+      }
+    }
+
+    /**
+     * Returns <code>true</code> if the given character is a white space
+     * as defined by <code>\s</code> in regular expressions.
+     */
+    private boolean isWhitespace(char c) {
+      return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+
+    /**
+     * Adds the number parsed from the given characters to the numbers of the current element.
+     */
+    private void addNumber(char [] characters, int start, int end) {
+      if (this.floatsElement) {
+        float value;
+        try {
+          value = OBJTokenizer.parseFloat(characters, start, end);
+        } catch (NumberFormatException ex) {
+          // This may happen with some bad DAE files
+          value = 0f;
+        }
+        if (this.parsedNumberCount == this.parsedFloats.length) {
+          this.parsedFloats = Arrays.copyOf(this.parsedFloats, Math.max(16, this.parsedFloats.length * 2));
+        }
+        this.parsedFloats [this.parsedNumberCount++] = value;
+      } else {
+        int value = OBJTokenizer.parseInteger(characters, start, end);
+        if (this.parsedNumberCount == this.parsedIntegers.length) {
+          this.parsedIntegers = Arrays.copyOf(this.parsedIntegers, Math.max(16, this.parsedIntegers.length * 2));
+        }
+        this.parsedIntegers [this.parsedNumberCount++] = value;
+      }
+    }
+
+    /**
+     * Returns the floats read in the current element.
+     */
+    private float [] getParsedFloats() {
+      if (this.numberLength > 0) {
+        addNumber(this.numberCharacters, 0, this.numberLength);
+        this.numberLength = 0;
+      }
+      float [] floats = this.parsedNumberCount == this.parsedFloats.length
+          ? this.parsedFloats
+          : Arrays.copyOf(this.parsedFloats, this.parsedNumberCount);
+      this.parsedFloats = null;
+      this.floatsElement = false;
+      return floats;
+    }
+
+    /**
+     * Returns the integers read in the current element.
+     */
+    private int [] getParsedIntegers() {
+      if (this.numberLength > 0) {
+        addNumber(this.numberCharacters, 0, this.numberLength);
+        this.numberLength = 0;
+      }
+      int [] integers = this.parsedNumberCount == this.parsedIntegers.length
+          ? this.parsedIntegers
+          : Arrays.copyOf(this.parsedIntegers, this.parsedNumberCount);
+      this.parsedIntegers = null;
+      this.integersElement = false;
+      return integers;
     }
     
     @Override
@@ -519,26 +667,7 @@ public class DAELoader extends LoaderBase implements Loader {
           || "rotate".equals(name)
           || "scale".equals(name)
           || "translate".equals(name)) {
-        String [] floatValues = getCharacters().split("\\s");
-        this.floats = new float [floatValues.length];
-        int floatCount = 0;
-        for (int i = 0; i < floatValues.length; i++) {
-          if (floatValues [i].length() > 0) {
-            float floatValue;
-            try {
-              floatValue = Float.parseFloat(floatValues [i]);
-            } catch (NumberFormatException ex) {
-              // This may happen with some bad DAE files
-              floatValue = 0f;
-            }
-            this.floats [floatCount++] = floatValue;
-          }
-        }
-        if (floatCount != floatValues.length) {
-          float [] floats = new float [floatCount];
-          System.arraycopy(this.floats, 0, floats, 0, floatCount);
-          this.floats = floats;        
-        }
+        this.floats = getParsedFloats();
         if (this.floatArrayId != null) {
           this.floatArrays.put(this.floatArrayId, this.floats);
           this.floatArrayId = null;
@@ -805,21 +934,7 @@ public class DAELoader extends LoaderBase implements Loader {
       } else if ("p".equals(name)
                  || "h".equals(name)
                  || "vcount".equals(name)) {
-        // Get integers
-        String [] intValues = getCharacters().split("\\s");
-        int [] integers = new int [intValues.length];
-        int intCount = 0;
-        for (int i = 0; i < intValues.length; i++) {
-          if (intValues [i].length() > 0) {
-            integers [intCount++] = Integer.parseInt(intValues [i]);
-          }
-        }
-        if (intCount != intValues.length) {
-          int [] ints = new int [intCount];
-          System.arraycopy(integers, 0, ints, 0, intCount);
-          integers = ints;        
-        }
-        
+        int [] integers = getParsedIntegers();
         if (!"ph".equals(parent) && "p".equals(name)) {
           this.facesAndLinesPrimitives.add(integers);
         } else if ("vcount".equals(name)) { 
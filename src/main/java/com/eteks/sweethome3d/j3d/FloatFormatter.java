@@ -0,0 +1,257 @@
+/*
+ * FloatFormatter.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * A formatter writing float numbers in decimal notation into a char array.
+ * By default, numbers are written with the shortest digits that identify them
+ * like with <code>Float.toString</code>, without using scientific notation.
+ * Otherwise numbers are rounded half even to the given maximum fraction digits
+ * like with <code>NumberFormat</code>. Common numbers are written without creating
+ * any object, and the other ones with a <code>NumberFormat</code> instance.
+ * @author Emmanuel Puybaret
+ */
+class FloatFormatter {
+  private static final double [] POWERS_OF_TEN = {
+      1E0, 1E1, 1E2, 1E3, 1E4, 1E5, 1E6, 1E7, 1E8, 1E9, 1E10,
+      1E11, 1E12, 1E13, 1E14, 1E15, 1E16, 1E17, 1E18};
+  // Maximum value multiplied by a power of ten which can be rounded with enough precision
+  private static final double MAXIMUM_SCALED_VALUE = 1L << 40;
+  private static final int    DEFAULT_MAXIMUM_FRACTION_DIGITS = 7;
+
+  private final int          maximumFractionDigits;
+  private final NumberFormat numberFormat;
+  private final int          maximumLength;
+
+  /**
+   * Creates a formatter of float numbers.
+   * @param maximumFractionDigits the maximum digits count used in fraction part of numbers,
+   *                or -1 for default value.
+   */
+  public FloatFormatter(int maximumFractionDigits) {
+    this.maximumFractionDigits = maximumFractionDigits;
+    if (maximumFractionDigits >= 0) {
+      this.numberFormat = NumberFormat.getNumberInstance(Locale.US);
+      this.numberFormat.setGroupingUsed(false);
+      this.numberFormat.setMinimumFractionDigits(0);
+      this.numberFormat.setMaximumFractionDigits(maximumFractionDigits);
+    } else {
+      this.numberFormat = new DecimalFormat("0.#######", new DecimalFormatSymbols(Locale.US));
+    }
+    // Sign, 39 integer digits of the largest float, point and fraction digits
+    this.maximumLength = 41 + Math.min(this.numberFormat.getMaximumFractionDigits(), 340);
+  }
+
+  /**
+   * Returns the maximum count of characters written by this formatter for a number.
+   */
+  public int getMaximumLength() {
+    return this.maximumLength;
+  }
+
+  /**
+   * Returns <code>number</code> formatted as a string.
+   */
+  public String format(float number) {
+    char [] buffer = new char [this.maximumLength];
+    return new String(buffer, 0, format(number, buffer, 0));
+  }
+
+  /**
+   * Writes <code>number</code> in <code>buffer</code> at the given <code>offset</code>,
+   * and returns the offset following the written characters.
+   * The buffer must be able to store at least {@linkplain #getMaximumLength() the maximum length}
+   * of a number from <code>offset</code>.
+   */
+  public int format(float number, char [] buffer, int offset) {
+    if (!Float.isNaN(number) && !Float.isInfinite(number)) {
+      boolean negative = (Float.floatToRawIntBits(number) & 0x80000000) != 0;
+      double value = Math.abs((double)number);
+      if (this.maximumFractionDigits >= 0) {
+        int end = formatFractionDigits(value, negative, this.maximumFractionDigits, buffer, offset);
+        if (end != -1) {
+          return end;
+        }
+      } else if (value == 0) {
+        return write(negative ? "-0.0" : "0.0", buffer, offset);
+      } else if (value >= 1E-3 && value < 1E7) {
+        int end = formatShortest(value, negative, buffer, offset);
+        if (end != -1) {
+          return end;
+        }
+      } else {
+        int end = formatFractionDigits(value, negative, DEFAULT_MAXIMUM_FRACTION_DIGITS, buffer, offset);
+        if (end != -1) {
+          return end;
+        }
+      }
+    }
+    // Use slower formatting for other numbers
+    String numberString;
+    if (this.maximumFractionDigits >= 0) {
+      numberString = this.numberFormat.format(number);
+    } else {
+      numberString = String.valueOf(number);
+      if (numberString.indexOf('E') != -1) {
+        // Avoid scientific notation
+        numberString = this.numberFormat.format(number);
+      }
+    }
+    return write(numberString, buffer, offset);
+  }
+
+  /**
+   * Writes the positive <code>value</code> with the fewest significant digits
+   * which parse back to the same float, or returns -1 if this can't be done with enough precision.
+   */
+  private int formatShortest(double value, boolean negative, char [] buffer, int offset) {
+    // Search the exponent of the first significant digit
+    int exponent = 0;
+    if (value >= 1) {
+      while (value >= POWERS_OF_TEN [exponent + 1]) {
+        exponent++;
+      }
+    } else {
+      do {
+        exponent--;
+      } while (value < 1 / POWERS_OF_TEN [-exponent]);
+    }
+    // Search with a binary search the fewest digits since if a decimal with n significant digits 
+    // parses back to the same float, the closest decimal with n + 1 digits parses back to it too
+    long shortestDigits = -1;
+    int  shortestScale = 0;
+    for (int minDigitCount = 1, maxDigitCount = 9; minDigitCount <= maxDigitCount; ) {
+      int digitCount = (minDigitCount + maxDigitCount) >>> 1;
+      int scale = digitCount - 1 - exponent;
+      long digits;
+      double decimal;
+      if (scale >= 0) {
+        // Round half even like Float.toString when value is in the middle of two decimals
+        digits = (long)Math.rint(value * POWERS_OF_TEN [scale]);
+        decimal = digits / POWERS_OF_TEN [scale];
+      } else {
+        digits = (long)Math.rint(value / POWERS_OF_TEN [-scale]);
+        decimal = digits * POWERS_OF_TEN [-scale];
+      }
+      if ((Double.doubleToRawLongBits(decimal) & 0x1FFFFFFFL) == 0x10000000L) {
+        // Decimal value rounded to a double in the middle of two floats
+        return -1;
+      } else if ((float)decimal == value) {
+        shortestDigits = digits;
+        shortestScale = scale;
+        maxDigitCount = digitCount - 1;
+      } else {
+        minDigitCount = digitCount + 1;
+      }
+    }
+    if (shortestDigits == -1) {
+      return -1;
+    } else {
+      if (negative) {
+        buffer [offset++] = '-';
+      }
+      return writeDecimal(shortestDigits, shortestScale, true, buffer, offset);
+    }
+  }
+
+  /**
+   * Writes the positive <code>value</code> rounded half even to the given
+   * fraction digits, or returns -1 if this can't be done with enough precision.
+   */
+  private int formatFractionDigits(double value, boolean negative, int fractionDigits,
+                                   char [] buffer, int offset) {
+    if (fractionDigits < POWERS_OF_TEN.length) {
+      double scaledValue = value * POWERS_OF_TEN [fractionDigits];
+      if (scaledValue < MAXIMUM_SCALED_VALUE) {
+        double fraction = scaledValue - Math.floor(scaledValue);
+        if (Math.abs(fraction - 0.5) > 1. / (1 << 12)) {
+          if (negative) {
+            buffer [offset++] = '-';
+          }
+          return writeDecimal((long)(scaledValue + 0.5), fractionDigits, false, buffer, offset);
+        }
+      }
+    }
+    // Let number format round values close to a half
+    return -1;
+  }
+
+  /**
+   * Writes the decimal number equal to <code>digits</code> divided by 10 raised to
+   * <code>scale</code>, without the trailing zeros of its fraction part.
+   */
+  private int writeDecimal(long digits, int scale, boolean keepFractionDigit,
+                           char [] buffer, int offset) {
+    if (scale <= 0) {
+      offset = writeInteger(digits, buffer, offset);
+      for (int i = scale; i < 0; i++) {
+        buffer [offset++] = '0';
+      }
+      if (keepFractionDigit) {
+        buffer [offset++] = '.';
+        buffer [offset++] = '0';
+      }
+      return offset;
+    } else {
+      long divisor = (long)POWERS_OF_TEN [scale];
+      long fraction = digits % divisor;
+      offset = writeInteger(digits / divisor, buffer, offset);
+      if (fraction != 0) {
+        buffer [offset++] = '.';
+        while (fraction % 10 == 0) {
+          fraction /= 10;
+          scale--;
+        }
+        int end = offset + scale;
+        for (int i = end - 1; i >= offset; i--) {
+          buffer [i] = (char)('0' + fraction % 10);
+          fraction /= 10;
+        }
+        return end;
+      } else if (keepFractionDigit) {
+        buffer [offset++] = '.';
+        buffer [offset++] = '0';
+      }
+      return offset;
+    }
+  }
+
+  private int writeInteger(long value, char [] buffer, int offset) {
+    int end = offset + 1;
+    for (long i = value / 10; i != 0; i /= 10) {
+      end++;
+    }
+    for (int i = end - 1; i >= offset; i--) {
+      buffer [i] = (char)('0' + value % 10);
+      value /= 10;
+    }
+    return end;
+  }
+
+  private int write(String string, char [] buffer, int offset) {
+    string.getChars(0, string.length(), buffer, offset);
+    return offset + string.length();
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * HomeOBJExporter.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.media.j3d.Node;
+
+import com.eteks.sweethome3d.io.HomeFileRecorder;
+import com.eteks.sweethome3d.model.Elevatable;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomeFurnitureGroup;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.InterruptedRecorderException;
+import com.eteks.sweethome3d.model.RecorderException;
+import com.eteks.sweethome3d.model.Selectable;
+import com.eteks.sweethome3d.viewcontroller.Object3DFactory;
+
+/**
+ * An exporter of the 3D objects of a home at OBJ format. The 3D nodes of the exported items
+ * are built in parallel by a pool of threads, and written in the order of the items
+ * as soon as they're available. This class can be used without any user interface
+ * with its {@link #main(String[]) main} method.
+ * @author Emmanuel Puybaret
+ * @since 6.1
+ */
+public class HomeOBJExporter {
+  private final Object3DFactory object3dFactory;
+  private final int             threadCount;
+
+  /**
+   * Creates an exporter which builds 3D nodes with an {@link Object3DBranchFactory}
+   * and the {@linkplain #getDefaultThreadCount() default count} of threads.
+   */
+  public HomeOBJExporter() {
+    this(new Object3DBranchFactory(), getDefaultThreadCount());
+  }
+
+  /**
+   * Creates an exporter which builds 3D nodes with the given factory.
+   * @param object3dFactory the factory used to create 3D nodes. It must be thread safe
+   *            if <code>threadCount</code> is greater than 1.
+   * @param threadCount  the count of threads used to create 3D nodes in parallel.
+   *            If smaller than 2, nodes will be created in the calling thread.
+   */
+  public HomeOBJExporter(Object3DFactory object3dFactory, int threadCount) {
+    this.object3dFactory = object3dFactory;
+    this.threadCount = threadCount;
+  }
+
+  /**
+   * Returns the count of threads that should be used to create 3D nodes in parallel,
+   * i.e. the count of available processors.
+   */
+  public static int getDefaultThreadCount() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Exports the items of the given <code>home</code> to an OBJ file.
+   * Caution !!! The selected items of the given <code>home</code> are deselected during export,
+   * and its items shouldn't be modified by other threads.
+   * @param home     the exported home
+   * @param objFile  the path of the OBJ file
+   * @param header   a header written as a comment at start of the file
+   * @param exportAllItems if <code>true</code> all the viewable items of the home and its ground
+   *            will be exported, otherwise only its selected items will be exported
+   * @throws InterruptedRecorderException if the current thread was interrupted during export
+   * @throws RecorderException if the export failed. In that case, the OBJ file is deleted.
+   */
+  public void exportToFile(Home home, String objFile, String header,
+                           boolean exportAllItems) throws RecorderException {
+    OBJWriter writer = null;
+    boolean exported = false;
+    try {
+      writer = new OBJWriter(objFile, header, -1);
+
+      List<Selectable> exportedItems = new ArrayList<Selectable>(exportAllItems
+          ? home.getSelectableViewableItems()
+          : home.getSelectedItems());
+      // Search furniture in groups
+      List<Selectable> furnitureInGroups = new ArrayList<Selectable>();
+      for (Iterator<Selectable> it = exportedItems.iterator(); it.hasNext();) {
+        Selectable selectable = (Selectable)it.next();
+        if (selectable instanceof HomeFurnitureGroup) {
+          it.remove();
+          for (HomePieceOfFurniture piece : ((HomeFurnitureGroup)selectable).getAllFurniture()) {
+            if (!(piece instanceof HomeFurnitureGroup)) {
+              furnitureInGroups.add(piece);
+            }
+          }
+        }
+      }
+      exportedItems.addAll(furnitureInGroups);
+
+      List<Selectable> emptySelection = Collections.emptyList();
+      home.setSelectedItems(emptySelection);
+      if (exportAllItems) {
+        // Create a not alive new ground to be able to explore its coordinates without setting capabilities
+        Rectangle2D homeBounds = getExportedHomeBounds(home);
+        if (homeBounds != null) {
+          Ground3D groundNode = new Ground3D(home,
+              (float)homeBounds.getX(), (float)homeBounds.getY(),
+              (float)homeBounds.getWidth(), (float)homeBounds.getHeight(), true);
+          writer.writeNode(groundNode, "ground");
+        }
+      }
+
+      writeItems(writer, home, exportedItems);
+      exported = true;
+    } catch (InterruptedIOException ex) {
+      throw new InterruptedRecorderException("Export to " + objFile + " interrupted");
+    } catch (IOException ex) {
+      throw new RecorderException("Couldn't export to OBJ in " + objFile, ex);
+    } finally {
+      if (writer != null) {
+        try {
+          writer.close();
+        } catch (IOException ex) {
+          // Report close error only if it's the first one
+          if (exported) {
+            exported = false;
+            throw new RecorderException("Couldn't export to OBJ in " + objFile, ex);
+          }
+        } finally {
+          // Delete the file if exporting failed or was interrupted
+          if (!exported) {
+            new File(objFile).delete();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the 3D nodes of the given <code>items</code> in their order, creating them
+   * in parallel if this exporter uses more than one thread.
+   */
+  private void writeItems(OBJWriter writer, final Home home, List<Selectable> items) throws IOException {
+    if (this.threadCount < 2) {
+      int i = 0;
+      for (Selectable item : items) {
+        // Create a not alive new node to be able to explore its coordinates without setting capabilities
+        Node node = (Node)this.object3dFactory.createObject3D(home, item, true);
+        i = writeNode(writer, item, node, i);
+      }
+    } else {
+      ExecutorService nodesExecutor = Executors.newFixedThreadPool(this.threadCount, new ThreadFactory() {
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "OBJ export");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      // Limit the count of created nodes kept in memory
+      int maxPendingNodes = this.threadCount * 2;
+      LinkedList<Future<Node>> pendingNodes = new LinkedList<Future<Node>>();
+      try {
+        Iterator<Selectable> writtenItems = items.iterator();
+        int i = 0;
+        for (final Selectable item : items) {
+          pendingNodes.add(nodesExecutor.submit(new Callable<Node>() {
+              public Node call() {
+                // Create a not alive new node to be able to explore its coordinates without setting capabilities
+                return (Node)object3dFactory.createObject3D(home, item, true);
+              }
+            }));
+          while (pendingNodes.size() > maxPendingNodes) {
+            i = writeNode(writer, writtenItems.next(), getNode(pendingNodes.removeFirst()), i);
+          }
+        }
+        while (!pendingNodes.isEmpty()) {
+          i = writeNode(writer, writtenItems.next(), getNode(pendingNodes.removeFirst()), i);
+        }
+      } finally {
+        for (Future<Node> pendingNode : pendingNodes) {
+          pendingNode.cancel(true);
+        }
+        nodesExecutor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Waits for the creation of the given node and returns it.
+   */
+  private Node getNode(Future<Node> pendingNode) throws IOException {
+    try {
+      return pendingNode.get();
+    } catch (InterruptedException ex) {
+      throw new InterruptedIOException("Current thread interrupted");
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      } else if (cause instanceof Error) {
+        throw (Error)cause;
+      } else {
+        IOException ex2 = new IOException("Can't create 3D node");
+        ex2.initCause(cause);
+        throw ex2;
+      }
+    }
+  }
+
+  /**
+   * Writes the <code>node</code> of the given <code>item</code> and returns the index
+   * of the last item written with a generated name.
+   */
+  private int writeNode(OBJWriter writer, Selectable item, Node node, int i) throws IOException {
+    if (node != null) {
+      if (item instanceof HomePieceOfFurniture) {
+        writer.writeNode(node);
+      } else {
+        writer.writeNode(node, item.getClass().getSimpleName().toLowerCase() + "_" + ++i);
+      }
+    }
+    return i;
+  }
+
+  /**
+   * Returns <code>home</code> bounds.
+   */
+  private static Rectangle2D getExportedHomeBounds(Home home) {
+    // Compute bounds that include walls and furniture
+    Rectangle2D homeBounds = updateObjectsBounds(null, home.getWalls());
+    for (HomePieceOfFurniture piece : getVisibleFurniture(home.getFurniture())) {
+      for (float [] point : piece.getPoints()) {
+        if (homeBounds == null) {
+          homeBounds = new Rectangle2D.Float(point [0], point [1], 0, 0);
+        } else {
+          homeBounds.add(point [0], point [1]);
+        }
+      }
+    }
+    return updateObjectsBounds(homeBounds, home.getRooms());
+  }
+
+  /**
+   * Returns all the visible pieces in the given <code>furniture</code>.
+   */
+  private static List<HomePieceOfFurniture> getVisibleFurniture(List<HomePieceOfFurniture> furniture) {
+    List<HomePieceOfFurniture> visibleFurniture = new ArrayList<HomePieceOfFurniture>(furniture.size());
+    for (HomePieceOfFurniture piece : furniture) {
+      if (piece.isVisible()
+          && (piece.getLevel() == null
+              || piece.getLevel().isViewable())) {
+        if (piece instanceof HomeFurnitureGroup) {
+          visibleFurniture.addAll(getVisibleFurniture(((HomeFurnitureGroup)piece).getFurniture()));
+        } else {
+          visibleFurniture.add(piece);
+        }
+      }
+    }
+    return visibleFurniture;
+  }
+
+  /**
+   * Updates <code>objectBounds</code> to include the bounds of <code>items</code>.
+   */
+  private static Rectangle2D updateObjectsBounds(Rectangle2D objectBounds,
+                                          Collection<? extends Selectable> items) {
+    for (Selectable item : items) {
+      if (!(item instanceof Elevatable)
+          || ((Elevatable)item).getLevel() == null
+          || ((Elevatable)item).getLevel().isViewableAndVisible()) {
+        for (float [] point : item.getPoints()) {
+          if (objectBounds == null) {
+            objectBounds = new Rectangle2D.Float(point [0], point [1], 0, 0);
+          } else {
+            objectBounds.add(point [0], point [1]);
+          }
+        }
+      }
+    }
+    return objectBounds;
+  }
+
+  /**
+   * Exports the viewable items of a home file to an OBJ file without user interface.
+   * Usage: <code>HomeOBJExporter homeFile objFile [threadCount]</code>
+   */
+  public static void main(String [] args) {
+    if (args.length < 2 || args.length > 3) {
+      System.err.println("Usage: java " + HomeOBJExporter.class.getName() + " homeFile objFile [threadCount]");
+      System.exit(1);
+    }
+    if (System.getProperty("java.awt.headless") == null) {
+      System.setProperty("java.awt.headless", "true");
+    }
+    if (System.getProperty("j3d.rend") == null) {
+      // Java 3D doesn't need any renderer to build the exported nodes
+      System.setProperty("j3d.rend", "noop");
+    }
+    try {
+      int threadCount = args.length == 3
+          ? Integer.parseInt(args [2])
+          : getDefaultThreadCount();
+      Home home = new HomeFileRecorder().readHome(args [0]);
+      new HomeOBJExporter(new Object3DBranchFactory(), threadCount).exportToFile(
+          home, args [1], "Exported from " + new File(args [0]).getName(), true);
+    } catch (NumberFormatException ex) {
+      System.err.println("Invalid thread count " + args [2]);
+      System.exit(1);
+    } catch (RecorderException ex) {
+      ex.printStackTrace();
+      System.exit(1);
+    } catch (RuntimeException ex) {
+      ex.printStackTrace();
+      System.exit(1);
+    }
+    System.exit(0);
+  }
+}
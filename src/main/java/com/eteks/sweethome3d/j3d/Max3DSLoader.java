@@ -20,13 +20,10 @@
 package com.eteks.sweethome3d.j3d;
 
 import java.awt.image.BufferedImage;
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
@@ -34,6 +31,10 @@ import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -63,10 +64,8 @@ import javax.media.j3d.Transform3D;
 import javax.media.j3d.TransformGroup;
 import javax.media.j3d.TransparencyAttributes;
 import javax.vecmath.Color3f;
-import javax.vecmath.Point3f;
 import javax.vecmath.Quat4d;
 import javax.vecmath.SingularMatrixException;
-import javax.vecmath.TexCoord2f;
 import javax.vecmath.Vector3d;
 import javax.vecmath.Vector3f;
 
@@ -378,7 +377,8 @@ public class Max3DSLoader extends LoaderBase implements Loader {
     } catch (MalformedURLException ex) {
       throw new FileNotFoundException(file);
     }
-    return load(new FileInputStream(file), baseUrl);
+    File modelFile = new File(file);
+    return load(new FileInputStream(modelFile), modelFile.length(), baseUrl);
   }
 
   /**
@@ -390,23 +390,33 @@ public class Max3DSLoader extends LoaderBase implements Loader {
       baseUrl = url;
     }
     InputStream in;
+    int length;
     try {
-      in = openStream(url, this.useCaches);
+      URLConnection connection = openConnection(url, this.useCaches);
+      in = connection.getInputStream();
+      length = connection.getContentLength();
     } catch (IOException ex) {
       throw new FileNotFoundException("Can't read " + url);
     }
-    return load(in, baseUrl);
+    return load(in, length, baseUrl);
   }
 
   /**
    * Returns an input stream ready to read data from the given URL.
    */
   private static InputStream openStream(URL url, Boolean useCaches) throws IOException {
+    return openConnection(url, useCaches).getInputStream();
+  }
+
+  /**
+   * Returns a connection to the given URL.
+   */
+  private static URLConnection openConnection(URL url, Boolean useCaches) throws IOException {
     URLConnection connection = url.openConnection();
     if (useCaches != null) {
       connection.setUseCaches(useCaches.booleanValue());
     }
-    return connection.getInputStream();
+    return connection;
   }
 
   /**
@@ -417,29 +427,51 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   }
 
   /**
-   * Returns the scene described in the given 3DS file.
+   * Returns the scene described in the given 3DS file stream, read at once in memory.
+   * @param length the expected length of the stream or -1 if it's unknown
    */
-  private Scene load(InputStream in, URL baseUrl) throws FileNotFoundException {
-    if (!(in instanceof BufferedInputStream)) {
-      in = new BufferedInputStream(in);
-    }
+  private Scene load(InputStream in, long length, URL baseUrl) throws FileNotFoundException {
     try {
-      return parseStream(new ChunksInputStream(in, baseUrl));
-    } catch (IOException ex) {
-      throw new ParsingErrorException(ex.getMessage());
-    } finally {
+      byte [] content;
       try {
+        content = readContent(in, length > 0 && length < Integer.MAX_VALUE
+            ? (int)length
+            : 8192);
+      } finally {
         in.close();
-      } catch (IOException ex) {
-        throw new ParsingErrorException(ex.getMessage());
+      }
+      return parseStream(new ChunksBuffer(content, baseUrl));
+    } catch (IOException ex) {
+      throw new ParsingErrorException(ex.getMessage());
+    }
+  }
+
+  /**
+   * Returns the bytes read from the given stream which should contain <code>length</code> bytes.
+   */
+  private static byte [] readContent(InputStream in, int length) throws IOException {
+    byte [] content = new byte [length];
+    int size = 0;
+    for (int count; (count = in.read(content, size, content.length - size)) != -1; ) {
+      size += count;
+      if (size == content.length) {
+        int nextByte = in.read();
+        if (nextByte == -1) {
+          break;
+        }
+        content = Arrays.copyOf(content, content.length * 2);
+        content [size++] = (byte)nextByte;
       }
     }
+    return size == content.length
+        ? content
+        : Arrays.copyOf(content, size);
   }
 
   /**
    * Returns the scene with data read from the given 3DS stream.
    */
-  private Scene parseStream(ChunksInputStream in) throws IOException {
+  private Scene parseStream(ChunksBuffer in) throws IOException {
     this.masterScale = 1;
     this.meshes = new ArrayList<Mesh3DS>();
     this.materials = new LinkedHashMap<String, Material3DS>();
@@ -561,9 +593,9 @@ public class Max3DSLoader extends LoaderBase implements Loader {
     for (Mesh3DS mesh : this.meshes) {
       Face3DS [] faces = mesh.getFaces();
       if (faces != null && faces.length > 0) {
-        Point3f [] vertices = mesh.getVertices();
+        float [] vertices = mesh.getVertices();
         // Compute default normals
-        Mesh3DSSharedVertex [] sharedVertices = new Mesh3DSSharedVertex [vertices.length];
+        Mesh3DSSharedVertex [] sharedVertices = new Mesh3DSSharedVertex [vertices.length / 3];
         Vector3f [] defaultNormals = new Vector3f [3 * faces.length];
         Vector3f vector1 = new Vector3f();
         Vector3f vector2 = new Vector3f();
@@ -572,8 +604,15 @@ public class Max3DSLoader extends LoaderBase implements Loader {
           int [] vertexIndices = face.getVertexIndices();
           for (int j = 0; j < 3; j++, k++) {
             int vertexIndex = vertexIndices [j];
-            vector1.sub(vertices [vertexIndices [j < 2 ? j + 1 : 0]], vertices [vertexIndex]);
-            vector2.sub(vertices [vertexIndices [j > 0 ? j - 1 : 2]], vertices [vertexIndex]);
+            int vertex = 3 * vertexIndex;
+            int nextVertex = 3 * vertexIndices [j < 2 ? j + 1 : 0];
+            int previousVertex = 3 * vertexIndices [j > 0 ? j - 1 : 2];
+            vector1.set(vertices [nextVertex] - vertices [vertex],
+                vertices [nextVertex + 1] - vertices [vertex + 1],
+                vertices [nextVertex + 2] - vertices [vertex + 2]);
+            vector2.set(vertices [previousVertex] - vertices [vertex],
+                vertices [previousVertex + 1] - vertices [vertex + 1],
+                vertices [previousVertex + 2] - vertices [vertex + 2]);
             Vector3f normal = new Vector3f();
             normal.cross(vector1, vector2);
             float length = normal.length();
@@ -697,7 +736,7 @@ public class Max3DSLoader extends LoaderBase implements Loader {
           }
         }
 
-        TexCoord2f [] textureCoordinates = mesh.getTextureCoordinates();
+        float [] textureCoordinates = mesh.getTextureCoordinates();
         int i = 0;
         Shape3D shape = null;
         Material3DS material = null;
@@ -767,7 +806,7 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   /**
    * Parses 3DS data in the current chunk.
    */
-  private void parseEditorData(ChunksInputStream in) throws IOException {
+  private void parseEditorData(ChunksBuffer in) throws IOException {
     while (!in.isChunckEndReached()) {
       switch (in.readChunkHeader().getID()) {
         case MESH_VERSION :
@@ -817,7 +856,7 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   /**
    * Parses named objects like mesh in the current chunk.
    */
-  private void parseNamedObject(ChunksInputStream in) throws IOException {
+  private void parseNamedObject(ChunksBuffer in) throws IOException {
     String name = in.readString();
     while (!in.isChunckEndReached()) {
       switch (in.readChunkHeader().getID()) {
@@ -844,9 +883,9 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   /**
    * Returns the mesh read from the current chunk.
    */
-  private Mesh3DS parseMeshData(ChunksInputStream in, String name) throws IOException {
-    Point3f [] vertices = null;
-    TexCoord2f [] textureCoordinates = null;
+  private Mesh3DS parseMeshData(ChunksBuffer in, String name) throws IOException {
+    float [] vertices = null;
+    float [] textureCoordinates = null;
     Transform3D transform = null;
     Short  color = null;
     Face3DS [] faces = null;
@@ -864,11 +903,8 @@ public class Max3DSLoader extends LoaderBase implements Loader {
           color = in.readUnsignedByte();
           break;
         case POINT_ARRAY :
-          vertices = new Point3f [in.readLittleEndianUnsignedShort()];
-          for (int i = 0; i < vertices.length; i++) {
-            vertices [i] = new Point3f(in.readLittleEndianFloat(),
-                in.readLittleEndianFloat(), in.readLittleEndianFloat());
-          }
+          vertices = new float [3 * in.readLittleEndianUnsignedShort()];
+          in.readLittleEndianFloats(vertices);
           break;
         case FACE_ARRAY :
           faces = parseFacesData(in);
@@ -901,11 +937,8 @@ public class Max3DSLoader extends LoaderBase implements Loader {
           }
           break;
         case TEXTURE_COORDINATES :
-          textureCoordinates = new TexCoord2f [in.readLittleEndianUnsignedShort()];
-          for (int i = 0; i < textureCoordinates.length; i++) {
-            textureCoordinates [i] =
-                new TexCoord2f(in.readLittleEndianFloat(), in.readLittleEndianFloat());
-          }
+          textureCoordinates = new float [2 * in.readLittleEndianUnsignedShort()];
+          in.readLittleEndianFloats(textureCoordinates);
           break;
         case POINT_FLAG_ARRAY :
         case MESH_TEXTURE_INFO :
@@ -921,7 +954,7 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   /**
    * Parses key framer data.
    */
-  private void parseKeyFramerData(ChunksInputStream in) throws IOException {
+  private void parseKeyFramerData(ChunksBuffer in) throws IOException {
     List<TransformGroup> transformGroups = new ArrayList<TransformGroup>();
     TransformGroup currentTransformGroup = null;
     while (!in.isChunckEndReached()) {
@@ -1038,7 +1071,7 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   /**
    * Parses the start of a key framer track.
    */
-  private void parseKeyFramerTrackStart(ChunksInputStream in) throws IOException {
+  private void parseKeyFramerTrackStart(ChunksBuffer in) throws IOException {
     in.readLittleEndianUnsignedShort(); // Flags
     in.readLittleEndianUnsignedInt();
     in.readLittleEndianUnsignedInt();
@@ -1065,15 +1098,13 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   /**
    * Returns the mesh faces read from the current chunk.
    */
-  private Face3DS [] parseFacesData(ChunksInputStream in) throws IOException {
-    Face3DS [] faces = new Face3DS [in.readLittleEndianUnsignedShort()];
-    for (int i = 0; i < faces.length; i++) {
-      faces [i] = new Face3DS(
-        i,
-        in.readLittleEndianUnsignedShort(),
-        in.readLittleEndianUnsignedShort(),
-        in.readLittleEndianUnsignedShort(),
-        in.readLittleEndianUnsignedShort());
+  private Face3DS [] parseFacesData(ChunksBuffer in) throws IOException {
+    // Read the 3 vertex indices and the flags of each face at once
+    int [] facesData = new int [4 * in.readLittleEndianUnsignedShort()];
+    in.readLittleEndianUnsignedShorts(facesData);
+    Face3DS [] faces = new Face3DS [facesData.length / 4];
+    for (int i = 0, j = 0; i < faces.length; i++, j += 4) {
+      faces [i] = new Face3DS(i, facesData [j], facesData [j + 1], facesData [j + 2], facesData [j + 3]);
     }
     return faces;
   }
@@ -1081,7 +1112,7 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   /**
    * Returns the 3DS material read from the current chunk.
    */
-  private Material3DS parseMaterial(ChunksInputStream in) throws IOException {
+  private Material3DS parseMaterial(ChunksBuffer in) throws IOException {
     String name = null;
     Color3f ambientColor = null;
     Color3f diffuseColor = null;
@@ -1161,7 +1192,7 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   /**
    * Returns the color read from the current chunk.
    */
-  private Color3f parseColor(ChunksInputStream in) throws IOException {
+  private Color3f parseColor(ChunksBuffer in) throws IOException {
     boolean linearColor = false;
     Color3f color = null;
     while (!in.isChunckEndReached()) {
@@ -1206,7 +1237,7 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   /**
    * Returns the percentage read from the current chunk.
    */
-  private Float parsePercentage(ChunksInputStream in) throws IOException {
+  private Float parsePercentage(ChunksBuffer in) throws IOException {
     Float percentage = null;
     while (!in.isChunckEndReached()) {
       switch (in.readChunkHeader().getID()) {
@@ -1229,7 +1260,7 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   /**
    * Returns the texture read from the current chunk.
    */
-  private Texture parseTextureMap(ChunksInputStream in) throws IOException {
+  private Texture parseTextureMap(ChunksBuffer in) throws IOException {
     String mapName = null;
     while (!in.isChunckEndReached()) {
       switch (in.readChunkHeader().getID()) {
@@ -1342,7 +1373,7 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   /**
    * Returns the texture read from the given file.
    */
-  private Texture readTexture(ChunksInputStream in, String fileName) throws IOException {
+  private Texture readTexture(ChunksBuffer in, String fileName) throws IOException {
     InputStream imageStream = null;
     try {
       URL baseUrl = in.getBaseURL();
@@ -1388,7 +1419,7 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   /**
    * Returns the matrix read from the current chunk.
    */
-  private Transform3D parseMatrix(ChunksInputStream in) throws IOException {
+  private Transform3D parseMatrix(ChunksBuffer in) throws IOException {
     float [] matrix = {
         1, 0, 0, 0,
         0, 1, 0, 0,
@@ -1413,7 +1444,7 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   /**
    * Returns the vector read from the current chunk.
    */
-  private Vector3f parseVector(ChunksInputStream in) throws IOException {
+  private Vector3f parseVector(ChunksBuffer in) throws IOException {
     return new Vector3f(in.readLittleEndianFloat(),
         in.readLittleEndianFloat(), in.readLittleEndianFloat());
   }
@@ -1458,14 +1489,16 @@ public class Max3DSLoader extends LoaderBase implements Loader {
   }
 
   /**
-   * An input stream storing chunks hierarchy and other data required during parsing.
+   * A buffer of 3DS data storing chunks hierarchy and other data required during parsing.
+   * Values are decoded with little endian views on the data read in memory.
    */
-  private static class ChunksInputStream extends FilterInputStream {
+  private static class ChunksBuffer {
+    private ByteBuffer      buffer;
     private Stack<Chunk3DS> stack;
     private URL             baseUrl;
 
-    public ChunksInputStream(InputStream in, URL baseUrl) {
-      super(in);
+    public ChunksBuffer(byte [] content, URL baseUrl) {
+      this.buffer = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
       this.stack = new Stack<Chunk3DS>();
       this.baseUrl = baseUrl;
     }
@@ -1476,15 +1509,13 @@ public class Max3DSLoader extends LoaderBase implements Loader {
 
     /**
      * Reads the next chunk id and length, pushes it in the stack and returns it.
-     * <code>null</code> will be returned if the end of the stream is reached.
+     * <code>null</code> will be returned if the end of the buffer is reached.
      */
     public Chunk3DS readChunkHeader() throws IOException {
-      short chunkId;
-      try {
-        chunkId = readLittleEndianShort(false);
-      } catch (EOFException ex) {
+      if (!this.buffer.hasRemaining()) {
         return null;
       }
+      short chunkId = readLittleEndianShort(false);
       Chunk3DS chunk = new Chunk3DS(chunkId, readLittleEndianUnsignedInt(false));
       this.stack.push(chunk);
       return chunk;
@@ -1513,70 +1544,99 @@ public class Max3DSLoader extends LoaderBase implements Loader {
     }
 
     /**
-     * Reads the stream until the end of the current chunk.
+     * Skips the data until the end of the current chunk.
      */
     public void readUntilChunkEnd() throws IOException {
       Chunk3DS chunk = this.stack.peek();
       long remainingLength = chunk.getLength() - chunk.getReadLength();
-      for (long length = remainingLength; length > 0; length--) {
-        if (this.in.read() < 0) {
+      if (remainingLength > 0) {
+        if (remainingLength > this.buffer.remaining()) {
           throw new IncorrectFormatException("Chunk " + chunk.getID() + " too short");
         }
+        this.buffer.position(this.buffer.position() + (int)remainingLength);
       }
       chunk.incrementReadLength(remainingLength);
     }
 
     /**
-     * Returns the unsigned byte read from this stream.
+     * Returns the unsigned byte read from this buffer.
      */
     public short readUnsignedByte() throws IOException {
-      int b = this.in.read();
-      if (b == -1) {
+      if (!this.buffer.hasRemaining()) {
         throw new EOFException();
       } else {
         this.stack.peek().incrementReadLength(1);
-        return (short)(b & 0xFF);
+        return (short)(this.buffer.get() & 0xFF);
       }
     }
 
     /**
-     * Returns the unsigned short read from this stream.
+     * Returns the unsigned short read from this buffer.
      */
     public int readLittleEndianUnsignedShort() throws IOException {
       return (int)readLittleEndianShort(true) & 0xFFFF;
     }
 
     /**
-     * Returns the short read from this stream.
+     * Returns the short read from this buffer.
      */
     public short readLittleEndianShort() throws IOException {
       return readLittleEndianShort(true);
     }
 
     private short readLittleEndianShort(boolean incrementReadLength) throws IOException {
-      int b1 = this.in.read();
-      if (b1 == -1) {
-        throw new EOFException();
-      }
-      int b2 = this.in.read();
-      if (b2 == -1) {
-        throw new IncorrectFormatException("Can't read short");
-      }
+      checkRemaining(2, "Can't read short");
       if (incrementReadLength) {
         this.stack.peek().incrementReadLength(2);
       }
-      return (short)((b2 << 8) | b1);
+      return this.buffer.getShort();
     }
 
     /**
-     * Returns the float read from this stream.
+     * Reads as many unsigned shorts as the length of the given array.
+     */
+    public void readLittleEndianUnsignedShorts(int [] values) throws IOException {
+      if (this.buffer.remaining() < 2 * values.length) {
+        // Read values one by one to throw the same exception as with truncated data
+        for (int i = 0; i < values.length; i++) {
+          values [i] = readLittleEndianUnsignedShort();
+        }
+      } else {
+        ShortBuffer shortBuffer = this.buffer.asShortBuffer();
+        for (int i = 0; i < values.length; i++) {
+          values [i] = shortBuffer.get(i) & 0xFFFF;
+        }
+        this.buffer.position(this.buffer.position() + 2 * values.length);
+        this.stack.peek().incrementReadLength(2 * values.length);
+      }
+    }
+
+    /**
+     * Returns the float read from this buffer.
      */
     public float readLittleEndianFloat() throws IOException {
       return Float.intBitsToFloat(readLittleEndianInt(true));
     }
 
     /**
-     * Returns the unsigned integer read from this stream.
+     * Reads as many floats as the length of the given array.
+     */
+    public void readLittleEndianFloats(float [] values) throws IOException {
+      if (this.buffer.remaining() < 4 * values.length) {
+        // Read values one by one to throw the same exception as with truncated data
+        for (int i = 0; i < values.length; i++) {
+          values [i] = readLittleEndianFloat();
+        }
+      } else {
+        FloatBuffer floatBuffer = this.buffer.asFloatBuffer();
+        floatBuffer.get(values);
+        this.buffer.position(this.buffer.position() + 4 * values.length);
+        this.stack.peek().incrementReadLength(4 * values.length);
+      }
+    }
+
+    /**
+     * Returns the unsigned integer read from this buffer.
      */
     public long readLittleEndianUnsignedInt() throws IOException {
       return readLittleEndianUnsignedInt(true);
@@ -1587,44 +1647,54 @@ public class Max3DSLoader extends LoaderBase implements Loader {
     }
 
     /**
-     * Returns the integer read from this stream.
+     * Returns the integer read from this buffer.
      */
     public int readLittleEndianInt() throws IOException {
       return readLittleEndianInt(true);
     }
 
     private int readLittleEndianInt(boolean incrementReadLength) throws IOException {
-      int b1 = this.in.read();
-      if (b1 == -1) {
-        throw new EOFException();
-      }
-      int b2 = this.in.read();
-      int b3 = this.in.read();
-      int b4 = this.in.read();
-      if (b2 == -1 || b3 == -1 || b4 == -1) {
-        throw new IncorrectFormatException("Can't read int");
-      }
+      checkRemaining(4, "Can't read int");
       if (incrementReadLength) {
         this.stack.peek().incrementReadLength(4);
       }
-      return (b4 << 24) | (b3 << 16) | (b2 << 8) | b1;
+      return this.buffer.getInt();
     }
 
     /**
-     * Returns the string read from this stream.
+     * Throws an exception if this buffer contains less than <code>length</code> bytes.
+     * Like for a stream, an <code>EOFException</code> exception is thrown if no more data
+     * is available, and an {@link IncorrectFormatException} if data is truncated.
+     */
+    private void checkRemaining(int length, String message) throws IOException {
+      int remaining = this.buffer.remaining();
+      if (remaining < length) {
+        if (remaining == 0) {
+          throw new EOFException();
+        } else {
+          throw new IncorrectFormatException(message);
+        }
+      }
+    }
+
+    /**
+     * Returns the string read from this buffer.
      */
     public String readString() throws IOException {
-      ByteArrayOutputStream stringBytes = new ByteArrayOutputStream(256);
-      int b;
-      // Read characters until terminal 0
-      while ((b = this.in.read()) != -1 && b != 0) {
-        stringBytes.write((byte)b);
+      // Search terminal 0
+      int start = this.buffer.position();
+      int end = start;
+      while (end < this.buffer.limit() && this.buffer.get(end) != 0) {
+        end++;
       }
-      if (b == -1) {
+      if (end == this.buffer.limit()) {
         throw new IncorrectFormatException("Unexpected end of file");
       }
-      this.stack.peek().incrementReadLength(stringBytes.size() + 1);
-      return stringBytes.toString("ISO-8859-1");
+      byte [] stringBytes = new byte [end - start];
+      this.buffer.get(stringBytes);
+      this.buffer.get();
+      this.stack.peek().incrementReadLength(stringBytes.length + 1);
+      return new String(stringBytes, "ISO-8859-1");
     }
   }
 
@@ -1633,14 +1703,14 @@ public class Max3DSLoader extends LoaderBase implements Loader {
    */
   private static class Mesh3DS {
     private String        name;
-    private Point3f []    vertices;
-    private TexCoord2f [] textureCoordinates;
+    private float []      vertices;
+    private float []      textureCoordinates;
     private Face3DS []    faces = null;
     private Short         color;
     private Transform3D   transform;
 
     public Mesh3DS(String name,
-                   Point3f [] vertices, TexCoord2f [] textureCoordinates, Face3DS [] faces,
+                   float [] vertices, float [] textureCoordinates, Face3DS [] faces,
                    Short color, Transform3D transform) {
       this.name = name;
       this.vertices = vertices;
@@ -1654,11 +1724,17 @@ public class Max3DSLoader extends LoaderBase implements Loader {
       return this.name;
     }
 
-    public Point3f [] getVertices() {
+    /**
+     * Returns the (x, y, z) coordinates of the vertices of this mesh.
+     */
+    public float [] getVertices() {
       return this.vertices;
     }
 
-    public TexCoord2f [] getTextureCoordinates() {
+    /**
+     * Returns the (u, v) texture coordinates of the vertices of this mesh.
+     */
+    public float [] getTextureCoordinates() {
       return this.textureCoordinates;
     }
 
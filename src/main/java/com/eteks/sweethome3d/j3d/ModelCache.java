@@ -0,0 +1,946 @@
+/*
+ * ModelCache.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.media.j3d.Appearance;
+import javax.media.j3d.BranchGroup;
+import javax.media.j3d.ColoringAttributes;
+import javax.media.j3d.Geometry;
+import javax.media.j3d.GeometryArray;
+import javax.media.j3d.GeometryStripArray;
+import javax.media.j3d.Group;
+import javax.media.j3d.LineArray;
+import javax.media.j3d.LineStripArray;
+import javax.media.j3d.Link;
+import javax.media.j3d.Material;
+import javax.media.j3d.Node;
+import javax.media.j3d.PointArray;
+import javax.media.j3d.PolygonAttributes;
+import javax.media.j3d.QuadArray;
+import javax.media.j3d.SceneGraphObject;
+import javax.media.j3d.Shape3D;
+import javax.media.j3d.SharedGroup;
+import javax.media.j3d.TexCoordGeneration;
+import javax.media.j3d.Texture;
+import javax.media.j3d.TextureAttributes;
+import javax.media.j3d.Transform3D;
+import javax.media.j3d.TransformGroup;
+import javax.media.j3d.TransparencyAttributes;
+import javax.media.j3d.TriangleArray;
+import javax.media.j3d.TriangleFanArray;
+import javax.media.j3d.TriangleStripArray;
+import javax.vecmath.Color3f;
+import javax.vecmath.Vector4f;
+
+import com.eteks.sweethome3d.tools.URLContent;
+import com.sun.j3d.utils.image.TextureLoader;
+
+/**
+ * A cache on disk of the 3D models read by loaders, stored in files named after the digest
+ * of their content. Cached files store geometries and appearances in a binary format read
+ * at once in a heap buffer, which avoids parsing the text of model files once more without keeping
+ * cached files mapped in memory and locked by the system. Cached files written with other loaders
+ * are ignored. Texture images are read again from the content of the model, at a path relative
+ * to the directory of the model entry.
+ * @author Emmanuel Puybaret
+ */
+class ModelCache {
+  private static final int    MAGIC_NUMBER   = 0x53483344; // SH3D
+  private static final int    FORMAT_VERSION = 3;
+  private static final String FILE_EXTENSION = ".model";
+
+  private static final int BRANCH_GROUP         = 0;
+  private static final int TRANSFORM_GROUP      = 1;
+  private static final int GROUP                = 2;
+  private static final int LINK                 = 3;
+  private static final int SHAPE                = 4;
+
+  private static final int TRIANGLE_ARRAY       = 0;
+  private static final int QUAD_ARRAY           = 1;
+  private static final int LINE_ARRAY           = 2;
+  private static final int POINT_ARRAY          = 3;
+  private static final int TRIANGLE_STRIP_ARRAY = 4;
+  private static final int TRIANGLE_FAN_ARRAY   = 5;
+  private static final int LINE_STRIP_ARRAY     = 6;
+
+  private final File    folder;
+  private final long    maximumSize;
+  private final byte [] loadersVersion;
+
+  /**
+   * Creates a cache of models stored in the given <code>folder</code>.
+   * @param maximumSize the maximum size in bytes of the files kept in cache
+   * @param loadersVersion a string identifying the loaders and their version,
+   *            that must match the one stored in cached files to read them
+   */
+  public ModelCache(File folder, long maximumSize, String loadersVersion) {
+    this.folder = folder;
+    this.maximumSize = maximumSize;
+    try {
+      this.loadersVersion = loadersVersion.getBytes("UTF-8");
+    } catch (UnsupportedEncodingException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * Returns the model node cached for the given <code>content</code>,
+   * or <code>null</code> if it isn't in cache or if its cached file is invalid.
+   * @param content   the content of the model
+   * @param digest    the digest of the model content and of its siblings
+   * @param useCaches the value passed to the connections opened to read texture images
+   */
+  public BranchGroup readModel(URLContent content, byte [] digest, boolean useCaches) {
+    File modelFile = getModelFile(digest);
+    if (modelFile.exists()) {
+      try {
+        ByteBuffer buffer;
+        // Read the whole file and close it at once to be able to delete it later
+        FileInputStream in = new FileInputStream(modelFile);
+        try {
+          FileChannel channel = in.getChannel();
+          buffer = ByteBuffer.allocate((int)channel.size());
+          while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+              throw new IOException("Unexpected end of file");
+            }
+          }
+          buffer.flip();
+        } finally {
+          in.close();
+        }
+        if (buffer.getInt() == MAGIC_NUMBER
+            && buffer.getInt() == FORMAT_VERSION
+            && Arrays.equals(readBytes(buffer), this.loadersVersion)
+            && Arrays.equals(readBytes(buffer), digest)) {
+          ModelReader reader = new ModelReader(buffer, content, useCaches);
+          BranchGroup modelNode = (BranchGroup)reader.readNode();
+          // Keep track of the use of this file for eviction
+          modelFile.setLastModified(System.currentTimeMillis());
+          return modelNode;
+        }
+      } catch (IOException ex) {
+        // Consider file as invalid
+      } catch (RuntimeException ex) {
+        // Consider file as invalid
+      }
+      modelFile.delete();
+    }
+    return null;
+  }
+
+  /**
+   * Stores in cache the given model node loaded from <code>content</code>.
+   * Models containing other nodes or appearance attributes than the ones generated by the loaders
+   * of Sweet Home 3D or textures stored out of the directory of their content in its zip file aren't cached.
+   */
+  public void writeModel(URLContent content, byte [] digest, BranchGroup modelNode) {
+    File modelFile = getModelFile(digest);
+    if (!modelFile.exists()
+        && (this.folder.isDirectory() || this.folder.mkdirs())) {
+      File temporaryFile = null;
+      try {
+        temporaryFile = File.createTempFile("model", ".tmp", this.folder);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+        try {
+          out.writeInt(MAGIC_NUMBER);
+          out.writeInt(FORMAT_VERSION);
+          writeBytes(out, this.loadersVersion);
+          writeBytes(out, digest);
+          new ModelWriter(out, content).writeNode(modelNode);
+        } finally {
+          out.close();
+        }
+        if (temporaryFile.renameTo(modelFile)) {
+          temporaryFile = null;
+          evictModels();
+        }
+      } catch (IOException ex) {
+        // Don't cache model that can't be written
+      } catch (IllegalArgumentException ex) {
+        // Don't cache model that contains unsupported data
+      } finally {
+        if (temporaryFile != null) {
+          temporaryFile.delete();
+        }
+      }
+    }
+  }
+
+  /**
+   * Deletes the least recently used files once the size of the cache exceeds its maximum size.
+   */
+  private void evictModels() {
+    File [] modelFiles = this.folder.listFiles();
+    if (modelFiles != null) {
+      long size = 0;
+      for (File file : modelFiles) {
+        size += file.length();
+      }
+      if (size > this.maximumSize) {
+        Arrays.sort(modelFiles, new Comparator<File>() {
+            public int compare(File file1, File file2) {
+              long lastModified1 = file1.lastModified();
+              long lastModified2 = file2.lastModified();
+              return lastModified1 < lastModified2 ? -1 : (lastModified1 == lastModified2 ? 0 : 1);
+            }
+          });
+        for (int i = 0; i < modelFiles.length && size > this.maximumSize; i++) {
+          if (modelFiles [i].getName().endsWith(FILE_EXTENSION)) {
+            long length = modelFiles [i].length();
+            if (modelFiles [i].delete()) {
+              size -= length;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private File getModelFile(byte [] digest) {
+    StringBuilder name = new StringBuilder();
+    for (byte b : digest) {
+      name.append(Character.forDigit((b >> 4) & 0xF, 16));
+      name.append(Character.forDigit(b & 0xF, 16));
+    }
+    return new File(this.folder, name + FILE_EXTENSION);
+  }
+
+  private static void writeBytes(DataOutputStream out, byte [] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte [] readBytes(ByteBuffer buffer) {
+    byte [] bytes = new byte [buffer.getInt()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Returns the prefix of the URLs of the entries stored in the same directory as <code>content</code>
+   * in its zip file. Texture images are stored relative to this directory, because a model
+   * with a given digest may be stored in different directories of zip files.
+   */
+  private static String getModelDirectoryPrefix(URLContent content) {
+    String url = content.getURL().toString();
+    return url.substring(0, url.lastIndexOf('/') + 1);
+  }
+
+  /**
+   * A writer of the nodes of a model.
+   */
+  private static class ModelWriter {
+    private final DataOutputStream                    out;
+    private final String                              modelDirectoryPrefix;
+    private final Map<SceneGraphObject, Integer>      writtenObjects;
+
+    public ModelWriter(DataOutputStream out, URLContent content) {
+      this.out = out;
+      this.modelDirectoryPrefix = getModelDirectoryPrefix(content);
+      this.writtenObjects = new IdentityHashMap<SceneGraphObject, Integer>();
+    }
+
+    /**
+     * Writes the index of the given shared <code>object</code> and returns <code>true</code>
+     * if it's written for the first time.
+     */
+    private boolean writeReference(SceneGraphObject object) throws IOException {
+      if (object == null) {
+        this.out.writeInt(-1);
+        return false;
+      } else {
+        Integer index = this.writtenObjects.get(object);
+        if (index != null) {
+          this.out.writeInt(index);
+          return false;
+        } else {
+          index = this.writtenObjects.size();
+          this.writtenObjects.put(object, index);
+          this.out.writeInt(index);
+          return true;
+        }
+      }
+    }
+
+    public void writeNode(Node node) throws IOException {
+      Class<?> nodeClass = node.getClass();
+      if (nodeClass == BranchGroup.class
+          || nodeClass == TransformGroup.class
+          || nodeClass == Group.class) {
+        this.out.writeByte(nodeClass == BranchGroup.class
+            ? BRANCH_GROUP
+            : (nodeClass == TransformGroup.class ? TRANSFORM_GROUP : GROUP));
+        writeNodeAttributes(node);
+        if (nodeClass == TransformGroup.class) {
+          Transform3D transform = new Transform3D();
+          ((TransformGroup)node).getTransform(transform);
+          double [] matrix = new double [16];
+          transform.get(matrix);
+          for (double value : matrix) {
+            this.out.writeDouble(value);
+          }
+        }
+        writeChildren((Group)node);
+      } else if (nodeClass == Link.class) {
+        this.out.writeByte(LINK);
+        writeNodeAttributes(node);
+        SharedGroup sharedGroup = ((Link)node).getSharedGroup();
+        if (writeReference(sharedGroup)) {
+          writeNodeAttributes(sharedGroup);
+          writeChildren(sharedGroup);
+        }
+      } else if (nodeClass == Shape3D.class) {
+        this.out.writeByte(SHAPE);
+        writeNodeAttributes(node);
+        Shape3D shape = (Shape3D)node;
+        writeAppearance(shape.getAppearance());
+        this.out.writeInt(shape.numGeometries());
+        for (int i = 0; i < shape.numGeometries(); i++) {
+          writeGeometry(shape.getGeometry(i));
+        }
+      } else {
+        throw new IllegalArgumentException("Unsupported node " + nodeClass);
+      }
+    }
+
+    private void writeChildren(Group group) throws IOException {
+      this.out.writeInt(group.numChildren());
+      for (int i = 0; i < group.numChildren(); i++) {
+        writeNode(group.getChild(i));
+      }
+    }
+
+    private void writeNodeAttributes(Node node) throws IOException {
+      writeObjectAttributes(node);
+      Object userData = node.getUserData();
+      if (userData != null
+          && !(userData instanceof String)) {
+        throw new IllegalArgumentException("Unsupported user data");
+      }
+      writeString((String)userData);
+      this.out.writeBoolean(node.getPickable());
+      this.out.writeBoolean(node.getCollidable());
+    }
+
+    private void writeObjectAttributes(SceneGraphObject object) throws IOException {
+      long capabilities = 0;
+      for (int bit = 0; bit < 64; bit++) {
+        if (object.getCapability(bit)) {
+          capabilities |= 1L << bit;
+        }
+      }
+      this.out.writeLong(capabilities);
+      writeString(object.getName());
+    }
+
+    private void writeAppearance(Appearance appearance) throws IOException {
+      if (writeReference(appearance)) {
+        if (appearance.getClass() != Appearance.class
+            || appearance.getRenderingAttributes() != null
+            || appearance.getLineAttributes() != null
+            || appearance.getPointAttributes() != null
+            || appearance.getTextureUnitCount() > 0) {
+          throw new IllegalArgumentException("Unsupported appearance");
+        }
+        writeObjectAttributes(appearance);
+
+        Material material = appearance.getMaterial();
+        if (writeReference(material)) {
+          writeObjectAttributes(material);
+          Color3f color = new Color3f();
+          material.getAmbientColor(color);
+          writeColor(color);
+          material.getDiffuseColor(color);
+          writeColor(color);
+          material.getEmissiveColor(color);
+          writeColor(color);
+          material.getSpecularColor(color);
+          writeColor(color);
+          this.out.writeFloat(material.getShininess());
+          this.out.writeBoolean(material.getLightingEnable());
+          this.out.writeInt(material.getColorTarget());
+        }
+
+        ColoringAttributes coloringAttributes = appearance.getColoringAttributes();
+        if (writeReference(coloringAttributes)) {
+          writeObjectAttributes(coloringAttributes);
+          Color3f color = new Color3f();
+          coloringAttributes.getColor(color);
+          writeColor(color);
+          this.out.writeInt(coloringAttributes.getShadeModel());
+        }
+
+        TransparencyAttributes transparencyAttributes = appearance.getTransparencyAttributes();
+        if (writeReference(transparencyAttributes)) {
+          writeObjectAttributes(transparencyAttributes);
+          this.out.writeInt(transparencyAttributes.getTransparencyMode());
+          this.out.writeFloat(transparencyAttributes.getTransparency());
+          this.out.writeInt(transparencyAttributes.getSrcBlendFunction());
+          this.out.writeInt(transparencyAttributes.getDstBlendFunction());
+        }
+
+        PolygonAttributes polygonAttributes = appearance.getPolygonAttributes();
+        if (writeReference(polygonAttributes)) {
+          writeObjectAttributes(polygonAttributes);
+          this.out.writeInt(polygonAttributes.getPolygonMode());
+          this.out.writeInt(polygonAttributes.getCullFace());
+          this.out.writeBoolean(polygonAttributes.getBackFaceNormalFlip());
+          this.out.writeFloat(polygonAttributes.getPolygonOffset());
+          this.out.writeFloat(polygonAttributes.getPolygonOffsetFactor());
+        }
+
+        TexCoordGeneration texCoordGeneration = appearance.getTexCoordGeneration();
+        if (writeReference(texCoordGeneration)) {
+          writeObjectAttributes(texCoordGeneration);
+          this.out.writeBoolean(texCoordGeneration.getEnable());
+          this.out.writeInt(texCoordGeneration.getGenMode());
+          this.out.writeInt(texCoordGeneration.getFormat());
+          Vector4f plane = new Vector4f();
+          texCoordGeneration.getPlaneS(plane);
+          writePlane(plane);
+          texCoordGeneration.getPlaneT(plane);
+          writePlane(plane);
+          texCoordGeneration.getPlaneR(plane);
+          writePlane(plane);
+          texCoordGeneration.getPlaneQ(plane);
+          writePlane(plane);
+        }
+
+        TextureAttributes textureAttributes = appearance.getTextureAttributes();
+        if (writeReference(textureAttributes)) {
+          writeObjectAttributes(textureAttributes);
+          this.out.writeInt(textureAttributes.getTextureMode());
+          this.out.writeInt(textureAttributes.getPerspectiveCorrectionMode());
+          Transform3D transform = new Transform3D();
+          textureAttributes.getTextureTransform(transform);
+          double [] matrix = new double [16];
+          transform.get(matrix);
+          for (double value : matrix) {
+            this.out.writeDouble(value);
+          }
+        }
+
+        Texture texture = appearance.getTexture();
+        if (writeReference(texture)) {
+          Object imageUrl = texture.getUserData();
+          if (!(imageUrl instanceof URL)
+              || !imageUrl.toString().startsWith(this.modelDirectoryPrefix)
+              || imageUrl.toString().indexOf("/../", this.modelDirectoryPrefix.length() - 1) >= 0) {
+            // Can't find texture image from cache if it's not in the directory of the model or its subdirectories
+            throw new IllegalArgumentException("Unsupported texture");
+          }
+          writeObjectAttributes(texture);
+          writeString(imageUrl.toString().substring(this.modelDirectoryPrefix.length()));
+          this.out.writeBoolean(texture.getEnable());
+          this.out.writeInt(texture.getBoundaryModeS());
+          this.out.writeInt(texture.getBoundaryModeT());
+          this.out.writeInt(texture.getMinFilter());
+          this.out.writeInt(texture.getMagFilter());
+        }
+      }
+    }
+
+    private void writeGeometry(Geometry geometry) throws IOException {
+      if (writeReference(geometry)) {
+        Class<?> geometryClass = geometry.getClass();
+        int type;
+        if (geometryClass == TriangleArray.class) {
+          type = TRIANGLE_ARRAY;
+        } else if (geometryClass == QuadArray.class) {
+          type = QUAD_ARRAY;
+        } else if (geometryClass == LineArray.class) {
+          type = LINE_ARRAY;
+        } else if (geometryClass == PointArray.class) {
+          type = POINT_ARRAY;
+        } else if (geometryClass == TriangleStripArray.class) {
+          type = TRIANGLE_STRIP_ARRAY;
+        } else if (geometryClass == TriangleFanArray.class) {
+          type = TRIANGLE_FAN_ARRAY;
+        } else if (geometryClass == LineStripArray.class) {
+          type = LINE_STRIP_ARRAY;
+        } else {
+          throw new IllegalArgumentException("Unsupported geometry " + geometryClass);
+        }
+        GeometryArray geometryArray = (GeometryArray)geometry;
+        int vertexFormat = geometryArray.getVertexFormat();
+        int vertexCount = geometryArray.getVertexCount();
+        int texCoordSetCount = geometryArray.getTexCoordSetCount();
+        if ((vertexFormat & GeometryArray.BY_REFERENCE) != 0
+            ? (vertexFormat & GeometryArray.INTERLEAVED) == 0
+                || (vertexFormat & GeometryArray.USE_NIO_BUFFER) != 0
+            : (vertexFormat & (GeometryArray.COLOR_3 | GeometryArray.COLOR_4 | GeometryArray.VERTEX_ATTRIBUTES
+                  | GeometryArray.TEXTURE_COORDINATE_3 | GeometryArray.TEXTURE_COORDINATE_4)) != 0
+                || texCoordSetCount > 1) {
+          throw new IllegalArgumentException("Unsupported geometry format " + vertexFormat);
+        }
+
+        this.out.writeByte(type);
+        writeObjectAttributes(geometryArray);
+        this.out.writeInt(vertexFormat);
+        this.out.writeInt(vertexCount);
+        this.out.writeInt(texCoordSetCount);
+        int [] texCoordSetMap = new int [geometryArray.getTexCoordSetMapLength()];
+        geometryArray.getTexCoordSetMap(texCoordSetMap);
+        writeInts(texCoordSetMap);
+        if (geometryArray instanceof GeometryStripArray) {
+          int [] stripVertexCounts = new int [((GeometryStripArray)geometryArray).getNumStrips()];
+          ((GeometryStripArray)geometryArray).getStripVertexCounts(stripVertexCounts);
+          writeInts(stripVertexCounts);
+        }
+        if ((vertexFormat & GeometryArray.BY_REFERENCE) != 0) {
+          writeFloats(geometryArray.getInterleavedVertices());
+        } else {
+          float [] coordinates = new float [vertexCount * 3];
+          geometryArray.getCoordinates(0, coordinates);
+          writeFloats(coordinates);
+          if ((vertexFormat & GeometryArray.NORMALS) != 0) {
+            float [] normals = new float [vertexCount * 3];
+            geometryArray.getNormals(0, normals);
+            writeFloats(normals);
+          }
+          if ((vertexFormat & GeometryArray.TEXTURE_COORDINATE_2) != 0) {
+            float [] textureCoordinates = new float [vertexCount * 2];
+            geometryArray.getTextureCoordinates(0, 0, textureCoordinates);
+            writeFloats(textureCoordinates);
+          }
+        }
+      }
+    }
+
+    private void writeString(String string) throws IOException {
+      if (string == null) {
+        this.out.writeInt(-1);
+      } else {
+        writeBytes(this.out, string.getBytes("UTF-8"));
+      }
+    }
+
+    private void writeColor(Color3f color) throws IOException {
+      this.out.writeFloat(color.x);
+      this.out.writeFloat(color.y);
+      this.out.writeFloat(color.z);
+    }
+
+    private void writePlane(Vector4f plane) throws IOException {
+      this.out.writeFloat(plane.x);
+      this.out.writeFloat(plane.y);
+      this.out.writeFloat(plane.z);
+      this.out.writeFloat(plane.w);
+    }
+
+    private void writeInts(int [] values) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+      buffer.asIntBuffer().put(values);
+      this.out.writeInt(values.length);
+      this.out.write(buffer.array());
+    }
+
+    private void writeFloats(float [] values) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+      buffer.asFloatBuffer().put(values);
+      this.out.writeInt(values.length);
+      this.out.write(buffer.array());
+    }
+  }
+
+  /**
+   * A reader of the nodes of a model.
+   */
+  private static class ModelReader {
+    private final ByteBuffer             buffer;
+    private final String                 modelDirectoryPrefix;
+    private final boolean                useCaches;
+    private final List<SceneGraphObject> readObjects;
+
+    public ModelReader(ByteBuffer buffer, URLContent content, boolean useCaches) {
+      this.buffer = buffer;
+      this.modelDirectoryPrefix = getModelDirectoryPrefix(content);
+      this.useCaches = useCaches;
+      this.readObjects = new ArrayList<SceneGraphObject>();
+    }
+
+    /**
+     * Returns the shared object matching the index read in buffer,
+     * or <code>null</code> if it's not read yet.
+     * @throws IOException if the index is invalid
+     */
+    private SceneGraphObject readReference(int index) throws IOException {
+      if (index < this.readObjects.size()) {
+        return this.readObjects.get(index);
+      } else if (index == this.readObjects.size()) {
+        // Reserve the index of the new object
+        this.readObjects.add(null);
+        return null;
+      } else {
+        throw new IOException("Invalid index");
+      }
+    }
+
+    public Node readNode() throws IOException {
+      int type = this.buffer.get();
+      switch (type) {
+        case BRANCH_GROUP :
+        case TRANSFORM_GROUP :
+        case GROUP :
+          Group group = type == BRANCH_GROUP
+              ? new BranchGroup()
+              : (type == TRANSFORM_GROUP ? new TransformGroup() : new Group());
+          readNodeAttributes(group);
+          if (type == TRANSFORM_GROUP) {
+            ((TransformGroup)group).setTransform(new Transform3D(readMatrix()));
+          }
+          readChildren(group);
+          return group;
+        case LINK :
+          Link link = new Link();
+          readNodeAttributes(link);
+          int index = this.buffer.getInt();
+          if (index != -1) {
+            SharedGroup sharedGroup = (SharedGroup)readReference(index);
+            if (sharedGroup == null) {
+              sharedGroup = new SharedGroup();
+              this.readObjects.set(index, sharedGroup);
+              readNodeAttributes(sharedGroup);
+              readChildren(sharedGroup);
+            }
+            link.setSharedGroup(sharedGroup);
+          }
+          return link;
+        case SHAPE :
+          Shape3D shape = new Shape3D();
+          readNodeAttributes(shape);
+          shape.setAppearance(readAppearance());
+          int geometryCount = this.buffer.getInt();
+          for (int i = 0; i < geometryCount; i++) {
+            Geometry geometry = readGeometry();
+            if (i == 0) {
+              shape.setGeometry(geometry);
+            } else {
+              shape.addGeometry(geometry);
+            }
+          }
+          return shape;
+        default :
+          throw new IOException("Invalid node type " + type);
+      }
+    }
+
+    private void readChildren(Group group) throws IOException {
+      int childCount = this.buffer.getInt();
+      for (int i = 0; i < childCount; i++) {
+        group.addChild(readNode());
+      }
+    }
+
+    private void readNodeAttributes(Node node) throws IOException {
+      readObjectAttributes(node);
+      node.setUserData(readString());
+      node.setPickable(this.buffer.get() != 0);
+      node.setCollidable(this.buffer.get() != 0);
+    }
+
+    private void readObjectAttributes(SceneGraphObject object) throws IOException {
+      long capabilities = this.buffer.getLong();
+      for (int bit = 0; bit < 64; bit++) {
+        if ((capabilities & (1L << bit)) != 0) {
+          object.setCapability(bit);
+        }
+      }
+      object.setName(readString());
+    }
+
+    private Appearance readAppearance() throws IOException {
+      int index = this.buffer.getInt();
+      if (index == -1) {
+        return null;
+      }
+      Appearance appearance = (Appearance)readReference(index);
+      if (appearance == null) {
+        appearance = new Appearance();
+        this.readObjects.set(index, appearance);
+        readObjectAttributes(appearance);
+
+        index = this.buffer.getInt();
+        if (index != -1) {
+          Material material = (Material)readReference(index);
+          if (material == null) {
+            material = new Material();
+            this.readObjects.set(index, material);
+            readObjectAttributes(material);
+            material.setAmbientColor(readColor());
+            material.setDiffuseColor(readColor());
+            material.setEmissiveColor(readColor());
+            material.setSpecularColor(readColor());
+            material.setShininess(this.buffer.getFloat());
+            material.setLightingEnable(this.buffer.get() != 0);
+            material.setColorTarget(this.buffer.getInt());
+          }
+          appearance.setMaterial(material);
+        }
+
+        index = this.buffer.getInt();
+        if (index != -1) {
+          ColoringAttributes coloringAttributes = (ColoringAttributes)readReference(index);
+          if (coloringAttributes == null) {
+            coloringAttributes = new ColoringAttributes();
+            this.readObjects.set(index, coloringAttributes);
+            readObjectAttributes(coloringAttributes);
+            coloringAttributes.setColor(readColor());
+            coloringAttributes.setShadeModel(this.buffer.getInt());
+          }
+          appearance.setColoringAttributes(coloringAttributes);
+        }
+
+        index = this.buffer.getInt();
+        if (index != -1) {
+          TransparencyAttributes transparencyAttributes = (TransparencyAttributes)readReference(index);
+          if (transparencyAttributes == null) {
+            transparencyAttributes = new TransparencyAttributes();
+            this.readObjects.set(index, transparencyAttributes);
+            readObjectAttributes(transparencyAttributes);
+            transparencyAttributes.setTransparencyMode(this.buffer.getInt());
+            transparencyAttributes.setTransparency(this.buffer.getFloat());
+            transparencyAttributes.setSrcBlendFunction(this.buffer.getInt());
+            transparencyAttributes.setDstBlendFunction(this.buffer.getInt());
+          }
+          appearance.setTransparencyAttributes(transparencyAttributes);
+        }
+
+        index = this.buffer.getInt();
+        if (index != -1) {
+          PolygonAttributes polygonAttributes = (PolygonAttributes)readReference(index);
+          if (polygonAttributes == null) {
+            polygonAttributes = new PolygonAttributes();
+            this.readObjects.set(index, polygonAttributes);
+            readObjectAttributes(polygonAttributes);
+            polygonAttributes.setPolygonMode(this.buffer.getInt());
+            polygonAttributes.setCullFace(this.buffer.getInt());
+            polygonAttributes.setBackFaceNormalFlip(this.buffer.get() != 0);
+            polygonAttributes.setPolygonOffset(this.buffer.getFloat());
+            polygonAttributes.setPolygonOffsetFactor(this.buffer.getFloat());
+          }
+          appearance.setPolygonAttributes(polygonAttributes);
+        }
+
+        index = this.buffer.getInt();
+        if (index != -1) {
+          TexCoordGeneration texCoordGeneration = (TexCoordGeneration)readReference(index);
+          if (texCoordGeneration == null) {
+            texCoordGeneration = new TexCoordGeneration();
+            this.readObjects.set(index, texCoordGeneration);
+            readObjectAttributes(texCoordGeneration);
+            texCoordGeneration.setEnable(this.buffer.get() != 0);
+            texCoordGeneration.setGenMode(this.buffer.getInt());
+            texCoordGeneration.setFormat(this.buffer.getInt());
+            texCoordGeneration.setPlaneS(readPlane());
+            texCoordGeneration.setPlaneT(readPlane());
+            texCoordGeneration.setPlaneR(readPlane());
+            texCoordGeneration.setPlaneQ(readPlane());
+          }
+          appearance.setTexCoordGeneration(texCoordGeneration);
+        }
+
+        index = this.buffer.getInt();
+        if (index != -1) {
+          TextureAttributes textureAttributes = (TextureAttributes)readReference(index);
+          if (textureAttributes == null) {
+            textureAttributes = new TextureAttributes();
+            this.readObjects.set(index, textureAttributes);
+            readObjectAttributes(textureAttributes);
+            textureAttributes.setTextureMode(this.buffer.getInt());
+            textureAttributes.setPerspectiveCorrectionMode(this.buffer.getInt());
+            textureAttributes.setTextureTransform(new Transform3D(readMatrix()));
+          }
+          appearance.setTextureAttributes(textureAttributes);
+        }
+
+        index = this.buffer.getInt();
+        if (index != -1) {
+          Texture texture = (Texture)readReference(index);
+          if (texture == null) {
+            long capabilities = this.buffer.getLong();
+            String name = readString();
+            URL imageUrl = new URL(this.modelDirectoryPrefix + readString());
+            boolean enable = this.buffer.get() != 0;
+            int boundaryModeS = this.buffer.getInt();
+            int boundaryModeT = this.buffer.getInt();
+            int minFilter = this.buffer.getInt();
+            int magFilter = this.buffer.getInt();
+            BufferedImage image = readImage(imageUrl);
+            if (image == null) {
+              throw new IOException("Can't read texture image " + imageUrl);
+            }
+            texture = new TextureLoader(image).getTexture();
+            this.readObjects.set(index, texture);
+            for (int bit = 0; bit < 64; bit++) {
+              if ((capabilities & (1L << bit)) != 0) {
+                texture.setCapability(bit);
+              }
+            }
+            texture.setName(name);
+            // Keep in user data the URL of the texture image like loaders
+            texture.setUserData(imageUrl);
+            texture.setEnable(enable);
+            texture.setBoundaryModeS(boundaryModeS);
+            texture.setBoundaryModeT(boundaryModeT);
+            texture.setMinFilter(minFilter);
+            texture.setMagFilter(magFilter);
+          }
+          appearance.setTexture(texture);
+        }
+      }
+      return appearance;
+    }
+
+    private BufferedImage readImage(URL imageUrl) throws IOException {
+      URLConnection connection = imageUrl.openConnection();
+      connection.setUseCaches(this.useCaches);
+      InputStream in = connection.getInputStream();
+      try {
+        return ImageIO.read(in);
+      } finally {
+        in.close();
+      }
+    }
+
+    private Geometry readGeometry() throws IOException {
+      int index = this.buffer.getInt();
+      if (index == -1) {
+        return null;
+      }
+      GeometryArray geometryArray = (GeometryArray)readReference(index);
+      if (geometryArray == null) {
+        int type = this.buffer.get();
+        long capabilities = this.buffer.getLong();
+        String name = readString();
+        int vertexFormat = this.buffer.getInt();
+        int vertexCount = this.buffer.getInt();
+        int texCoordSetCount = this.buffer.getInt();
+        int [] texCoordSetMap = readInts();
+        switch (type) {
+          case TRIANGLE_ARRAY :
+            geometryArray = new TriangleArray(vertexCount, vertexFormat, texCoordSetCount, texCoordSetMap);
+            break;
+          case QUAD_ARRAY :
+            geometryArray = new QuadArray(vertexCount, vertexFormat, texCoordSetCount, texCoordSetMap);
+            break;
+          case LINE_ARRAY :
+            geometryArray = new LineArray(vertexCount, vertexFormat, texCoordSetCount, texCoordSetMap);
+            break;
+          case POINT_ARRAY :
+            geometryArray = new PointArray(vertexCount, vertexFormat, texCoordSetCount, texCoordSetMap);
+            break;
+          case TRIANGLE_STRIP_ARRAY :
+            geometryArray = new TriangleStripArray(vertexCount, vertexFormat, texCoordSetCount, texCoordSetMap, readInts());
+            break;
+          case TRIANGLE_FAN_ARRAY :
+            geometryArray = new TriangleFanArray(vertexCount, vertexFormat, texCoordSetCount, texCoordSetMap, readInts());
+            break;
+          case LINE_STRIP_ARRAY :
+            geometryArray = new LineStripArray(vertexCount, vertexFormat, texCoordSetCount, texCoordSetMap, readInts());
+            break;
+          default :
+            throw new IOException("Invalid geometry type " + type);
+        }
+        this.readObjects.set(index, geometryArray);
+        for (int bit = 0; bit < 64; bit++) {
+          if ((capabilities & (1L << bit)) != 0) {
+            geometryArray.setCapability(bit);
+          }
+        }
+        geometryArray.setName(name);
+        if ((vertexFormat & GeometryArray.BY_REFERENCE) != 0) {
+          geometryArray.setInterleavedVertices(readFloats());
+        } else {
+          geometryArray.setCoordinates(0, readFloats());
+          if ((vertexFormat & GeometryArray.NORMALS) != 0) {
+            geometryArray.setNormals(0, readFloats());
+          }
+          if ((vertexFormat & GeometryArray.TEXTURE_COORDINATE_2) != 0) {
+            geometryArray.setTextureCoordinates(0, 0, readFloats());
+          }
+        }
+      }
+      return geometryArray;
+    }
+
+    private String readString() throws IOException {
+      int length = this.buffer.getInt();
+      if (length == -1) {
+        return null;
+      } else {
+        byte [] bytes = new byte [length];
+        this.buffer.get(bytes);
+        return new String(bytes, "UTF-8");
+      }
+    }
+
+    private double [] readMatrix() {
+      double [] matrix = new double [16];
+      this.buffer.asDoubleBuffer().get(matrix);
+      this.buffer.position(this.buffer.position() + matrix.length * 8);
+      return matrix;
+    }
+
+    private Color3f readColor() {
+      return new Color3f(this.buffer.getFloat(), this.buffer.getFloat(), this.buffer.getFloat());
+    }
+
+    private Vector4f readPlane() {
+      return new Vector4f(this.buffer.getFloat(), this.buffer.getFloat(), this.buffer.getFloat(), this.buffer.getFloat());
+    }
+
+    private int [] readInts() {
+      int [] values = new int [this.buffer.getInt()];
+      this.buffer.asIntBuffer().get(values);
+      this.buffer.position(this.buffer.position() + values.length * 4);
+      return values;
+    }
+
+    private float [] readFloats() {
+      float [] values = new float [this.buffer.getInt()];
+      this.buffer.asFloatBuffer().get(values);
+      this.buffer.position(this.buffer.position() + values.length * 4);
+      return values;
+    }
+  }
+}
@@ -28,6 +28,7 @@ import java.awt.geom.PathIterator;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
@@ -37,6 +38,7 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -48,8 +50,14 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.media.j3d.Appearance;
 import javax.media.j3d.BoundingBox;
@@ -93,6 +101,7 @@ import javax.vecmath.Point3f;
 import javax.vecmath.Vector3d;
 import javax.vecmath.Vector3f;
 
+import com.eteks.sweethome3d.io.ContentDigestManager;
 import com.eteks.sweethome3d.model.CatalogTexture;
 import com.eteks.sweethome3d.model.Content;
 import com.eteks.sweethome3d.model.HomeMaterial;
@@ -198,10 +207,15 @@ public class ModelManager {
 
   private static final String   ADDITIONAL_LOADER_CLASSES = "com.eteks.sweethome3d.j3d.additionalLoaderClasses";
 
+  private static final int      MAXIMUM_LOADED_MODEL_COUNT = 1000;
+  private static final long     MAXIMUM_MODEL_CACHE_SIZE = 512 * 1024 * 1024;
+  // Version of the default loaders to increase each time they build different nodes
+  private static final int      LOADERS_VERSION = 1;
+
   private static ModelManager instance;
 
-  // Map storing loaded model nodes
-  private Map<Content, BranchGroup> loadedModelNodes;
+  // Map storing loaded model nodes and model nodes being loaded
+  private ConcurrentMap<Content, ModelLoading> loadedModelNodes;
   // Map storing model nodes being loaded
   private Map<Content, List<ModelObserver>> loadingModelObservers;
   // Map storing the bounds of transformed model nodes
@@ -210,12 +224,21 @@ public class ModelManager {
   private ExecutorService           modelsLoader;
   // List of additional loader classes
   private Class<Loader> []          additionalLoaderClasses;
+  // Cache on disk of parsed models
+  private volatile ModelCache       modelCache;
+  // Statistics of loaded models cache
+  private final AtomicLong          modelAccessCount = new AtomicLong();
+  private final AtomicLong          modelCacheHitCount = new AtomicLong();
+  private final AtomicLong          modelCacheMissCount = new AtomicLong();
+  private final AtomicLong          coalescedModelLoadCount = new AtomicLong();
+  private final AtomicLong          modelCacheEvictionCount = new AtomicLong();
+  private final AtomicLong          modelsLoadingTime = new AtomicLong();
 
   private ModelManager() {
     // This class is a singleton
-    this.loadedModelNodes = new WeakHashMap<Content, BranchGroup>();
+    this.loadedModelNodes = new ConcurrentHashMap<Content, ModelLoading>();
     this.loadingModelObservers = new HashMap<Content, List<ModelObserver>>();
-    this.transformedModelNodeBounds = new WeakHashMap<Content, Map<Transform3D, BoundingBox>>();
+    this.transformedModelNodeBounds = Collections.synchronizedMap(new WeakHashMap<Content, Map<Transform3D, BoundingBox>>());
     // Load other optional Loader classes
     List<Class<Loader>> loaderClasses = new ArrayList<Class<Loader>>();
     String loaderClassNames = System.getProperty(ADDITIONAL_LOADER_CLASSES);
@@ -278,12 +301,83 @@ public class ModelManager {
       this.modelsLoader.shutdownNow();
       this.modelsLoader = null;
     }
-    synchronized (this.loadedModelNodes) {
-      this.loadedModelNodes.clear();
-    }
+    this.loadedModelNodes.clear();
     this.loadingModelObservers.clear();
   }
 
+  /**
+   * Sets the folder where the models read by loaders are cached to avoid parsing them
+   * again during next sessions. Cached models are identified by the digest of their content
+   * and are deleted once the cache exceeds 512 MB, the least recently used first.
+   * @param folder the cache folder or <code>null</code> to disable cache
+   * @since 6.1
+   */
+  public void setModelCacheFolder(File folder) {
+    this.modelCache = folder != null
+        ? new ModelCache(folder, MAXIMUM_MODEL_CACHE_SIZE, getLoadersVersion())
+        : null;
+  }
+
+  /**
+   * Returns a string identifying the version of the loaders used to read models,
+   * to ignore the models cached with other loaders.
+   */
+  private String getLoadersVersion() {
+    StringBuilder loadersVersion = new StringBuilder(String.valueOf(LOADERS_VERSION));
+    List<Class<?>> loaderClasses = new ArrayList<Class<?>>(Arrays.<Class<?>>asList(
+        OBJLoader.class, DAELoader.class, Max3DSLoader.class, Lw3dLoader.class));
+    loaderClasses.addAll(Arrays.asList(this.additionalLoaderClasses));
+    for (Class<?> loaderClass : loaderClasses) {
+      loadersVersion.append(' ').append(loaderClass.getName());
+      Package loaderPackage = loaderClass.getPackage();
+      if (loaderPackage != null
+          && loaderPackage.getImplementationVersion() != null) {
+        loadersVersion.append('/').append(loaderPackage.getImplementationVersion());
+      }
+    }
+    return loadersVersion.toString();
+  }
+
+  /**
+   * Returns the count of requested models that were already loaded.
+   * @since 6.1
+   */
+  public long getModelCacheHitCount() {
+    return this.modelCacheHitCount.get();
+  }
+
+  /**
+   * Returns the count of requested models that had to be loaded.
+   * @since 6.1
+   */
+  public long getModelCacheMissCount() {
+    return this.modelCacheMissCount.get();
+  }
+
+  /**
+   * Returns the count of requested models that were being loaded by an other request.
+   * @since 6.1
+   */
+  public long getCoalescedModelLoadCount() {
+    return this.coalescedModelLoadCount.get();
+  }
+
+  /**
+   * Returns the count of loaded models removed from cache to keep its size bounded.
+   * @since 6.1
+   */
+  public long getModelCacheEvictionCount() {
+    return this.modelCacheEvictionCount.get();
+  }
+
+  /**
+   * Returns the total time in milliseconds spent to load models.
+   * @since 6.1
+   */
+  public long getModelsLoadingTime() {
+    return this.modelsLoadingTime.get() / 1000000;
+  }
+
   /**
    * Returns the minimum size of a model.
    */
@@ -724,27 +818,26 @@ public class ModelManager {
   public void loadModel(final Content content,
                         boolean synchronous,
                         ModelObserver modelObserver) {
-    BranchGroup modelRoot;
-    synchronized (this.loadedModelNodes) {
-      modelRoot = this.loadedModelNodes.get(content);
-    }
-    if (modelRoot != null) {
-      // Notify cached model to observer with a clone of the model
-      modelObserver.modelUpdated((BranchGroup)cloneNode(modelRoot));
-    } else if (synchronous) {
+    if (!synchronous
+        && !EventQueue.isDispatchThread()) {
+      ModelLoading modelLoading = this.loadedModelNodes.get(content);
+      if (modelLoading == null
+          || !modelLoading.isDone()) {
+        throw new IllegalStateException("Asynchronous call out of Event Dispatch Thread");
+      }
+    }
+
+    final ModelLoading modelLoading = getModelLoading(content);
+    if (synchronous
+        || modelLoading.isDone()) {
       try {
-        modelRoot = loadModel(content);
-        synchronized (this.loadedModelNodes) {
-          // Store in cache model node for future copies
-          this.loadedModelNodes.put(content, (BranchGroup)modelRoot);
-          this.transformedModelNodeBounds.put(content, new WeakHashMap<Transform3D, BoundingBox>());
-        }
+        // Notify cached model to observer with a clone of the model,
+        // once this thread or an other one loaded it
+        BranchGroup modelRoot = getLoadedModel(modelLoading);
         modelObserver.modelUpdated((BranchGroup)cloneNode(modelRoot));
       } catch (IOException ex) {
         modelObserver.modelError(ex);
       }
-    } else if (!EventQueue.isDispatchThread()) {
-      throw new IllegalStateException("Asynchronous call out of Event Dispatch Thread");
     } else {
       if (this.modelsLoader == null) {
         this.modelsLoader = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
@@ -764,12 +857,7 @@ public class ModelManager {
         this.modelsLoader.execute(new Runnable() {
           public void run() {
             try {
-              final BranchGroup loadedModel = loadModel(content);
-              synchronized (loadedModelNodes) {
-                // Update loaded models cache and notify registered observers
-                loadedModelNodes.put(content, loadedModel);
-                transformedModelNodeBounds.put(content, new WeakHashMap<Transform3D, BoundingBox>());
-              }
+              final BranchGroup loadedModel = getLoadedModel(modelLoading);
               EventQueue.invokeLater(new Runnable() {
                   public void run() {
                     List<ModelObserver> observers = loadingModelObservers.remove(content);
@@ -798,14 +886,87 @@ public class ModelManager {
     }
   }
 
+  /**
+   * Returns the loading task of the model of the given <code>content</code>,
+   * creating it if it doesn't exist.
+   */
+  private ModelLoading getModelLoading(Content content) {
+    ModelLoading modelLoading = this.loadedModelNodes.get(content);
+    if (modelLoading == null) {
+      ModelLoading newModelLoading = new ModelLoading(content);
+      modelLoading = this.loadedModelNodes.putIfAbsent(content, newModelLoading);
+      if (modelLoading == null) {
+        modelLoading = newModelLoading;
+        this.modelCacheMissCount.incrementAndGet();
+        evictLoadedModels();
+      } else {
+        this.coalescedModelLoadCount.incrementAndGet();
+      }
+    } else if (modelLoading.isDone()) {
+      this.modelCacheHitCount.incrementAndGet();
+    } else {
+      this.coalescedModelLoadCount.incrementAndGet();
+    }
+    modelLoading.lastAccess = this.modelAccessCount.incrementAndGet();
+    return modelLoading;
+  }
+
+  /**
+   * Removes the least recently used models from cache when it contains too many models.
+   */
+  private void evictLoadedModels() {
+    while (this.loadedModelNodes.size() > MAXIMUM_LOADED_MODEL_COUNT) {
+      Map.Entry<Content, ModelLoading> oldestEntry = null;
+      for (Map.Entry<Content, ModelLoading> entry : this.loadedModelNodes.entrySet()) {
+        // Keep models being loaded
+        if (entry.getValue().isDone()
+            && (oldestEntry == null
+                || entry.getValue().lastAccess < oldestEntry.getValue().lastAccess)) {
+          oldestEntry = entry;
+        }
+      }
+      if (oldestEntry == null) {
+        break;
+      } else if (this.loadedModelNodes.remove(oldestEntry.getKey(), oldestEntry.getValue())) {
+        this.transformedModelNodeBounds.remove(oldestEntry.getKey());
+        this.modelCacheEvictionCount.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Returns the model loaded by the given task, running it in the current thread
+   * if no other thread started it yet, or waiting for its end otherwise.
+   */
+  private BranchGroup getLoadedModel(ModelLoading modelLoading) throws IOException {
+    modelLoading.run();
+    try {
+      return modelLoading.get();
+    } catch (InterruptedException ex) {
+      throw new InterruptedIOException("Model loading interrupted");
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException)cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      } else if (cause instanceof Error) {
+        throw (Error)cause;
+      } else {
+        throw new IOException(cause.getMessage());
+      }
+    }
+  }
+
   /**
    * Returns a clone of the given <code>node</code>.
    * All the children and the attributes of the given node are duplicated except the geometries
    * and the texture images of shapes.
    */
   public Node cloneNode(Node node) {
-    // Clone node in a synchronized block because cloneNodeComponent is not thread safe
-    synchronized (this.loadedModelNodes) {
+    // Clone node in a block synchronized on the cloned node because cloneNodeComponent
+    // is not thread safe, letting other threads clone other models at the same time
+    synchronized (node) {
       return cloneNode(node, new HashMap<SharedGroup, SharedGroup>());
     }
   }
@@ -898,6 +1059,26 @@ public class ModelManager {
     } else {
       urlContent = TemporaryURLContent.copyToTemporaryURLContent(content);
     }
+    Boolean useCaches = shouldUseCaches(urlContent);
+
+    ModelCache modelCache = this.modelCache;
+    byte [] contentDigest = null;
+    // Search in cache only models stored in zip files, because the digest of their content
+    // takes into account the other files they may refer to
+    if (modelCache != null
+        && urlContent.isJAREntry()) {
+      contentDigest = ContentDigestManager.getInstance().getContentDigest(urlContent);
+      if (contentDigest.length > 0) {
+        BranchGroup modelNode = modelCache.readModel(urlContent, contentDigest, useCaches);
+        if (modelNode != null) {
+          updateLoadedModel(modelNode, content);
+          return modelNode;
+        }
+      } else {
+        contentDigest = null;
+      }
+    }
+
     Loader []  defaultLoaders = new Loader [] {new OBJLoader(),
                                                new DAELoader(),
                                                new Max3DSLoader(),
@@ -917,7 +1098,6 @@ public class ModelManager {
     }
 
     Exception lastException = null;
-    Boolean useCaches = shouldUseCaches(urlContent);
     for (Loader loader : loaders) {
       boolean loadSynchronously = false;
       try {
@@ -972,11 +1152,10 @@ public class ModelManager {
 
         // Update transparency of scene window panes shapes
         updateShapeNamesAndWindowPanesTransparency(scene);
-        // Turn off lights because some loaders don't take into account the ~LOAD_LIGHT_NODES flag
-        turnOffLightsShareAndModulateTextures(modelNode, new IdentityHashMap<Texture, Texture>());
-        updateDeformableModelHierarchy(modelNode);
-        checkAppearancesName(modelNode);
-        modelNode.setUserData(content);
+        if (contentDigest != null) {
+          modelCache.writeModel(urlContent, contentDigest, modelNode);
+        }
+        updateLoadedModel(modelNode, content);
         return modelNode;
       } catch (IllegalArgumentException ex) {
         lastException = ex;
@@ -1014,6 +1193,17 @@ public class ModelManager {
     }
   }
 
+  /**
+   * Updates the given model node read from <code>content</code> before it's used.
+   */
+  private void updateLoadedModel(BranchGroup modelNode, Content content) {
+    // Turn off lights because some loaders don't take into account the ~LOAD_LIGHT_NODES flag
+    turnOffLightsShareAndModulateTextures(modelNode, new IdentityHashMap<Texture, Texture>());
+    updateDeformableModelHierarchy(modelNode);
+    checkAppearancesName(modelNode);
+    modelNode.setUserData(content);
+  }
+
   /**
    * Returns <code>true</code> if reading from the given content should be done using caches.
    */
@@ -2155,6 +2345,42 @@ public class ModelManager {
     return ShapeTools.getShape(svgPathShape);
   }
 
+  /**
+   * A task loading the model of a content, which result is shared by all the threads that request it.
+   */
+  private class ModelLoading extends FutureTask<BranchGroup> {
+    private final Content content;
+    private volatile long lastAccess;
+
+    public ModelLoading(final Content content) {
+      super(new Callable<BranchGroup>() {
+          public BranchGroup call() throws IOException {
+            long start = System.nanoTime();
+            try {
+              return loadModel(content);
+            } finally {
+              modelsLoadingTime.addAndGet(System.nanoTime() - start);
+            }
+          }
+        });
+      this.content = content;
+    }
+
+    @Override
+    protected void set(BranchGroup modelRoot) {
+      transformedModelNodeBounds.put(this.content,
+          Collections.synchronizedMap(new WeakHashMap<Transform3D, BoundingBox>()));
+      super.set(modelRoot);
+    }
+
+    @Override
+    protected void setException(Throwable ex) {
+      // Don't keep failed loads in cache to be able to try again
+      loadedModelNodes.remove(this.content, this);
+      super.setException(ex);
+    }
+  }
+
   /**
    * An observer that receives model loading notifications.
    */
@@ -20,26 +20,28 @@
 package com.eteks.sweethome3d.j3d;
 
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.Reader;
-import java.io.StreamTokenizer;
 import java.io.StringReader;
-import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 import javax.media.j3d.Appearance;
@@ -988,17 +990,25 @@ public class OBJLoader extends LoaderBase implements Loader {
 
   static {
     try {
-      DEFAULT_APPEARANCES = parseMaterialStream(new StringReader(JAVA_3D_MATERIALS), null, null);
+      DEFAULT_APPEARANCES = parseMaterialStream(new OBJTokenizer(new StringReader(JAVA_3D_MATERIALS)), null, null);
     } catch (IOException ex) {
       // Can't happen because materials are read from a string
       throw new InternalError("Can't access to default materials");
     }
   }
 
+  private static final int PARALLEL_PARSING_MINIMUM_LENGTH = 4 * 1024 * 1024;
+  private static final int CHUNK_MINIMUM_LENGTH            = 256 * 1024;
+
+  private static ForkJoinPool     parsingPool;
+
   private Boolean                 useCaches;
-  private List<Point3f>           vertices;
-  private List<TexCoord2f>        textureCoordinates;
-  private List<Vector3f>          normals;
+  private CoordinateList          vertices;
+  private CoordinateList          textureCoordinates;
+  private CoordinateList          normals;
+  private IndexList               vertexIndices;
+  private IndexList               textureCoordinateIndices;
+  private IndexList               normalIndices;
   private Map<String, Group>      groups;
   private Group                   currentGroup;
   private String                  currentMaterial;
@@ -1030,12 +1040,8 @@ public class OBJLoader extends LoaderBase implements Loader {
     } catch (MalformedURLException ex) {
       throw new FileNotFoundException(file);
     }
-    try {
-      return load(new InputStreamReader(new FileInputStream(file), "ISO-8859-1"), baseUrl);
-    } catch (UnsupportedEncodingException ex) {
-      // Shouldn't happen
-      return load(new InputStreamReader(new FileInputStream(file)));
-    }
+    File objFile = new File(file);
+    return load(new FileInputStream(objFile), objFile.length(), baseUrl);
   }
 
   /**
@@ -1047,91 +1053,330 @@ public class OBJLoader extends LoaderBase implements Loader {
       baseUrl = url;
     }
     InputStream in;
+    int length;
     try {
-      in = openStream(url, this.useCaches);
+      URLConnection connection = openConnection(url, this.useCaches);
+      in = connection.getInputStream();
+      length = connection.getContentLength();
     } catch (IOException ex) {
       throw new FileNotFoundException("Can't read " + url);
     }
-    try {
-      return load(new InputStreamReader(in, "ISO-8859-1"), baseUrl);
-    } catch (UnsupportedEncodingException ex) {
-      // Shouldn't happen
-      return load(new InputStreamReader(in));
-    }
+    return load(in, length, baseUrl);
   }
 
   /**
    * Returns an input stream ready to read data from the given URL.
    */
   private static InputStream openStream(URL url, Boolean useCaches) throws IOException {
+    return openConnection(url, useCaches).getInputStream();
+  }
+
+  /**
+   * Returns a connection to the given URL.
+   */
+  private static URLConnection openConnection(URL url, Boolean useCaches) throws IOException {
     URLConnection connection = url.openConnection();
     if (useCaches != null) {
       connection.setUseCaches(useCaches.booleanValue());
     }
-    return connection.getInputStream();
+    return connection;
   }
 
   /**
    * Returns the scene described in the given OBJ file stream.
    */
   public Scene load(Reader reader) throws FileNotFoundException, IncorrectFormatException, ParsingErrorException {
-    return load(reader, null);
+    return load(new OBJTokenizer(reader), null);
   }
 
   /**
-   * Returns the scene described in the given OBJ file.
+   * Returns the scene described in the OBJ file read by the given tokenizer.
    */
-  private Scene load(Reader reader, URL baseUrl) throws FileNotFoundException {
-    if (!(reader instanceof BufferedReader)) {
-      reader = new BufferedReader(reader);
-    }
+  private Scene load(OBJTokenizer tokenizer, URL baseUrl) throws FileNotFoundException {
     try {
-      return parseObjectStream(reader, baseUrl);
+      return parseObjectStream(tokenizer, baseUrl);
     } catch (IOException ex) {
       throw new ParsingErrorException(ex.getMessage());
     } finally {
       try {
-        reader.close();
+        tokenizer.close();
       } catch (IOException ex) {
         throw new ParsingErrorException(ex.getMessage());
       }
     }
   }
 
+  /**
+   * Returns the scene described in the OBJ file read from the given stream.
+   * If the stream is large enough, it's read in memory to be parsed in parallel.
+   */
+  private Scene load(InputStream in, long length, URL baseUrl) throws FileNotFoundException {
+    if (length >= PARALLEL_PARSING_MINIMUM_LENGTH
+        && length < Integer.MAX_VALUE
+        && Runtime.getRuntime().availableProcessors() > 1) {
+      try {
+        byte [] content;
+        try {
+          content = readContent(in, (int)length);
+        } finally {
+          in.close();
+        }
+        return parseObjectContent(content, baseUrl);
+      } catch (IOException ex) {
+        throw new ParsingErrorException(ex.getMessage());
+      }
+    } else {
+      return load(new OBJTokenizer(in), baseUrl);
+    }
+  }
+
+  /**
+   * Returns the bytes read from the given stream which should contain <code>length</code> bytes.
+   */
+  private static byte [] readContent(InputStream in, int length) throws IOException {
+    byte [] content = new byte [length];
+    int size = 0;
+    for (int count; (count = in.read(content, size, content.length - size)) != -1; ) {
+      size += count;
+      if (size == content.length) {
+        int nextByte = in.read();
+        if (nextByte == -1) {
+          break;
+        }
+        content = Arrays.copyOf(content, content.length * 2);
+        content [size++] = (byte)nextByte;
+      }
+    }
+    return size == content.length
+        ? content
+        : Arrays.copyOf(content, size);
+  }
+
+  /**
+   * Returns the scene parsed from the given content. The lines of the content are split
+   * in chunks parsed in parallel, once a pre-scan of the content found the count
+   * of vertices and the state of the parser at the beginning of each chunk.
+   */
+  private Scene parseObjectContent(byte [] content,
+                                   URL baseUrl) throws IOException {
+    boolean smooth = this.currentSmooth;
+    initializeParsing();
+    List<ObjectChunk> chunks;
+    try {
+      chunks = splitObjectContent(content, baseUrl);
+    } catch (IncorrectFormatException ex) {
+      // Let sequential parsing report the error
+      chunks = null;
+    }
+
+    if (chunks != null
+        && chunks.size() > 2) {
+      ObjectChunk lastChunk = chunks.get(chunks.size() - 1);
+      // Let chunks store their coordinates in arrays of the expected size
+      float [] vertices = new float [lastChunk.vertexCount * 3];
+      float [] textureCoordinates = new float [lastChunk.textureCoordinateCount * 2];
+      float [] normals = new float [lastChunk.normalCount * 3];
+      for (ObjectChunk chunk : chunks) {
+        chunk.setCoordinates(vertices, textureCoordinates, normals);
+      }
+      try {
+        List<Future<Map<String, Group>>> chunkGroups =
+            getParsingPool().invokeAll(chunks.subList(0, chunks.size() - 1));
+        boolean chunksParsed = true;
+        for (int i = 0; i < chunkGroups.size() && chunksParsed; i++) {
+          Map<String, Group> groups = chunkGroups.get(i).get();
+          chunksParsed = chunks.get(i).isParsed(chunks.get(i + 1));
+          // Append the geometries of each chunk to the groups created during pre-scan
+          for (Group group : groups.values()) {
+            this.groups.get(group.getName()).getGeometries().addAll(group.getGeometries());
+          }
+        }
+        if (chunksParsed) {
+          this.vertices = new CoordinateList(vertices, 3, lastChunk.vertexCount);
+          this.textureCoordinates = new CoordinateList(textureCoordinates, 2, lastChunk.textureCoordinateCount);
+          this.normals = new CoordinateList(normals, 3, lastChunk.normalCount);
+          return createParsedScene();
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      } catch (ExecutionException ex) {
+        // Let sequential parsing report the error
+      }
+    }
+
+    this.currentSmooth = smooth;
+    return parseObjectStream(new OBJTokenizer(content, 0, content.length), baseUrl);
+  }
+
+  /**
+   * Returns the chunks of lines of the given content that may be parsed in parallel,
+   * followed by an empty chunk at the end of the content, or <code>null</code>
+   * if some lines are continued on the next line or don't start with a word.
+   * Group, material and smoothing lines are parsed during this pre-scan,
+   * and vertices, texture coordinates and normals are counted.
+   */
+  private List<ObjectChunk> splitObjectContent(byte [] content,
+                                               URL baseUrl) throws IOException {
+    int chunkLength = Math.max(CHUNK_MINIMUM_LENGTH,
+        content.length / (Runtime.getRuntime().availableProcessors() * 4));
+    List<ObjectChunk> chunks = new ArrayList<ObjectChunk>();
+    int vertexCount = 0;
+    int textureCoordinateCount = 0;
+    int normalCount = 0;
+    int chunkStart = 0;
+    chunks.add(new ObjectChunk(content, 0, baseUrl, vertexCount, textureCoordinateCount, normalCount,
+        this.currentGroup.getName(), this.currentMaterial, this.currentSmooth));
+    for (int i = 0; i < content.length; ) {
+      int lineStart = i;
+      if (lineStart - chunkStart >= chunkLength) {
+        chunks.add(new ObjectChunk(content, lineStart, baseUrl, vertexCount, textureCoordinateCount, normalCount,
+            this.currentGroup.getName(), this.currentMaterial, this.currentSmooth));
+        chunkStart = lineStart;
+      }
+
+      while (i < content.length
+          && (content [i] == ' ' || content [i] == '\t')) {
+        i++;
+      }
+      int wordStart = i;
+      while (i < content.length
+          && (content [i] & 0xFF) > ' '
+          && content [i] != 0x7F) {
+        i++;
+      }
+      int wordEnd = i;
+      int lastCharacter = wordStart < wordEnd
+          ? content [wordEnd - 1] & 0xFF
+          : -1;
+      while (i < content.length
+          && content [i] != '\n'
+          && content [i] != '\r') {
+        if (content [i] != ' ' && content [i] != '\t') {
+          lastCharacter = content [i] & 0xFF;
+        }
+        i++;
+      }
+      if (i < content.length) {
+        i += content [i] == '\r' && i + 1 < content.length && content [i + 1] == '\n'
+            ? 2
+            : 1;
+      }
+
+      if (lastCharacter == '\\'
+          || wordStart == wordEnd && lastCharacter != -1) {
+        return null;
+      } else if (isWord(content, wordStart, wordEnd, "v")) {
+        vertexCount++;
+      } else if (isWord(content, wordStart, wordEnd, "vt")) {
+        textureCoordinateCount++;
+      } else if (isWord(content, wordStart, wordEnd, "vn")) {
+        normalCount++;
+      } else if (isWord(content, wordStart, wordEnd, "g")
+          || isWord(content, wordStart, wordEnd, "o")
+          || isWord(content, wordStart, wordEnd, "s")
+          || isWord(content, wordStart, wordEnd, "usemtl")
+          || isWord(content, wordStart, wordEnd, "mtllib")) {
+        OBJTokenizer tokenizer = new OBJTokenizer(content, lineStart, i - lineStart);
+        tokenizer.nextToken();
+        parseObjectLine(tokenizer, baseUrl);
+      }
+    }
+
+    for (int i = 0; i < chunks.size() - 1; i++) {
+      chunks.get(i).setEnd(chunks.get(i + 1).start);
+    }
+    chunks.get(chunks.size() - 1).setEnd(content.length);
+    chunks.add(new ObjectChunk(content, content.length, baseUrl, vertexCount, textureCoordinateCount, normalCount,
+        this.currentGroup.getName(), this.currentMaterial, this.currentSmooth));
+    return chunks;
+  }
+
+  /**
+   * Returns <code>true</code> if the bytes between <code>start</code> and <code>end</code>
+   * are equal to the given word.
+   */
+  private static boolean isWord(byte [] content, int start, int end, String word) {
+    if (end - start != word.length()) {
+      return false;
+    }
+    for (int i = 0; i < word.length(); i++) {
+      if (content [start + i] != word.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the pool used to parse chunks in parallel.
+   */
+  private static synchronized ForkJoinPool getParsingPool() {
+    if (parsingPool == null) {
+      parsingPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+    return parsingPool;
+  }
+
   /**
    * Returns the scene parsed from a stream.
    */
-  private Scene parseObjectStream(Reader reader,
+  private Scene parseObjectStream(OBJTokenizer tokenizer,
                                   URL baseUrl) throws IOException {
-    this.vertices = new ArrayList<Point3f>();
-    this.textureCoordinates = new ArrayList<TexCoord2f>();
-    this.normals = new ArrayList<Vector3f>();
+    initializeParsing();
+    parseObjectLines(tokenizer, baseUrl);
+    return createParsedScene();
+  }
+
+  /**
+   * Resets the objects parsed by this loader.
+   */
+  private void initializeParsing() {
+    this.vertices = new CoordinateList(3);
+    this.textureCoordinates = new CoordinateList(2);
+    this.normals = new CoordinateList(3);
+    this.vertexIndices = new IndexList();
+    this.textureCoordinateIndices = new IndexList();
+    this.normalIndices = new IndexList();
     this.groups = new LinkedHashMap<String, Group>();
     this.currentGroup = new Group("default");
     this.groups.put("default", this.currentGroup);
     this.currentMaterial = "default";
     this.appearances = new HashMap<String, Appearance>(DEFAULT_APPEARANCES);
+  }
 
-    StreamTokenizer tokenizer = createTokenizer(reader);
-    while (tokenizer.nextToken() != StreamTokenizer.TT_EOF) {
-      switch (tokenizer.ttype) {
-        case StreamTokenizer.TT_WORD :
+  /**
+   * Parses the lines read by the given tokenizer.
+   */
+  private void parseObjectLines(OBJTokenizer tokenizer,
+                                URL baseUrl) throws IOException {
+    while (tokenizer.nextToken() != OBJTokenizer.TT_EOF) {
+      switch (tokenizer.getTokenType()) {
+        case OBJTokenizer.TT_WORD :
           parseObjectLine(tokenizer, baseUrl);
           break;
-        case StreamTokenizer.TT_EOL:
+        case OBJTokenizer.TT_EOL:
           break;
         default :
-          throw new IncorrectFormatException("Unexpected token " + tokenizer.sval
-              + " at row " + tokenizer.lineno());
+          throw new IncorrectFormatException("Unexpected token " + tokenizer.getWord()
+              + " at row " + tokenizer.getLineNumber());
       }
     }
+  }
 
+  /**
+   * Returns the scene created from the parsed objects and frees them.
+   */
+  private Scene createParsedScene() {
     try {
       return createScene();
     } finally {
       this.vertices = null;
       this.textureCoordinates = null;
       this.normals = null;
+      this.vertexIndices = null;
+      this.textureCoordinateIndices = null;
+      this.normalIndices = null;
       this.groups = null;
       this.appearances = null;
     }
@@ -1141,10 +1386,18 @@ public class OBJLoader extends LoaderBase implements Loader {
    * Returns a new scene created from the parsed objects.
    */
   private SceneBase createScene() {
-    Point3f [] vertices = this.vertices.toArray(new Point3f [this.vertices.size()]);
-    TexCoord2f [] textureCoordinates =
-        this.textureCoordinates.toArray(new TexCoord2f [this.textureCoordinates.size()]);
-    Vector3f [] normals = this.normals.toArray(new Vector3f [this.normals.size()]);
+    Point3f [] vertices = new Point3f [this.vertices.size()];
+    for (int i = 0; i < vertices.length; i++) {
+      vertices [i] = new Point3f(this.vertices.get(i, 0), this.vertices.get(i, 1), this.vertices.get(i, 2));
+    }
+    TexCoord2f [] textureCoordinates = new TexCoord2f [this.textureCoordinates.size()];
+    for (int i = 0; i < textureCoordinates.length; i++) {
+      textureCoordinates [i] = new TexCoord2f(this.textureCoordinates.get(i, 0), this.textureCoordinates.get(i, 1));
+    }
+    Vector3f [] normals = new Vector3f [this.normals.size()];
+    for (int i = 0; i < normals.length; i++) {
+      normals [i] = new Vector3f(this.normals.get(i, 0), this.normals.get(i, 1), this.normals.get(i, 2));
+    }
 
     SceneBase scene = new SceneBase();
     BranchGroup sceneRoot = new BranchGroup();
@@ -1289,45 +1542,47 @@ public class OBJLoader extends LoaderBase implements Loader {
   /**
    * Parses the line starting with a word.
    */
-  private void parseObjectLine(StreamTokenizer tokenizer,
+  private void parseObjectLine(OBJTokenizer tokenizer,
                                URL baseUrl) throws IOException {
-    if ("v".equals(tokenizer.sval)) {
+    if (tokenizer.isWord("v")) {
       // Read vertex v x y z
       float x = parseNumber(tokenizer);
       skipBackSlash(tokenizer);
       float y = parseNumber(tokenizer);
       skipBackSlash(tokenizer);
       float z = parseNumber(tokenizer);
-      this.vertices.add(new Point3f(x, y, z));
+      this.vertices.add(x, y, z);
       // Skip next number if it exists
-      if (tokenizer.nextToken() == StreamTokenizer.TT_EOL) {
+      if (tokenizer.nextToken() == OBJTokenizer.TT_EOL) {
         tokenizer.pushBack();
       }
-    } else if ("vn".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("vn")) {
       // Read normal vn x y z
       float x = parseNumber(tokenizer);
       skipBackSlash(tokenizer);
       float y = parseNumber(tokenizer);
       skipBackSlash(tokenizer);
       float z = parseNumber(tokenizer);
-      this.normals.add(new Vector3f(x, y, z));
-    } else if ("vt".equals(tokenizer.sval)) {
+      this.normals.add(x, y, z);
+    } else if (tokenizer.isWord("vt")) {
       // Read texture coordinate vt x y
       //                       or vt x y z
       float x = parseNumber(tokenizer);
       skipBackSlash(tokenizer);
       float y = parseNumber(tokenizer);
-      this.textureCoordinates.add(new TexCoord2f(x, y));
+      this.textureCoordinates.add(x, y);
       // Skip next number if it exists
-      if (tokenizer.nextToken() == StreamTokenizer.TT_EOL) {
+      if (tokenizer.nextToken() == OBJTokenizer.TT_EOL) {
         tokenizer.pushBack();
       }
-    } else if ("l".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("l")) {
       tokenizer.ordinaryChar('/');
       // Read line l v       v       v       ...
       //        or l v/vt    v/vt    v/vt    ...
-      List<Integer> vertexIndices = new ArrayList<Integer>(2);
-      List<Integer> textureCoordinateIndices = new ArrayList<Integer>(2);
+      IndexList vertexIndices = this.vertexIndices;
+      IndexList textureCoordinateIndices = this.textureCoordinateIndices;
+      vertexIndices.clear();
+      textureCoordinateIndices.clear();
       boolean first = true;
       while (true) {
         if (first) {
@@ -1335,7 +1590,7 @@ public class OBJLoader extends LoaderBase implements Loader {
         } else {
           skipBackSlash(tokenizer);
         }
-        if (tokenizer.nextToken() == StreamTokenizer.TT_EOL) {
+        if (tokenizer.nextToken() == OBJTokenizer.TT_EOL) {
           break;
         } else {
           tokenizer.pushBack();
@@ -1370,15 +1625,18 @@ public class OBJLoader extends LoaderBase implements Loader {
         this.currentGroup.addGeometry(new Line(vertexIndices, textureCoordinateIndices,
             this.currentMaterial));
       }
-    } else if ("f".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("f")) {
       tokenizer.ordinaryChar('/');
       // Read face f v       v       v       ...
       //        or f v//vn   v//vn   v//vn   ...
       //        or f v/vt    v/vt    v/vt    ...
       //        or f v/vt/vn v/vt/vn v/vt/vn ...
-      List<Integer> vertexIndices = new ArrayList<Integer>(4);
-      List<Integer> textureCoordinateIndices = new ArrayList<Integer>(4);
-      List<Integer> normalIndices = new ArrayList<Integer>(4);
+      IndexList vertexIndices = this.vertexIndices;
+      IndexList textureCoordinateIndices = this.textureCoordinateIndices;
+      IndexList normalIndices = this.normalIndices;
+      vertexIndices.clear();
+      textureCoordinateIndices.clear();
+      normalIndices.clear();
       boolean first = true;
       while (true) {
         if (first) {
@@ -1386,7 +1644,7 @@ public class OBJLoader extends LoaderBase implements Loader {
         } else {
           skipBackSlash(tokenizer);
         }
-        if (tokenizer.nextToken() == StreamTokenizer.TT_EOL) {
+        if (tokenizer.nextToken() == OBJTokenizer.TT_EOL) {
           break;
         } else {
           tokenizer.pushBack();
@@ -1412,7 +1670,7 @@ public class OBJLoader extends LoaderBase implements Loader {
             textureCoordinateIndices.add(textureCoordinateIndex);
             tokenizer.nextToken();
           }
-          if (tokenizer.ttype == '/') {
+          if (tokenizer.getTokenType() == '/') {
             //    f v//vn
             // or f v/vt/vn : read normal index
             int normalIndex = parseInteger(tokenizer) - 1;
@@ -1441,114 +1699,97 @@ public class OBJLoader extends LoaderBase implements Loader {
         this.currentGroup.addGeometry(new Face(vertexIndices, textureCoordinateIndices, normalIndices,
             this.currentSmooth, this.currentMaterial));
       }
-    } else if ("g".equals(tokenizer.sval)
-               || "o".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("g")
+               || tokenizer.isWord("o")) {
       // Read group name g name
       //  or object name o name
-      if (tokenizer.nextToken() == StreamTokenizer.TT_WORD) {
-        this.currentGroup = this.groups.get(tokenizer.sval);
+      if (tokenizer.nextToken() == OBJTokenizer.TT_WORD) {
+        this.currentGroup = this.groups.get(tokenizer.getWord());
         if (this.currentGroup == null) {
-          this.currentGroup = new Group(tokenizer.sval);
+          this.currentGroup = new Group(tokenizer.getWord());
           this.groups.put(this.currentGroup.getName(), this.currentGroup);
         }
-      } else if (tokenizer.ttype == StreamTokenizer.TT_EOL) {
+      } else if (tokenizer.getTokenType() == OBJTokenizer.TT_EOL) {
         // Use default group
         this.currentGroup = this.groups.get("default");
         tokenizer.pushBack();
       } else {
-        throw new IncorrectFormatException("Expected group or object name at line " + tokenizer.lineno());
+        throw new IncorrectFormatException("Expected group or object name at line " + tokenizer.getLineNumber());
       }
       // Skip other names
-      while (tokenizer.nextToken() == StreamTokenizer.TT_WORD) {
+      while (tokenizer.nextToken() == OBJTokenizer.TT_WORD) {
       }
       tokenizer.pushBack();
-    } else if ("s".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("s")) {
       // Read smoothing group s n
       //                   or s off
-      if (tokenizer.nextToken() == StreamTokenizer.TT_WORD) {
-        this.currentSmooth = !"off".equals(tokenizer.sval);
+      if (tokenizer.nextToken() == OBJTokenizer.TT_WORD) {
+        this.currentSmooth = !tokenizer.isWord("off");
       } else {
-        throw new IncorrectFormatException("Expected smoothing group or off at line " + tokenizer.lineno());
+        throw new IncorrectFormatException("Expected smoothing group or off at line " + tokenizer.getLineNumber());
       }
-    } else if ("usemtl".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("usemtl")) {
       // Read the material name usemtl name (tolerating space in the name)
       tokenizer.wordChars(' ', ' ');
       int usemtlToken = tokenizer.nextToken();
       tokenizer.whitespaceChars(' ', ' ');
-      if (usemtlToken == StreamTokenizer.TT_WORD) {
-        this.currentMaterial = tokenizer.sval;
+      if (usemtlToken == OBJTokenizer.TT_WORD) {
+        this.currentMaterial = tokenizer.getWord();
       } else {
-        throw new IncorrectFormatException("Expected material name at line " + tokenizer.lineno());
+        throw new IncorrectFormatException("Expected material name at line " + tokenizer.getLineNumber());
       }
-    } else if ("mtllib".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("mtllib")) {
       // Read characters following mtllib in case they contain a file name with spaces
       tokenizer.wordChars(' ', ' ');
       int mtllibToken = tokenizer.nextToken();
       tokenizer.whitespaceChars(' ', ' ');
-      if (mtllibToken == StreamTokenizer.TT_WORD) {
-        String mtllibString = tokenizer.sval.trim();
-        // First try to parse space separated library files
-        int validLibCount = 0;
-        String [] libs = mtllibString.split(" ");
-        for (String lib : libs) {
-          if (parseMaterial(lib, baseUrl)) {
-            validLibCount++;
+      if (mtllibToken == OBJTokenizer.TT_WORD) {
+        // Chunks parsed in parallel ignore material libraries already read during pre-scan
+        if (this.appearances != null) {
+          String mtllibString = tokenizer.getWord().trim();
+          // First try to parse space separated library files
+          int validLibCount = 0;
+          String [] libs = mtllibString.split(" ");
+          for (String lib : libs) {
+            if (parseMaterial(lib, baseUrl)) {
+              validLibCount++;
+            }
+          }
+          if (libs.length > 1 && validLibCount == 0) {
+            // Even if not in format specifications, give a chance to file names with spaces
+            parseMaterial(mtllibString, baseUrl);
           }
-        }
-        if (libs.length > 1 && validLibCount == 0) {
-          // Even if not in format specifications, give a chance to file names with spaces
-          parseMaterial(mtllibString, baseUrl);
         }
       } else {
-        throw new IncorrectFormatException("Expected material library at line " + tokenizer.lineno());
+        throw new IncorrectFormatException("Expected material library at line " + tokenizer.getLineNumber());
       }
     } else {
       // Skip other lines (including comment lines starting by #)
       int token;
       do {
         token = tokenizer.nextToken();
-      } while (token != StreamTokenizer.TT_EOL && token != StreamTokenizer.TT_EOF);
+      } while (token != OBJTokenizer.TT_EOL && token != OBJTokenizer.TT_EOF);
       tokenizer.pushBack();
     }
 
     int token = tokenizer.nextToken();
-    if (token != StreamTokenizer.TT_EOL && token != StreamTokenizer.TT_EOF) {
-      throw new IncorrectFormatException("Expected end of line at line " + tokenizer.lineno());
+    if (token != OBJTokenizer.TT_EOL && token != OBJTokenizer.TT_EOF) {
+      throw new IncorrectFormatException("Expected end of line at line " + tokenizer.getLineNumber());
     }
   }
 
-  /**
-   * Returns a new tokenizer for an OBJ or MTL stream.
-   */
-  private static StreamTokenizer createTokenizer(Reader reader) {
-    StreamTokenizer tokenizer = new StreamTokenizer(reader);
-    tokenizer.resetSyntax();
-    tokenizer.eolIsSignificant(true);
-
-    // All printable ASCII characters
-    tokenizer.wordChars('!', '~');
-    // Let's tolerate other ISO-8859-1 characters
-    tokenizer.wordChars(0x80, 0xFF);
-
-    tokenizer.whitespaceChars(' ', ' ');
-    tokenizer.whitespaceChars('\n', '\n');
-    tokenizer.whitespaceChars('\r', '\r');
-    tokenizer.whitespaceChars('\t', '\t');
-    return tokenizer;
-  }
-
   /**
    * Returns the integer contained in the next token.
    */
-  private static int parseInteger(StreamTokenizer tokenizer) throws IOException {
-    if (tokenizer.nextToken() != StreamTokenizer.TT_WORD) {
-      throw new IncorrectFormatException("Expected an integer at line " + tokenizer.lineno());
+  private static int parseInteger(OBJTokenizer tokenizer) throws IOException {
+    if (tokenizer.nextToken() != OBJTokenizer.TT_WORD) {
+      throw new IncorrectFormatException("Expected an integer at line " + tokenizer.getLineNumber());
     } else {
       try {
-        return Integer.parseInt(tokenizer.sval);
+        return tokenizer.getInteger();
       } catch (NumberFormatException ex) {
-        throw new IncorrectFormatException("Found " + tokenizer.sval +
-            " instead of an integer at line " + tokenizer.lineno());
+        throw new IncorrectFormatException("Found " + tokenizer.getWord() +
+            " instead of an integer at line " + tokenizer.getLineNumber());
       }
     }
   }
@@ -1556,15 +1797,15 @@ public class OBJLoader extends LoaderBase implements Loader {
   /**
    * Returns the number contained in the next token.
    */
-  private static float parseNumber(StreamTokenizer tokenizer) throws IOException {
-    if (tokenizer.nextToken() != StreamTokenizer.TT_WORD) {
-      throw new IncorrectFormatException("Expected a number at line " + tokenizer.lineno());
+  private static float parseNumber(OBJTokenizer tokenizer) throws IOException {
+    if (tokenizer.nextToken() != OBJTokenizer.TT_WORD) {
+      throw new IncorrectFormatException("Expected a number at line " + tokenizer.getLineNumber());
     } else {
       try {
-        return Float.parseFloat(tokenizer.sval);
+        return tokenizer.getNumber();
       } catch (NumberFormatException ex) {
-        throw new IncorrectFormatException("Found " + tokenizer.sval +
-            " instead of a number at line " + tokenizer.lineno());
+        throw new IncorrectFormatException("Found " + tokenizer.getWord() +
+            " instead of a number at line " + tokenizer.getLineNumber());
       }
     }
   }
@@ -1572,10 +1813,10 @@ public class OBJLoader extends LoaderBase implements Loader {
   /**
    * Skips the back slash in the next token if it's followed by a new line.
    */
-  private static void skipBackSlash(StreamTokenizer tokenizer) throws IOException {
+  private static void skipBackSlash(OBJTokenizer tokenizer) throws IOException {
     tokenizer.ordinaryChar('\\');
     if (tokenizer.nextToken() == '\\') {
-      if (tokenizer.nextToken() != StreamTokenizer.TT_EOL) {
+      if (tokenizer.nextToken() != OBJTokenizer.TT_EOL) {
         throw new IncorrectFormatException("Expected new line after \\ character");
       }
     } else {
@@ -1600,8 +1841,7 @@ public class OBJLoader extends LoaderBase implements Loader {
 
     if (in != null) {
       try {
-        this.appearances.putAll(parseMaterialStream(
-            new BufferedReader(new InputStreamReader(in, "ISO-8859-1")), baseUrl, this.useCaches));
+        this.appearances.putAll(parseMaterialStream(new OBJTokenizer(in), baseUrl, this.useCaches));
         return true;
       } catch (IOException ex) {
         throw new ParsingErrorException(ex.getMessage());
@@ -1618,25 +1858,24 @@ public class OBJLoader extends LoaderBase implements Loader {
   }
 
   /**
-   * Parses a map of appearances parsed from the given stream.
+   * Parses a map of appearances parsed from the stream read by the given tokenizer.
    */
-  private static Map<String, Appearance> parseMaterialStream(Reader reader,
+  private static Map<String, Appearance> parseMaterialStream(OBJTokenizer tokenizer,
                                                              URL baseUrl,
                                                              Boolean useCaches) throws IOException {
     Map<String, Appearance> appearances = new HashMap<String, Appearance>();
     Appearance              currentAppearance = null;
-    StreamTokenizer tokenizer = createTokenizer(reader);
-    while (tokenizer.nextToken() != StreamTokenizer.TT_EOF) {
-      switch (tokenizer.ttype) {
-        case StreamTokenizer.TT_WORD :
+    while (tokenizer.nextToken() != OBJTokenizer.TT_EOF) {
+      switch (tokenizer.getTokenType()) {
+        case OBJTokenizer.TT_WORD :
           currentAppearance = parseMaterialLine(tokenizer,
               appearances, currentAppearance, baseUrl, useCaches);
           break;
-        case StreamTokenizer.TT_EOL:
+        case OBJTokenizer.TT_EOL:
           break;
         default :
-          throw new IncorrectFormatException("Unexpected token " + tokenizer.sval
-              + " at row " + tokenizer.lineno());
+          throw new IncorrectFormatException("Unexpected token " + tokenizer.getWord()
+              + " at row " + tokenizer.getLineNumber());
       }
     }
     return appearances;
@@ -1645,28 +1884,28 @@ public class OBJLoader extends LoaderBase implements Loader {
   /**
    * Parses the line starting with a word describing a material.
    */
-  private static Appearance parseMaterialLine(StreamTokenizer tokenizer,
+  private static Appearance parseMaterialLine(OBJTokenizer tokenizer,
                                               Map<String, Appearance> appearances,
                                               Appearance currentAppearance,
                                               URL baseUrl,
                                               Boolean useCaches) throws IOException {
-    if ("newmtl".equals(tokenizer.sval)) {
+    if (tokenizer.isWord("newmtl")) {
       // Read material name newmtl name (tolerating space in the name)
       tokenizer.wordChars(' ', ' ');
       int newmtlToken = tokenizer.nextToken();
       tokenizer.whitespaceChars(' ', ' ');
-      if (newmtlToken == StreamTokenizer.TT_WORD) {
+      if (newmtlToken == OBJTokenizer.TT_WORD) {
         currentAppearance = new Appearance();
-        appearances.put(tokenizer.sval, currentAppearance);
+        appearances.put(tokenizer.getWord(), currentAppearance);
         try {
-          currentAppearance.setName(tokenizer.sval);
+          currentAppearance.setName(tokenizer.getWord());
         } catch (NoSuchMethodError ex) {
           // Don't set name with Java 3D < 1.4
         }
       } else {
-        throw new IncorrectFormatException("Expected material name at line " + tokenizer.lineno());
+        throw new IncorrectFormatException("Expected material name at line " + tokenizer.getLineNumber());
       }
-    } else if ("Ka".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("Ka")) {
       // Read ambient color Ka r g b
       Color3f ambientColor = new Color3f(parseNumber(tokenizer),
           parseNumber(tokenizer), parseNumber(tokenizer));
@@ -1674,7 +1913,7 @@ public class OBJLoader extends LoaderBase implements Loader {
         Material material = getMaterial(currentAppearance);
         material.setAmbientColor(ambientColor);
       }
-    } else if ("Kd".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("Kd")) {
       // Read diffuse or emissive color Kd r g b
       Color3f diffuseColor = new Color3f(parseNumber(tokenizer),
           parseNumber(tokenizer), parseNumber(tokenizer));
@@ -1684,7 +1923,7 @@ public class OBJLoader extends LoaderBase implements Loader {
         currentAppearance.setColoringAttributes(
             new ColoringAttributes(diffuseColor, ColoringAttributes.SHADE_GOURAUD));
       }
-    } else if ("Ks".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("Ks")) {
       // Read specular color Ks r g b
       Color3f specularColor = new Color3f(parseNumber(tokenizer),
           parseNumber(tokenizer), parseNumber(tokenizer));
@@ -1697,7 +1936,7 @@ public class OBJLoader extends LoaderBase implements Loader {
           material.setSpecularColor(0, 0, 0);
         }
       }
-    } else if ("Ns".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("Ns")) {
       // Read shininess Ns val  with 0 <= val <= 1000
       float shininess = parseNumber(tokenizer);
       if (currentAppearance != null) {
@@ -1710,24 +1949,24 @@ public class OBJLoader extends LoaderBase implements Loader {
           material.setShininess(1f);
         }
       }
-    } else if ("Ni".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("Ni")) {
       // Read optical density Ni val
       float opticalDensity = parseNumber(tokenizer);
       if (currentAppearance != null) {
         OBJMaterial material = getMaterial(currentAppearance);
         material.setOpticalDensity(opticalDensity);
       }
-    } else if ("sharpness".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("sharpness")) {
       // Read sharpness sharpness val
       float sharpness = parseNumber(tokenizer);
       if (currentAppearance != null) {
         OBJMaterial material = getMaterial(currentAppearance);
         material.setSharpness(sharpness);
       }
-    } else if ("d".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("d")) {
       // Read transparency d val  with 0 <= val <= 1
-      if (tokenizer.nextToken() == StreamTokenizer.TT_WORD) {
-        if ("-halo".equals(tokenizer.sval)) {
+      if (tokenizer.nextToken() == OBJTokenizer.TT_WORD) {
+        if (tokenizer.isWord("-halo")) {
           // Ignore halo transparency
           parseNumber(tokenizer);
         } else {
@@ -1743,9 +1982,9 @@ public class OBJLoader extends LoaderBase implements Loader {
           }
         }
       } else {
-        throw new IncorrectFormatException("Expected transparency factor at line " + tokenizer.lineno());
+        throw new IncorrectFormatException("Expected transparency factor at line " + tokenizer.getLineNumber());
       }
-    } else if ("illum".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("illum")) {
       // Read illumination setting illum n
       int illumination = parseInteger(tokenizer);
       if (currentAppearance != null) {
@@ -1757,13 +1996,13 @@ public class OBJLoader extends LoaderBase implements Loader {
           material.setShininess(1f);
         }
       }
-    } else if ("map_Kd".equals(tokenizer.sval)) {
+    } else if (tokenizer.isWord("map_Kd")) {
       // Read material texture map_Kd name
       // Search last parameter that matches image file name
       String imageFileName = null;
-      while (tokenizer.nextToken() != StreamTokenizer.TT_EOL) {
-        if (tokenizer.ttype == StreamTokenizer.TT_WORD) {
-          imageFileName = tokenizer.sval;
+      while (tokenizer.nextToken() != OBJTokenizer.TT_EOL) {
+        if (tokenizer.getTokenType() == OBJTokenizer.TT_WORD) {
+          imageFileName = tokenizer.getWord();
         }
       }
 
@@ -1820,20 +2059,20 @@ public class OBJLoader extends LoaderBase implements Loader {
           }
         }
       } else {
-        throw new IncorrectFormatException("Expected image file name at line " + tokenizer.lineno());
+        throw new IncorrectFormatException("Expected image file name at line " + tokenizer.getLineNumber());
       }
       tokenizer.pushBack();
     } else {
       int token;
       do {
         token = tokenizer.nextToken();
-      } while (token != StreamTokenizer.TT_EOL && token != StreamTokenizer.TT_EOF);
+      } while (token != OBJTokenizer.TT_EOL && token != OBJTokenizer.TT_EOF);
       tokenizer.pushBack();
     }
 
     int token = tokenizer.nextToken();
-    if (token != StreamTokenizer.TT_EOL && token != StreamTokenizer.TT_EOF) {
-      throw new IncorrectFormatException("Expected end of line at line " + tokenizer.lineno());
+    if (token != OBJTokenizer.TT_EOL && token != OBJTokenizer.TT_EOF) {
+      throw new IncorrectFormatException("Expected end of line at line " + tokenizer.getLineNumber());
     }
 
     return currentAppearance;
@@ -1859,18 +2098,12 @@ public class OBJLoader extends LoaderBase implements Loader {
     private int [] textureCoordinateIndices;
     private String material;
 
-    public Geometry(List<Integer> vertexIndices,
-                    List<Integer> textureCoordinateIndices,
-                    String        material) {
-      this.vertexIndices = new int [vertexIndices.size()];
-      for (int i = 0; i < this.vertexIndices.length; i++) {
-        this.vertexIndices [i] = vertexIndices.get(i);
-      }
+    public Geometry(IndexList vertexIndices,
+                    IndexList textureCoordinateIndices,
+                    String    material) {
+      this.vertexIndices = vertexIndices.toArray();
       if (textureCoordinateIndices.size() != 0) {
-        this.textureCoordinateIndices = new int [textureCoordinateIndices.size()];
-        for (int i = 0; i < this.textureCoordinateIndices.length; i++) {
-          this.textureCoordinateIndices [i] = textureCoordinateIndices.get(i);
-        }
+        this.textureCoordinateIndices = textureCoordinateIndices.toArray();
       }
       this.material = material;
     }
@@ -1897,9 +2130,9 @@ public class OBJLoader extends LoaderBase implements Loader {
    * The coordinates indices of a line.
    */
   private static class Line extends Geometry {
-    public Line(List<Integer> vertexIndices,
-                List<Integer> textureCoordinateIndices,
-                String        material) {
+    public Line(IndexList vertexIndices,
+                IndexList textureCoordinateIndices,
+                String    material) {
       super(vertexIndices, textureCoordinateIndices, material);
     }
   }
@@ -1911,18 +2144,15 @@ public class OBJLoader extends LoaderBase implements Loader {
     private int []  normalIndices;
     private boolean smooth;
 
-    public Face(List<Integer> vertexIndices,
-                List<Integer> textureCoordinateIndices,
-                List<Integer> normalIndices,
-                boolean       smooth,
-                String        material) {
+    public Face(IndexList vertexIndices,
+                IndexList textureCoordinateIndices,
+                IndexList normalIndices,
+                boolean   smooth,
+                String    material) {
       super(vertexIndices, textureCoordinateIndices, material);
       this.smooth = smooth;
       if (normalIndices.size() != 0) {
-        this.normalIndices = new int [normalIndices.size()];
-        for (int i = 0; i < this.normalIndices.length; i++) {
-          this.normalIndices [i] = normalIndices.get(i);
-        }
+        this.normalIndices = normalIndices.toArray();
       }
     }
 
@@ -1964,4 +2194,165 @@ public class OBJLoader extends LoaderBase implements Loader {
       return this.geometries;
     }
   }
+
+  /**
+   * A growing list of coordinates stored in a float array.
+   */
+  private static class CoordinateList {
+    private final int dimension;
+    private float []  coordinates;
+    private int       length;
+
+    public CoordinateList(int dimension) {
+      this.dimension = dimension;
+      this.coordinates = new float [dimension * 256];
+    }
+
+    /**
+     * Creates a list storing its coordinates in the given array, after its <code>size</code> first points.
+     */
+    public CoordinateList(float [] coordinates, int dimension, int size) {
+      this.dimension = dimension;
+      this.coordinates = coordinates;
+      this.length = size * dimension;
+    }
+
+    public void add(float x, float y) {
+      ensureCapacity(2);
+      this.coordinates [this.length++] = x;
+      this.coordinates [this.length++] = y;
+    }
+
+    public void add(float x, float y, float z) {
+      ensureCapacity(3);
+      this.coordinates [this.length++] = x;
+      this.coordinates [this.length++] = y;
+      this.coordinates [this.length++] = z;
+    }
+
+    private void ensureCapacity(int count) {
+      if (this.length + count > this.coordinates.length) {
+        this.coordinates = Arrays.copyOf(this.coordinates, this.coordinates.length * 2);
+      }
+    }
+
+    /**
+     * Returns the count of points in this list.
+     */
+    public int size() {
+      return this.length / this.dimension;
+    }
+
+    public float get(int index, int axis) {
+      return this.coordinates [index * this.dimension + axis];
+    }
+  }
+
+  /**
+   * A chunk of lines of an OBJ content parsed in parallel.
+   */
+  private static class ObjectChunk implements Callable<Map<String, Group>> {
+    private final byte []  content;
+    private final int      start;
+    private int            end;
+    private final URL      baseUrl;
+    private final int      vertexCount;
+    private final int      textureCoordinateCount;
+    private final int      normalCount;
+    private final String   groupName;
+    private final String   material;
+    private final boolean  smooth;
+    private CoordinateList vertices;
+    private CoordinateList textureCoordinates;
+    private CoordinateList normals;
+
+    public ObjectChunk(byte [] content, int start, URL baseUrl,
+                       int vertexCount, int textureCoordinateCount, int normalCount,
+                       String groupName, String material, boolean smooth) {
+      this.content = content;
+      this.start = start;
+      this.end = start;
+      this.baseUrl = baseUrl;
+      this.vertexCount = vertexCount;
+      this.textureCoordinateCount = textureCoordinateCount;
+      this.normalCount = normalCount;
+      this.groupName = groupName;
+      this.material = material;
+      this.smooth = smooth;
+    }
+
+    public void setEnd(int end) {
+      this.end = end;
+    }
+
+    /**
+     * Sets the arrays where this chunk will store its coordinates after the ones of previous chunks.
+     */
+    public void setCoordinates(float [] vertices, float [] textureCoordinates, float [] normals) {
+      this.vertices = new CoordinateList(vertices, 3, this.vertexCount);
+      this.textureCoordinates = new CoordinateList(textureCoordinates, 2, this.textureCoordinateCount);
+      this.normals = new CoordinateList(normals, 3, this.normalCount);
+    }
+
+    /**
+     * Parses the lines of this chunk and returns the groups of the geometries it contains.
+     */
+    public Map<String, Group> call() throws IOException {
+      OBJLoader loader = new OBJLoader();
+      loader.vertices = this.vertices;
+      loader.textureCoordinates = this.textureCoordinates;
+      loader.normals = this.normals;
+      loader.vertexIndices = new IndexList();
+      loader.textureCoordinateIndices = new IndexList();
+      loader.normalIndices = new IndexList();
+      loader.groups = new LinkedHashMap<String, Group>();
+      loader.groups.put("default", new Group("default"));
+      loader.currentGroup = loader.groups.get(this.groupName);
+      if (loader.currentGroup == null) {
+        loader.currentGroup = new Group(this.groupName);
+        loader.groups.put(this.groupName, loader.currentGroup);
+      }
+      loader.currentMaterial = this.material;
+      loader.currentSmooth = this.smooth;
+      loader.parseObjectLines(new OBJTokenizer(this.content, this.start, this.end - this.start), this.baseUrl);
+      return loader.groups;
+    }
+
+    /**
+     * Returns <code>true</code> if this chunk stored as many coordinates as expected
+     * before the given next chunk.
+     */
+    public boolean isParsed(ObjectChunk nextChunk) {
+      return this.vertices.size() == nextChunk.vertexCount
+          && this.textureCoordinates.size() == nextChunk.textureCoordinateCount
+          && this.normals.size() == nextChunk.normalCount;
+    }
+  }
+
+  /**
+   * A reusable list of indices stored in an int array.
+   */
+  private static class IndexList {
+    private int [] indices = new int [8];
+    private int    size;
+
+    public void add(int index) {
+      if (this.size == this.indices.length) {
+        this.indices = Arrays.copyOf(this.indices, this.size * 2);
+      }
+      this.indices [this.size++] = index;
+    }
+
+    public int size() {
+      return this.size;
+    }
+
+    public void clear() {
+      this.size = 0;
+    }
+
+    public int [] toArray() {
+      return Arrays.copyOf(this.indices, this.size);
+    }
+  }
 }
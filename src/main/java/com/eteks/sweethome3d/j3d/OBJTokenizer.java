@@ -0,0 +1,458 @@
+/*
+ * OBJTokenizer.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * A tokenizer of OBJ and MTL streams which splits them in words and end of lines
+ * like a {@link java.io.StreamTokenizer StreamTokenizer} initialized with the syntax of these files.
+ * Words are kept in the buffer of this tokenizer and aren't converted to strings
+ * unless it's requested, in order to parse numbers without creating any object.
+ * Streams of bytes are read as ISO-8859-1 characters.
+ * @author Emmanuel Puybaret
+ */
+class OBJTokenizer {
+  public static final int TT_EOF  = -1;
+  public static final int TT_EOL  = '\n';
+  public static final int TT_WORD = -3;
+
+  private static final int NEED_CHAR = Integer.MAX_VALUE;
+  private static final int SKIP_LF   = Integer.MAX_VALUE - 1;
+
+  private static final byte CT_WHITESPACE = 1;
+  private static final byte CT_WORD       = 2;
+
+  private static final int BUFFER_SIZE = 65536;
+
+  private static final double [] POWERS_OF_TEN = {
+      1E0, 1E1, 1E2, 1E3, 1E4, 1E5, 1E6, 1E7, 1E8, 1E9, 1E10, 1E11,
+      1E12, 1E13, 1E14, 1E15, 1E16, 1E17, 1E18, 1E19, 1E20, 1E21, 1E22};
+
+  private final InputStream in;
+  private final Reader      reader;
+  private byte []           bytes;
+  private char []           buffer;
+  private int               position;
+  private int               limit;
+  private boolean           endOfStream;
+  private final byte []     characterTypes;
+
+  private int               peekChar;
+  private boolean           pushedBack;
+  private int               tokenType;
+  private int               wordStart;
+  private int               wordEnd;
+  private String            word;
+  private int               lineNumber;
+
+  /**
+   * Creates a tokenizer reading the given stream.
+   */
+  public OBJTokenizer(InputStream in) {
+    this(in, null, BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a tokenizer reading the given reader.
+   */
+  public OBJTokenizer(Reader reader) {
+    this(null, reader, BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a tokenizer reading <code>length</code> bytes in the given array
+   * from <code>offset</code> index.
+   */
+  public OBJTokenizer(byte [] content, int offset, int length) {
+    this(new ByteArrayInputStream(content, offset, length), null, Math.max(16, Math.min(BUFFER_SIZE, length)));
+  }
+
+  private OBJTokenizer(InputStream in, Reader reader, int bufferSize) {
+    this.in = in;
+    this.reader = reader;
+    if (in != null) {
+      this.bytes = new byte [bufferSize];
+    }
+    this.buffer = new char [bufferSize];
+    this.characterTypes = new byte [256];
+    this.peekChar = NEED_CHAR;
+    this.tokenType = TT_EOF;
+    this.lineNumber = 1;
+
+    // All printable ASCII characters
+    wordChars('!', '~');
+    // Let's tolerate other ISO-8859-1 characters
+    wordChars(0x80, 0xFF);
+
+    whitespaceChars(' ', ' ');
+    whitespaceChars('\n', '\n');
+    whitespaceChars('\r', '\r');
+    whitespaceChars('\t', '\t');
+  }
+
+  /**
+   * Specifies that the characters between <code>low</code> and <code>high</code> are word characters.
+   * White spaces among these characters are still ignored before a word but belong to the words where they appear.
+   */
+  public void wordChars(int low, int high) {
+    for (int c = low; c <= high; c++) {
+      this.characterTypes [c] |= CT_WORD;
+    }
+  }
+
+  /**
+   * Specifies that the characters between <code>low</code> and <code>high</code> are white spaces.
+   */
+  public void whitespaceChars(int low, int high) {
+    Arrays.fill(this.characterTypes, low, high + 1, CT_WHITESPACE);
+  }
+
+  /**
+   * Specifies that the given character is returned as a token.
+   */
+  public void ordinaryChar(int c) {
+    this.characterTypes [c] = 0;
+  }
+
+  /**
+   * Returns the next token read in stream, which may be {@link #TT_WORD}, {@link #TT_EOL},
+   * {@link #TT_EOF} or an ordinary character.
+   */
+  public int nextToken() throws IOException {
+    if (this.pushedBack) {
+      this.pushedBack = false;
+      return this.tokenType;
+    }
+    this.word = null;
+
+    int c = this.peekChar;
+    if (c < 0) {
+      c = NEED_CHAR;
+    }
+    if (c == SKIP_LF) {
+      c = read();
+      if (c < 0) {
+        return this.tokenType = TT_EOF;
+      }
+      if (c == '\n') {
+        c = NEED_CHAR;
+      }
+    }
+    if (c == NEED_CHAR) {
+      c = read();
+      if (c < 0) {
+        return this.tokenType = TT_EOF;
+      }
+    }
+    this.peekChar = NEED_CHAR;
+
+    int characterType = getCharacterType(c);
+    while ((characterType & CT_WHITESPACE) != 0) {
+      if (c == '\r') {
+        this.lineNumber++;
+        this.peekChar = SKIP_LF;
+        return this.tokenType = TT_EOL;
+      } else if (c == '\n') {
+        this.lineNumber++;
+        return this.tokenType = TT_EOL;
+      }
+      c = read();
+      if (c < 0) {
+        return this.tokenType = TT_EOF;
+      }
+      characterType = getCharacterType(c);
+    }
+
+    if ((characterType & CT_WORD) != 0) {
+      // Keep the word in buffer, its first character being the last read one
+      int start = this.position - 1;
+      while (true) {
+        if (this.position == this.limit) {
+          int length = this.limit - start;
+          if (length == this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, length * 2);
+          }
+          System.arraycopy(this.buffer, start, this.buffer, 0, length);
+          start = 0;
+          this.position =
+          this.limit = length;
+          if (!fill()) {
+            c = -1;
+            break;
+          }
+        }
+        c = this.buffer [this.position++];
+        if ((getCharacterType(c) & CT_WORD) == 0) {
+          break;
+        }
+      }
+      this.wordStart = start;
+      this.wordEnd = c < 0
+          ? this.position
+          : this.position - 1;
+      this.peekChar = c;
+      return this.tokenType = TT_WORD;
+    } else {
+      return this.tokenType = c;
+    }
+  }
+
+  private int getCharacterType(int c) {
+    return c < 256
+        ? this.characterTypes [c]
+        : CT_WORD;
+  }
+
+  /**
+   * Returns the next character read in stream or -1 at its end.
+   */
+  private int read() throws IOException {
+    if (this.position == this.limit) {
+      this.position =
+      this.limit = 0;
+      if (!fill()) {
+        return -1;
+      }
+    }
+    return this.buffer [this.position++];
+  }
+
+  /**
+   * Reads characters in the free space at the end of the buffer,
+   * and returns <code>false</code> if the end of the stream was reached.
+   */
+  private boolean fill() throws IOException {
+    if (this.endOfStream) {
+      return false;
+    }
+    int count;
+    if (this.in != null) {
+      count = this.in.read(this.bytes, 0, Math.min(this.bytes.length, this.buffer.length - this.limit));
+      for (int i = 0; i < count; i++) {
+        this.buffer [this.limit + i] = (char)(this.bytes [i] & 0xFF);
+      }
+    } else {
+      count = this.reader.read(this.buffer, this.limit, this.buffer.length - this.limit);
+    }
+    if (count <= 0) {
+      this.endOfStream = true;
+      return false;
+    } else {
+      this.limit += count;
+      return true;
+    }
+  }
+
+  /**
+   * Causes the next call to {@link #nextToken()} to return the current token.
+   */
+  public void pushBack() {
+    this.pushedBack = true;
+  }
+
+  /**
+   * Returns the type of the current token.
+   */
+  public int getTokenType() {
+    return this.tokenType;
+  }
+
+  /**
+   * Returns the current line number.
+   */
+  public int getLineNumber() {
+    return this.lineNumber;
+  }
+
+  /**
+   * Returns the current word or <code>null</code> if the current token isn't a word.
+   */
+  public String getWord() {
+    if (this.tokenType != TT_WORD) {
+      return null;
+    } else {
+      if (this.word == null) {
+        this.word = new String(this.buffer, this.wordStart, this.wordEnd - this.wordStart);
+      }
+      return this.word;
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if the current token is the given word.
+   */
+  public boolean isWord(String word) {
+    if (this.tokenType != TT_WORD
+        || this.wordEnd - this.wordStart != word.length()) {
+      return false;
+    }
+    for (int i = 0, j = this.wordStart; i < word.length(); i++, j++) {
+      if (this.buffer [j] != word.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the current word parsed as an integer.
+   * @throws NumberFormatException if the current token isn't an integer.
+   */
+  public int getInteger() {
+    return parseInteger(this.buffer, this.wordStart, this.wordEnd);
+  }
+
+  /**
+   * Returns the integer parsed from the characters between <code>start</code> and <code>end</code>,
+   * equal to the value returned by {@link Integer#parseInt(String) Integer.parseInt}.
+   * @throws NumberFormatException if the characters don't represent an integer.
+   */
+  static int parseInteger(char [] characters, int start, int end) {
+    int i = start;
+    boolean negative = false;
+    if (i < end
+        && (characters [i] == '-' || characters [i] == '+')) {
+      negative = characters [i++] == '-';
+    }
+    // Parse short integers without overflow check
+    if (i < end
+        && end - i <= 9) {
+      int value = 0;
+      for ( ; i < end; i++) {
+        int digit = characters [i] - '0';
+        if (digit < 0 || digit > 9) {
+          return Integer.parseInt(new String(characters, start, end - start));
+        }
+        value = value * 10 + digit;
+      }
+      return negative ? -value : value;
+    } else {
+      return Integer.parseInt(new String(characters, start, end - start));
+    }
+  }
+
+  /**
+   * Returns the current word parsed as a float.
+   * @throws NumberFormatException if the current token isn't a number.
+   */
+  public float getNumber() {
+    return parseFloat(this.buffer, this.wordStart, this.wordEnd);
+  }
+
+  /**
+   * Returns the float parsed from the characters between <code>start</code> and <code>end</code>,
+   * equal to the value returned by {@link Float#parseFloat(String) Float.parseFloat}.
+   * @throws NumberFormatException if the characters don't represent a number.
+   */
+  static float parseFloat(char [] characters, int start, int end) {
+    int i = start;
+    boolean negative = false;
+    if (i < end
+        && (characters [i] == '-' || characters [i] == '+')) {
+      negative = characters [i++] == '-';
+    }
+    long mantissa = 0;
+    int  mantissaDigits = 0;
+    int  exponent = 0;
+    boolean digitFound = false;
+    boolean decimalSeparatorFound = false;
+    for ( ; i < end; i++) {
+      char c = characters [i];
+      if (c >= '0' && c <= '9') {
+        digitFound = true;
+        if (mantissa != 0 || c != '0') {
+          if (++mantissaDigits > 18) {
+            return Float.parseFloat(new String(characters, start, end - start));
+          }
+          mantissa = mantissa * 10 + c - '0';
+        }
+        if (decimalSeparatorFound) {
+          exponent--;
+        }
+      } else if (c == '.' && !decimalSeparatorFound) {
+        decimalSeparatorFound = true;
+      } else {
+        break;
+      }
+    }
+    if (i < end
+        && digitFound
+        && (characters [i] == 'e' || characters [i] == 'E')) {
+      i++;
+      boolean negativeExponent = false;
+      if (i < end
+          && (characters [i] == '-' || characters [i] == '+')) {
+        negativeExponent = characters [i++] == '-';
+      }
+      int exponentValue = 0;
+      int exponentStart = i;
+      for ( ; i < end && i - exponentStart < 4; i++) {
+        int digit = characters [i] - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        }
+        exponentValue = exponentValue * 10 + digit;
+      }
+      if (i == exponentStart) {
+        return Float.parseFloat(new String(characters, start, end - start));
+      }
+      exponent += negativeExponent ? -exponentValue : exponentValue;
+    }
+
+    if (i != end
+        || !digitFound) {
+      // Let Float class parse other formats or throw an exception
+      return Float.parseFloat(new String(characters, start, end - start));
+    } else if (mantissa == 0) {
+      return negative ? -0f : 0f;
+    } else if (mantissa <= 1L << 53
+               && exponent >= -22 && exponent <= 22) {
+      // As mantissa and power of ten are exact doubles, the division or multiplication
+      // gives the double closest to the parsed number
+      double value = exponent < 0
+          ? mantissa / POWERS_OF_TEN [-exponent]
+          : mantissa * POWERS_OF_TEN [exponent];
+      // Rounding that double to a float gives the float closest to the parsed number,
+      // unless it's halfway between two floats or out of the range of normalized floats
+      if (value >= Float.MIN_NORMAL
+          && value <= Float.MAX_VALUE
+          && (Double.doubleToRawLongBits(value) & 0x1FFFFFFFL) != 0x10000000L) {
+        return negative ? (float)-value : (float)value;
+      }
+    }
+    return Float.parseFloat(new String(characters, start, end - start));
+  }
+
+  /**
+   * Closes the stream read by this tokenizer.
+   */
+  public void close() throws IOException {
+    if (this.in != null) {
+      this.in.close();
+    } else {
+      this.reader.close();
+    }
+  }
+}
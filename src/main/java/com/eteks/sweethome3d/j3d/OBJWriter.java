@@ -36,9 +36,6 @@ import java.net.JarURLConnection;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
@@ -46,7 +43,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -102,18 +98,17 @@ import javax.vecmath.Vector4f;
  * @author Emmanuel Puybaret
  */
 public class OBJWriter extends FilterWriter {
-  private final NumberFormat defaultNumberFormat = 
-      new DecimalFormat("0.#######", new DecimalFormatSymbols(Locale.US));
-  private final NumberFormat numberFormat;  
-  private final String  header;
+  private final FloatFormatter numberFormatter;
+  private final char []        lineBuffer;
+  private final String         header;
   
   private boolean firstNode = true;
   private String  mtlFileName;
 
   private int shapeIndex = 1;
-  private Map<Point3f, Integer>    vertexIndices = new HashMap<Point3f, Integer>();
-  private Map<Vector3f, Integer>   normalIndices = new HashMap<Vector3f, Integer>();
-  private Map<TexCoord2f, Integer> textureCoordinatesIndices = new HashMap<TexCoord2f, Integer>();  
+  private TupleIndexMap vertexIndices = new TupleIndexMap();
+  private TupleIndexMap normalIndices = new TupleIndexMap();
+  private TupleIndexMap textureCoordinatesIndices = new TupleIndexMap();
   private Map<ComparableAppearance, String> appearances = 
       new LinkedHashMap<ComparableAppearance, String>();
   private Map<Texture, File> textures = new HashMap<Texture, File>();
@@ -212,13 +207,9 @@ public class OBJWriter extends FilterWriter {
   public OBJWriter(Writer out, String header, 
                    int maximumFractionDigits) throws IOException {
     super(out);
-    if (maximumFractionDigits >= 0) {
-      this.numberFormat = NumberFormat.getNumberInstance(Locale.US);
-      this.numberFormat.setMinimumFractionDigits(0);
-      this.numberFormat.setMaximumFractionDigits(maximumFractionDigits);
-    } else {
-      this.numberFormat = null;
-    }
+    this.numberFormatter = new FloatFormatter(maximumFractionDigits);
+    // Buffer able to contain a line v, vn or vt with its 3 numbers
+    this.lineBuffer = new char [3 * this.numberFormatter.getMaximumLength() + 8];
     this.header = header;
     writeHeader(this.out);
   }
@@ -525,14 +516,12 @@ public class OBJWriter extends FilterWriter {
       
       boolean normalsDefined = (geometryArray.getVertexFormat() & GeometryArray.NORMALS) != 0;
       StringBuilder normalsBuffer;
-      List<Vector3f> addedNormals;
       if (normalsDefined) {
         normalsBuffer = new StringBuilder(geometryArray.getVertexCount() * 3 * 10);
-        addedNormals = new ArrayList<Vector3f>();
       } else {
         normalsBuffer = null;
-        addedNormals = null;
       }
+      int normalCount = this.normalIndices.size();
       int [] normalIndexSubstitutes = new int [geometryArray.getVertexCount()];
       int [] oppositeSideNormalIndexSubstitutes;
       if (cullFace == PolygonAttributes.CULL_NONE) {
@@ -564,6 +553,10 @@ public class OBJWriter extends FilterWriter {
       
       checkCurrentThreadIsntInterrupted();
 
+      // Reuse the same tuples for all the vertices
+      Point3f vertex = new Point3f();
+      TexCoord2f textureCoordinates = new TexCoord2f();
+      Vector3f normal = new Vector3f();
       if ((geometryArray.getVertexFormat() & GeometryArray.BY_REFERENCE) != 0) {
         if ((geometryArray.getVertexFormat() & GeometryArray.INTERLEAVED) != 0) {
           float [] vertexData = geometryArray.getInterleavedVertices();
@@ -571,7 +564,7 @@ public class OBJWriter extends FilterWriter {
           // Write vertices coordinates 
           for (int index = 0, i = vertexSize - 3, n = geometryArray.getVertexCount(); 
                index < n; index++, i += vertexSize) {
-            Point3f vertex = new Point3f(vertexData [i], vertexData [i + 1], vertexData [i + 2]);
+            vertex.set(vertexData [i], vertexData [i + 1], vertexData [i + 2]);
             writeVertex(parentTransformations, vertex, index, vertexIndexSubstitutes);
           }
           // Write texture coordinates
@@ -579,15 +572,15 @@ public class OBJWriter extends FilterWriter {
             if (textureCoordinatesGenerated) {
               for (int index = 0, i = vertexSize - 3, n = geometryArray.getVertexCount(); 
                     index < n; index++, i += vertexSize) {
-                TexCoord2f textureCoordinates = generateTextureCoordinates(
-                    vertexData [i], vertexData [i + 1], vertexData [i + 2], planeS, planeT);
+                generateTextureCoordinates(vertexData [i], vertexData [i + 1], vertexData [i + 2], 
+                    planeS, planeT, textureCoordinates);
                 writeTextureCoordinates(textureCoordinates, textureTransform, index, textureCoordinatesIndexSubstitutes);
               }
             }
           } else if (textureCoordinatesDefined) {
             for (int index = 0, i = 0, n = geometryArray.getVertexCount(); 
                   index < n; index++, i += vertexSize) {
-              TexCoord2f textureCoordinates = new TexCoord2f(vertexData [i], vertexData [i + 1]);
+              textureCoordinates.set(vertexData [i], vertexData [i + 1]);
               writeTextureCoordinates(textureCoordinates, textureTransform, index, textureCoordinatesIndexSubstitutes);
             }
           }
@@ -595,16 +588,16 @@ public class OBJWriter extends FilterWriter {
           if (normalsDefined) {
             for (int index = 0, i = vertexSize - 6, n = geometryArray.getVertexCount(); 
                  normalsDefined && index < n; index++, i += vertexSize) {
-              Vector3f normal = new Vector3f(vertexData [i], vertexData [i + 1], vertexData [i + 2]);
+              normal.set(vertexData [i], vertexData [i + 1], vertexData [i + 2]);
               normalsDefined = writeNormal(normalsBuffer, parentTransformations, normal, index, normalIndexSubstitutes, 
-                  oppositeSideNormalIndexSubstitutes, addedNormals, cullFace, backFaceNormalFlip);
+                  oppositeSideNormalIndexSubstitutes, cullFace, backFaceNormalFlip);
             }
           }
         } else {
           // Write vertices coordinates
           float [] vertexCoordinates = geometryArray.getCoordRefFloat();
           for (int index = 0, i = 0, n = geometryArray.getVertexCount(); index < n; index++, i += 3) {
-            Point3f vertex = new Point3f(vertexCoordinates [i], vertexCoordinates [i + 1], vertexCoordinates [i + 2]);
+            vertex.set(vertexCoordinates [i], vertexCoordinates [i + 1], vertexCoordinates [i + 2]);
             writeVertex(parentTransformations, vertex, index,
                 vertexIndexSubstitutes);
           }
@@ -612,15 +605,15 @@ public class OBJWriter extends FilterWriter {
           if (texCoordGeneration != null) {
             if (textureCoordinatesGenerated) {
               for (int index = 0, i = 0, n = geometryArray.getVertexCount(); index < n; index++, i += 3) {
-                TexCoord2f textureCoordinates = generateTextureCoordinates(
-                    vertexCoordinates [i], vertexCoordinates [i + 1], vertexCoordinates [i + 2], planeS, planeT);
+                generateTextureCoordinates(vertexCoordinates [i], vertexCoordinates [i + 1], vertexCoordinates [i + 2], 
+                    planeS, planeT, textureCoordinates);
                 writeTextureCoordinates(textureCoordinates, textureTransform, index, textureCoordinatesIndexSubstitutes);
               }
             }
           } else if (textureCoordinatesDefined) {
             float [] textureCoordinatesArray = geometryArray.getTexCoordRefFloat(0);
             for (int index = 0, i = 0, n = geometryArray.getVertexCount(); index < n; index++, i += 2) {
-              TexCoord2f textureCoordinates = new TexCoord2f(textureCoordinatesArray [i], textureCoordinatesArray [i + 1]);
+              textureCoordinates.set(textureCoordinatesArray [i], textureCoordinatesArray [i + 1]);
               writeTextureCoordinates(textureCoordinates, textureTransform, index, textureCoordinatesIndexSubstitutes);
             }
           }
@@ -628,16 +621,15 @@ public class OBJWriter extends FilterWriter {
           if (normalsDefined) {
             float [] normalCoordinates = geometryArray.getNormalRefFloat();
             for (int index = 0, i = 0, n = geometryArray.getVertexCount(); normalsDefined && index < n; index++, i += 3) {
-              Vector3f normal = new Vector3f(normalCoordinates [i], normalCoordinates [i + 1], normalCoordinates [i + 2]);
+              normal.set(normalCoordinates [i], normalCoordinates [i + 1], normalCoordinates [i + 2]);
               normalsDefined = writeNormal(normalsBuffer, parentTransformations, normal, index, normalIndexSubstitutes, 
-                  oppositeSideNormalIndexSubstitutes, addedNormals, cullFace, backFaceNormalFlip);
+                  oppositeSideNormalIndexSubstitutes, cullFace, backFaceNormalFlip);
             }
           }
         }
       } else {
         // Write vertices coordinates
         for (int index = 0, n = geometryArray.getVertexCount(); index < n; index++) {
-          Point3f vertex = new Point3f();
           geometryArray.getCoordinate(index, vertex);
           writeVertex(parentTransformations, vertex, index,
               vertexIndexSubstitutes);
@@ -646,16 +638,13 @@ public class OBJWriter extends FilterWriter {
         if (texCoordGeneration != null) {
           if (textureCoordinatesGenerated) {
             for (int index = 0, n = geometryArray.getVertexCount(); index < n; index++) {
-              Point3f vertex = new Point3f();
               geometryArray.getCoordinate(index, vertex);
-              TexCoord2f textureCoordinates = generateTextureCoordinates(
-                  vertex.x, vertex.y, vertex.z, planeS, planeT);
+              generateTextureCoordinates(vertex.x, vertex.y, vertex.z, planeS, planeT, textureCoordinates);
               writeTextureCoordinates(textureCoordinates, textureTransform, index, textureCoordinatesIndexSubstitutes);
             }
           }
         } else if (textureCoordinatesDefined) {
           for (int index = 0, n = geometryArray.getVertexCount(); index < n; index++) {
-            TexCoord2f textureCoordinates = new TexCoord2f();
             geometryArray.getTextureCoordinate(0, index, textureCoordinates);
             writeTextureCoordinates(textureCoordinates, textureTransform, index, textureCoordinatesIndexSubstitutes);
           }
@@ -663,10 +652,9 @@ public class OBJWriter extends FilterWriter {
         // Write normals
         if (normalsDefined) {
           for (int index = 0, n = geometryArray.getVertexCount(); normalsDefined && index < n; index++) {
-            Vector3f normal = new Vector3f();
             geometryArray.getNormal(index, normal);
             normalsDefined = writeNormal(normalsBuffer, parentTransformations, normal, index, normalIndexSubstitutes, 
-                oppositeSideNormalIndexSubstitutes, addedNormals, cullFace, backFaceNormalFlip);
+                oppositeSideNormalIndexSubstitutes, cullFace, backFaceNormalFlip);
           }
         }
       }
@@ -674,11 +662,9 @@ public class OBJWriter extends FilterWriter {
       if (normalsDefined) {
         // Write normals only if they all contain valid values 
         out.write(normalsBuffer.toString());
-      } else if (addedNormals != null) {
+      } else if (normalsBuffer != null) {
         // Remove ignored normals
-        for (Vector3f normal : addedNormals) {
-          this.normalIndices.remove(normal);
-        }
+        this.normalIndices.truncate(normalCount);
       }
 
       checkCurrentThreadIsntInterrupted();
@@ -808,13 +794,14 @@ public class OBJWriter extends FilterWriter {
   }
 
   /**
-   * Returns texture coordinates generated with <code>texCoordGeneration</code> computed
-   * as described in <code>TexCoordGeneration</code> javadoc.
+   * Sets <code>textureCoordinates</code> to the texture coordinates generated with <code>texCoordGeneration</code>
+   * computed as described in <code>TexCoordGeneration</code> javadoc.
    */
-  private TexCoord2f generateTextureCoordinates(float x, float y, float z, 
-                                                Vector4f planeS, 
-                                                Vector4f planeT) {
-    return new TexCoord2f(x * planeS.x + y * planeS.y + z * planeS.z + planeS.w, 
+  private void generateTextureCoordinates(float x, float y, float z, 
+                                          Vector4f planeS, 
+                                          Vector4f planeT, 
+                                          TexCoord2f textureCoordinates) {
+    textureCoordinates.set(x * planeS.x + y * planeS.y + z * planeS.z + planeS.w, 
         x * planeT.x + y * planeT.y + z * planeT.z + planeT.w);
   }
 
@@ -826,16 +813,13 @@ public class OBJWriter extends FilterWriter {
                            Point3f vertex, int index,
                            int [] vertexIndexSubstitutes) throws IOException {
     transformationToParent.transform(vertex);
-    Integer vertexIndex = this.vertexIndices.get(vertex);
-    if (vertexIndex == null) {
-      vertexIndexSubstitutes [index] = this.vertexIndices.size() + 1;
-      this.vertexIndices.put(vertex, vertexIndexSubstitutes [index]);
+    int vertexIndex = this.vertexIndices.getIndex(vertex.x, vertex.y, vertex.z);
+    if (vertexIndex == -1) {
+      vertexIndexSubstitutes [index] = this.vertexIndices.add(vertex.x, vertex.y, vertex.z) + 1;
       // Write only once unique vertices
-      this.out.write("v " + format(vertex.x) 
-          + " " + format(vertex.y) 
-          + " " + format(vertex.z) + "\n");
+      this.out.write(this.lineBuffer, 0, formatLine("v ", vertex.x, vertex.y, vertex.z, null));
     } else {
-      vertexIndexSubstitutes [index] = vertexIndex;
+      vertexIndexSubstitutes [index] = vertexIndex + 1;
     }
   }
   
@@ -844,17 +828,29 @@ public class OBJWriter extends FilterWriter {
    * format chosen in constructor.
    */
   private String format(float number) {
-    if (this.numberFormat != null) {
-      return this.numberFormat.format(number);
+    return this.numberFormatter.format(number);
+  }
+
+  /**
+   * Formats in <code>lineBuffer</code> a line starting with the given <code>prefix</code>
+   * followed by 3 numbers, or by 2 numbers and the given <code>suffix</code> if it's not <code>null</code>.
+   * @return the length of the line
+   */
+  private int formatLine(String prefix, float x, float y, float z, String suffix) {
+    int length = prefix.length();
+    prefix.getChars(0, length, this.lineBuffer, 0);
+    length = this.numberFormatter.format(x, this.lineBuffer, length);
+    this.lineBuffer [length++] = ' ';
+    length = this.numberFormatter.format(y, this.lineBuffer, length);
+    if (suffix == null) {
+      this.lineBuffer [length++] = ' ';
+      length = this.numberFormatter.format(z, this.lineBuffer, length);
     } else {
-      String numberString = String.valueOf((float)number);
-      if (numberString.indexOf('E') != -1) {
-        // Avoid scientific notation
-        return this.defaultNumberFormat.format(number);
-      } else {
-        return numberString;
-      }
-    }      
+      suffix.getChars(0, suffix.length(), this.lineBuffer, length);
+      length += suffix.length();
+    }
+    this.lineBuffer [length++] = '\n';
+    return length;
   }
 
   /**
@@ -867,7 +863,6 @@ public class OBJWriter extends FilterWriter {
                               Vector3f normal, int index,
                               int [] normalIndexSubstitutes,
                               int [] oppositeSideNormalIndexSubstitutes, 
-                              List<Vector3f> addedNormals, 
                               int cullFace, boolean backFaceNormalFlip) throws IOException {
     if (Float.isNaN(normal.x) || Float.isNaN(normal.y) || Float.isNaN(normal.z)) {
       return false;
@@ -879,25 +874,20 @@ public class OBJWriter extends FilterWriter {
       transformationToParent.transform(normal);
       normal.normalize();
     }
-    Integer normalIndex = this.normalIndices.get(normal);
-    if (normalIndex == null) {
-      normalIndexSubstitutes [index] = this.normalIndices.size() + 1;
-      this.normalIndices.put(normal, normalIndexSubstitutes [index]);
-      addedNormals.add(normal);
+    int normalIndex = this.normalIndices.getIndex(normal.x, normal.y, normal.z);
+    if (normalIndex == -1) {
+      normalIndexSubstitutes [index] = this.normalIndices.add(normal.x, normal.y, normal.z) + 1;
       // Write only once unique normals
-      normalsBuffer.append("vn " + format(normal.x) 
-          + " " + format(normal.y) 
-          + " " + format(normal.z) + "\n");
+      normalsBuffer.append(this.lineBuffer, 0, formatLine("vn ", normal.x, normal.y, normal.z, null));
     } else {
-      normalIndexSubstitutes [index] = normalIndex;
+      normalIndexSubstitutes [index] = normalIndex + 1;
     }
     
     if (cullFace == PolygonAttributes.CULL_NONE) {
-      Vector3f oppositeNormal = new Vector3f(); 
-      oppositeNormal.negate(normal);
-      // Fill opposite side normal index substitutes array
-      return writeNormal(normalsBuffer, transformationToParent, oppositeNormal, index, oppositeSideNormalIndexSubstitutes, 
-          null, addedNormals, PolygonAttributes.CULL_FRONT, false);
+      // Fill opposite side normal index substitutes array with the negated normal
+      normal.negate();
+      return writeNormal(normalsBuffer, transformationToParent, normal, index, oppositeSideNormalIndexSubstitutes, 
+          null, PolygonAttributes.CULL_FRONT, false);
     } else {
       return true;
     }
@@ -909,20 +899,21 @@ public class OBJWriter extends FilterWriter {
    */
   private void writeTextureCoordinates(TexCoord2f textureCoordinates, Transform3D textureTransform,
                                        int index, int [] textureCoordinatesIndexSubstitutes) throws IOException {
+    float x = textureCoordinates.x;
+    float y = textureCoordinates.y;
     if (textureTransform.getBestType() != Transform3D.IDENTITY) {
-      Point3f transformedCoordinates = new Point3f(textureCoordinates.x, textureCoordinates.y, 0);
+      Point3f transformedCoordinates = new Point3f(x, y, 0);
       textureTransform.transform(transformedCoordinates);
-      textureCoordinates = new TexCoord2f(transformedCoordinates.x, transformedCoordinates.y);
+      x = transformedCoordinates.x;
+      y = transformedCoordinates.y;
     }
-    Integer textureCoordinatesIndex = this.textureCoordinatesIndices.get(textureCoordinates);
-    if (textureCoordinatesIndex == null) {
-      textureCoordinatesIndexSubstitutes [index] = this.textureCoordinatesIndices.size() + 1;
-      this.textureCoordinatesIndices.put(textureCoordinates, textureCoordinatesIndexSubstitutes [index]);
+    int textureCoordinatesIndex = this.textureCoordinatesIndices.getIndex(x, y, 0);
+    if (textureCoordinatesIndex == -1) {
+      textureCoordinatesIndexSubstitutes [index] = this.textureCoordinatesIndices.add(x, y, 0) + 1;
       // Write only once unique texture coordinates
-      this.out.write("vt " + format(textureCoordinates.x) 
-          + " " + format(textureCoordinates.y) + " 0\n");
+      this.out.write(this.lineBuffer, 0, formatLine("vt ", x, y, 0, " 0"));
     } else {
-      textureCoordinatesIndexSubstitutes [index] = textureCoordinatesIndex;
+      textureCoordinatesIndexSubstitutes [index] = textureCoordinatesIndex + 1;
     }
   }
 
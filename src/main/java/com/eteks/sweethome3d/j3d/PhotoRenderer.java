@@ -130,10 +130,10 @@ import com.eteks.sweethome3d.viewcontroller.Object3DFactory;
 public class PhotoRenderer {
   public enum Quality {LOW, HIGH}
 
-  private final Home home;
+  private Home home;
   private final Object3DFactory object3dFactory;
   private final Quality quality;
-  private final Compass compass;
+  private Compass compass;
   private final int homeLightColor;
 
   private final SunflowAPI sunflow;
@@ -141,6 +141,7 @@ public class PhotoRenderer {
   private boolean useSunskyLight;
   private String  sunSkyLightName;
   private String  sunLightName;
+  private String [] groundNames;
   private final Map<Selectable, String []>         homeItemsNames     = new HashMap<Selectable, String []>();
   private final Map<TransparentTextureKey, String> textureImagesCache = new HashMap<TransparentTextureKey, String>();
   private Thread renderingThread;
@@ -172,6 +173,24 @@ public class PhotoRenderer {
   public PhotoRenderer(Home home,
                        Object3DFactory object3dFactory,
                        Quality quality) throws IOException {
+    this(home, object3dFactory, quality, 0);
+  }
+
+  /**
+   * Creates an instance ready to render the scene matching the given <code>home</code>.
+   * @param home the home to render
+   * @param object3dFactory a factory able to create 3D objects from <code>home</code> items.
+   *            The {@link Object3DFactory#createObject3D(Home, Selectable, boolean) createObject3D} of
+   *            this factory is expected to return an instance of {@link Node} in current implementation.
+   * @param threadCount the count of threads used to render an image,
+   *            or 0 to use as many threads as available processors
+   * @throws IOException if texture image files required in the scene couldn't be created.
+   * @since 6.1
+   */
+  public PhotoRenderer(Home home,
+                       Object3DFactory object3dFactory,
+                       Quality quality,
+                       int threadCount) throws IOException {
     this.home = home;
     this.compass = home.getCompass();
     this.quality = quality;
@@ -216,13 +235,7 @@ public class PhotoRenderer {
         }
       }
     }
-    // Create a 3D ground large enough to join the sky at the horizon
-    Ground3D ground = new Ground3D(home, -1E7f / 2, -1E7f / 2, 1E7f, 1E7f, true);
-    Transform3D translation = new Transform3D();
-    translation.setTranslation(new Vector3f(0, -0.1f, 0));
-    TransformGroup groundTransformGroup = new TransformGroup(translation);
-    groundTransformGroup.addChild(ground);
-    exportNode(groundTransformGroup, true, silk);
+    exportGround(silk);
     homeEnvironment.setSubpartSizeUnderLight(subpartSize);
 
     HomeTexture skyTexture = homeEnvironment.getSkyTexture();
@@ -410,9 +423,24 @@ public class PhotoRenderer {
     // Use a spiral computing
     this.sunflow.parameter("bucket.size", 64);
     this.sunflow.parameter("bucket.order", "spiral");
+    if (threadCount > 0) {
+      this.sunflow.parameter("threads", threadCount);
+    }
     this.sunflow.options(SunflowAPI.DEFAULT_OPTIONS);
   }
 
+  /**
+   * Exports a 3D ground large enough to join the sky at the horizon.
+   */
+  private void exportGround(boolean silk) throws IOException {
+    Ground3D ground = new Ground3D(this.home, -1E7f / 2, -1E7f / 2, 1E7f, 1E7f, true);
+    Transform3D translation = new Transform3D();
+    translation.setTranslation(new Vector3f(0, -0.1f, 0));
+    TransformGroup groundTransformGroup = new TransformGroup(translation);
+    groundTransformGroup.addChild(ground);
+    this.groundNames = exportNode(groundTransformGroup, true, silk);
+  }
+
   /**
    * Sets the transformations applied to <code>node</code> children.
    */
@@ -680,6 +708,76 @@ public class PhotoRenderer {
     this.sunflow.render(SunflowAPI.DEFAULT_OPTIONS, new BufferedImageDisplay(image, observer));
   }
 
+  /**
+   * Updates the scene of this renderer to match the given <code>home</code>, usually
+   * a more recent clone of the home this renderer was created or last updated with.
+   * The items of <code>home</code> mapped to an item of the previous home in <code>unchangedItems</code>
+   * keep the objects exported for that item, the other viewable items and the ground are exported again,
+   * and the objects of the previous items which aren't kept are removed from the scene.
+   * As the lights and the sky of the scene aren't updated, the lights, the environment and
+   * the type of camera of <code>home</code> should be the same as the ones of the previous home.
+   * @param home the home to render
+   * @param unchangedItems a map of the items of <code>home</code> which didn't change
+   *            to the matching items of the previous home
+   * @throws IOException if texture image files required in the scene couldn't be created.
+   * @since 6.1
+   */
+  public void updateHome(Home home, Map<? extends Selectable, ? extends Selectable> unchangedItems) throws IOException {
+    this.renderingThread = Thread.currentThread();
+    Map<Selectable, String []> previousItemsNames = new HashMap<Selectable, String []>(this.homeItemsNames);
+    this.homeItemsNames.clear();
+    this.home = home;
+    this.compass = home.getCompass();
+
+    boolean silk = isSilkShaderUsed(this.quality);
+    HomeEnvironment homeEnvironment = home.getEnvironment();
+    float subpartSize = homeEnvironment.getSubpartSizeUnderLight();
+    // Dividing walls and rooms surface in subparts is useless
+    homeEnvironment.setSubpartSizeUnderLight(0);
+    for (Selectable item : home.getSelectableViewableItems()) {
+      if (item instanceof HomeFurnitureGroup) {
+        for (HomePieceOfFurniture piece : ((HomeFurnitureGroup)item).getAllFurniture()) {
+          if (!(piece instanceof HomeFurnitureGroup)) {
+            updateItem(piece, unchangedItems.get(piece), previousItemsNames, silk);
+          }
+        }
+      } else {
+        updateItem(item, unchangedItems.get(item), previousItemsNames, silk);
+      }
+    }
+    // Remove from SunFlow the objects of previous items that weren't kept
+    for (String [] itemNames : previousItemsNames.values()) {
+      for (String name : itemNames) {
+        this.sunflow.remove(name);
+      }
+    }
+    // Export ground again since it may depend on rooms
+    for (String name : this.groundNames) {
+      this.sunflow.remove(name);
+    }
+    exportGround(silk);
+    homeEnvironment.setSubpartSizeUnderLight(subpartSize);
+  }
+
+  /**
+   * Keeps the objects exported for the <code>previousItem</code> matching the given <code>item</code>
+   * or exports them if there's no such item.
+   */
+  private void updateItem(Selectable item, Selectable previousItem,
+                          Map<Selectable, String []> previousItemsNames, boolean silk) throws IOException {
+    String [] itemNames = previousItem != null
+        ? previousItemsNames.remove(previousItem)
+        : null;
+    if (itemNames == null) {
+      Node node = (Node)this.object3dFactory.createObject3D(this.home, item, true);
+      if (node == null) {
+        return;
+      }
+      itemNames = exportNode(node, item instanceof Wall || item instanceof Room, silk);
+    }
+    this.homeItemsNames.put(item, itemNames);
+  }
+
   /**
    * Stops the rendering process.
    */
@@ -34,6 +34,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
@@ -55,6 +56,8 @@ import com.sun.j3d.utils.image.TextureLoader;
  * @author Emmanuel Puybaret
  */
 public class TextureManager {
+  private static final int      SHARED_TEXTURES_STRIPE_COUNT = 16;
+
   private static TextureManager instance;
   // Image used if an image content couldn't be loaded
   private final Texture         errorTexture;
@@ -64,6 +67,8 @@ public class TextureManager {
   private final Map<Content, List<ComparableTextureAngleTuple>> contentTextures;
   // Map storing loaded textures used to compare their images
   private final Map<Texture, ComparableTexture>                 textures;
+  // Shared textures indexed by the hash code of their image in stripes locked independently
+  private final SharedTexturesStripe []                         sharedTexturesStripes;
   // Map storing model textures being loaded
   private Map<RotatedContentKey, List<TextureObserver>>         loadingTextureObservers;
   // Executor used to load images
@@ -74,6 +79,10 @@ public class TextureManager {
     this.waitTexture = getColoredImageTexture(Color.WHITE);
     this.contentTextures = new WeakHashMap<Content, List<ComparableTextureAngleTuple>>();
     this.textures = new WeakHashMap<Texture, ComparableTexture>();
+    this.sharedTexturesStripes = new SharedTexturesStripe [SHARED_TEXTURES_STRIPE_COUNT];
+    for (int i = 0; i < this.sharedTexturesStripes.length; i++) {
+      this.sharedTexturesStripes [i] = new SharedTexturesStripe();
+    }
     this.loadingTextureObservers = new HashMap<RotatedContentKey, List<TextureObserver>>();
   }
 
@@ -95,6 +104,9 @@ public class TextureManager {
       this.texturesLoader.shutdownNow();
       this.texturesLoader = null;
     }
+    for (SharedTexturesStripe stripe : this.sharedTexturesStripes) {
+      stripe.clear();
+    }
     synchronized (this.textures) {
       this.contentTextures.clear();
       this.textures.clear();
@@ -313,21 +325,13 @@ public class TextureManager {
                                final float   angle,
                                final Content content) {
     ComparableTexture textureData = new ComparableTexture(texture);
-    Texture sharedTexture = null;
+    // Compute the hash code of texture image out of any lock 
+    int hashCode = textureData.getImageBitsHashCode();
+    SharedTexturesStripe stripe = this.sharedTexturesStripes [(hashCode ^ (hashCode >>> 16)) & (SHARED_TEXTURES_STRIPE_COUNT - 1)];
+    // Search among the textures with the same hash code an existing texture to share unique texture
+    textureData = stripe.shareTexture(textureData);
+    Texture sharedTexture = textureData.getTexture();
     synchronized (this.textures) { // Use one mutex for both maps
-      // Search which existing key matches texture key to share unique texture
-      for (Map.Entry<Texture, ComparableTexture> entry : this.textures.entrySet()) {
-        if (textureData.equalsImage(entry.getValue())) {
-          sharedTexture = entry.getKey();
-          textureData = entry.getValue(); 
-          break;
-        }
-      }
-      if (sharedTexture == null) {
-        sharedTexture = texture;
-        setSharedTextureAttributesAndCapabilities(sharedTexture);
-        this.textures.put(sharedTexture, textureData);
-      }
       if (content != null) {
         List<ComparableTextureAngleTuple> contentTexturesList = this.contentTextures.get(content);
         if (contentTexturesList == null) {
@@ -340,6 +344,48 @@ public class TextureManager {
     return sharedTexture;
   }
 
+  /**
+   * Shared textures with image hash codes matching a stripe.
+   */
+  private class SharedTexturesStripe {
+    private final Map<Integer, List<WeakReference<ComparableTexture>>> hashCodeTextures = 
+        new HashMap<Integer, List<WeakReference<ComparableTexture>>>();
+
+    /**
+     * Returns either the given <code>textureData</code> once it's shared 
+     * or the shared texture data with the same image.
+     */
+    public synchronized ComparableTexture shareTexture(ComparableTexture textureData) {
+      Integer hashCode = textureData.getImageBitsHashCode();
+      List<WeakReference<ComparableTexture>> sameHashCodeTextures = this.hashCodeTextures.get(hashCode);
+      if (sameHashCodeTextures == null) {
+        sameHashCodeTextures = new ArrayList<WeakReference<ComparableTexture>>(1);
+        this.hashCodeTextures.put(hashCode, sameHashCodeTextures);
+      } else {
+        // Compare images only for textures with the same hash code
+        for (Iterator<WeakReference<ComparableTexture>> it = sameHashCodeTextures.iterator(); it.hasNext(); ) {
+          ComparableTexture sharedTextureData = it.next().get();
+          if (sharedTextureData == null) {
+            it.remove();
+          } else if (textureData.equalsImage(sharedTextureData)) {
+            return sharedTextureData;
+          }
+        }
+      }
+      setSharedTextureAttributesAndCapabilities(textureData.getTexture());
+      synchronized (textures) {
+        // Let textures map keep texture data as long as its texture is used
+        textures.put(textureData.getTexture(), textureData);
+      }
+      sameHashCodeTextures.add(new WeakReference<ComparableTexture>(textureData));
+      return textureData;
+    }
+
+    public synchronized void clear() {
+      this.hashCodeTextures.clear();
+    }
+  }
+
   /**
    * Sets the attributes and capabilities of a shared <code>texture</code>.
    */
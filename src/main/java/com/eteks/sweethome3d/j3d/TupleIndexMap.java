@@ -0,0 +1,140 @@
+/*
+ * TupleIndexMap.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import java.util.Arrays;
+
+/**
+ * A map of float triples to their index in the order they were added,
+ * stored in an open addressing hash table to avoid creating a key object per tuple.
+ * Coordinates are compared with <code>==</code> operator like in <code>Tuple3f</code>
+ * class, so <code>-0</code> is equal to <code>0</code> and tuples containing
+ * <code>NaN</code> are never found.
+ * @author Emmanuel Puybaret
+ */
+class TupleIndexMap {
+  private float [] tuples;
+  // Index + 1 of the tuples stored at each slot or 0 for an empty slot
+  private int []   slots;
+  private int      size;
+
+  public TupleIndexMap() {
+    this.tuples = new float [3 * 64];
+    this.slots = new int [128];
+  }
+
+  /**
+   * Returns the index of the tuple (<code>x</code>, <code>y</code>, <code>z</code>)
+   * or -1 if it wasn't added to this map.
+   */
+  public int getIndex(float x, float y, float z) {
+    int mask = this.slots.length - 1;
+    for (int slot = getHash(x, y, z) & mask; this.slots [slot] != 0; slot = (slot + 1) & mask) {
+      int index = this.slots [slot] - 1;
+      int i = index * 3;
+      if (this.tuples [i] == x
+          && this.tuples [i + 1] == y
+          && this.tuples [i + 2] == z) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Adds the tuple (<code>x</code>, <code>y</code>, <code>z</code>) to this map
+   * and returns its index. The tuple shouldn't exist in this map yet.
+   */
+  public int add(float x, float y, float z) {
+    if ((this.size + 1) * 2 > this.slots.length) {
+      rehash(this.slots.length * 2);
+    }
+    int index = this.size++;
+    int i = index * 3;
+    if (i + 3 > this.tuples.length) {
+      this.tuples = Arrays.copyOf(this.tuples, this.tuples.length * 2);
+    }
+    this.tuples [i] = x;
+    this.tuples [i + 1] = y;
+    this.tuples [i + 2] = z;
+    int mask = this.slots.length - 1;
+    int slot = getHash(x, y, z) & mask;
+    while (this.slots [slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    this.slots [slot] = index + 1;
+    return index;
+  }
+
+  /**
+   * Returns the count of tuples in this map.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Removes the tuples added to this map after its size was equal to <code>size</code>.
+   */
+  public void truncate(int size) {
+    int mask = this.slots.length - 1;
+    while (this.size > size) {
+      int index = --this.size;
+      int i = index * 3;
+      int slot = getHash(this.tuples [i], this.tuples [i + 1], this.tuples [i + 2]) & mask;
+      while (this.slots [slot] != index + 1) {
+        slot = (slot + 1) & mask;
+      }
+      // Shift back the next tuples of the probe sequence to keep it without hole
+      for (int next = (slot + 1) & mask; this.slots [next] != 0; next = (next + 1) & mask) {
+        int j = (this.slots [next] - 1) * 3;
+        int nextHomeSlot = getHash(this.tuples [j], this.tuples [j + 1], this.tuples [j + 2]) & mask;
+        if (((next - nextHomeSlot) & mask) >= ((next - slot) & mask)) {
+          this.slots [slot] = this.slots [next];
+          slot = next;
+        }
+      }
+      this.slots [slot] = 0;
+    }
+  }
+
+  private void rehash(int capacity) {
+    int [] slots = new int [capacity];
+    int mask = capacity - 1;
+    for (int index = 0; index < this.size; index++) {
+      int i = index * 3;
+      int slot = getHash(this.tuples [i], this.tuples [i + 1], this.tuples [i + 2]) & mask;
+      while (slots [slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots [slot] = index + 1;
+    }
+    this.slots = slots;
+  }
+
+  private static int getHash(float x, float y, float z) {
+    // Add 0 to coordinates to get the same hash for -0 and 0
+    int hash = Float.floatToIntBits(x + 0f);
+    hash = hash * 31 + Float.floatToIntBits(y + 0f);
+    hash = hash * 31 + Float.floatToIntBits(z + 0f);
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -1020,7 +1020,13 @@ public class CatalogPieceOfFurniture implements Comparable<CatalogPieceOfFurnitu
    * @since 4.2  
    */
   public boolean matchesFilter(String filter) {
-    byte [][] filterCriteriaCollationKeys = getFilterCollationKeys(filter);
+    return matchesFilterCollationKeys(getFilterCollationKeys(filter));
+  }
+
+  /**
+   * Returns <code>true</code> if this piece matches all the given filter criteria collation keys.
+   */
+  boolean matchesFilterCollationKeys(byte [][] filterCriteriaCollationKeys) {
     int checkedCriteria = 0;
     if (filterCriteriaCollationKeys.length > 0) {
       byte [] furnitureCollationKey = getPieceOfFurnitureCollationKey();
@@ -1038,7 +1044,7 @@ public class CatalogPieceOfFurniture implements Comparable<CatalogPieceOfFurnitu
   /**
    * Returns the collation key bytes of each criterion in the given <code>filter</code>.
    */
-  private byte [][] getFilterCollationKeys(String filter) {
+  static byte [][] getFilterCollationKeys(String filter) {
     if (filter.length() == 0) {
       return EMPTY_CRITERIA;
     }
@@ -1065,7 +1071,7 @@ public class CatalogPieceOfFurniture implements Comparable<CatalogPieceOfFurnitu
   /**
    * Returns the collation key bytes used to compare the given <code>piece</code> with filter.
    */
-  private byte [] getPieceOfFurnitureCollationKey() {
+  byte [] getPieceOfFurnitureCollationKey() {
     if (this.filterCollationKey == null) {
       // Prepare filter string collation key  
       // (collect the name, category, creator, description and tags of each piece)
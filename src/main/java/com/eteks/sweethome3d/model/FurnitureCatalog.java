@@ -31,6 +31,16 @@ public class FurnitureCatalog {
   private List<FurnitureCategory>       categories = new ArrayList<FurnitureCategory>();
   private final CollectionChangeSupport<CatalogPieceOfFurniture> furnitureChangeSupport = 
                              new CollectionChangeSupport<CatalogPieceOfFurniture>(this);
+  private final FurnitureCatalogIndex   furnitureIndex = new FurnitureCatalogIndex(this);
+
+  public FurnitureCatalog() {
+    // Update furniture index once furniture changes
+    addFurnitureListener(new CollectionListener<CatalogPieceOfFurniture>() {
+        public void collectionChanged(CollectionEvent<CatalogPieceOfFurniture> ev) {
+          furnitureIndex.invalidate();
+        }
+      });
+  }
 
   /**
    * Returns the categories list sorted by name.
@@ -54,6 +64,19 @@ public class FurnitureCatalog {
     return this.categories.get(index);
   }
 
+  /**
+   * Returns the pieces of the given <code>category</code> which match the <code>filter</code> text,
+   * sorted in their natural order. The pieces of the catalog are indexed to find them faster
+   * than calling {@link CatalogPieceOfFurniture#matchesFilter(String) matchesFilter} on each piece.
+   * @param category the category of the returned pieces or <code>null</code> to search in all categories
+   * @param filter   the searched text
+   * @return an unmodifiable list of furniture
+   * @since 6.1
+   */
+  public List<CatalogPieceOfFurniture> getFilteredFurniture(FurnitureCategory category, String filter) {
+    return Collections.unmodifiableList(this.furnitureIndex.getFurniture(category, filter));
+  }
+
   /**
    * Adds the furniture <code>listener</code> in parameter to this catalog.
    */
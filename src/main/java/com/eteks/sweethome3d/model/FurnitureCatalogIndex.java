@@ -0,0 +1,191 @@
+/*
+ * FurnitureCatalogIndex.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An inverted index of the pieces of a furniture catalog, used to search the pieces
+ * matching a filter text. Pieces are listed in their sorted order, and each sequence of 3 bytes
+ * found in the collation key of a piece is mapped to the sorted indices of the pieces
+ * which contain it. The pieces containing all the sequences of a criterion are then
+ * found by intersecting their lists, without sorting again the result.
+ * @author Emmanuel Puybaret
+ */
+class FurnitureCatalogIndex {
+  private static final int GRAM_LENGTH = 3;
+
+  private final FurnitureCatalog     catalog;
+  private CatalogPieceOfFurniture [] sortedFurniture;
+  private Map<Integer, int []>       gramFurniture;
+
+  public FurnitureCatalogIndex(FurnitureCatalog catalog) {
+    this.catalog = catalog;
+  }
+
+  /**
+   * Notifies this index that the furniture of its catalog changed.
+   */
+  public synchronized void invalidate() {
+    this.sortedFurniture = null;
+    this.gramFurniture = null;
+  }
+
+  /**
+   * Returns the pieces of the given <code>category</code> matching the <code>filter</code> text,
+   * sorted in their natural order.
+   * @param category the category of the returned pieces or <code>null</code> to search all the catalog
+   * @param filter   the searched text
+   * @see CatalogPieceOfFurniture#matchesFilter(String)
+   */
+  public synchronized List<CatalogPieceOfFurniture> getFurniture(FurnitureCategory category, String filter) {
+    update();
+    byte [][] filterCriteriaCollationKeys = CatalogPieceOfFurniture.getFilterCollationKeys(filter);
+    if (filterCriteriaCollationKeys.length == 0
+        && category == null) {
+      return Arrays.asList(this.sortedFurniture);
+    }
+
+    int [] candidates = null;
+    for (byte [] criterionCollationKey : filterCriteriaCollationKeys) {
+      // Ignore the last 4 bytes of the collator key
+      for (int i = 0, n = criterionCollationKey.length - 4 - GRAM_LENGTH; i <= n; i++) {
+        int [] gramPieces = this.gramFurniture.get(getGram(criterionCollationKey, i));
+        if (gramPieces == null) {
+          return Collections.emptyList();
+        } else if (candidates == null) {
+          candidates = gramPieces;
+        } else {
+          candidates = intersect(candidates, gramPieces);
+          if (candidates.length == 0) {
+            return Collections.emptyList();
+          }
+        }
+      }
+    }
+
+    List<CatalogPieceOfFurniture> furniture = new ArrayList<CatalogPieceOfFurniture>();
+    if (candidates == null) {
+      // Check all pieces when criteria are missing or too short
+      for (CatalogPieceOfFurniture piece : this.sortedFurniture) {
+        if ((category == null
+              || category.equals(piece.getCategory()))
+            && piece.matchesFilterCollationKeys(filterCriteriaCollationKeys)) {
+          furniture.add(piece);
+        }
+      }
+    } else {
+      for (int index : candidates) {
+        CatalogPieceOfFurniture piece = this.sortedFurniture [index];
+        if ((category == null
+              || category.equals(piece.getCategory()))
+            && piece.matchesFilterCollationKeys(filterCriteriaCollationKeys)) {
+          furniture.add(piece);
+        }
+      }
+    }
+    return furniture;
+  }
+
+  /**
+   * Builds the index of the catalog furniture if it was invalidated.
+   */
+  private void update() {
+    if (this.sortedFurniture == null) {
+      List<CatalogPieceOfFurniture> furniture = new ArrayList<CatalogPieceOfFurniture>();
+      for (FurnitureCategory category : this.catalog.getCategories()) {
+        furniture.addAll(category.getFurniture());
+      }
+      Collections.sort(furniture);
+      CatalogPieceOfFurniture [] sortedFurniture = furniture.toArray(new CatalogPieceOfFurniture [furniture.size()]);
+
+      Map<Integer, GramPieces> gramPieces = new HashMap<Integer, GramPieces>();
+      for (int i = 0; i < sortedFurniture.length; i++) {
+        byte [] collationKey = sortedFurniture [i].getPieceOfFurnitureCollationKey();
+        for (int j = 0, n = collationKey.length - 4 - GRAM_LENGTH; j <= n; j++) {
+          Integer gram = getGram(collationKey, j);
+          GramPieces pieces = gramPieces.get(gram);
+          if (pieces == null) {
+            pieces = new GramPieces();
+            gramPieces.put(gram, pieces);
+          }
+          pieces.add(i);
+        }
+      }
+
+      this.gramFurniture = new HashMap<Integer, int []>(gramPieces.size() * 4 / 3 + 1);
+      for (Map.Entry<Integer, GramPieces> entry : gramPieces.entrySet()) {
+        GramPieces pieces = entry.getValue();
+        this.gramFurniture.put(entry.getKey(), Arrays.copyOf(pieces.indices, pieces.count));
+      }
+      this.sortedFurniture = sortedFurniture;
+    }
+  }
+
+  private static Integer getGram(byte [] collationKey, int index) {
+    return ((collationKey [index] & 0xFF) << 16)
+        | ((collationKey [index + 1] & 0xFF) << 8)
+        | (collationKey [index + 2] & 0xFF);
+  }
+
+  /**
+   * Returns the values common to the given sorted arrays.
+   */
+  private static int [] intersect(int [] indices1, int [] indices2) {
+    int [] intersection = new int [Math.min(indices1.length, indices2.length)];
+    int count = 0;
+    for (int i = 0, j = 0; i < indices1.length && j < indices2.length; ) {
+      if (indices1 [i] < indices2 [j]) {
+        i++;
+      } else if (indices1 [i] > indices2 [j]) {
+        j++;
+      } else {
+        intersection [count++] = indices1 [i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(intersection, count);
+  }
+
+  /**
+   * The growing list of the sorted indices of the pieces containing a sequence of bytes.
+   */
+  private static class GramPieces {
+    private int [] indices = new int [4];
+    private int    count;
+
+    public void add(int index) {
+      // Ignore the index of a piece containing the same sequence more than once
+      if (this.count == 0
+          || this.indices [this.count - 1] != index) {
+        if (this.count == this.indices.length) {
+          this.indices = Arrays.copyOf(this.indices, this.count * 2);
+        }
+        this.indices [this.count++] = index;
+      }
+    }
+  }
+}
@@ -50,7 +50,6 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
 import javax.swing.AbstractAction;
@@ -841,18 +840,7 @@ public class FurnitureCatalogListPanel extends JPanel implements View {
 
     private void checkFurnitureList() {
       if (this.furniture == null) {
-        this.furniture = new ArrayList<CatalogPieceOfFurniture>();
-        this.furniture.clear();
-        for (FurnitureCategory category : this.catalog.getCategories()) {
-          for (CatalogPieceOfFurniture piece : category.getFurniture()) {
-            if ((this.filterCategory == null
-                  || piece.getCategory().equals(this.filterCategory))
-                && piece.matchesFilter(this.filterText)) {
-              furniture.add(piece);
-            }
-          }
-        }
-        Collections.sort(this.furniture);
+        this.furniture = this.catalog.getFilteredFurniture(this.filterCategory, this.filterText);
       }
     }
 
@@ -0,0 +1,324 @@
+/*
+ * IconCache.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.swing;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A cache on disk of the icons scaled at a given height, identified by the digest of their content.
+ * Icons are stored as raw ARGB pixels appended to a single pack file, read through
+ * a memory mapped buffer, which avoids decoding and scaling their images again during next sessions.
+ * The pack file is emptied when an icon added to it would make its size exceed a maximum size,
+ * or when it's opened with a bigger size.
+ * @author Emmanuel Puybaret
+ */
+class IconCache {
+  private static final int    MAGIC_NUMBER   = 0x53484943; // SHIC
+  private static final int    FORMAT_VERSION = 1;
+  private static final int    HEADER_SIZE    = 8;
+  // Size of the digest length, the requested height, the width and the height stored before each icon
+  private static final int    ICON_HEADER_SIZE = 13;
+  // Maximum size of an icon in pixels
+  private static final int    MAXIMUM_PIXEL_COUNT = 1024 * 1024;
+
+  private final File                  file;
+  private final long                  maximumSize;
+  private FileChannel                 channel;
+  private MappedByteBuffer            buffer;
+  // Offsets in the pack file of the cached icons
+  private Map<IconKey, Long>          iconOffsets;
+
+  /**
+   * Creates a cache of icons stored in the given pack <code>file</code>.
+   * @param maximumSize the maximum size in bytes of the pack file
+   */
+  public IconCache(File file, long maximumSize) {
+    this.file = file;
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Opens the pack file and indexes the icons it contains if it's not done yet.
+   * @return <code>false</code> if the pack file can't be used.
+   */
+  private boolean open() {
+    if (this.iconOffsets == null) {
+      this.iconOffsets = new HashMap<IconKey, Long>();
+      try {
+        File folder = this.file.getParentFile();
+        if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+          return false;
+        }
+        this.channel = new RandomAccessFile(this.file, "rw").getChannel();
+        FileLock lock = this.channel.lock();
+        try {
+          long size = this.channel.size();
+          if (size <= this.maximumSize
+              && size >= HEADER_SIZE
+              && readInt(0) == MAGIC_NUMBER
+              && readInt(4) == FORMAT_VERSION) {
+            long end = indexIcons(size);
+            if (end < size) {
+              try {
+                // Remove the icon partially written at the end of the file
+                this.channel.truncate(end);
+              } catch (IOException ex) {
+                // Ignore icons following the truncated one
+              }
+            }
+            return true;
+          }
+          this.iconOffsets.clear();
+        } finally {
+          lock.release();
+        }
+        createPackFile();
+        return true;
+      } catch (IOException ex) {
+        close();
+      }
+    }
+    return this.channel != null;
+  }
+
+  /**
+   * Replaces the pack file of this cache by an empty one.
+   */
+  private void createPackFile() throws IOException {
+    File temporaryFile = File.createTempFile("icons", ".tmp", this.file.getParentFile());
+    RandomAccessFile out = new RandomAccessFile(temporaryFile, "rw");
+    try {
+      out.writeInt(MAGIC_NUMBER);
+      out.writeInt(FORMAT_VERSION);
+    } finally {
+      out.close();
+    }
+    this.channel.close();
+    // Replace the pack file without modifying the file that other instances may have mapped
+    if (!temporaryFile.renameTo(this.file)
+        && (!this.file.delete() || !temporaryFile.renameTo(this.file))) {
+      temporaryFile.delete();
+      throw new IOException("Can't replace " + this.file);
+    }
+    this.channel = new RandomAccessFile(this.file, "rw").getChannel();
+  }
+
+  /**
+   * Reads the key and the offset of the icons stored in the pack file
+   * and returns the offset following the last valid icon.
+   */
+  private long indexIcons(long size) throws IOException {
+    ByteBuffer iconHeader = ByteBuffer.allocate(ICON_HEADER_SIZE + 0xFF);
+    long offset = HEADER_SIZE;
+    while (offset < size) {
+      iconHeader.clear();
+      readFully(iconHeader, offset, size);
+      iconHeader.flip();
+      int digestLength = iconHeader.get() & 0xFF;
+      if (iconHeader.remaining() < digestLength + ICON_HEADER_SIZE - 1) {
+        return offset;
+      }
+      byte [] digest = new byte [digestLength];
+      iconHeader.get(digest);
+      int requestedHeight = iconHeader.getInt();
+      int width = iconHeader.getInt();
+      int height = iconHeader.getInt();
+      long iconSize = ICON_HEADER_SIZE + digestLength + 4L * width * height;
+      if (width <= 0 || height <= 0
+          || (long)width * height > MAXIMUM_PIXEL_COUNT
+          || offset + iconSize > size) {
+        return offset;
+      }
+      this.iconOffsets.put(new IconKey(digest, requestedHeight), offset);
+      offset += iconSize;
+    }
+    return offset;
+  }
+
+  private int readInt(long offset) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(4);
+    readFully(buffer, offset, offset + 4);
+    return buffer.getInt(0);
+  }
+
+  /**
+   * Reads from the pack file at the given <code>offset</code> the bytes available
+   * in <code>buffer</code> without exceeding <code>size</code>.
+   */
+  private void readFully(ByteBuffer buffer, long offset, long size) throws IOException {
+    if (size - offset < buffer.remaining()) {
+      buffer.limit(buffer.position() + (int)(size - offset));
+    }
+    while (buffer.hasRemaining()) {
+      if (this.channel.read(buffer, offset + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of file");
+      }
+    }
+  }
+
+  /**
+   * Returns the image cached for the content with the given <code>digest</code>
+   * scaled at the given <code>height</code>, or <code>null</code> if it isn't in cache.
+   * @param height the height of the icon or -1 for the icon at its original size
+   */
+  public synchronized BufferedImage readIcon(byte [] digest, int height) {
+    if (open()) {
+      IconKey key = new IconKey(digest, height);
+      Long offset = this.iconOffsets.get(key);
+      if (offset != null) {
+        try {
+          if (this.buffer == null
+              || offset + ICON_HEADER_SIZE + digest.length > this.buffer.capacity()) {
+            // Map the icons added to the pack file since it was mapped
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.channel.size());
+          }
+          ByteBuffer buffer = this.buffer.duplicate();
+          buffer.position((int)(offset + ICON_HEADER_SIZE + digest.length - 8));
+          int width = buffer.getInt();
+          int imageHeight = buffer.getInt();
+          BufferedImage image = new BufferedImage(width, imageHeight, BufferedImage.TYPE_INT_ARGB);
+          buffer.asIntBuffer().get(((DataBufferInt)image.getRaster().getDataBuffer()).getData());
+          return image;
+        } catch (IOException ex) {
+          // Consider icon as not cached
+        } catch (RuntimeException ex) {
+          // Consider icon as not cached
+        }
+        this.iconOffsets.remove(key);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Appends to the pack file of this cache the given <code>image</code> of the content
+   * with the given <code>digest</code> scaled at the given <code>height</code>.
+   * @param height the requested height of the icon or -1 for the icon at its original size
+   */
+  public synchronized void writeIcon(byte [] digest, int height, BufferedImage image) {
+    int width = image.getWidth();
+    int imageHeight = image.getHeight();
+    if (digest.length <= 0xFF
+        && (long)width * imageHeight <= MAXIMUM_PIXEL_COUNT
+        && open()) {
+      IconKey key = new IconKey(digest, height);
+      if (!this.iconOffsets.containsKey(key)) {
+        ByteBuffer icon = ByteBuffer.allocate(ICON_HEADER_SIZE + digest.length + 4 * width * imageHeight);
+        icon.put((byte)digest.length);
+        icon.put(digest);
+        icon.putInt(height);
+        icon.putInt(width);
+        icon.putInt(imageHeight);
+        icon.asIntBuffer().put(image.getRGB(0, 0, width, imageHeight, null, 0, width));
+        icon.rewind();
+        try {
+          long offset = appendIcon(icon);
+          if (offset < 0) {
+            // Empty the pack file once it reached its maximum size and try again
+            this.iconOffsets.clear();
+            this.buffer = null;
+            createPackFile();
+            offset = appendIcon(icon);
+          }
+          if (offset >= 0) {
+            this.iconOffsets.put(key, offset);
+          }
+        } catch (IOException ex) {
+          // Don't cache icon that can't be written
+        }
+      }
+    }
+  }
+
+  /**
+   * Appends the given <code>icon</code> data at the end of the pack file and returns its offset,
+   * or -1 if the size of the pack file would exceed its maximum size.
+   */
+  private long appendIcon(ByteBuffer icon) throws IOException {
+    // Lock the pack file in case an other instance of the application appends icons too
+    FileLock lock = this.channel.lock();
+    try {
+      long offset = this.channel.size();
+      if (offset + icon.capacity() > this.maximumSize) {
+        return -1;
+      }
+      while (icon.hasRemaining()) {
+        this.channel.write(icon, offset + icon.position());
+      }
+      return offset;
+    } finally {
+      lock.release();
+    }
+  }
+
+  /**
+   * Closes the pack file of this cache.
+   */
+  public synchronized void close() {
+    if (this.channel != null) {
+      try {
+        this.channel.close();
+      } catch (IOException ex) {
+        // Ignore close errors
+      }
+      this.channel = null;
+    }
+    this.buffer = null;
+  }
+
+  /**
+   * The key of a cached icon.
+   */
+  private static class IconKey {
+    private final byte [] digest;
+    private final int     height;
+
+    public IconKey(byte [] digest, int height) {
+      this.digest = digest;
+      this.height = height;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof IconKey) {
+        IconKey key = (IconKey)obj;
+        return this.height == key.height
+            && Arrays.equals(this.digest, key.digest);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(this.digest) * 31 + this.height;
+    }
+  }
+}
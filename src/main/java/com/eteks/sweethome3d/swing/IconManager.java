@@ -23,6 +23,7 @@ import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
@@ -36,6 +37,7 @@ import javax.imageio.ImageIO;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 
+import com.eteks.sweethome3d.io.ContentDigestManager;
 import com.eteks.sweethome3d.model.Content;
 import com.eteks.sweethome3d.tools.ResourceURLContent;
 
@@ -44,15 +46,19 @@ import com.eteks.sweethome3d.tools.ResourceURLContent;
  * @author Emmanuel Puybaret
  */
 public class IconManager {
+  private static final long MAXIMUM_ICON_CACHE_SIZE = 256 * 1024 * 1024;
+
   private static IconManager                     instance;
   // Icon used if an image content couldn't be loaded
   private final Content                          errorIconContent;
   // Icon used while an image content is loaded
   private final Content                          waitIconContent;
-  // Map storing loaded icons
+  // Map storing error and wait icons, the other icons being stored in the bounded image cache
   private final Map<Content, Map<Integer, Icon>> icons;
   // Executor used by IconProxy to load images
   private ExecutorService                        iconsLoader;
+  // Cache on disk of scaled icons
+  private volatile IconCache                     iconCache;
 
   private IconManager() {
     this.errorIconContent = new ResourceURLContent(IconManager.class, "resources/icons/tango/image-missing.png");
@@ -80,6 +86,25 @@ public class IconManager {
       this.iconsLoader = null;
     }
     this.icons.clear();
+    // Remove only the icons of this manager from the cache shared with other components
+    ImageCache.getInstance().removeAll(IconKey.class);
+  }
+
+  /**
+   * Sets the folder where the icons read and scaled by this manager are cached to avoid
+   * decoding their images again during next sessions. Cached icons are identified by the digest
+   * of their content and their height, and are all deleted once the cache exceeds 256 MB.
+   * @param folder the cache folder or <code>null</code> to disable cache
+   * @since 6.1
+   */
+  public void setIconCacheFolder(File folder) {
+    IconCache iconCache = this.iconCache;
+    if (iconCache != null) {
+      iconCache.close();
+    }
+    this.iconCache = folder != null
+        ? new IconCache(new File(folder, "icons.cache"), MAXIMUM_ICON_CACHE_SIZE)
+        : null;
   }
   
   /**
@@ -152,12 +177,21 @@ public class IconManager {
    *            be read immediately in the current thread.
    */
   public Icon getIcon(Content content, final int height, Component waitingComponent) {
-    Map<Integer, Icon> contentIcons = this.icons.get(content);
-    if (contentIcons == null) {
-      contentIcons = Collections.synchronizedMap(new HashMap<Integer, Icon>());
-      this.icons.put(content, contentIcons);
+    Map<Integer, Icon> contentIcons = null;
+    IconKey iconKey = null;
+    Icon icon;
+    if (content == this.errorIconContent ||
+        content == this.waitIconContent) {
+      contentIcons = this.icons.get(content);
+      if (contentIcons == null) {
+        contentIcons = Collections.synchronizedMap(new HashMap<Integer, Icon>());
+        this.icons.put(content, contentIcons);
+      }
+      icon = contentIcons.get(height);
+    } else {
+      iconKey = new IconKey(content, height);
+      icon = (Icon)ImageCache.getInstance().get(iconKey);
     }
-    Icon icon = contentIcons.get(height);
     if (icon == null) {
       // Tolerate null content
       if (content == null) {
@@ -188,8 +222,15 @@ public class IconManager {
                  getIcon(this.errorIconContent, height, null),
                  getIcon(this.waitIconContent, height, null));
       }
-      // Store the icon in icons map
-      contentIcons.put(height, icon);
+      // Store the icon in icons map or in image cache
+      if (contentIcons != null) {
+        contentIcons.put(height, icon);
+      } else if (icon instanceof IconProxy && height != -1) {
+        // Estimate the size of the loaded icon from its height 
+        ImageCache.getInstance().put(iconKey, icon, 4L * height * height);
+      } else {
+        ImageCache.getInstance().put(iconKey, icon);
+      }
     }
     return icon;    
   }
@@ -201,6 +242,21 @@ public class IconManager {
    * @param errorIcon the returned icon in case of error
    */
   private Icon createIcon(Content content, int height, Icon errorIcon) {
+    IconCache iconCache = this.iconCache;
+    byte [] contentDigest = null;
+    if (iconCache != null
+        && content != this.errorIconContent
+        && content != this.waitIconContent) {
+      contentDigest = ContentDigestManager.getInstance().getContentDigest(content);
+      if (contentDigest.length > 0) {
+        BufferedImage image = iconCache.readIcon(contentDigest, height);
+        if (image != null) {
+          return new ImageIcon(image);
+        }
+      } else {
+        contentDigest = null;
+      }
+    }
     try {
       // Read the icon of the piece 
       InputStream contentStream = content.openStream();
@@ -214,10 +270,12 @@ public class IconManager {
           Graphics g = scaledImage.getGraphics();
           g.drawImage(image.getScaledInstance(width, height, Image.SCALE_SMOOTH), 0, 0, null);
           g.dispose();
-          return new ImageIcon(scaledImage);
-        } else {
-          return new ImageIcon(image);
+          image = scaledImage;
+        }
+        if (contentDigest != null) {
+          iconCache.writeIcon(contentDigest, height, image);
         }
+        return new ImageIcon(image);
       }
     } catch (IOException ex) {
       // Too bad, we'll use errorIcon
@@ -225,6 +283,35 @@ public class IconManager {
     return errorIcon;
   }
   
+  /**
+   * The key of an icon stored in image cache.
+   */
+  private static class IconKey {
+    private final Content content;
+    private final int     height;
+
+    public IconKey(Content content, int height) {
+      this.content = content;
+      this.height = height;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof IconKey) {
+        IconKey key = (IconKey)obj;
+        return this.height == key.height
+            && (this.content == key.content
+                || this.content != null && this.content.equals(key.content));
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return (this.content != null ? this.content.hashCode() : 0) * 31 + this.height;
+    }
+  }
+
   /**
    * Proxy icon that displays a temporary icon while waiting 
    * image loading completion. 
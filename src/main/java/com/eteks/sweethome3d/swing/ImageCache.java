@@ -0,0 +1,241 @@
+/*
+ * ImageCache.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.swing;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.Icon;
+
+/**
+ * A cache of decoded images and icons shared by all the components of the application.
+ * The memory used by cached images is bounded: once it exceeds the maximum size of this cache,
+ * the least recently used images are evicted. This class is thread safe.
+ * @author Emmanuel Puybaret
+ * @since 6.1
+ */
+public class ImageCache {
+  private static final long DEFAULT_MAXIMUM_SIZE = 256 * 1024 * 1024;
+
+  private static ImageCache instance;
+
+  private final Map<Object, CachedImage> images;
+  private long maximumSize;
+  private long size;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  private ImageCache() {
+    this.images = new LinkedHashMap<Object, CachedImage>(64, 0.75f, true);
+    long maximumSize = Math.min(DEFAULT_MAXIMUM_SIZE, Runtime.getRuntime().maxMemory() / 8);
+    String maximumSizeProperty = System.getProperty("com.eteks.sweethome3d.imageCacheSize");
+    if (maximumSizeProperty != null) {
+      try {
+        maximumSize = Long.parseLong(maximumSizeProperty);
+      } catch (NumberFormatException ex) {
+        // Keep default size
+      }
+    }
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Returns an instance of this singleton.
+   */
+  public static ImageCache getInstance() {
+    synchronized (ImageCache.class) {
+      if (instance == null) {
+        instance = new ImageCache();
+      }
+      return instance;
+    }
+  }
+
+  /**
+   * Returns the image or the icon stored with the given <code>key</code>,
+   * or <code>null</code> if it's not in cache.
+   */
+  public synchronized Object get(Object key) {
+    CachedImage cachedImage = this.images.get(key);
+    if (cachedImage != null) {
+      this.hitCount++;
+      return cachedImage.image;
+    } else {
+      this.missCount++;
+      return null;
+    }
+  }
+
+  /**
+   * Stores the given <code>image</code> with <code>key</code>, evicting
+   * the least recently used images if the maximum size of this cache is exceeded.
+   */
+  public void put(Object key, BufferedImage image) {
+    put(key, image, getImageSize(image));
+  }
+
+  /**
+   * Stores the given <code>icon</code> with <code>key</code>, evicting
+   * the least recently used images if the maximum size of this cache is exceeded.
+   */
+  public void put(Object key, Icon icon) {
+    put(key, icon, 4L * icon.getIconWidth() * icon.getIconHeight());
+  }
+
+  /**
+   * Stores the given <code>image</code> with <code>key</code>, considering it uses
+   * <code>size</code> bytes in memory.
+   * @param image an image or an icon
+   */
+  public synchronized void put(Object key, Object image, long size) {
+    CachedImage previousImage = this.images.put(key, new CachedImage(image, size));
+    if (previousImage != null) {
+      this.size -= previousImage.size;
+    }
+    this.size += size;
+    evictImages();
+  }
+
+  /**
+   * Removes the image stored with the given <code>key</code>.
+   */
+  public synchronized void remove(Object key) {
+    CachedImage cachedImage = this.images.remove(key);
+    if (cachedImage != null) {
+      this.size -= cachedImage.size;
+    }
+  }
+
+  /**
+   * Removes the images stored with a key instance of the given class.
+   */
+  public synchronized void removeAll(Class<?> keyClass) {
+    for (Iterator<Map.Entry<Object, CachedImage>> it = this.images.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<Object, CachedImage> entry = it.next();
+      if (keyClass.isInstance(entry.getKey())) {
+        this.size -= entry.getValue().size;
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all the images of this cache.
+   */
+  public synchronized void clear() {
+    this.images.clear();
+    this.size = 0;
+  }
+
+  /**
+   * Evicts the least recently used images until the size of this cache is smaller
+   * than its maximum size. The most recent image is always kept.
+   */
+  private void evictImages() {
+    for (Iterator<CachedImage> it = this.images.values().iterator();
+         this.size > this.maximumSize && this.images.size() > 1; ) {
+      this.size -= it.next().size;
+      it.remove();
+      this.evictionCount++;
+    }
+  }
+
+  /**
+   * Returns the maximum size in bytes of the images kept by this cache.
+   */
+  public synchronized long getMaximumSize() {
+    return this.maximumSize;
+  }
+
+  /**
+   * Sets the maximum size in bytes of the images kept by this cache.
+   */
+  public synchronized void setMaximumSize(long maximumSize) {
+    this.maximumSize = maximumSize;
+    evictImages();
+  }
+
+  /**
+   * Returns the estimated size in bytes of the images kept by this cache.
+   */
+  public synchronized long getSize() {
+    return this.size;
+  }
+
+  /**
+   * Returns the count of images kept by this cache.
+   */
+  public synchronized int getImageCount() {
+    return this.images.size();
+  }
+
+  /**
+   * Returns the count of calls to {@link #get(Object) get} which found an image.
+   */
+  public synchronized long getHitCount() {
+    return this.hitCount;
+  }
+
+  /**
+   * Returns the count of calls to {@link #get(Object) get} which didn't find any image.
+   */
+  public synchronized long getMissCount() {
+    return this.missCount;
+  }
+
+  /**
+   * Returns the count of images removed from this cache to keep its size under its maximum size.
+   */
+  public synchronized long getEvictionCount() {
+    return this.evictionCount;
+  }
+
+  /**
+   * Returns the size in bytes of the data of the given <code>image</code>.
+   */
+  private static long getImageSize(BufferedImage image) {
+    DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+    return (long)dataBuffer.getSize() * dataBuffer.getNumBanks()
+        * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "ImageCache [images=" + this.images.size() + ", size=" + this.size + "/" + this.maximumSize
+        + ", hits=" + this.hitCount + ", misses=" + this.missCount + ", evictions=" + this.evictionCount + "]";
+  }
+
+  /**
+   * An image or an icon stored with its size.
+   */
+  private static class CachedImage {
+    private final Object image;
+    private final long   size;
+
+    public CachedImage(Object image, long size) {
+      this.image = image;
+      this.size = size;
+    }
+  }
+}
@@ -53,11 +53,17 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -89,10 +95,20 @@ import com.eteks.sweethome3d.j3d.PhotoRenderer;
 import com.eteks.sweethome3d.model.AspectRatio;
 import com.eteks.sweethome3d.model.Camera;
 import com.eteks.sweethome3d.model.Camera.Lens;
+import com.eteks.sweethome3d.model.CollectionEvent;
+import com.eteks.sweethome3d.model.CollectionListener;
 import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.HomeEnvironment;
+import com.eteks.sweethome3d.model.HomeFurnitureGroup;
+import com.eteks.sweethome3d.model.HomeLight;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Label;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Polyline;
+import com.eteks.sweethome3d.model.Room;
 import com.eteks.sweethome3d.model.Selectable;
 import com.eteks.sweethome3d.model.UserPreferences;
+import com.eteks.sweethome3d.model.Wall;
 import com.eteks.sweethome3d.tools.OperatingSystem;
 import com.eteks.sweethome3d.viewcontroller.AbstractPhotoController;
 import com.eteks.sweethome3d.viewcontroller.ContentManager;
@@ -137,6 +153,7 @@ public class PhotoPanel extends JPanel implements DialogView {
   private CardLayout               photoCardLayout;
   private ExecutorService          photoCreationExecutor;
   private long                     photoCreationStartTime;
+  private PhotoRendererCache       photoRendererCache;
   private JButton                  createButton;
   private JButton                  saveButton;
   private JButton                  closeButton;
@@ -691,6 +708,10 @@ public class PhotoPanel extends JPanel implements DialogView {
       dialog.addWindowListener(new WindowAdapter() {
           public void windowClosed(WindowEvent ev) {
             stopPhotoCreation(false);
+            if (photoRendererCache != null) {
+              photoRendererCache.dispose();
+              photoRendererCache = null;
+            }
             currentPhotoPanel = null;
           }
         });
@@ -732,36 +753,48 @@ public class PhotoPanel extends JPanel implements DialogView {
     this.createButton.setAction(getActionMap().get(ActionType.STOP_PHOTO_CREATION));
     this.photoCardLayout.show(this.photoPanel, WAIT_CARD);
 
+    int quality = this.controller.getQuality();
+    if (quality >= 2 && this.photoRendererCache == null) {
+      // Keep photo renderers while this panel is displayed to update only modified items at next photo
+      this.photoRendererCache = new PhotoRendererCache(this.home, this.object3dFactory);
+    }
     // Compute photo in an other executor thread
     // Use a clone of home because the user can modify home during photo computation
     final Home home = this.home.clone();
     List<Selectable> emptySelection = Collections.emptyList();
     home.setSelectedItems(emptySelection);
+    final PhotoRendering photoRendering = quality >= 2
+        ? this.photoRendererCache.getRendering(home,
+              quality == 2
+                  ? PhotoRenderer.Quality.LOW
+                  : PhotoRenderer.Quality.HIGH)
+        : null;
     this.photoCreationExecutor = Executors.newSingleThreadExecutor();
     this.photoCreationExecutor.execute(new Runnable() {
         public void run() {
-          computePhoto(home);
+          computePhoto(home, photoRendering);
         }
       });
   }
 
   /**
-   * Computes the photo of the given home.
+   * Computes the photo of the given home, with the given rendering if it's not <code>null</code>.
    * Caution : this method must be thread safe because it's called from an executor.
    */
-  private void computePhoto(Home home) {
+  private void computePhoto(Home home, final PhotoRendering photoRendering) {
     this.photoCreationStartTime = System.currentTimeMillis();
     BufferedImage image = null;
+    boolean sceneUpdated = false;
+    long sceneUpdateDuration = 0;
+    long rayTracingDuration = 0;
     try {
-      int quality = this.controller.getQuality();
       int imageWidth = this.controller.getWidth();
       int imageHeight = this.controller.getHeight();
-      if (quality >= 2) {
-        // Use photo renderer
-        PhotoRenderer photoRenderer = new PhotoRenderer(home, this.object3dFactory,
-            quality == 2
-                ? PhotoRenderer.Quality.LOW
-                : PhotoRenderer.Quality.HIGH);
+      if (photoRendering != null) {
+        // Use photo renderer, updated with the items modified since its last use
+        PhotoRenderer photoRenderer = photoRendering.getRenderer();
+        sceneUpdated = true;
+        sceneUpdateDuration = System.currentTimeMillis() - this.photoCreationStartTime;
         int bestImageHeight;
         // Check correct ratio if lens is fisheye or spherical
         Camera camera = home.getCamera();
@@ -780,14 +813,15 @@ public class PhotoPanel extends JPanel implements DialogView {
               photoCardLayout.show(photoPanel, PHOTO_CARD);
             }
           });
+          long rayTracingStartTime = System.currentTimeMillis();
           photoRenderer.render(image, camera, this.photoComponent);
-          photoRenderer.dispose();
+          rayTracingDuration = System.currentTimeMillis() - rayTracingStartTime;
         }
       } else {
         // Compute 3D view offscreen image
         HomeComponent3D homeComponent3D = new HomeComponent3D(
             home, this.preferences, this.object3dFactory,
-            quality == 1
+            this.controller.getQuality() == 1
             && (!this.preferences.isDrawingModeEnabled()
                 || home.getEnvironment().getDrawingMode() != HomeEnvironment.DrawingMode.OUTLINE),
             null);
@@ -805,8 +839,22 @@ public class PhotoPanel extends JPanel implements DialogView {
       final BufferedImage photoImage = this.photoCreationExecutor != null
           ? image
           : null;
+      final boolean rendererReusable = sceneUpdated;
+      final float sceneUpdateSeconds = sceneUpdateDuration / 1000f;
+      final float rayTracingSeconds = rayTracingDuration / 1000f;
       EventQueue.invokeLater(new Runnable() {
           public void run() {
+            if (photoRendering != null) {
+              if (photoRendererCache != null) {
+                photoRendererCache.release(photoRendering, rendererReusable);
+              } else {
+                // Panel closed during rendering
+                PhotoRenderer photoRenderer = photoRendering.cachedRenderer.renderer;
+                if (photoRenderer != null) {
+                  photoRenderer.dispose();
+                }
+              }
+            }
             getActionMap().get(ActionType.SAVE_PHOTO).setEnabled(photoImage != null);
             if (photoImage != null) {
               getRootPane().setDefaultButton(saveButton);
@@ -821,6 +869,14 @@ public class PhotoPanel extends JPanel implements DialogView {
             ceilingLightEnabledCheckBox.setEnabled(true);
             photoCardLayout.show(photoPanel, PHOTO_CARD);
             photoCreationExecutor = null;
+            String photoCreationDurationsText = null;
+            if (photoImage != null
+                && rayTracingSeconds > 0) {
+              // Report separately the time spent to update the scene and the time spent to trace rays
+              photoCreationDurationsText = preferences.getLocalizedString(PhotoPanel.class,
+                  "photoCreationDurations.tooltip", sceneUpdateSeconds, rayTracingSeconds);
+            }
+            photoComponent.setToolTipText(photoCreationDurationsText);
           }
         });
     }
@@ -887,4 +943,429 @@ public class PhotoPanel extends JPanel implements DialogView {
       window.dispose();
     }
   }
+
+  /**
+   * The photo renderers kept for each quality while the panel is displayed.
+   * Each renderer is updated before its next use with the items changed in home since
+   * its last use, as notified by the listeners this cache adds to home.
+   */
+  private static class PhotoRendererCache {
+    private final Home                                            home;
+    private final Object3DFactory                                 object3dFactory;
+    private final Map<PhotoRenderer.Quality, CachedPhotoRenderer> renderers;
+    private PropertyChangeListener                                furnitureChangeListener;
+    private CollectionListener<HomePieceOfFurniture>              furnitureListener;
+    private PropertyChangeListener                                structureChangeListener;
+    private CollectionListener<Wall>                              wallsListener;
+    private CollectionListener<Room>                              roomsListener;
+    private PropertyChangeListener                                itemChangeListener;
+    private CollectionListener<Polyline>                          polylinesListener;
+    private CollectionListener<Label>                             labelsListener;
+    private PropertyChangeListener                                sceneChangeListener;
+    private CollectionListener<Level>                             levelsListener;
+
+    public PhotoRendererCache(Home home, Object3DFactory object3dFactory) {
+      this.home = home;
+      this.object3dFactory = object3dFactory;
+      this.renderers = new HashMap<PhotoRenderer.Quality, CachedPhotoRenderer>();
+      addFurnitureListeners();
+      addStructureListeners();
+      addItemListeners();
+      addSceneListeners();
+    }
+
+    /**
+     * Adds listeners to home furniture to track the pieces that should be exported again.
+     */
+    private void addFurnitureListeners() {
+      this.furnitureChangeListener = new PropertyChangeListener() {
+          public void propertyChange(PropertyChangeEvent ev) {
+            updatePiece((HomePieceOfFurniture)ev.getSource());
+          }
+        };
+      for (HomePieceOfFurniture piece : this.home.getFurniture()) {
+        addPieceListener(piece);
+      }
+      this.furnitureListener = new CollectionListener<HomePieceOfFurniture>() {
+          public void collectionChanged(CollectionEvent<HomePieceOfFurniture> ev) {
+            HomePieceOfFurniture piece = ev.getItem();
+            switch (ev.getType()) {
+              case ADD :
+                addPieceListener(piece);
+                break;
+              case DELETE :
+                removePieceListener(piece);
+                break;
+            }
+            // Added and deleted pieces are found when home is cloned
+            // but they may change lights or the shape of walls and rooms
+            updatePiece(piece);
+          }
+        };
+      this.home.addFurnitureListener(this.furnitureListener);
+    }
+
+    private void addPieceListener(HomePieceOfFurniture piece) {
+      piece.addPropertyChangeListener(this.furnitureChangeListener);
+      if (piece instanceof HomeFurnitureGroup) {
+        for (HomePieceOfFurniture childPiece : ((HomeFurnitureGroup)piece).getAllFurniture()) {
+          childPiece.addPropertyChangeListener(this.furnitureChangeListener);
+        }
+      }
+    }
+
+    private void removePieceListener(HomePieceOfFurniture piece) {
+      piece.removePropertyChangeListener(this.furnitureChangeListener);
+      if (piece instanceof HomeFurnitureGroup) {
+        for (HomePieceOfFurniture childPiece : ((HomeFurnitureGroup)piece).getAllFurniture()) {
+          childPiece.removePropertyChangeListener(this.furnitureChangeListener);
+        }
+      }
+    }
+
+    /**
+     * Notes that the given <code>piece</code> changed in the cached renderers.
+     */
+    private void updatePiece(HomePieceOfFurniture piece) {
+      List<HomePieceOfFurniture> pieces = piece instanceof HomeFurnitureGroup
+          ? ((HomeFurnitureGroup)piece).getAllFurniture()
+          : Arrays.asList(new HomePieceOfFurniture [] {piece});
+      boolean lightUpdated = false;
+      boolean structureUpdated = false;
+      for (HomePieceOfFurniture updatedPiece : pieces) {
+        lightUpdated |= updatedPiece instanceof HomeLight;
+        // Walls and rooms depend on doors, windows and staircases
+        structureUpdated |= updatedPiece.isDoorOrWindow()
+            || updatedPiece.getStaircaseCutOutShape() != null;
+      }
+      for (CachedPhotoRenderer cachedRenderer : this.renderers.values()) {
+        if (lightUpdated) {
+          // Light sources can't be updated in a renderer
+          cachedRenderer.obsolete = true;
+        }
+        cachedRenderer.structureUpdated |= structureUpdated;
+        cachedRenderer.updatedItems.add(piece);
+        cachedRenderer.updatedItems.addAll(pieces);
+      }
+    }
+
+    /**
+     * Adds listeners to walls and rooms which update all of them,
+     * because the shape of each wall or room may depend on other ones.
+     */
+    private void addStructureListeners() {
+      this.structureChangeListener = new PropertyChangeListener() {
+          public void propertyChange(PropertyChangeEvent ev) {
+            for (CachedPhotoRenderer cachedRenderer : renderers.values()) {
+              cachedRenderer.structureUpdated = true;
+            }
+          }
+        };
+      for (Wall wall : this.home.getWalls()) {
+        wall.addPropertyChangeListener(this.structureChangeListener);
+      }
+      for (Room room : this.home.getRooms()) {
+        room.addPropertyChangeListener(this.structureChangeListener);
+      }
+      this.wallsListener = new CollectionListener<Wall>() {
+          public void collectionChanged(CollectionEvent<Wall> ev) {
+            switch (ev.getType()) {
+              case ADD :
+                ev.getItem().addPropertyChangeListener(structureChangeListener);
+                break;
+              case DELETE :
+                ev.getItem().removePropertyChangeListener(structureChangeListener);
+                break;
+            }
+            structureChangeListener.propertyChange(null);
+          }
+        };
+      this.home.addWallsListener(this.wallsListener);
+      this.roomsListener = new CollectionListener<Room>() {
+          public void collectionChanged(CollectionEvent<Room> ev) {
+            switch (ev.getType()) {
+              case ADD :
+                ev.getItem().addPropertyChangeListener(structureChangeListener);
+                break;
+              case DELETE :
+                ev.getItem().removePropertyChangeListener(structureChangeListener);
+                break;
+            }
+            structureChangeListener.propertyChange(null);
+          }
+        };
+      this.home.addRoomsListener(this.roomsListener);
+    }
+
+    /**
+     * Adds listeners to polylines and labels to track the ones that should be exported again.
+     */
+    private void addItemListeners() {
+      this.itemChangeListener = new PropertyChangeListener() {
+          public void propertyChange(PropertyChangeEvent ev) {
+            for (CachedPhotoRenderer cachedRenderer : renderers.values()) {
+              cachedRenderer.updatedItems.add((Selectable)ev.getSource());
+            }
+          }
+        };
+      for (Polyline polyline : this.home.getPolylines()) {
+        polyline.addPropertyChangeListener(this.itemChangeListener);
+      }
+      for (Label label : this.home.getLabels()) {
+        label.addPropertyChangeListener(this.itemChangeListener);
+      }
+      this.polylinesListener = new CollectionListener<Polyline>() {
+          public void collectionChanged(CollectionEvent<Polyline> ev) {
+            switch (ev.getType()) {
+              case ADD :
+                ev.getItem().addPropertyChangeListener(itemChangeListener);
+                break;
+              case DELETE :
+                ev.getItem().removePropertyChangeListener(itemChangeListener);
+                break;
+            }
+          }
+        };
+      this.home.addPolylinesListener(this.polylinesListener);
+      this.labelsListener = new CollectionListener<Label>() {
+          public void collectionChanged(CollectionEvent<Label> ev) {
+            switch (ev.getType()) {
+              case ADD :
+                ev.getItem().addPropertyChangeListener(itemChangeListener);
+                break;
+              case DELETE :
+                ev.getItem().removePropertyChangeListener(itemChangeListener);
+                break;
+            }
+          }
+        };
+      this.home.addLabelsListener(this.labelsListener);
+    }
+
+    /**
+     * Adds listeners to levels and to the environment properties used for lights and sky
+     * which make obsolete the cached renderers.
+     */
+    private void addSceneListeners() {
+      this.sceneChangeListener = new PropertyChangeListener() {
+          public void propertyChange(PropertyChangeEvent ev) {
+            for (CachedPhotoRenderer cachedRenderer : renderers.values()) {
+              cachedRenderer.obsolete = true;
+            }
+          }
+        };
+      HomeEnvironment environment = this.home.getEnvironment();
+      environment.addPropertyChangeListener(HomeEnvironment.Property.SKY_TEXTURE, this.sceneChangeListener);
+      environment.addPropertyChangeListener(HomeEnvironment.Property.LIGHT_COLOR, this.sceneChangeListener);
+      environment.addPropertyChangeListener(HomeEnvironment.Property.CEILING_LIGHT_COLOR, this.sceneChangeListener);
+      environment.addPropertyChangeListener(HomeEnvironment.Property.ALL_LEVELS_VISIBLE, this.sceneChangeListener);
+      for (Level level : this.home.getLevels()) {
+        level.addPropertyChangeListener(this.sceneChangeListener);
+      }
+      this.levelsListener = new CollectionListener<Level>() {
+          public void collectionChanged(CollectionEvent<Level> ev) {
+            switch (ev.getType()) {
+              case ADD :
+                ev.getItem().addPropertyChangeListener(sceneChangeListener);
+                break;
+              case DELETE :
+                ev.getItem().removePropertyChangeListener(sceneChangeListener);
+                break;
+            }
+            sceneChangeListener.propertyChange(null);
+          }
+        };
+      this.home.addLevelsListener(this.levelsListener);
+    }
+
+    /**
+     * Returns the rendering of the given <code>clonedHome</code>, a clone of home just created,
+     * reusing the cached renderer of the given <code>quality</code> if it's available and up to date
+     * with the lights and the environment of home.
+     */
+    public PhotoRendering getRendering(Home clonedHome, PhotoRenderer.Quality quality) {
+      Map<Selectable, Selectable> clonedItems = getClonedItems(this.home, clonedHome);
+      CachedPhotoRenderer cachedRenderer = this.renderers.get(quality);
+      Map<Selectable, Selectable> unchangedItems = null;
+      if (cachedRenderer != null
+          && !cachedRenderer.busy
+          && !cachedRenderer.obsolete
+          && cachedRenderer.cameraClass == clonedHome.getCamera().getClass()
+          // Ceiling lights depend on walls and rooms
+          && (!cachedRenderer.structureUpdated
+              || clonedHome.getEnvironment().getCeillingLightColor() == 0)) {
+        if (cachedRenderer.structureUpdated) {
+          cachedRenderer.updatedItems.addAll(this.home.getWalls());
+          cachedRenderer.updatedItems.addAll(this.home.getRooms());
+        }
+        unchangedItems = new HashMap<Selectable, Selectable>();
+        for (Map.Entry<Selectable, Selectable> entry : clonedItems.entrySet()) {
+          Selectable previousClonedItem = cachedRenderer.clonedItems.get(entry.getKey());
+          if (previousClonedItem != null
+              && !cachedRenderer.updatedItems.contains(entry.getKey())) {
+            unchangedItems.put(entry.getValue(), previousClonedItem);
+          }
+        }
+      } else {
+        if (cachedRenderer != null
+            && !cachedRenderer.busy
+            && cachedRenderer.renderer != null) {
+          cachedRenderer.renderer.dispose();
+        }
+        // A busy renderer will be disposed once released
+        cachedRenderer = new CachedPhotoRenderer();
+        this.renderers.put(quality, cachedRenderer);
+      }
+      cachedRenderer.clonedItems = clonedItems;
+      cachedRenderer.cameraClass = clonedHome.getCamera().getClass();
+      cachedRenderer.updatedItems.clear();
+      cachedRenderer.structureUpdated = false;
+      cachedRenderer.busy = true;
+      return new PhotoRendering(cachedRenderer, clonedHome, unchangedItems, this.object3dFactory, quality);
+    }
+
+    /**
+     * Returns a map of the items of <code>home</code> to the matching items in its clone.
+     */
+    private Map<Selectable, Selectable> getClonedItems(Home home, Home clonedHome) {
+      Map<Selectable, Selectable> clonedItems = new HashMap<Selectable, Selectable>();
+      List<HomePieceOfFurniture> furniture = home.getFurniture();
+      List<HomePieceOfFurniture> clonedFurniture = clonedHome.getFurniture();
+      for (int i = 0; i < furniture.size(); i++) {
+        HomePieceOfFurniture piece = furniture.get(i);
+        HomePieceOfFurniture clonedPiece = clonedFurniture.get(i);
+        clonedItems.put(piece, clonedPiece);
+        if (piece instanceof HomeFurnitureGroup) {
+          putClonedItems(((HomeFurnitureGroup)piece).getAllFurniture(),
+              ((HomeFurnitureGroup)clonedPiece).getAllFurniture(), clonedItems);
+        }
+      }
+      putClonedItems(home.getWalls(), clonedHome.getWalls(), clonedItems);
+      putClonedItems(home.getRooms(), clonedHome.getRooms(), clonedItems);
+      putClonedItems(home.getPolylines(), clonedHome.getPolylines(), clonedItems);
+      putClonedItems(home.getDimensionLines(), clonedHome.getDimensionLines(), clonedItems);
+      putClonedItems(home.getLabels(), clonedHome.getLabels(), clonedItems);
+      clonedItems.put(home.getCompass(), clonedHome.getCompass());
+      return clonedItems;
+    }
+
+    private void putClonedItems(Collection<? extends Selectable> items,
+                                Collection<? extends Selectable> clonedItems,
+                                Map<Selectable, Selectable> clonedItemsMap) {
+      Iterator<? extends Selectable> clonedItemsIterator = clonedItems.iterator();
+      for (Selectable item : items) {
+        clonedItemsMap.put(item, clonedItemsIterator.next());
+      }
+    }
+
+    /**
+     * Releases the renderer used by the given <code>rendering</code>, and disposes it
+     * if it's not cached anymore or if the rendering failed.
+     */
+    public void release(PhotoRendering rendering, boolean succeeded) {
+      CachedPhotoRenderer cachedRenderer = rendering.cachedRenderer;
+      cachedRenderer.busy = false;
+      if (!succeeded
+          || this.renderers.get(rendering.quality) != cachedRenderer) {
+        if (cachedRenderer.renderer != null) {
+          cachedRenderer.renderer.dispose();
+          cachedRenderer.renderer = null;
+        }
+        if (this.renderers.get(rendering.quality) == cachedRenderer) {
+          this.renderers.remove(rendering.quality);
+        }
+      }
+    }
+
+    /**
+     * Removes the listeners added to home and disposes the renderers which aren't in use.
+     */
+    public void dispose() {
+      this.home.removeFurnitureListener(this.furnitureListener);
+      for (HomePieceOfFurniture piece : this.home.getFurniture()) {
+        removePieceListener(piece);
+      }
+      this.home.removeWallsListener(this.wallsListener);
+      for (Wall wall : this.home.getWalls()) {
+        wall.removePropertyChangeListener(this.structureChangeListener);
+      }
+      this.home.removeRoomsListener(this.roomsListener);
+      for (Room room : this.home.getRooms()) {
+        room.removePropertyChangeListener(this.structureChangeListener);
+      }
+      this.home.removePolylinesListener(this.polylinesListener);
+      for (Polyline polyline : this.home.getPolylines()) {
+        polyline.removePropertyChangeListener(this.itemChangeListener);
+      }
+      this.home.removeLabelsListener(this.labelsListener);
+      for (Label label : this.home.getLabels()) {
+        label.removePropertyChangeListener(this.itemChangeListener);
+      }
+      HomeEnvironment environment = this.home.getEnvironment();
+      environment.removePropertyChangeListener(HomeEnvironment.Property.SKY_TEXTURE, this.sceneChangeListener);
+      environment.removePropertyChangeListener(HomeEnvironment.Property.LIGHT_COLOR, this.sceneChangeListener);
+      environment.removePropertyChangeListener(HomeEnvironment.Property.CEILING_LIGHT_COLOR, this.sceneChangeListener);
+      environment.removePropertyChangeListener(HomeEnvironment.Property.ALL_LEVELS_VISIBLE, this.sceneChangeListener);
+      this.home.removeLevelsListener(this.levelsListener);
+      for (Level level : this.home.getLevels()) {
+        level.removePropertyChangeListener(this.sceneChangeListener);
+      }
+      // Busy renderers will be disposed once released
+      for (CachedPhotoRenderer cachedRenderer : this.renderers.values()) {
+        if (!cachedRenderer.busy
+            && cachedRenderer.renderer != null) {
+          cachedRenderer.renderer.dispose();
+        }
+      }
+      this.renderers.clear();
+    }
+  }
+
+  /**
+   * A photo renderer kept with the items of home it rendered and the ones changed since.
+   * Except for its renderer, its fields are accessed only in Event Dispatch Thread.
+   */
+  private static class CachedPhotoRenderer {
+    private PhotoRenderer               renderer;
+    private Map<Selectable, Selectable> clonedItems;
+    private Class<?>                    cameraClass;
+    private final Set<Selectable>       updatedItems = new HashSet<Selectable>();
+    private boolean                     structureUpdated;
+    private boolean                     obsolete;
+    private boolean                     busy;
+  }
+
+  /**
+   * The rendering of a home clone with a cached renderer.
+   */
+  private static class PhotoRendering {
+    private final CachedPhotoRenderer         cachedRenderer;
+    private final Home                        home;
+    private final Map<Selectable, Selectable> unchangedItems;
+    private final Object3DFactory             object3dFactory;
+    private final PhotoRenderer.Quality       quality;
+
+    public PhotoRendering(CachedPhotoRenderer cachedRenderer, Home home,
+                          Map<Selectable, Selectable> unchangedItems,
+                          Object3DFactory object3dFactory, PhotoRenderer.Quality quality) {
+      this.cachedRenderer = cachedRenderer;
+      this.home = home;
+      this.unchangedItems = unchangedItems;
+      this.object3dFactory = object3dFactory;
+      this.quality = quality;
+    }
+
+    /**
+     * Returns a renderer ready to render home, created or updated with the items changed since its last use.
+     * Caution : this method is called from an executor.
+     */
+    public PhotoRenderer getRenderer() throws IOException {
+      if (this.cachedRenderer.renderer == null) {
+        this.cachedRenderer.renderer = new PhotoRenderer(this.home, this.object3dFactory, this.quality);
+      } else {
+        this.cachedRenderer.renderer.updateHome(this.home, this.unchangedItems);
+      }
+      return this.cachedRenderer.renderer;
+    }
+  }
 }
@@ -268,6 +268,15 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
   private float                 scale = 0.5f * this.resolutionScale;
   private boolean               selectedItemsOutlinePainted = true;
   private boolean               backgroundPainted = true;
+  private volatile TiledPlanRenderer tiledRenderer;
+  private boolean               paintedSelectionIgnored;
+  // Component notified once the icons and textures of home items are loaded
+  private final Component       homeItemsWaitingComponent = new Component() {
+      @Override
+      public void repaint(long time, int x, int y, int width, int height) {
+        repaintHomeItems();
+      }
+    };
 
   private PlanRulerComponent    horizontalRuler;
   private PlanRulerComponent    verticalRuler;
@@ -309,17 +318,13 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
   private boolean                           planBoundsCacheValid = false;
   private Rectangle2D                       invalidPlanBounds;
   private BufferedImage                     backgroundImageCache;
-  private Map<TextureImage, BufferedImage>  patternImagesCache;
   private List<Wall>                        otherLevelsWallsCache;
   private Area                              otherLevelsWallAreaCache;
   private List<Room>                        otherLevelsRoomsCache;
   private Area                              otherLevelsRoomAreaCache;
-  private Color                             wallsPatternBackgroundCache;
-  private Color                             wallsPatternForegroundCache;
   private Map<Collection<Wall>, Area>       wallAreasCache;
   private Map<HomeDoorOrWindow, Area>       doorOrWindowWallThicknessAreasCache;
-  private Map<HomeTexture, BufferedImage>   floorTextureImagesCache;
-  private Map<HomePieceOfFurniture, PieceOfFurnitureTopViewIcon> furnitureTopViewIconsCache;
+  private Object                            furnitureTopViewIconsCache;
 
 
   private static ExecutorService            backgroundImageLoader;
@@ -659,9 +664,23 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
       // Can't access to properties
     }
     this.object3dFactory = object3dFactory;
+    try {
+      setTiledRenderingEnabled(Boolean.getBoolean("com.eteks.sweethome3d.tiledPlanRendering"));
+    } catch (AccessControlException ex) {
+      // Can't access to properties
+    }
     // Set JComponent default properties
     setOpaque(true);
     // Add listeners
+    addPropertyChangeListener(new PropertyChangeListener() {
+        public void propertyChange(PropertyChangeEvent ev) {
+          if ("foreground".equals(ev.getPropertyName())
+              || "background".equals(ev.getPropertyName())
+              || "font".equals(ev.getPropertyName())) {
+            repaintHomeItems();
+          }
+        }
+      });
     addModelListeners(home, preferences, controller);
     createToolTipTextFields(preferences, controller);
     if (controller != null) {
@@ -688,7 +707,6 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     this.panningCursor = createCustomCursor("resources/cursors/panning16x16.png",
         "resources/cursors/panning32x32.png", "Panning cursor", Cursor.HAND_CURSOR);
     this.duplicationCursor = DragSource.DefaultCopyDrop;
-    this.patternImagesCache = new HashMap<TextureImage, BufferedImage>();
     // Install default colors using same colors as a text field
     super.setForeground(UIManager.getColor("TextField.foreground"));
     super.setBackground(UIManager.getColor("TextField.background"));
@@ -737,7 +755,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
                      || HomePieceOfFurniture.Property.LEVEL.name().equals(ev.getPropertyName())
                      || HomePieceOfFurniture.Property.HEIGHT_IN_PLAN.name().equals(ev.getPropertyName())) {
             sortedLevelFurniture = null;
-            repaint();
+            repaintHomeItems();
           } else if (doorOrWindowWallThicknessAreasCache != null
                      && doorOrWindowWallThicknessAreasCache.containsKey(ev.getSource())
                      && (HomePieceOfFurniture.Property.WIDTH.name().equals(ev.getPropertyName())
@@ -812,7 +830,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
             otherLevelsWallAreaCache = null;
             otherLevelsWallsCache = null;
             wallAreasCache = null;
-            repaint();
+            repaintHomeItems();
           }
         }
       };
@@ -857,7 +875,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
                      && (Room.Property.FLOOR_COLOR.name().equals(propertyName)
                          || Room.Property.FLOOR_TEXTURE.name().equals(propertyName)
                          || Room.Property.FLOOR_VISIBLE.name().equals(propertyName))) {
-            repaint();
+            repaintHomeItems();
           }
         }
       };
@@ -884,7 +902,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
            String propertyName = ev.getPropertyName();
            if (Polyline.Property.COLOR.name().equals(propertyName)
                || Polyline.Property.DASH_STYLE.name().equals(propertyName)) {
-             repaint();
+             repaintHomeItems();
            } else {
              revalidate();
            }
@@ -963,7 +981,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
             doorOrWindowWallThicknessAreasCache = null;
             sortedLevelFurniture = null;
             sortedLevelRooms = null;
-            repaint();
+            repaintHomeItems();
           }
         }
       };
@@ -1036,7 +1054,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
           doorOrWindowWallThicknessAreasCache = null;
           sortedLevelRooms = null;
           sortedLevelFurniture = null;
-          repaint();
+          repaintHomeItems();
         }
       });
     UserPreferencesChangeListener preferencesListener = new UserPreferencesChangeListener(this);
@@ -1055,9 +1073,9 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
    */
   private void invalidateFurnitureTopViewIcon(HomePieceOfFurniture updatedPiece) {
     for (HomePieceOfFurniture piece : getFurnitureWithoutGroups(updatedPiece)) {
-      furnitureTopViewIconsCache.remove(piece);
+      ImageCache.getInstance().remove(new PieceOfFurnitureTopViewIconKey(this.furnitureTopViewIconsCache, piece));
     }
-    repaint();
+    repaintHomeItems();
   }
 
   /**
@@ -1130,7 +1148,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
           default:
             break;
         }
-        planComponent.repaint();
+        planComponent.repaintHomeItems();
       }
     }
   }
@@ -1142,7 +1160,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
   public void revalidate() {
     // Revalidate and repaint
     super.revalidate();
-    repaint();
+    repaintHomeItems();
 
     if (this.horizontalRuler != null) {
       this.horizontalRuler.revalidate();
@@ -1154,6 +1172,18 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     }
   }
 
+  /**
+   * Repaints this component after the invalidation of the home items painted by the tiled renderer.
+   * This method may be called by any thread.
+   */
+  private void repaintHomeItems() {
+    TiledPlanRenderer tiledRenderer = this.tiledRenderer;
+    if (tiledRenderer != null) {
+      tiledRenderer.invalidate();
+    }
+    repaint();
+  }
+
   /**
    * Invalidates this component voiding plan bounds cache if <code>invalidatePlanBoundsCache</code> is <code>true</code>.
    */
@@ -1351,7 +1381,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
             }
             if (PlanComponent.this.wallsDoorsOrWindowsModification != wallsDoorsOrWindowsModification) {
               PlanComponent.this.wallsDoorsOrWindowsModification = wallsDoorsOrWindowsModification;
-              repaint();
+              repaintHomeItems();
             }
           }
         });
@@ -2016,7 +2046,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
   public void setBackgroundPainted(boolean backgroundPainted) {
     if (this.backgroundPainted != backgroundPainted) {
       this.backgroundPainted = backgroundPainted;
-      repaint();
+      repaintHomeItems();
     }
   }
 
@@ -2027,6 +2057,35 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     return this.backgroundPainted;
   }
 
+  /**
+   * Sets whether home items should be painted with images cached in tiles rasterized in parallel.
+   * Tiled rendering is disabled by default, unless <code>com.eteks.sweethome3d.tiledPlanRendering</code>
+   * system property is equal to <code>true</code>.
+   * @since 6.1
+   */
+  public void setTiledRenderingEnabled(boolean tiledRenderingEnabled) {
+    if (tiledRenderingEnabled != (this.tiledRenderer != null)) {
+      if (tiledRenderingEnabled) {
+        this.tiledRenderer = new TiledPlanRenderer(this, new TiledPlanRenderer.LayersPainter() {
+            public void paintLayers(Graphics2D g2D) {
+              paintTiledLayers(g2D);
+            }
+          });
+      } else {
+        this.tiledRenderer = null;
+      }
+      repaint();
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if home items are painted with images cached in tiles.
+   * @since 6.1
+   */
+  public boolean isTiledRenderingEnabled() {
+    return this.tiledRenderer != null;
+  }
+
   /**
    * Sets whether the outline of home selected items should be painted or not.
    */
@@ -2058,21 +2117,53 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     g2D.clipRect(insets.left, insets.top,
         getWidth() - insets.left - insets.right,
         getHeight() - insets.top - insets.bottom);
+    AffineTransform componentTransform = g2D.getTransform();
     // Change component coordinates system to plan system
-    Rectangle2D planBounds = getPlanBounds();
     float paintScale = getScale();
-    g2D.translate(insets.left + (MARGIN - planBounds.getMinX()) * paintScale,
-        insets.top + (MARGIN - planBounds.getMinY()) * paintScale);
-    g2D.scale(paintScale, paintScale);
+    convertToPlanCoordinates(g2D, paintScale);
     setRenderingHints(g2D);
     try {
-      paintContent(g2D, paintScale, PaintMode.PAINT);
+      if (this.tiledRenderer != null
+          && this.tiledRenderer.isPaintable(componentTransform)) {
+        paintContent(g2D, componentTransform, paintScale, PaintMode.PAINT);
+      } else {
+        paintContent(g2D, paintScale, PaintMode.PAINT);
+      }
     } catch (InterruptedIOException ex) {
       // Ignore exception because it may happen only in EXPORT paint mode
     }
     g2D.dispose();
   }
 
+  /**
+   * Changes the coordinates system of <code>g2D</code> from component to plan.
+   */
+  private void convertToPlanCoordinates(Graphics2D g2D, float planScale) {
+    Insets insets = getInsets();
+    Rectangle2D planBounds = getPlanBounds();
+    g2D.translate(insets.left + (MARGIN - planBounds.getMinX()) * planScale,
+        insets.top + (MARGIN - planBounds.getMinY()) * planScale);
+    g2D.scale(planScale, planScale);
+  }
+
+  /**
+   * Paints the layers cached by the tiled renderer, i.e. home items without their selection.
+   */
+  private void paintTiledLayers(Graphics2D g2D) {
+    float paintScale = getScale();
+    convertToPlanCoordinates(g2D, paintScale);
+    setRenderingHints(g2D);
+    this.paintedSelectionIgnored = true;
+    try {
+      paintHomeItems(g2D, paintScale, getBackgroundColor(PaintMode.PAINT),
+          getForegroundColor(PaintMode.PAINT), PaintMode.PAINT);
+    } catch (InterruptedIOException ex) {
+      // Ignore exception because it may happen only in EXPORT paint mode
+    } finally {
+      this.paintedSelectionIgnored = false;
+    }
+  }
+
   /**
    * Returns the print preferred scale of the plan drawn in this component
    * to make it fill <code>pageFormat</code> imageable size.
@@ -2753,6 +2844,18 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
    *           if <code>paintMode</code> is equal to <code>PaintMode.EXPORT</code>).
    */
   private void paintContent(Graphics2D g2D, float planScale, PaintMode paintMode) throws InterruptedIOException {
+    paintContent(g2D, null, planScale, paintMode);
+  }
+
+  /**
+   * Paints plan items, home items being painted by the tiled renderer
+   * if <code>componentTransform</code> isn't <code>null</code>.
+   * @param componentTransform the transform of <code>g2D</code> in component coordinates system
+   * @throws InterruptedIOException if painting was interrupted (may happen only
+   *           if <code>paintMode</code> is equal to <code>PaintMode.EXPORT</code>).
+   */
+  private void paintContent(Graphics2D g2D, AffineTransform componentTransform,
+                            float planScale, PaintMode paintMode) throws InterruptedIOException {
     Color backgroundColor = getBackgroundColor(paintMode);
     Color foregroundColor = getForegroundColor(paintMode);
     if (this.backgroundPainted) {
@@ -2765,7 +2868,15 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
       }
     }
 
-    paintHomeItems(g2D, planScale, backgroundColor, foregroundColor, paintMode);
+    if (componentTransform == null) {
+      paintHomeItems(g2D, planScale, backgroundColor, foregroundColor, paintMode);
+    } else {
+      AffineTransform planTransform = g2D.getTransform();
+      g2D.setTransform(componentTransform);
+      this.tiledRenderer.paint(g2D);
+      g2D.setTransform(planTransform);
+      paintSelectedItems(g2D, planScale, backgroundColor, foregroundColor);
+    }
 
     if (paintMode == PaintMode.PAINT) {
       List<Selectable> selectedItems = this.home.getSelectedItems();
@@ -2844,7 +2955,9 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
   protected void paintHomeItems(Graphics g, float planScale,
                                 Color backgroundColor, Color foregroundColor, PaintMode paintMode) throws InterruptedIOException {
     Graphics2D g2D = (Graphics2D)g;
-    List<Selectable> selectedItems = this.home.getSelectedItems();
+    List<Selectable> selectedItems = this.paintedSelectionIgnored
+        ? Collections.<Selectable>emptyList()
+        : this.home.getSelectedItems();
     if (this.sortedLevelFurniture == null) {
       // Sort home furniture in elevation order
       this.sortedLevelFurniture = new ArrayList<HomePieceOfFurniture>();
@@ -2917,6 +3030,47 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     }
   }
 
+  /**
+   * Paints selected items over the layers painted by the tiled renderer
+   * where home items are painted without their selection.
+   */
+  private void paintSelectedItems(Graphics2D g2D, float planScale,
+                                  Color backgroundColor, Color foregroundColor) {
+    List<Selectable> selectedItems = this.home.getSelectedItems();
+    if (!selectedItems.isEmpty()) {
+      Color selectionColor = getSelectionColor();
+      Paint selectionOutlinePaint = new Color(selectionColor.getRed(), selectionColor.getGreen(),
+          selectionColor.getBlue(), 128);
+      Stroke selectionOutlineStroke = new BasicStroke(6 / planScale * this.resolutionScale,
+          BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+      Stroke dimensionLinesSelectionOutlineStroke = new BasicStroke(4 / planScale * this.resolutionScale,
+          BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+      Stroke locationFeedbackStroke = new BasicStroke(
+          1 / planScale * this.resolutionScale, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_BEVEL, 0,
+          new float [] {20 / planScale, 5 / planScale, 5 / planScale, 5 / planScale}, 4 / planScale);
+
+      // Paint again selected polylines, dimension lines and labels with their selection indicators
+      paintPolylines(g2D, Home.getPolylinesSubList(selectedItems), selectedItems, selectionOutlinePaint,
+          selectionColor, planScale, foregroundColor, PaintMode.PAINT);
+      paintDimensionLines(g2D, Home.getDimensionLinesSubList(selectedItems), selectedItems,
+          selectionOutlinePaint, dimensionLinesSelectionOutlineStroke, selectionColor,
+          locationFeedbackStroke, planScale, backgroundColor, foregroundColor, PaintMode.PAINT, false);
+      paintLabels(g2D, Home.getLabelsSubList(selectedItems), selectedItems, selectionOutlinePaint,
+          dimensionLinesSelectionOutlineStroke, selectionColor, planScale, foregroundColor, PaintMode.PAINT);
+
+      if (this.selectedItemsOutlinePainted) {
+        paintCompassOutline(g2D, selectedItems, selectionOutlinePaint, selectionOutlineStroke, selectionColor,
+            planScale, foregroundColor);
+        paintRoomsOutline(g2D, selectedItems, selectionOutlinePaint, selectionOutlineStroke, selectionColor,
+            planScale, foregroundColor);
+        paintWallsOutline(g2D, selectedItems, selectionOutlinePaint, selectionOutlineStroke, selectionColor,
+            planScale, foregroundColor);
+        paintFurnitureOutline(g2D, selectedItems, selectionOutlinePaint, selectionOutlineStroke, selectionColor,
+            planScale, foregroundColor);
+      }
+    }
+  }
+
   /**
    * Returns the color used to draw selection outlines.
    */
@@ -3007,10 +3161,9 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
           } else {
             final HomeTexture floorTexture = room.getFloorTexture();
             if (floorTexture != null) {
-              if (this.floorTextureImagesCache == null) {
-                this.floorTextureImagesCache = new WeakHashMap<HomeTexture, BufferedImage>();
-              }
-              BufferedImage textureImage = this.floorTextureImagesCache.get(floorTexture);
+              final ImageCache imageCache = ImageCache.getInstance();
+              final ImageKey textureImageKey = new ImageKey(floorTexture.getImage());
+              BufferedImage textureImage = (BufferedImage)imageCache.get(textureImageKey);
               if (textureImage == null
                   || textureImage == WAIT_TEXTURE_IMAGE) {
                 final boolean waitForTexture = paintMode != PaintMode.PAINT;
@@ -3024,31 +3177,35 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
                   TextureManager.getInstance().loadTexture(floorTexture.getImage(), waitForTexture,
                       new TextureManager.TextureObserver() {
                         public void textureUpdated(Texture texture) {
-                          floorTextureImagesCache.put(floorTexture,
+                          imageCache.put(textureImageKey,
                               ((ImageComponent2D)texture.getImage(0)).getImage());
                           if (!waitForTexture) {
-                            repaint();
+                            repaintHomeItems();
                           }
                         }
                       });
                 } else {
                   // Use icon manager if texture manager should be ignored
                   Icon textureIcon = IconManager.getInstance().getIcon(floorTexture.getImage(),
-                      waitForTexture ? null : this);
+                      waitForTexture ? null : this.homeItemsWaitingComponent);
                   if (IconManager.getInstance().isWaitIcon(textureIcon)) {
-                    this.floorTextureImagesCache.put(floorTexture, WAIT_TEXTURE_IMAGE);
+                    imageCache.put(textureImageKey, WAIT_TEXTURE_IMAGE);
                   } else if (IconManager.getInstance().isErrorIcon(textureIcon)) {
-                    this.floorTextureImagesCache.put(floorTexture, ERROR_TEXTURE_IMAGE);
+                    imageCache.put(textureImageKey, ERROR_TEXTURE_IMAGE);
                   } else {
                     BufferedImage textureIconImage = new BufferedImage(
                         textureIcon.getIconWidth(), textureIcon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
                     Graphics2D g2DIcon = (Graphics2D)textureIconImage.getGraphics();
                     textureIcon.paintIcon(this, g2DIcon, 0, 0);
                     g2DIcon.dispose();
-                    this.floorTextureImagesCache.put(floorTexture, textureIconImage);
+                    imageCache.put(textureImageKey, textureIconImage);
                   }
                 }
-                textureImage = this.floorTextureImagesCache.get(floorTexture);
+                textureImage = (BufferedImage)imageCache.get(textureImageKey);
+                if (textureImage == null) {
+                  // Image already evicted by another thread
+                  textureImage = WAIT_TEXTURE_IMAGE;
+                }
               }
 
               float textureWidth = floorTexture.getWidth();
@@ -3805,14 +3962,11 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
    * Returns the <code>Paint</code> object used to fill walls.
    */
   private Paint getWallPaint(float planScale, Color backgroundColor, Color foregroundColor, TextureImage wallPattern) {
-    BufferedImage patternImage = this.patternImagesCache.get(wallPattern);
-    if (patternImage == null
-        || !backgroundColor.equals(this.wallsPatternBackgroundCache)
-        || !foregroundColor.equals(this.wallsPatternForegroundCache)) {
+    ImageKey patternImageKey = new ImageKey(wallPattern, backgroundColor, foregroundColor);
+    BufferedImage patternImage = (BufferedImage)ImageCache.getInstance().get(patternImageKey);
+    if (patternImage == null) {
       patternImage = SwingTools.getPatternImage(wallPattern, backgroundColor, foregroundColor);
-      this.patternImagesCache.put(wallPattern, patternImage);
-      this.wallsPatternBackgroundCache = backgroundColor;
-      this.wallsPatternForegroundCache = foregroundColor;
+      ImageCache.getInstance().put(patternImageKey, patternImage);
     }
     return new TexturePaint(patternImage,
         new Rectangle2D.Float(0, 0, 10 / planScale, 10 / planScale));
@@ -4214,7 +4368,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
                                          Color backgroundColor, PaintMode paintMode) {
     // Get piece icon
     Icon icon = IconManager.getInstance().getIcon(piece.getIcon(), 128,
-        paintMode == PaintMode.PAINT ? this : null);
+        paintMode == PaintMode.PAINT ? this.homeItemsWaitingComponent : null);
     paintPieceOfFurnitureIcon(g2D, piece, icon, pieceShape2D, planScale, backgroundColor);
   }
 
@@ -4263,20 +4417,25 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
                                         Color backgroundColor, Color foregroundColor,
                                         PaintMode paintMode) {
     if (this.furnitureTopViewIconsCache == null) {
-      this.furnitureTopViewIconsCache = new WeakHashMap<HomePieceOfFurniture, PieceOfFurnitureTopViewIcon>();
+      // Use a new object to identify the icons of this component in the shared images cache
+      this.furnitureTopViewIconsCache = new Object();
     }
-    PieceOfFurnitureTopViewIcon icon = this.furnitureTopViewIconsCache.get(piece);
+    PieceOfFurnitureTopViewIconKey iconKey = new PieceOfFurnitureTopViewIconKey(this.furnitureTopViewIconsCache, piece);
+    PieceOfFurnitureTopViewIcon icon = (PieceOfFurnitureTopViewIcon)ImageCache.getInstance().get(iconKey);
     if (icon == null
         || icon.isWaitIcon()
            && paintMode != PaintMode.PAINT) {
-      PlanComponent waitingComponent = paintMode == PaintMode.PAINT ? this : null;
+      Component waitingComponent = paintMode == PaintMode.PAINT ? this.homeItemsWaitingComponent : null;
       // Prefer use plan icon if it exists
+      int iconSize = this.preferences.getFurnitureModelIconSize();
       if (piece.getPlanIcon() != null) {
         icon = new PieceOfFurniturePlanIcon(piece, waitingComponent);
       } else {
-        icon = new PieceOfFurnitureModelIcon(piece, this.object3dFactory, waitingComponent, this.preferences.getFurnitureModelIconSize());
+        icon = new PieceOfFurnitureModelIcon(piece, this.object3dFactory, waitingComponent, iconSize);
       }
-      this.furnitureTopViewIconsCache.put(piece, icon);
+      // Count the size of the final image rather than the one of a wait icon
+      ImageCache.getInstance().put(iconKey, icon,
+          4L * Math.max(icon.getIconWidth() * icon.getIconHeight(), iconSize * iconSize));
     }
 
     if (icon.isWaitIcon() || icon.isErrorIcon()) {
@@ -5877,7 +6036,8 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
    */
   public void setDraggedItemsFeedback(List<Selectable> draggedItems) {
     this.draggedItemsFeedback = draggedItems;
-    repaint();
+    // Doors and windows wall thickness isn't painted for dragged items
+    repaintHomeItems();
   }
 
   /**
@@ -5903,10 +6063,15 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     this.point1AngleFeedback = null;
     this.point2AngleFeedback = null;
 
+    boolean draggedItemsFeedbackDeleted = this.draggedItemsFeedback != null;
     this.draggedItemsFeedback = null;
 
     this.dimensionLinesFeedback = null;
-    repaint();
+    if (draggedItemsFeedbackDeleted) {
+      repaintHomeItems();
+    } else {
+      repaint();
+    }
   }
 
   /**
@@ -6271,6 +6436,64 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     }
   }
 
+  /**
+   * The key of an image computed from the given values in the shared images cache.
+   */
+  private static class ImageKey {
+    private final Object [] values;
+
+    public ImageKey(Object ... values) {
+      this.values = values;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof ImageKey
+          && Arrays.equals(this.values, ((ImageKey)obj).values);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(this.values);
+    }
+  }
+
+  /**
+   * The key of the top view icon of a piece in the shared images cache.
+   * The piece is weakly referenced to avoid keeping deleted furniture in memory.
+   */
+  private static class PieceOfFurnitureTopViewIconKey {
+    private final Object                                iconsCache;
+    private final WeakReference<HomePieceOfFurniture>   piece;
+    private final int                                   hashCode;
+
+    public PieceOfFurnitureTopViewIconKey(Object iconsCache, HomePieceOfFurniture piece) {
+      this.iconsCache = iconsCache;
+      this.piece = new WeakReference<HomePieceOfFurniture>(piece);
+      this.hashCode = System.identityHashCode(iconsCache) + 31 * System.identityHashCode(piece);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (obj instanceof PieceOfFurnitureTopViewIconKey) {
+        PieceOfFurnitureTopViewIconKey key = (PieceOfFurnitureTopViewIconKey)obj;
+        HomePieceOfFurniture piece = this.piece.get();
+        return this.iconsCache == key.iconsCache
+            && piece != null
+            && piece == key.piece.get();
+      } else {
+        return false;
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hashCode;
+    }
+  }
+
   /**
    * A proxy for the furniture icon seen from top.
    */
@@ -0,0 +1,1082 @@
+/*
+ * RecordingGraphics2D.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.swing;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.GradientPaint;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.TexturePaint;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.text.AttributedCharacterIterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A graphics context that records the operations painted with it, in order to replay them later
+ * in an other graphics context, possibly in an other thread.
+ * Recorded operations keep a reference to the shapes and images given in parameter,
+ * that shouldn't be modified once painted.
+ * @author Emmanuel Puybaret
+ */
+class RecordingGraphics2D extends Graphics2D {
+  private final List<Operation> operations;
+  private final Graphics2D      metricsGraphics;
+  private final boolean         root;
+  private AffineTransform       transform;
+  private Shape                 clip;
+  private Rectangle2D           clipBounds;
+  private Paint                 paint;
+  private Color                 color;
+  private Color                 background;
+  private Stroke                stroke;
+  private Composite             composite;
+  private Font                  font;
+  private RenderingHints        hints;
+  private State                 state;
+  private FontRenderContext     fontRenderContext;
+
+  /**
+   * Creates a graphics context that records its operations.
+   */
+  public RecordingGraphics2D() {
+    this.operations = new ArrayList<Operation>();
+    this.metricsGraphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    this.root = true;
+    this.transform = new AffineTransform();
+    this.paint =
+    this.color = Color.BLACK;
+    this.background = Color.WHITE;
+    this.stroke = new BasicStroke();
+    this.composite = AlphaComposite.SrcOver;
+    this.font = new Font("Dialog", Font.PLAIN, 12);
+    this.hints = new RenderingHints(null);
+  }
+
+  private RecordingGraphics2D(RecordingGraphics2D graphics) {
+    this.operations = graphics.operations;
+    this.metricsGraphics = graphics.metricsGraphics;
+    this.root = false;
+    this.transform = new AffineTransform(graphics.transform);
+    this.clip = graphics.clip;
+    this.clipBounds = graphics.clipBounds;
+    this.paint = graphics.paint;
+    this.color = graphics.color;
+    this.background = graphics.background;
+    this.stroke = graphics.stroke;
+    this.composite = graphics.composite;
+    this.font = graphics.font;
+    this.hints = graphics.hints;
+    this.state = graphics.state;
+    this.fontRenderContext = graphics.fontRenderContext;
+  }
+
+  /**
+   * Returns the operations recorded by this graphics context and the ones created from it.
+   */
+  public List<Operation> getOperations() {
+    return Collections.unmodifiableList(this.operations);
+  }
+
+  /**
+   * Replays the given <code>operations</code> which bounds intersect <code>area</code>
+   * in <code>g2D</code>. The coordinates of <code>area</code> are expressed in the space
+   * of a recording graphics with an identity transform, and <code>transform</code>
+   * is the transformation that converts that space to the device space of <code>g2D</code>.
+   */
+  public static void replay(List<Operation> operations, Rectangle2D area,
+                            Graphics2D g2D, AffineTransform transform) {
+    State appliedState = null;
+    for (Operation operation : operations) {
+      if (operation.bounds == null
+          || operation.bounds.intersects(area)) {
+        if (operation.state != appliedState) {
+          operation.state.apply(g2D, transform);
+          appliedState = operation.state;
+        }
+        operation.paint(g2D);
+      }
+    }
+  }
+
+  /**
+   * Adds a recorded operation with current state.
+   */
+  private void addOperation(Operation operation, Rectangle2D userBounds, double deviceMargin) {
+    if (this.state == null) {
+      this.state = new State(this.transform, this.clip, this.paint, this.stroke,
+          this.composite, this.font, this.hints);
+    }
+    operation.state = this.state;
+    if (userBounds != null) {
+      operation.bounds = getDeviceBounds(userBounds, deviceMargin);
+      if (operation.bounds != null
+          && this.clipBounds != null) {
+        if (!operation.bounds.intersects(this.clipBounds)) {
+          // Ignore operation out of clip
+          return;
+        }
+        Rectangle2D.intersect(operation.bounds, this.clipBounds, operation.bounds);
+      }
+    }
+    this.operations.add(operation);
+  }
+
+  /**
+   * Returns the bounds in device space of the given rectangle in user space,
+   * or <code>null</code> if they can't be computed.
+   */
+  private Rectangle2D getDeviceBounds(Rectangle2D userBounds, double deviceMargin) {
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    double [] points = {userBounds.getMinX(), userBounds.getMinY(),
+                        userBounds.getMaxX(), userBounds.getMinY(),
+                        userBounds.getMaxX(), userBounds.getMaxY(),
+                        userBounds.getMinX(), userBounds.getMaxY()};
+    this.transform.transform(points, 0, points, 0, 4);
+    for (int i = 0; i < points.length; i += 2) {
+      minX = Math.min(minX, points [i]);
+      minY = Math.min(minY, points [i + 1]);
+      maxX = Math.max(maxX, points [i]);
+      maxY = Math.max(maxY, points [i + 1]);
+    }
+    Rectangle2D deviceBounds = new Rectangle2D.Double(minX - deviceMargin, minY - deviceMargin,
+        maxX - minX + 2 * deviceMargin, maxY - minY + 2 * deviceMargin);
+    if (Double.isNaN(deviceBounds.getWidth())
+        || Double.isNaN(deviceBounds.getHeight())
+        || Double.isInfinite(deviceBounds.getWidth())
+        || Double.isInfinite(deviceBounds.getHeight())) {
+      return null;
+    } else {
+      return deviceBounds;
+    }
+  }
+
+  private void stateChanged() {
+    this.state = null;
+  }
+
+  private void fontRenderContextChanged() {
+    this.state = null;
+    this.fontRenderContext = null;
+  }
+
+  @Override
+  public void draw(Shape shape) {
+    Rectangle2D bounds = shape.getBounds2D();
+    if (this.stroke instanceof BasicStroke) {
+      BasicStroke basicStroke = (BasicStroke)this.stroke;
+      // Enlarge shape bounds to include joins and caps
+      double margin = basicStroke.getLineWidth() / 2 * Math.sqrt(2);
+      if (basicStroke.getLineJoin() == BasicStroke.JOIN_MITER) {
+        margin = Math.max(margin, basicStroke.getLineWidth() / 2 * basicStroke.getMiterLimit());
+      }
+      bounds = new Rectangle2D.Double(bounds.getX() - margin, bounds.getY() - margin,
+          bounds.getWidth() + 2 * margin, bounds.getHeight() + 2 * margin);
+    } else {
+      bounds = this.stroke.createStrokedShape(shape).getBounds2D();
+    }
+    addOperation(new ShapeOperation(shape, false), bounds, 1);
+  }
+
+  @Override
+  public void fill(Shape shape) {
+    addOperation(new ShapeOperation(shape, true), shape.getBounds2D(), 1);
+  }
+
+  @Override
+  public boolean drawImage(Image image, AffineTransform imageTransform, ImageObserver observer) {
+    if (image != null) {
+      AffineTransform transform = imageTransform != null
+          ? new AffineTransform(imageTransform)
+          : new AffineTransform();
+      addImageOperation(image, transform);
+    }
+    return true;
+  }
+
+  private void addImageOperation(Image image, AffineTransform imageTransform) {
+    int width = image.getWidth(null);
+    int height = image.getHeight(null);
+    Rectangle2D bounds = null;
+    if (width >= 0 && height >= 0) {
+      bounds = imageTransform.createTransformedShape(new Rectangle(0, 0, width, height)).getBounds2D();
+    }
+    addOperation(new ImageOperation(image, imageTransform), bounds, 1);
+  }
+
+  @Override
+  public void drawImage(BufferedImage image, BufferedImageOp imageOperation, int x, int y) {
+    if (image != null) {
+      if (imageOperation != null) {
+        image = imageOperation.filter(image, null);
+      }
+      addImageOperation(image, AffineTransform.getTranslateInstance(x, y));
+    }
+  }
+
+  @Override
+  public void drawRenderedImage(RenderedImage image, AffineTransform imageTransform) {
+    if (image != null) {
+      AffineTransform transform = imageTransform != null
+          ? new AffineTransform(imageTransform)
+          : new AffineTransform();
+      Rectangle2D bounds = transform.createTransformedShape(
+          new Rectangle(image.getMinX(), image.getMinY(), image.getWidth(), image.getHeight())).getBounds2D();
+      addOperation(new RenderedImageOperation(image, transform), bounds, 1);
+    }
+  }
+
+  @Override
+  public void drawRenderableImage(RenderableImage image, AffineTransform imageTransform) {
+    if (image != null) {
+      drawRenderedImage(image.createDefaultRendering(), imageTransform);
+    }
+  }
+
+  @Override
+  public void drawString(String text, int x, int y) {
+    drawString(text, (float)x, (float)y);
+  }
+
+  @Override
+  public void drawString(String text, float x, float y) {
+    if (text.length() > 0) {
+      Rectangle2D textBounds = this.font.getStringBounds(text, getFontRenderContext());
+      // Enlarge logical bounds to include glyphs going out of them
+      double margin = this.font.getSize2D();
+      Rectangle2D bounds = new Rectangle2D.Double(x + textBounds.getX() - margin, y + textBounds.getY() - margin,
+          textBounds.getWidth() + 2 * margin, textBounds.getHeight() + 2 * margin);
+      addOperation(new StringOperation(text, x, y), bounds, 1);
+    }
+  }
+
+  @Override
+  public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+    drawString(iterator, (float)x, (float)y);
+  }
+
+  @Override
+  public void drawString(AttributedCharacterIterator iterator, float x, float y) {
+    if (iterator.getEndIndex() > iterator.getBeginIndex()) {
+      new TextLayout(iterator, getFontRenderContext()).draw(this, x, y);
+    }
+  }
+
+  @Override
+  public void drawGlyphVector(GlyphVector glyphs, float x, float y) {
+    Rectangle2D glyphsBounds = glyphs.getVisualBounds();
+    Rectangle2D bounds = new Rectangle2D.Double(x + glyphsBounds.getX(), y + glyphsBounds.getY(),
+        glyphsBounds.getWidth(), glyphsBounds.getHeight());
+    addOperation(new GlyphVectorOperation(glyphs, x, y), bounds, 2);
+  }
+
+  @Override
+  public boolean hit(Rectangle rectangle, Shape shape, boolean onStroke) {
+    if (onStroke) {
+      shape = this.stroke.createStrokedShape(shape);
+    }
+    return this.transform.createTransformedShape(shape).intersects(rectangle);
+  }
+
+  @Override
+  public GraphicsConfiguration getDeviceConfiguration() {
+    return this.metricsGraphics.getDeviceConfiguration();
+  }
+
+  @Override
+  public void setComposite(Composite composite) {
+    this.composite = composite;
+    stateChanged();
+  }
+
+  @Override
+  public Composite getComposite() {
+    return this.composite;
+  }
+
+  @Override
+  public void setPaint(Paint paint) {
+    if (paint instanceof Color) {
+      setColor((Color)paint);
+    } else if (paint != null) {
+      this.paint = paint;
+      stateChanged();
+    }
+  }
+
+  @Override
+  public Paint getPaint() {
+    return this.paint;
+  }
+
+  @Override
+  public void setColor(Color color) {
+    if (color != null) {
+      this.paint =
+      this.color = color;
+      stateChanged();
+    }
+  }
+
+  @Override
+  public Color getColor() {
+    return this.color;
+  }
+
+  @Override
+  public void setStroke(Stroke stroke) {
+    this.stroke = stroke;
+    stateChanged();
+  }
+
+  @Override
+  public Stroke getStroke() {
+    return this.stroke;
+  }
+
+  @Override
+  public void setFont(Font font) {
+    if (font != null) {
+      this.font = font;
+      stateChanged();
+    }
+  }
+
+  @Override
+  public Font getFont() {
+    return this.font;
+  }
+
+  @Override
+  public void setBackground(Color color) {
+    this.background = color;
+  }
+
+  @Override
+  public Color getBackground() {
+    return this.background;
+  }
+
+  @Override
+  public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue) {
+    // Replace hints rather than modifying them because they may be referenced by a recorded state
+    this.hints = (RenderingHints)this.hints.clone();
+    this.hints.put(hintKey, hintValue);
+    fontRenderContextChanged();
+  }
+
+  @Override
+  public Object getRenderingHint(RenderingHints.Key hintKey) {
+    return this.hints.get(hintKey);
+  }
+
+  @Override
+  public void setRenderingHints(Map<?, ?> hints) {
+    this.hints = new RenderingHints(null);
+    this.hints.putAll(hints);
+    fontRenderContextChanged();
+  }
+
+  @Override
+  public void addRenderingHints(Map<?, ?> hints) {
+    this.hints = (RenderingHints)this.hints.clone();
+    this.hints.putAll(hints);
+    fontRenderContextChanged();
+  }
+
+  @Override
+  public RenderingHints getRenderingHints() {
+    return (RenderingHints)this.hints.clone();
+  }
+
+  @Override
+  public void translate(int x, int y) {
+    translate((double)x, (double)y);
+  }
+
+  @Override
+  public void translate(double tx, double ty) {
+    this.transform.translate(tx, ty);
+    fontRenderContextChanged();
+  }
+
+  @Override
+  public void rotate(double theta) {
+    this.transform.rotate(theta);
+    fontRenderContextChanged();
+  }
+
+  @Override
+  public void rotate(double theta, double x, double y) {
+    this.transform.rotate(theta, x, y);
+    fontRenderContextChanged();
+  }
+
+  @Override
+  public void scale(double sx, double sy) {
+    this.transform.scale(sx, sy);
+    fontRenderContextChanged();
+  }
+
+  @Override
+  public void shear(double shx, double shy) {
+    this.transform.shear(shx, shy);
+    fontRenderContextChanged();
+  }
+
+  @Override
+  public void transform(AffineTransform transform) {
+    this.transform.concatenate(transform);
+    fontRenderContextChanged();
+  }
+
+  @Override
+  public void setTransform(AffineTransform transform) {
+    this.transform = new AffineTransform(transform);
+    fontRenderContextChanged();
+  }
+
+  @Override
+  public AffineTransform getTransform() {
+    return new AffineTransform(this.transform);
+  }
+
+  @Override
+  public FontRenderContext getFontRenderContext() {
+    if (this.fontRenderContext == null) {
+      this.fontRenderContext = getMetricsGraphics().getFontRenderContext();
+    }
+    return this.fontRenderContext;
+  }
+
+  @Override
+  public FontMetrics getFontMetrics(Font font) {
+    return getMetricsGraphics().getFontMetrics(font);
+  }
+
+  /**
+   * Returns the graphics used to compute font metrics with the current transform and hints.
+   */
+  private Graphics2D getMetricsGraphics() {
+    this.metricsGraphics.setTransform(this.transform);
+    this.metricsGraphics.setRenderingHints(this.hints);
+    return this.metricsGraphics;
+  }
+
+  @Override
+  public void clip(Shape shape) {
+    if (shape == null) {
+      setClip(null);
+    } else {
+      Shape deviceShape = getDeviceShape(shape);
+      if (this.clip == null) {
+        setDeviceClip(deviceShape);
+      } else if (deviceShape instanceof Rectangle2D
+                 && this.clip instanceof Rectangle2D) {
+        Rectangle2D clip = new Rectangle2D.Double();
+        Rectangle2D.intersect((Rectangle2D)deviceShape, (Rectangle2D)this.clip, clip);
+        setDeviceClip(clip);
+      } else {
+        Area clip = new Area(deviceShape);
+        clip.intersect(new Area(this.clip));
+        setDeviceClip(clip);
+      }
+    }
+  }
+
+  @Override
+  public void setClip(Shape shape) {
+    if (shape == null) {
+      setDeviceClip(null);
+    } else {
+      setDeviceClip(getDeviceShape(shape));
+    }
+  }
+
+  /**
+   * Returns the given <code>shape</code> transformed in device space,
+   * keeping rectangles as rectangles like Java 2D when possible to obtain the same clip.
+   */
+  private Shape getDeviceShape(Shape shape) {
+    if (shape instanceof Rectangle2D
+        && (this.transform.getType() & ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_MASK_SCALE)) == 0) {
+      Rectangle2D deviceBounds = getDeviceBounds((Rectangle2D)shape, 0);
+      if (deviceBounds != null) {
+        return deviceBounds;
+      }
+    }
+    return this.transform.createTransformedShape(shape);
+  }
+
+  private void setDeviceClip(Shape clip) {
+    this.clip = clip;
+    this.clipBounds = clip != null
+        ? clip.getBounds2D()
+        : null;
+    stateChanged();
+  }
+
+  @Override
+  public Shape getClip() {
+    if (this.clip == null) {
+      return null;
+    } else {
+      try {
+        return this.transform.createInverse().createTransformedShape(this.clip);
+      } catch (NoninvertibleTransformException ex) {
+        return null;
+      }
+    }
+  }
+
+  @Override
+  public Rectangle getClipBounds() {
+    Shape clip = getClip();
+    return clip != null
+        ? clip.getBounds()
+        : null;
+  }
+
+  @Override
+  public void clipRect(int x, int y, int width, int height) {
+    clip(new Rectangle(x, y, width, height));
+  }
+
+  @Override
+  public void setClip(int x, int y, int width, int height) {
+    setClip(new Rectangle(x, y, width, height));
+  }
+
+  @Override
+  public Graphics create() {
+    return new RecordingGraphics2D(this);
+  }
+
+  @Override
+  public void setPaintMode() {
+    setComposite(AlphaComposite.SrcOver);
+  }
+
+  @Override
+  public void setXORMode(Color color) {
+    // XOR mode isn't supported
+  }
+
+  @Override
+  public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+    // Recorded pixels can't be copied
+  }
+
+  @Override
+  public void drawLine(int x1, int y1, int x2, int y2) {
+    draw(new Line2D.Float(x1, y1, x2, y2));
+  }
+
+  @Override
+  public void fillRect(int x, int y, int width, int height) {
+    fill(new Rectangle(x, y, width, height));
+  }
+
+  @Override
+  public void clearRect(int x, int y, int width, int height) {
+    Paint paint = this.paint;
+    Color color = this.color;
+    Composite composite = this.composite;
+    setComposite(AlphaComposite.Src);
+    setColor(this.background);
+    fillRect(x, y, width, height);
+    setComposite(composite);
+    this.color = color;
+    this.paint = paint;
+    stateChanged();
+  }
+
+  @Override
+  public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+    draw(new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight));
+  }
+
+  @Override
+  public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+    fill(new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight));
+  }
+
+  @Override
+  public void drawOval(int x, int y, int width, int height) {
+    draw(new Ellipse2D.Float(x, y, width, height));
+  }
+
+  @Override
+  public void fillOval(int x, int y, int width, int height) {
+    fill(new Ellipse2D.Float(x, y, width, height));
+  }
+
+  @Override
+  public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+    draw(new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.OPEN));
+  }
+
+  @Override
+  public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+    fill(new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.PIE));
+  }
+
+  @Override
+  public void drawPolyline(int [] xPoints, int [] yPoints, int pointCount) {
+    if (pointCount > 0) {
+      GeneralPath path = new GeneralPath();
+      path.moveTo(xPoints [0], yPoints [0]);
+      for (int i = 1; i < pointCount; i++) {
+        path.lineTo(xPoints [i], yPoints [i]);
+      }
+      draw(path);
+    }
+  }
+
+  @Override
+  public void drawPolygon(int [] xPoints, int [] yPoints, int pointCount) {
+    draw(new Polygon(xPoints, yPoints, pointCount));
+  }
+
+  @Override
+  public void fillPolygon(int [] xPoints, int [] yPoints, int pointCount) {
+    fill(new Polygon(xPoints, yPoints, pointCount));
+  }
+
+  @Override
+  public boolean drawImage(Image image, int x, int y, ImageObserver observer) {
+    return drawImage(image, AffineTransform.getTranslateInstance(x, y), observer);
+  }
+
+  @Override
+  public boolean drawImage(Image image, int x, int y, int width, int height, ImageObserver observer) {
+    if (image != null) {
+      int imageWidth = image.getWidth(null);
+      int imageHeight = image.getHeight(null);
+      if (imageWidth > 0 && imageHeight > 0) {
+        AffineTransform transform = AffineTransform.getTranslateInstance(x, y);
+        transform.scale((double)width / imageWidth, (double)height / imageHeight);
+        addImageOperation(image, transform);
+      } else {
+        addOperation(new ScaledImageOperation(image, x, y, x + width, y + height, null, null),
+            new Rectangle(x, y, width, height), 1);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean drawImage(Image image, int x, int y, Color backgroundColor, ImageObserver observer) {
+    if (image != null) {
+      int imageWidth = image.getWidth(null);
+      int imageHeight = image.getHeight(null);
+      if (imageWidth >= 0 && imageHeight >= 0) {
+        return drawImage(image, x, y, imageWidth, imageHeight, backgroundColor, observer);
+      } else {
+        return drawImage(image, x, y, observer);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean drawImage(Image image, int x, int y, int width, int height,
+                           Color backgroundColor, ImageObserver observer) {
+    if (image != null) {
+      addOperation(new ScaledImageOperation(image, x, y, x + width, y + height, null, backgroundColor),
+          new Rectangle(x, y, width, height), 1);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean drawImage(Image image, int dx1, int dy1, int dx2, int dy2,
+                           int sx1, int sy1, int sx2, int sy2, ImageObserver observer) {
+    return drawImage(image, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null, observer);
+  }
+
+  @Override
+  public boolean drawImage(Image image, int dx1, int dy1, int dx2, int dy2,
+                           int sx1, int sy1, int sx2, int sy2,
+                           Color backgroundColor, ImageObserver observer) {
+    if (image != null) {
+      addOperation(new ScaledImageOperation(image, dx1, dy1, dx2, dy2,
+              new int [] {sx1, sy1, sx2, sy2}, backgroundColor),
+          new Rectangle(Math.min(dx1, dx2), Math.min(dy1, dy2), Math.abs(dx2 - dx1), Math.abs(dy2 - dy1)), 1);
+    }
+    return true;
+  }
+
+  @Override
+  public void dispose() {
+    if (this.root) {
+      this.metricsGraphics.dispose();
+    }
+  }
+
+  /**
+   * Returns a hash code computed from the geometry of the given <code>shape</code>.
+   */
+  private static long getShapeHashCode(Shape shape) {
+    double [] coords = new double [6];
+    PathIterator it = shape.getPathIterator(null);
+    long hashCode = it.getWindingRule();
+    for ( ; !it.isDone(); it.next()) {
+      int segmentType = it.currentSegment(coords);
+      hashCode = mix(hashCode, segmentType);
+      int coordCount;
+      switch (segmentType) {
+        case PathIterator.SEG_MOVETO :
+        case PathIterator.SEG_LINETO :
+          coordCount = 2;
+          break;
+        case PathIterator.SEG_QUADTO :
+          coordCount = 4;
+          break;
+        case PathIterator.SEG_CUBICTO :
+          coordCount = 6;
+          break;
+        default :
+          coordCount = 0;
+          break;
+      }
+      for (int i = 0; i < coordCount; i++) {
+        hashCode = mix(hashCode, Double.doubleToLongBits(coords [i]));
+      }
+    }
+    return hashCode;
+  }
+
+  private static long getTransformHashCode(AffineTransform transform) {
+    long hashCode = Double.doubleToLongBits(transform.getScaleX());
+    hashCode = mix(hashCode, Double.doubleToLongBits(transform.getShearY()));
+    hashCode = mix(hashCode, Double.doubleToLongBits(transform.getShearX()));
+    hashCode = mix(hashCode, Double.doubleToLongBits(transform.getScaleY()));
+    hashCode = mix(hashCode, Double.doubleToLongBits(transform.getTranslateX()));
+    return mix(hashCode, Double.doubleToLongBits(transform.getTranslateY()));
+  }
+
+  /**
+   * Returns a hash code of the given <code>paint</code> computed from its value
+   * for paints created again at each paint operation.
+   */
+  private static long getPaintHashCode(Paint paint) {
+    if (paint instanceof Color) {
+      return ((Color)paint).getRGB();
+    } else if (paint instanceof TexturePaint) {
+      TexturePaint texturePaint = (TexturePaint)paint;
+      return mix(System.identityHashCode(texturePaint.getImage()),
+          getShapeHashCode(texturePaint.getAnchorRect()));
+    } else if (paint instanceof GradientPaint) {
+      GradientPaint gradientPaint = (GradientPaint)paint;
+      long hashCode = mix(gradientPaint.getColor1().getRGB(), gradientPaint.getColor2().getRGB());
+      hashCode = mix(hashCode, getShapeHashCode(
+          new Line2D.Float(gradientPaint.getPoint1(), gradientPaint.getPoint2())));
+      return mix(hashCode, gradientPaint.isCyclic() ? 1 : 0);
+    } else {
+      return System.identityHashCode(paint);
+    }
+  }
+
+  private static long mix(long hashCode, long value) {
+    return (hashCode ^ value) * 0x9E3779B97F4A7C15L + (hashCode >>> 29);
+  }
+
+  /**
+   * The graphics attributes used by a recorded operation.
+   */
+  private static class State {
+    private final AffineTransform transform;
+    private final Shape           clip;
+    private final Paint           paint;
+    private final Stroke          stroke;
+    private final Composite       composite;
+    private final Font            font;
+    private final RenderingHints  hints;
+    private long                  hashCode;
+    private boolean               hashCodeComputed;
+
+    public State(AffineTransform transform, Shape clip, Paint paint, Stroke stroke,
+                 Composite composite, Font font, RenderingHints hints) {
+      this.transform = new AffineTransform(transform);
+      this.clip = clip;
+      this.paint = paint;
+      this.stroke = stroke;
+      this.composite = composite;
+      this.font = font;
+      this.hints = hints;
+    }
+
+    public void apply(Graphics2D g2D, AffineTransform baseTransform) {
+      g2D.setRenderingHints(this.hints);
+      g2D.setComposite(this.composite);
+      g2D.setPaint(this.paint);
+      g2D.setStroke(this.stroke);
+      g2D.setFont(this.font);
+      g2D.setTransform(baseTransform);
+      g2D.setClip(this.clip);
+      g2D.transform(this.transform);
+    }
+
+    public long getHashCode() {
+      if (!this.hashCodeComputed) {
+        long hashCode = getTransformHashCode(this.transform);
+        hashCode = mix(hashCode, this.clip != null ? getShapeHashCode(this.clip) : 0);
+        hashCode = mix(hashCode, getPaintHashCode(this.paint));
+        hashCode = mix(hashCode, this.stroke.hashCode());
+        hashCode = mix(hashCode, this.composite.hashCode());
+        hashCode = mix(hashCode, this.font.hashCode());
+        this.hashCode = mix(hashCode, this.hints.hashCode());
+        this.hashCodeComputed = true;
+      }
+      return this.hashCode;
+    }
+  }
+
+  /**
+   * A recorded paint operation.
+   */
+  public static abstract class Operation {
+    private State       state;
+    private Rectangle2D bounds;
+
+    /**
+     * Returns the bounds in device space of the pixels that may be changed by this operation,
+     * or <code>null</code> if they are unknown.
+     */
+    public Rectangle2D getBounds() {
+      return this.bounds;
+    }
+
+    /**
+     * Returns a hash code computed from the state and the parameters of this operation,
+     * that should be equal for two operations that paint the same pixels.
+     */
+    public long getHashCode() {
+      return mix(this.state.getHashCode(), getParametersHashCode());
+    }
+
+    protected abstract long getParametersHashCode();
+
+    protected abstract void paint(Graphics2D g2D);
+  }
+
+  private static class ShapeOperation extends Operation {
+    private final Shape   shape;
+    private final boolean fill;
+
+    public ShapeOperation(Shape shape, boolean fill) {
+      this.shape = shape;
+      this.fill = fill;
+    }
+
+    @Override
+    protected long getParametersHashCode() {
+      return mix(this.fill ? 1 : 2, getShapeHashCode(this.shape));
+    }
+
+    @Override
+    protected void paint(Graphics2D g2D) {
+      if (this.fill) {
+        g2D.fill(this.shape);
+      } else {
+        g2D.draw(this.shape);
+      }
+    }
+  }
+
+  private static class ImageOperation extends Operation {
+    private final Image           image;
+    private final AffineTransform imageTransform;
+
+    public ImageOperation(Image image, AffineTransform imageTransform) {
+      this.image = image;
+      this.imageTransform = imageTransform;
+    }
+
+    @Override
+    protected long getParametersHashCode() {
+      return mix(mix(3, System.identityHashCode(this.image)), getTransformHashCode(this.imageTransform));
+    }
+
+    @Override
+    protected void paint(Graphics2D g2D) {
+      g2D.drawImage(this.image, this.imageTransform, null);
+    }
+  }
+
+  private static class ScaledImageOperation extends Operation {
+    private final Image image;
+    private final int   dx1;
+    private final int   dy1;
+    private final int   dx2;
+    private final int   dy2;
+    private final int [] sourceRectangle;
+    private final Color backgroundColor;
+
+    public ScaledImageOperation(Image image, int dx1, int dy1, int dx2, int dy2,
+                                int [] sourceRectangle, Color backgroundColor) {
+      this.image = image;
+      this.dx1 = dx1;
+      this.dy1 = dy1;
+      this.dx2 = dx2;
+      this.dy2 = dy2;
+      this.sourceRectangle = sourceRectangle;
+      this.backgroundColor = backgroundColor;
+    }
+
+    @Override
+    protected long getParametersHashCode() {
+      long hashCode = mix(4, System.identityHashCode(this.image));
+      hashCode = mix(hashCode, this.dx1);
+      hashCode = mix(hashCode, this.dy1);
+      hashCode = mix(hashCode, this.dx2);
+      hashCode = mix(hashCode, this.dy2);
+      if (this.sourceRectangle != null) {
+        for (int value : this.sourceRectangle) {
+          hashCode = mix(hashCode, value);
+        }
+      }
+      return mix(hashCode, this.backgroundColor != null ? this.backgroundColor.getRGB() : 0);
+    }
+
+    @Override
+    protected void paint(Graphics2D g2D) {
+      if (this.sourceRectangle != null) {
+        g2D.drawImage(this.image, this.dx1, this.dy1, this.dx2, this.dy2,
+            this.sourceRectangle [0], this.sourceRectangle [1], this.sourceRectangle [2], this.sourceRectangle [3],
+            this.backgroundColor, null);
+      } else {
+        g2D.drawImage(this.image, this.dx1, this.dy1, this.dx2 - this.dx1, this.dy2 - this.dy1,
+            this.backgroundColor, null);
+      }
+    }
+  }
+
+  private static class RenderedImageOperation extends Operation {
+    private final RenderedImage   image;
+    private final AffineTransform imageTransform;
+
+    public RenderedImageOperation(RenderedImage image, AffineTransform imageTransform) {
+      this.image = image;
+      this.imageTransform = imageTransform;
+    }
+
+    @Override
+    protected long getParametersHashCode() {
+      return mix(mix(5, System.identityHashCode(this.image)), getTransformHashCode(this.imageTransform));
+    }
+
+    @Override
+    protected void paint(Graphics2D g2D) {
+      g2D.drawRenderedImage(this.image, this.imageTransform);
+    }
+  }
+
+  private static class StringOperation extends Operation {
+    private final String text;
+    private final float  x;
+    private final float  y;
+
+    public StringOperation(String text, float x, float y) {
+      this.text = text;
+      this.x = x;
+      this.y = y;
+    }
+
+    @Override
+    protected long getParametersHashCode() {
+      long hashCode = mix(6, this.text.hashCode());
+      hashCode = mix(hashCode, Float.floatToIntBits(this.x));
+      return mix(hashCode, Float.floatToIntBits(this.y));
+    }
+
+    @Override
+    protected void paint(Graphics2D g2D) {
+      g2D.drawString(this.text, this.x, this.y);
+    }
+  }
+
+  private static class GlyphVectorOperation extends Operation {
+    private final GlyphVector glyphs;
+    private final float       x;
+    private final float       y;
+
+    public GlyphVectorOperation(GlyphVector glyphs, float x, float y) {
+      this.glyphs = glyphs;
+      this.x = x;
+      this.y = y;
+    }
+
+    @Override
+    protected long getParametersHashCode() {
+      long hashCode = mix(7, this.glyphs.getFont().hashCode());
+      int glyphCount = this.glyphs.getNumGlyphs();
+      for (int glyphCode : this.glyphs.getGlyphCodes(0, glyphCount, null)) {
+        hashCode = mix(hashCode, glyphCode);
+      }
+      for (float position : this.glyphs.getGlyphPositions(0, glyphCount, null)) {
+        hashCode = mix(hashCode, Float.floatToIntBits(position));
+      }
+      hashCode = mix(hashCode, Float.floatToIntBits(this.x));
+      return mix(hashCode, Float.floatToIntBits(this.y));
+    }
+
+    @Override
+    protected void paint(Graphics2D g2D) {
+      g2D.drawGlyphVector(this.glyphs, this.x, this.y);
+    }
+  }
+}
@@ -0,0 +1,459 @@
+/*
+ * TiledPlanRenderer.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.swing;
+
+import java.awt.AlphaComposite;
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A renderer that paints the static layers of a plan with images cached in square tiles.
+ * Layers are recorded once in the Event Dispatch Thread each time they're invalidated,
+ * then the tiles that aren't available are rasterized in parallel by a pool of threads
+ * which replay the recorded operations. Once the layers are recorded again, only the tiles
+ * touched by the operations that differ from the previous recording are invalidated.
+ * Tiles are rendered without blocking the Event Dispatch Thread: until a tile is rendered,
+ * its previous image is painted if it exists, and the component displaying layers is repainted
+ * once the tile is available. A tile that failed to be rendered is painted directly with the layers
+ * painter until the layers are recorded again.
+ * @author Emmanuel Puybaret
+ */
+class TiledPlanRenderer {
+  private static final int TILE_SIZE            = 256; // pixels
+  private static final int MIN_CACHED_TILE_COUNT = 64;
+
+  private static ExecutorService tilesRenderingExecutor;
+
+  private final Component                              component;
+  private final LayersPainter                          painter;
+  private List<RecordingGraphics2D.Operation>          operations;
+  private long []                                      operationsHashCodes;
+  private volatile boolean                             recordingValid;
+  private double                                       deviceScale;
+  private Map<Long, BufferedImage>                     tiles;
+  // Tiles invalidated since they were rendered, painted until they're rendered again 
+  private Map<Long, BufferedImage>                     staleTiles;
+  private Map<Long, TileRenderingTask>                 pendingTasks;
+  private Set<Long>                                    failedTiles;
+
+  /**
+   * Creates a renderer which will paint the layers painted by <code>painter</code>
+   * in the given <code>component</code>.
+   */
+  public TiledPlanRenderer(Component component, LayersPainter painter) {
+    this.component = component;
+    this.painter = painter;
+    this.operations = Collections.emptyList();
+    this.operationsHashCodes = new long [0];
+    this.tiles = new LinkedHashMap<Long, BufferedImage>(MIN_CACHED_TILE_COUNT, 0.75f, true);
+    this.staleTiles = new HashMap<Long, BufferedImage>();
+    this.pendingTasks = new HashMap<Long, TileRenderingTask>();
+    this.failedTiles = new HashSet<Long>();
+  }
+
+  /**
+   * Notifies this renderer that the layers should be recorded again at next paint
+   * because they may have changed. This method may be called by any thread.
+   */
+  public void invalidate() {
+    this.recordingValid = false;
+  }
+
+  /**
+   * Returns <code>true</code> if this renderer is able to paint its layers with a graphics
+   * using the given <code>transform</code>, i.e. if it's only made of a translation and a uniform scale.
+   */
+  public boolean isPaintable(AffineTransform transform) {
+    return (transform.getType() & ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_UNIFORM_SCALE)) == 0
+        && transform.getScaleX() > 0;
+  }
+
+  /**
+   * Paints the layers in the clip of <code>g2D</code> from the tiles stored in cache.
+   * The rendering of the missing tiles is started in parallel threads, and their previous 
+   * image is painted in the mean time if it exists.
+   * @param g2D the graphics used to paint layers, with a paintable transform
+   */
+  public void paint(Graphics2D g2D) {
+    AffineTransform transform = g2D.getTransform();
+    double deviceScale = transform.getScaleX();
+    if (deviceScale != this.deviceScale) {
+      // Record layers again at the new scale to lay out texts for device resolution
+      this.deviceScale = deviceScale;
+      this.tiles.clear();
+      this.staleTiles.clear();
+      cancelPendingTasks(null);
+      this.recordingValid = false;
+    }
+    if (!this.recordingValid) {
+      record();
+    }
+
+    Rectangle clipBounds = g2D.getClipBounds();
+    if (clipBounds == null
+        || clipBounds.isEmpty()) {
+      return;
+    }
+    int minTileX = (int)Math.floor(clipBounds.getMinX() * deviceScale / TILE_SIZE);
+    int minTileY = (int)Math.floor(clipBounds.getMinY() * deviceScale / TILE_SIZE);
+    int maxTileX = (int)Math.floor(clipBounds.getMaxX() * deviceScale / TILE_SIZE);
+    int maxTileY = (int)Math.floor(clipBounds.getMaxY() * deviceScale / TILE_SIZE);
+    Map<Long, BufferedImage> visibleTiles = new HashMap<Long, BufferedImage>();
+    List<Long> visibleFailedTiles = new ArrayList<Long>();
+    for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+      for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+        Long tileKey = getTileKey(tileX, tileY);
+        BufferedImage tile = this.tiles.get(tileKey);
+        if (tile == null) {
+          if (!this.pendingTasks.containsKey(tileKey)
+              && !this.failedTiles.contains(tileKey)) {
+            renderTile(tileKey, tileX, tileY);
+          }
+          tile = this.staleTiles.get(tileKey);
+        }
+        if (this.failedTiles.contains(tileKey)) {
+          visibleFailedTiles.add(tileKey);
+        } else if (tile != null) {
+          visibleTiles.put(tileKey, tile);
+        }
+      }
+    }
+    // Keep at least twice the count of visible tiles in cache
+    int maxCachedTileCount = Math.max(MIN_CACHED_TILE_COUNT, 2 * (maxTileX - minTileX + 1) * (maxTileY - minTileY + 1));
+    for (Iterator<Long> it = this.tiles.keySet().iterator(); this.tiles.size() > maxCachedTileCount; ) {
+      it.next();
+      it.remove();
+    }
+    for (Iterator<Long> it = this.staleTiles.keySet().iterator(); this.staleTiles.size() > maxCachedTileCount; ) {
+      it.next();
+      it.remove();
+    }
+
+    // Paint tiles with a device transform to copy their pixels unchanged
+    Graphics2D tilesGraphics = (Graphics2D)g2D.create();
+    tilesGraphics.setTransform(AffineTransform.getTranslateInstance(
+        Math.round(transform.getTranslateX()), Math.round(transform.getTranslateY())));
+    tilesGraphics.setComposite(AlphaComposite.SrcOver);
+    for (Map.Entry<Long, BufferedImage> entry : visibleTiles.entrySet()) {
+      long tileKey = entry.getKey();
+      tilesGraphics.drawImage(entry.getValue(), (int)(tileKey >> 32) * TILE_SIZE, (int)tileKey * TILE_SIZE, null);
+    }
+    tilesGraphics.dispose();
+
+    // Paint directly the layers in the tiles that couldn't be rendered
+    for (long tileKey : visibleFailedTiles) {
+      Graphics2D tileGraphics = (Graphics2D)g2D.create();
+      try {
+        tileGraphics.clip(new Rectangle2D.Double((int)(tileKey >> 32) * TILE_SIZE / deviceScale, 
+            (int)tileKey * TILE_SIZE / deviceScale, TILE_SIZE / deviceScale, TILE_SIZE / deviceScale));
+        this.painter.paintLayers(tileGraphics);
+      } finally {
+        tileGraphics.dispose();
+      }
+    }
+  }
+
+  /**
+   * Records the layers and removes from cache the tiles changed since the previous recording.
+   */
+  private void record() {
+    // Validate recording first in case it's invalidated by an other thread while painting
+    this.recordingValid = true;
+    RecordingGraphics2D recordingGraphics = new RecordingGraphics2D();
+    recordingGraphics.scale(this.deviceScale, this.deviceScale);
+    try {
+      this.painter.paintLayers(recordingGraphics);
+    } finally {
+      recordingGraphics.dispose();
+    }
+    List<RecordingGraphics2D.Operation> operations = recordingGraphics.getOperations();
+    long [] operationsHashCodes = getHashCodes(operations);
+    if (!this.tiles.isEmpty()
+        || !this.pendingTasks.isEmpty()) {
+      List<Rectangle2D> changedBounds = getChangedBounds(this.operations, this.operationsHashCodes,
+          operations, operationsHashCodes);
+      if (changedBounds == null || !changedBounds.isEmpty()) {
+        for (Iterator<Map.Entry<Long, BufferedImage>> it = this.tiles.entrySet().iterator(); it.hasNext(); ) {
+          Map.Entry<Long, BufferedImage> entry = it.next();
+          if (isTileChanged(entry.getKey(), changedBounds)) {
+            // Keep the image of the tile to paint it until it's rendered again
+            this.staleTiles.put(entry.getKey(), entry.getValue());
+            it.remove();
+          }
+        }
+        cancelPendingTasks(changedBounds);
+      }
+    }
+    // Render again tiles which failed to be rendered with the new recording
+    this.failedTiles.clear();
+    this.operations = operations;
+    this.operationsHashCodes = operationsHashCodes;
+  }
+
+  /**
+   * Returns <code>true</code> if the given tile intersects one of the <code>changedBounds</code>
+   * or if <code>changedBounds</code> is <code>null</code>.
+   */
+  private boolean isTileChanged(long tileKey, List<Rectangle2D> changedBounds) {
+    if (changedBounds == null) {
+      return true;
+    }
+    Rectangle2D tileBounds = getTileBounds((int)(tileKey >> 32), (int)tileKey);
+    for (Rectangle2D bounds : changedBounds) {
+      if (bounds.intersects(tileBounds)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Cancels the rendering of the tiles which intersect <code>changedBounds</code>,
+   * or of all the tiles if <code>changedBounds</code> is <code>null</code>.
+   */
+  private void cancelPendingTasks(List<Rectangle2D> changedBounds) {
+    for (Iterator<Map.Entry<Long, TileRenderingTask>> it = this.pendingTasks.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<Long, TileRenderingTask> entry = it.next();
+      if (isTileChanged(entry.getKey(), changedBounds)) {
+        entry.getValue().cancel(false);
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Returns the bounds of the operations of <code>operations1</code> missing in <code>operations2</code>
+   * and of the operations of <code>operations2</code> missing in <code>operations1</code>,
+   * or <code>null</code> if some changed operations have unknown bounds.
+   */
+  private List<Rectangle2D> getChangedBounds(List<RecordingGraphics2D.Operation> operations1, long [] hashCodes1,
+                                             List<RecordingGraphics2D.Operation> operations2, long [] hashCodes2) {
+    // Ignore the operations at the beginning and at the end which didn't change
+    int start = 0;
+    while (start < hashCodes1.length
+        && start < hashCodes2.length
+        && hashCodes1 [start] == hashCodes2 [start]) {
+      start++;
+    }
+    int end1 = hashCodes1.length;
+    int end2 = hashCodes2.length;
+    while (end1 > start
+        && end2 > start
+        && hashCodes1 [end1 - 1] == hashCodes2 [end2 - 1]) {
+      end1--;
+      end2--;
+    }
+    List<Rectangle2D> changedBounds = new ArrayList<Rectangle2D>();
+    if (!addMissingOperationsBounds(operations1, hashCodes1, start, end1, hashCodes2, start, end2, changedBounds)
+        || !addMissingOperationsBounds(operations2, hashCodes2, start, end2, hashCodes1, start, end1, changedBounds)
+        // Consider all tiles changed when most operations changed, like after a zoom
+        || changedBounds.size() > operations2.size()) {
+      return null;
+    }
+    return changedBounds;
+  }
+
+  /**
+   * Returns the hash codes of the given operations, each one being computed from
+   * the parameters of an operation and the ones of the previous operation,
+   * to detect the changes of paint order too.
+   */
+  private long [] getHashCodes(List<RecordingGraphics2D.Operation> operations) {
+    long [] hashCodes = new long [operations.size()];
+    long previousHashCode = 0;
+    for (int i = 0; i < hashCodes.length; i++) {
+      long hashCode = operations.get(i).getHashCode();
+      hashCodes [i] = hashCode * 31 + previousHashCode;
+      previousHashCode = hashCode;
+    }
+    return hashCodes;
+  }
+
+  /**
+   * Adds to <code>changedBounds</code> the bounds of the operations between <code>start</code>
+   * and <code>end</code> which hash code doesn't appear as many times in the given range
+   * of <code>otherHashCodes</code>.
+   * @return <code>false</code> if the bounds of a missing operation are unknown.
+   */
+  private boolean addMissingOperationsBounds(List<RecordingGraphics2D.Operation> operations,
+                                             long [] hashCodes, int start, int end,
+                                             long [] otherHashCodes, int otherStart, int otherEnd,
+                                             List<Rectangle2D> changedBounds) {
+    Map<Long, int []> otherHashCodesCount = new HashMap<Long, int []>((otherEnd - otherStart) * 4 / 3 + 1);
+    for (int i = otherStart; i < otherEnd; i++) {
+      int [] count = otherHashCodesCount.get(otherHashCodes [i]);
+      if (count == null) {
+        otherHashCodesCount.put(otherHashCodes [i], new int [] {1});
+      } else {
+        count [0]++;
+      }
+    }
+    for (int i = start; i < end; i++) {
+      int [] count = otherHashCodesCount.get(hashCodes [i]);
+      if (count != null && count [0] > 0) {
+        count [0]--;
+      } else {
+        Rectangle2D bounds = operations.get(i).getBounds();
+        if (bounds == null) {
+          return false;
+        }
+        changedBounds.add(bounds);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Starts the rendering of the given tile in a parallel thread.
+   */
+  private void renderTile(Long tileKey, int tileX, int tileY) {
+    TileRenderingTask task = new TileRenderingTask(this.operations, tileX, tileY);
+    this.pendingTasks.put(tileKey, task);
+    getTilesRenderingExecutor().execute(task);
+  }
+
+  /**
+   * Stores the tile rendered by the given <code>task</code> and repaints it.
+   * This method is called in the Event Dispatch Thread.
+   */
+  private void tileRendered(TileRenderingTask task) {
+    Long tileKey = getTileKey(task.tileX, task.tileY);
+    // Ignore tasks cancelled after they were rendered
+    if (this.pendingTasks.get(tileKey) == task) {
+      this.pendingTasks.remove(tileKey);
+      try {
+        this.tiles.put(tileKey, task.get());
+        this.staleTiles.remove(tileKey);
+        repaintTile(task.tileX, task.tileY);
+      } catch (InterruptedException ex) {
+        // Can't happen since task is done
+      } catch (ExecutionException ex) {
+        // Don't try to render tile again until layers are recorded again and paint it directly in the mean time
+        this.failedTiles.add(tileKey);
+        ex.getCause().printStackTrace();
+        repaintTile(task.tileX, task.tileY);
+      }
+    }
+  }
+
+  /**
+   * Repaints the area of the component displaying the given tile.
+   */
+  private void repaintTile(int tileX, int tileY) {
+    this.component.repaint(
+        (int)Math.floor(tileX * TILE_SIZE / this.deviceScale),
+        (int)Math.floor(tileY * TILE_SIZE / this.deviceScale),
+        (int)Math.ceil(TILE_SIZE / this.deviceScale) + 1,
+        (int)Math.ceil(TILE_SIZE / this.deviceScale) + 1);
+  }
+
+  private static synchronized ExecutorService getTilesRenderingExecutor() {
+    if (tilesRenderingExecutor == null) {
+      tilesRenderingExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+          new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "Plan tiles rendering");
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+    }
+    return tilesRenderingExecutor;
+  }
+
+  private static Long getTileKey(int tileX, int tileY) {
+    return ((long)tileX << 32) | (tileY & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Returns the bounds of the given tile in device space.
+   */
+  private static Rectangle2D getTileBounds(int tileX, int tileY) {
+    return new Rectangle2D.Double(tileX * TILE_SIZE, tileY * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+  }
+
+  /**
+   * The painter of the layers managed by a tiled renderer. Layers are painted in the
+   * Event Dispatch Thread, with a graphics context using the coordinates system
+   * of the painted component scaled to device resolution.
+   */
+  public static interface LayersPainter {
+    public abstract void paintLayers(Graphics2D g2D);
+  }
+
+  /**
+   * A task that rasterizes a tile with recorded operations, and notifies 
+   * the renderer in the Event Dispatch Thread once it's done.
+   */
+  private class TileRenderingTask extends FutureTask<BufferedImage> {
+    private final int tileX;
+    private final int tileY;
+
+    public TileRenderingTask(final List<RecordingGraphics2D.Operation> operations,
+                             final int tileX, final int tileY) {
+      super(new Callable<BufferedImage>() {
+          public BufferedImage call() {
+            BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g2D = tile.createGraphics();
+            try {
+              RecordingGraphics2D.replay(operations, getTileBounds(tileX, tileY), g2D,
+                  AffineTransform.getTranslateInstance(-tileX * TILE_SIZE, -tileY * TILE_SIZE));
+            } finally {
+              g2D.dispose();
+            }
+            return tile;
+          }
+        });
+      this.tileX = tileX;
+      this.tileY = tileY;
+    }
+
+    @Override
+    protected void done() {
+      if (!isCancelled()) {
+        EventQueue.invokeLater(new Runnable() {
+            public void run() {
+              tileRendered(TileRenderingTask.this);
+            }
+          });
+      }
+    }
+  }
+}
@@ -78,13 +78,20 @@ import java.util.Date;
 import java.util.Dictionary;
 import java.util.GregorianCalendar;
 import java.util.Hashtable;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.imageio.ImageIO;
 import javax.media.Buffer;
@@ -151,6 +158,7 @@ public class VideoPanel extends JPanel implements DialogView {
 
   private static final String VIDEO_DIALOG_X_VISUAL_PROPERTY = "com.eteks.sweethome3d.swing.VideoPanel.VideoDialogX";
   private static final String VIDEO_DIALOG_Y_VISUAL_PROPERTY = "com.eteks.sweethome3d.swing.VideoPanel.VideoDialogY";
+  private static final String PARALLEL_FRAME_COUNT_PROPERTY = "com.eteks.sweethome3d.swing.VideoPanel.parallelFrameCount";
 
   private static final int MINIMUM_DELAY_BEFORE_DISCARDING_WITHOUT_WARNING = 30000;
 
@@ -1426,10 +1434,16 @@ public class VideoPanel extends JPanel implements DialogView {
     try {
       file = OperatingSystem.createTemporaryFile("video", ".mov");
       if (quality >= 2) {
-        frameGenerator = new PhotoImageGenerator(home, width, height, this.object3dFactory,
-            quality == 2
-              ? PhotoRenderer.Quality.LOW
-              : PhotoRenderer.Quality.HIGH);
+        PhotoRenderer.Quality photoQuality = quality == 2
+            ? PhotoRenderer.Quality.LOW
+            : PhotoRenderer.Quality.HIGH;
+        int parallelFrameCount = getParallelFrameCount(videoFramesPath.length);
+        if (parallelFrameCount > 1) {
+          frameGenerator = new ParallelPhotoImageGenerator(home, width, height, this.object3dFactory,
+              photoQuality, videoFramesPath, parallelFrameCount);
+        } else {
+          frameGenerator = new PhotoImageGenerator(home, width, height, this.object3dFactory, photoQuality);
+        }
       } else {
         frameGenerator = new Image3DGenerator(home, this.preferences, width, height, this.object3dFactory,
             quality == 1
@@ -1687,6 +1701,23 @@ public class VideoPanel extends JPanel implements DialogView {
     }
   }
 
+  /**
+   * Returns the count of frames rendered at the same time by photo renderer
+   * set with <code>com.eteks.sweethome3d.swing.VideoPanel.parallelFrameCount</code> System property.
+   */
+  private static int getParallelFrameCount(int frameCount) {
+    int parallelFrameCount = 1;
+    String parallelFrameCountProperty = System.getProperty(PARALLEL_FRAME_COUNT_PROPERTY);
+    if (parallelFrameCountProperty != null) {
+      try {
+        parallelFrameCount = Integer.parseInt(parallelFrameCountProperty);
+      } catch (NumberFormatException ex) {
+        // Keep one frame
+      }
+    }
+    return Math.max(1, Math.min(parallelFrameCount, frameCount));
+  }
+
   /**
    * A source of video images.
    */
@@ -1858,6 +1889,126 @@ public class VideoPanel extends JPanel implements DialogView {
     }
   }
 
+  /**
+   * A frame generator rendering in parallel the next frames of a camera path with photo renderers.
+   * Each rendering thread uses its own renderer, created once with the scene of the home, and frames
+   * are returned in the order of the path.
+   */
+  private static class ParallelPhotoImageGenerator extends FrameGenerator {
+    private final int                               width;
+    private final int                               height;
+    private final Camera []                         framesPath;
+    private final List<PhotoRenderer>               renderers;
+    private final BlockingQueue<PhotoRenderer>      availableRenderers;
+    private final ExecutorService                   renderingExecutor;
+    private final LinkedList<Future<BufferedImage>> pendingFrames;
+    private final LinkedList<Camera>                pendingFrameCameras;
+    private int                                     nextFrameIndex;
+
+    public ParallelPhotoImageGenerator(Home home, int width, int height,
+                                       Object3DFactory object3dFactory,
+                                       PhotoRenderer.Quality quality,
+                                       Camera [] framesPath,
+                                       int parallelFrameCount) throws IOException {
+      this.width = width;
+      this.height = height;
+      this.framesPath = framesPath;
+      // Share processors among renderers
+      int threadCount = Math.max(1, Runtime.getRuntime().availableProcessors() / parallelFrameCount);
+      this.renderers = new ArrayList<PhotoRenderer>(parallelFrameCount);
+      this.availableRenderers = new ArrayBlockingQueue<PhotoRenderer>(parallelFrameCount);
+      try {
+        for (int i = 0; i < parallelFrameCount; i++) {
+          checkLaunchingThreadIsntInterrupted();
+          PhotoRenderer renderer = new PhotoRenderer(home, object3dFactory, quality, threadCount);
+          this.renderers.add(renderer);
+          this.availableRenderers.add(renderer);
+        }
+      } catch (IOException ex) {
+        disposeRenderers();
+        throw ex;
+      }
+      this.renderingExecutor = Executors.newFixedThreadPool(parallelFrameCount, new ThreadFactory() {
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Video frame rendering");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      this.pendingFrames = new LinkedList<Future<BufferedImage>>();
+      this.pendingFrameCameras = new LinkedList<Camera>();
+    }
+
+    public BufferedImage renderImageAt(Camera frameCamera, boolean last) throws IOException {
+      boolean stopped = last;
+      try {
+        checkLaunchingThreadIsntInterrupted();
+        // Render the requested frame and the following ones in advance
+        while (this.nextFrameIndex < this.framesPath.length
+            && this.pendingFrames.size() < this.renderers.size()) {
+          final Camera camera = this.framesPath [this.nextFrameIndex++];
+          this.pendingFrameCameras.add(camera);
+          this.pendingFrames.add(this.renderingExecutor.submit(new Callable<BufferedImage>() {
+              public BufferedImage call() throws InterruptedException {
+                PhotoRenderer renderer = availableRenderers.take();
+                try {
+                  BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                  renderer.render(image, camera, null);
+                  return image;
+                } finally {
+                  availableRenderers.add(renderer);
+                }
+              }
+            }));
+        }
+        // Frames are rendered in advance in the order of the path, so ensure no frame was skipped or repeated
+        if (this.pendingFrameCameras.isEmpty()
+            || this.pendingFrameCameras.removeFirst() != frameCamera) {
+          stopped = true;
+          throw new IllegalStateException("Requested frame camera isn't the next camera of frames path");
+        }
+        BufferedImage image = this.pendingFrames.removeFirst().get();
+        checkLaunchingThreadIsntInterrupted();
+        return image;
+      } catch (InterruptedException ex) {
+        stopped = true;
+        throw new InterruptedIOException("Lauching thread interrupted");
+      } catch (InterruptedIOException ex) {
+        stopped = true;
+        throw ex;
+      } catch (ExecutionException ex) {
+        stopped = true;
+        Throwable cause = ex.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException)cause;
+        } else if (cause instanceof Error) {
+          throw (Error)cause;
+        } else {
+          IOException ex2 = new IOException("Can't render frame");
+          ex2.initCause(cause);
+          throw ex2;
+        }
+      } finally {
+        if (stopped) {
+          for (Future<BufferedImage> pendingFrame : this.pendingFrames) {
+            pendingFrame.cancel(true);
+          }
+          this.pendingFrames.clear();
+          this.pendingFrameCameras.clear();
+          this.renderingExecutor.shutdownNow();
+          disposeRenderers();
+        }
+      }
+    }
+
+    private void disposeRenderers() {
+      for (PhotoRenderer renderer : this.renderers) {
+        renderer.dispose();
+      }
+      this.renderers.clear();
+    }
+  }
+
   /**
    * A frame generator using 3D offscreen images.
    */
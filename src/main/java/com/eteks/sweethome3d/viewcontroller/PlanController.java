@@ -30,6 +30,7 @@ import java.awt.geom.Rectangle2D;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -183,11 +184,17 @@ public class PlanController extends FurnitureController implements Controller {
   private boolean                         magnetismToggledLastMousePress;
   private float                           xLastMouseMove;
   private float                           yLastMouseMove;
-  private Area                            wallsAreaCache;
-  private Area                            wallsIncludingBaseboardsAreaCache;
+  private TiledWallsArea                  wallsAreaCache;
+  private TiledWallsArea                  wallsIncludingBaseboardsAreaCache;
   private Area                            insideWallsAreaCache;
   private List<GeneralPath>               roomPathsCache;
   private Map<HomePieceOfFurniture, Area> furnitureSidesCache;
+  private PlanItemsIndex<Wall>            wallsIndex;
+  private PlanItemsIndex<Room>            roomsIndex;
+  private PlanItemsIndex<HomePieceOfFurniture> furnitureIndex;
+  private PlanItemsIndex<Polyline>        polylinesIndex;
+  private PlanItemsIndex<DimensionLine>   dimensionLinesIndex;
+  private PlanItemsIndex<Label>           labelsIndex;
   private List<Selectable>                draggedItems;
 
   /**
@@ -2188,6 +2195,7 @@ public class PlanController extends FurnitureController implements Controller {
   }
 
   private void addModelListeners() {
+    createItemsIndices();
     this.selectionListener = new SelectionListener() {
         public void selectionChanged(SelectionEvent ev) {
           selectLevelFromSelectedItems();
@@ -2224,8 +2232,13 @@ public class PlanController extends FurnitureController implements Controller {
               || Wall.Property.LEFT_SIDE_BASEBOARD.name().equals(propertyName)
               || Wall.Property.RIGHT_SIDE_BASEBOARD.name().equals(propertyName)) {
             resetAreaCache();
-            // Unselect unreachable wall
             Wall wall = (Wall)ev.getSource();
+            invalidateWall(wall);
+            if (Wall.Property.WALL_AT_START.name().equals(propertyName)
+                || Wall.Property.WALL_AT_END.name().equals(propertyName)) {
+              invalidateWall((Wall)ev.getOldValue());
+            }
+            // Unselect unreachable wall
             if (!wall.isAtLevel(home.getSelectedLevel())) {
               List<Selectable> selectedItems = new ArrayList<Selectable>(home.getSelectedItems());
               if (selectedItems.remove(wall)) {
@@ -2240,17 +2253,29 @@ public class PlanController extends FurnitureController implements Controller {
     }
     this.home.addWallsListener(new CollectionListener<Wall> () {
         public void collectionChanged(CollectionEvent<Wall> ev) {
+          Wall wall = ev.getItem();
           if (ev.getType() == CollectionEvent.Type.ADD) {
-            ev.getItem().addPropertyChangeListener(wallChangeListener);
+            wall.addPropertyChangeListener(wallChangeListener);
+            if (wallsAreaCache != null) {
+              wallsAreaCache.addWall(wall);
+              wallsIncludingBaseboardsAreaCache.addWall(wall);
+            }
           } else if (ev.getType() == CollectionEvent.Type.DELETE) {
-            ev.getItem().removePropertyChangeListener(wallChangeListener);
+            wall.removePropertyChangeListener(wallChangeListener);
+            if (wallsAreaCache != null) {
+              wallsAreaCache.removeWall(wall);
+              wallsIncludingBaseboardsAreaCache.removeWall(wall);
+            }
           }
+          invalidateWall(wall);
+          wallsIndex.itemsChanged();
           resetAreaCache();
         }
       });
     // Add listener to update furnitureBordersCache when walls change
     final PropertyChangeListener furnitureChangeListener = new PropertyChangeListener() {
         public void propertyChange(PropertyChangeEvent ev) {
+          furnitureIndex.invalidateItem((HomePieceOfFurniture)ev.getSource());
           String propertyName = ev.getPropertyName();
           if (HomePieceOfFurniture.Property.X.name().equals(propertyName)
               || HomePieceOfFurniture.Property.Y.name().equals(propertyName)
@@ -2316,6 +2341,7 @@ public class PlanController extends FurnitureController implements Controller {
               }
             }
           }
+          furnitureIndex.itemsChanged();
         }
       });
 
@@ -2333,12 +2359,287 @@ public class PlanController extends FurnitureController implements Controller {
   }
 
   private void resetAreaCache() {
-    wallsAreaCache = null;
-    wallsIncludingBaseboardsAreaCache = null;
+    // Walls area is updated incrementally by invalidateWall
     insideWallsAreaCache = null;
     roomPathsCache = null;
   }
 
+  /**
+   * Creates the spatial indices used to search the items displayed at a given point,
+   * and the listeners that keep them up to date.
+   */
+  private void createItemsIndices() {
+    this.wallsIndex = new PlanItemsIndex<Wall>() {
+        @Override
+        protected Collection<Wall> getItems() {
+          return home.getWalls();
+        }
+
+        @Override
+        protected Rectangle2D getItemBounds(Wall wall) {
+          return getPointsBounds(wall.getPoints());
+        }
+      };
+    this.roomsIndex = new PlanItemsIndex<Room>() {
+        @Override
+        protected Collection<Room> getItems() {
+          return home.getRooms();
+        }
+
+        @Override
+        protected Rectangle2D getItemBounds(Room room) {
+          Rectangle2D bounds = getPointsBounds(room.getPoints());
+          // Include name and area texts that may be drawn outside of the room
+          String roomName = room.getName();
+          if (roomName != null) {
+            addTextBounds(bounds, room, roomName, room.getNameStyle(),
+                room.getXCenter() + room.getNameXOffset(),
+                room.getYCenter() + room.getNameYOffset(), room.getNameAngle());
+          }
+          if (room.isAreaVisible()) {
+            String areaText = preferences.getLengthUnit().getAreaFormatWithUnit().format(room.getArea());
+            addTextBounds(bounds, room, areaText, room.getAreaStyle(),
+                room.getXCenter() + room.getAreaXOffset(),
+                room.getYCenter() + room.getAreaYOffset(), room.getAreaAngle());
+          }
+          return bounds;
+        }
+      };
+    this.furnitureIndex = new PlanItemsIndex<HomePieceOfFurniture>() {
+        @Override
+        protected Collection<HomePieceOfFurniture> getItems() {
+          return home.getFurniture();
+        }
+
+        @Override
+        protected Rectangle2D getItemBounds(HomePieceOfFurniture piece) {
+          Rectangle2D bounds = getPointsBounds(piece.getPoints());
+          // Include piece name that may be drawn outside of the piece
+          String pieceName = piece.getName();
+          if (pieceName != null
+              && piece.isNameVisible()) {
+            addTextBounds(bounds, piece, pieceName, piece.getNameStyle(),
+                piece.getX() + piece.getNameXOffset(),
+                piece.getY() + piece.getNameYOffset(), piece.getNameAngle());
+          }
+          return bounds;
+        }
+      };
+    this.polylinesIndex = new PlanItemsIndex<Polyline>() {
+        @Override
+        protected Collection<Polyline> getItems() {
+          return home.getPolylines();
+        }
+
+        @Override
+        protected Rectangle2D getItemBounds(Polyline polyline) {
+          float [][] points = polyline.getPoints();
+          Rectangle2D bounds = getPointsBounds(points);
+          if (polyline.getJoinStyle() == Polyline.JoinStyle.CURVED) {
+            // Include the control points of the curves computed in Polyline
+            for (int i = 0; i < points.length; i++) {
+              float [] previousPoint = points [(i + points.length - 1) % points.length];
+              float [] nextPoint     = points [(i + 1) % points.length];
+              float dx = (nextPoint [0] - previousPoint [0]) / 3.625f;
+              float dy = (nextPoint [1] - previousPoint [1]) / 3.625f;
+              bounds.add(points [i][0] + dx, points [i][1] + dy);
+              bounds.add(points [i][0] - dx, points [i][1] - dy);
+            }
+          }
+          // Enlarge bounds to include stroke joins limited by the default miter limit
+          float strokeMargin = 5 * polyline.getThickness();
+          bounds.setRect(bounds.getX() - strokeMargin, bounds.getY() - strokeMargin,
+              bounds.getWidth() + 2 * strokeMargin, bounds.getHeight() + 2 * strokeMargin);
+          return bounds;
+        }
+      };
+    this.dimensionLinesIndex = new PlanItemsIndex<DimensionLine>() {
+        @Override
+        protected Collection<DimensionLine> getItems() {
+          return home.getDimensionLines();
+        }
+
+        @Override
+        protected Rectangle2D getItemBounds(DimensionLine dimensionLine) {
+          return getPointsBounds(dimensionLine.getPoints());
+        }
+      };
+    this.labelsIndex = new PlanItemsIndex<Label>() {
+        @Override
+        protected Collection<Label> getItems() {
+          return home.getLabels();
+        }
+
+        @Override
+        protected Rectangle2D getItemBounds(Label label) {
+          Rectangle2D bounds = getPointsBounds(label.getPoints());
+          addTextBounds(bounds, label, label.getText(), label.getStyle(),
+              label.getX(), label.getY(), label.getAngle());
+          return bounds;
+        }
+      };
+
+    // Walls and furniture indices are updated by the listeners of addModelListeners
+    final PropertyChangeListener roomChangeListener = new PropertyChangeListener() {
+        public void propertyChange(PropertyChangeEvent ev) {
+          roomsIndex.invalidateItem((Room)ev.getSource());
+        }
+      };
+    for (Room room : this.home.getRooms()) {
+      room.addPropertyChangeListener(roomChangeListener);
+    }
+    this.home.addRoomsListener(new CollectionListener<Room> () {
+        public void collectionChanged(CollectionEvent<Room> ev) {
+          if (ev.getType() == CollectionEvent.Type.ADD) {
+            ev.getItem().addPropertyChangeListener(roomChangeListener);
+          } else if (ev.getType() == CollectionEvent.Type.DELETE) {
+            ev.getItem().removePropertyChangeListener(roomChangeListener);
+          }
+          roomsIndex.itemsChanged();
+        }
+      });
+    final PropertyChangeListener polylineChangeListener = new PropertyChangeListener() {
+        public void propertyChange(PropertyChangeEvent ev) {
+          polylinesIndex.invalidateItem((Polyline)ev.getSource());
+        }
+      };
+    for (Polyline polyline : this.home.getPolylines()) {
+      polyline.addPropertyChangeListener(polylineChangeListener);
+    }
+    this.home.addPolylinesListener(new CollectionListener<Polyline> () {
+        public void collectionChanged(CollectionEvent<Polyline> ev) {
+          if (ev.getType() == CollectionEvent.Type.ADD) {
+            ev.getItem().addPropertyChangeListener(polylineChangeListener);
+          } else if (ev.getType() == CollectionEvent.Type.DELETE) {
+            ev.getItem().removePropertyChangeListener(polylineChangeListener);
+          }
+          polylinesIndex.itemsChanged();
+        }
+      });
+    final PropertyChangeListener dimensionLineChangeListener = new PropertyChangeListener() {
+        public void propertyChange(PropertyChangeEvent ev) {
+          dimensionLinesIndex.invalidateItem((DimensionLine)ev.getSource());
+        }
+      };
+    for (DimensionLine dimensionLine : this.home.getDimensionLines()) {
+      dimensionLine.addPropertyChangeListener(dimensionLineChangeListener);
+    }
+    this.home.addDimensionLinesListener(new CollectionListener<DimensionLine> () {
+        public void collectionChanged(CollectionEvent<DimensionLine> ev) {
+          if (ev.getType() == CollectionEvent.Type.ADD) {
+            ev.getItem().addPropertyChangeListener(dimensionLineChangeListener);
+          } else if (ev.getType() == CollectionEvent.Type.DELETE) {
+            ev.getItem().removePropertyChangeListener(dimensionLineChangeListener);
+          }
+          dimensionLinesIndex.itemsChanged();
+        }
+      });
+    final PropertyChangeListener labelChangeListener = new PropertyChangeListener() {
+        public void propertyChange(PropertyChangeEvent ev) {
+          labelsIndex.invalidateItem((Label)ev.getSource());
+        }
+      };
+    for (Label label : this.home.getLabels()) {
+      label.addPropertyChangeListener(labelChangeListener);
+    }
+    this.home.addLabelsListener(new CollectionListener<Label> () {
+        public void collectionChanged(CollectionEvent<Label> ev) {
+          if (ev.getType() == CollectionEvent.Type.ADD) {
+            ev.getItem().addPropertyChangeListener(labelChangeListener);
+          } else if (ev.getType() == CollectionEvent.Type.DELETE) {
+            ev.getItem().removePropertyChangeListener(labelChangeListener);
+          }
+          labelsIndex.itemsChanged();
+        }
+      });
+    // Update the bounds of texts when their unit or their default font change
+    TextChangeListener textChangeListener = new TextChangeListener(this);
+    this.preferences.addPropertyChangeListener(UserPreferences.Property.UNIT, textChangeListener);
+    this.preferences.addPropertyChangeListener(UserPreferences.Property.DEFAULT_FONT_NAME, textChangeListener);
+  }
+
+  /**
+   * Preferences property listener bound to this controller with a weak reference to avoid
+   * strong link between preferences and this controller.
+   */
+  private static class TextChangeListener implements PropertyChangeListener {
+    private WeakReference<PlanController> planController;
+
+    public TextChangeListener(PlanController planController) {
+      this.planController = new WeakReference<PlanController>(planController);
+    }
+
+    public void propertyChange(PropertyChangeEvent ev) {
+      // If plan controller was garbage collected, remove this listener from preferences
+      PlanController planController = this.planController.get();
+      UserPreferences preferences = (UserPreferences)ev.getSource();
+      if (planController == null) {
+        preferences.removePropertyChangeListener(UserPreferences.Property.UNIT, this);
+        preferences.removePropertyChangeListener(UserPreferences.Property.DEFAULT_FONT_NAME, this);
+      } else {
+        planController.roomsIndex.invalidateAllItems();
+        planController.furnitureIndex.invalidateAllItems();
+        planController.labelsIndex.invalidateAllItems();
+      }
+    }
+  }
+
+  /**
+   * Invalidates the given <code>wall</code> in walls index and walls area, and the walls joined to it
+   * since their points depend on the ones of this wall.
+   */
+  private void invalidateWall(Wall wall) {
+    if (wall != null) {
+      invalidateWallShape(wall);
+      if (wall.getWallAtStart() != null) {
+        invalidateWallShape(wall.getWallAtStart());
+      }
+      if (wall.getWallAtEnd() != null) {
+        invalidateWallShape(wall.getWallAtEnd());
+      }
+    }
+  }
+
+  private void invalidateWallShape(Wall wall) {
+    this.wallsIndex.invalidateItem(wall);
+    if (this.wallsAreaCache != null) {
+      this.wallsAreaCache.invalidateWall(wall);
+      this.wallsIncludingBaseboardsAreaCache.invalidateWall(wall);
+    }
+  }
+
+  /**
+   * Returns the bounds of the given <code>points</code>.
+   */
+  private Rectangle2D getPointsBounds(float [][] points) {
+    if (points.length == 0) {
+      // Let the index manage items with undefined bounds
+      return new Rectangle2D.Float(Float.NaN, Float.NaN, 0, 0);
+    }
+    Rectangle2D bounds = new Rectangle2D.Float(points [0][0], points [0][1], 0, 0);
+    for (int i = 1; i < points.length; i++) {
+      bounds.add(points [i][0], points [i][1]);
+    }
+    return bounds;
+  }
+
+  /**
+   * Adds to <code>bounds</code> the bounds of the <code>text</code> of an <code>item</code>
+   * displayed at the point (<code>xText</code>, <code>yText</code>).
+   */
+  private void addTextBounds(Rectangle2D bounds, Selectable item, String text, TextStyle textStyle,
+                             float xText, float yText, float textAngle) {
+    if (text != null
+        && getView() != null) {
+      if (textStyle == null) {
+        textStyle = this.preferences.getDefaultTextStyle(item.getClass());
+      }
+      for (float [] point : getView().getTextBounds(text, textStyle, xText, yText, textAngle)) {
+        bounds.add(point [0], point [1]);
+      }
+    }
+  }
+
   /**
    * Displays in plan view the feedback of <code>draggedItems</code>,
    * during a drag and drop operation initiated from outside of plan view.
@@ -3188,7 +3489,7 @@ public class PlanController extends FurnitureController implements Controller {
   private DimensionLine getMeasuringDimensionLineAt(float x, float y,
                                                     boolean magnetismEnabled) {
     float margin = PIXEL_MARGIN / getScale();
-    for (HomePieceOfFurniture piece : this.home.getFurniture()) {
+    for (HomePieceOfFurniture piece : this.furnitureIndex.getItemsAt(x, y, margin)) {
       if (isPieceOfFurnitureVisibleAtSelectedLevel(piece)) {
         DimensionLine dimensionLine = getDimensionLineBetweenPointsAt(piece.getPoints(), x, y, margin, magnetismEnabled);
         if (dimensionLine != null) {
@@ -3205,7 +3506,7 @@ public class PlanController extends FurnitureController implements Controller {
         }
       }
     }
-    for (Room room : this.home.getRooms()) {
+    for (Room room : this.roomsIndex.getItemsAt(x, y, margin)) {
       if (isLevelNullOrViewable(room.getLevel())
           && room.isAtLevel(this.home.getSelectedLevel())) {
         DimensionLine dimensionLine = getDimensionLineBetweenPointsAt(room.getPoints(), x, y, margin, magnetismEnabled);
@@ -3656,7 +3957,7 @@ public class PlanController extends FurnitureController implements Controller {
    */
   private Wall getWallStartAt(float x, float y, Wall ignoredWall) {
     float margin = WALL_ENDS_PIXEL_MARGIN / getScale();
-    for (Wall wall : this.home.getWalls()) {
+    for (Wall wall : this.wallsIndex.getItemsAt(x, y, margin)) {
       if (wall != ignoredWall
           && isLevelNullOrViewable(wall.getLevel())
           && wall.isAtLevel(this.home.getSelectedLevel())
@@ -3674,7 +3975,7 @@ public class PlanController extends FurnitureController implements Controller {
    */
   private Wall getWallEndAt(float x, float y, Wall ignoredWall) {
     float margin = WALL_ENDS_PIXEL_MARGIN / getScale();
-    for (Wall wall : this.home.getWalls()) {
+    for (Wall wall : this.wallsIndex.getItemsAt(x, y, margin)) {
       if (wall != ignoredWall
           && isLevelNullOrViewable(wall.getLevel())
           && wall.isAtLevel(this.home.getSelectedLevel())
@@ -4124,7 +4425,8 @@ public class PlanController extends FurnitureController implements Controller {
 
     boolean basePlanLocked = this.home.isBasePlanLocked();
     Level selectedLevel = this.home.getSelectedLevel();
-    for (Label label : this.home.getLabels()) {
+    // Search only among the items which bounds are close to the point
+    for (Label label : this.labelsIndex.getItemsAt(x, y, margin)) {
       if ((!basePlanLocked
             || !isItemPartOfBasePlan(label))
           && isLevelNullOrViewable(label.getLevel())
@@ -4139,7 +4441,7 @@ public class PlanController extends FurnitureController implements Controller {
       }
     }
 
-    for (DimensionLine dimensionLine : this.home.getDimensionLines()) {
+    for (DimensionLine dimensionLine : this.dimensionLinesIndex.getItemsAt(x, y, margin)) {
       if ((!basePlanLocked
             || !isItemPartOfBasePlan(dimensionLine))
           && isLevelNullOrViewable(dimensionLine.getLevel())
@@ -4152,7 +4454,7 @@ public class PlanController extends FurnitureController implements Controller {
       }
     }
 
-    List<Polyline> polylines = this.home.getPolylines();
+    List<Polyline> polylines = this.polylinesIndex.getItemsAt(x, y, margin);
     // Search in home polylines in reverse order to give priority to last drawn polyline
     for (int i = polylines.size() - 1; i >= 0; i--) {
       Polyline polyline = polylines.get(i);
@@ -4168,7 +4470,7 @@ public class PlanController extends FurnitureController implements Controller {
       }
     }
 
-    List<HomePieceOfFurniture> furniture = this.home.getFurniture();
+    List<HomePieceOfFurniture> furniture = this.furnitureIndex.getItemsAt(x, y, margin);
     // Search in home furniture in reverse order to give priority to last drawn piece
     // at highest elevation in case it covers an other piece
     List<HomePieceOfFurniture> foundFurniture = new ArrayList<HomePieceOfFurniture>();
@@ -4266,7 +4568,7 @@ public class PlanController extends FurnitureController implements Controller {
           }
         });
       items.addAll(foundFurniture);
-      for (Wall wall : this.home.getWalls()) {
+      for (Wall wall : this.wallsIndex.getItemsAt(x, y, margin)) {
         if ((!basePlanLocked
               || !isItemPartOfBasePlan(wall))
             && isLevelNullOrViewable(wall.getLevel())
@@ -4279,7 +4581,7 @@ public class PlanController extends FurnitureController implements Controller {
         }
       }
 
-      List<Room> rooms = this.home.getRooms();
+      List<Room> rooms = this.roomsIndex.getItemsAt(x, y, margin);
       // Search in home rooms in reverse order to give priority to last drawn room
       // at highest elevation in case it covers an other piece
       Room foundRoom = null;
@@ -5012,6 +5314,7 @@ public class PlanController extends FurnitureController implements Controller {
             wall.getXEnd() + dx, wall.getYEnd() + dy,
             !items.contains(wall.getWallAtEnd()));
         resetAreaCache();
+        invalidateWall(wall);
         wall.addPropertyChangeListener(this.wallChangeListener);
       } else {
         boolean boundToWall = false;
@@ -6826,25 +7129,19 @@ public class PlanController extends FurnitureController implements Controller {
    * Returns the area covered by walls.
    */
   private Area getWallsArea(boolean includeBaseboards) {
-    if (!includeBaseboards && this.wallsAreaCache == null
-        || includeBaseboards && this.wallsIncludingBaseboardsAreaCache == null) {
-      // Compute walls area
-      Area wallsArea = new Area();
-      Level selectedLevel = this.home.getSelectedLevel();
+    if (this.wallsAreaCache == null) {
+      // Dispatch walls in tiles which area will be computed again only when one of their walls changes
+      this.wallsAreaCache = new TiledWallsArea(false);
+      this.wallsIncludingBaseboardsAreaCache = new TiledWallsArea(true);
       for (Wall wall : this.home.getWalls()) {
-        if (wall.isAtLevel(selectedLevel)) {
-          wallsArea.add(new Area(getPath(wall.getPoints(includeBaseboards))));
-        }
-      }
-      if (includeBaseboards) {
-        this.wallsIncludingBaseboardsAreaCache = wallsArea;
-      } else {
-        this.wallsAreaCache = wallsArea;
+        this.wallsAreaCache.addWall(wall);
+        this.wallsIncludingBaseboardsAreaCache.addWall(wall);
       }
     }
+    Level selectedLevel = this.home.getSelectedLevel();
     return includeBaseboards
-        ? this.wallsIncludingBaseboardsAreaCache
-        : this.wallsAreaCache;
+        ? this.wallsIncludingBaseboardsAreaCache.getArea(selectedLevel)
+        : this.wallsAreaCache.getArea(selectedLevel);
   }
 
   /**
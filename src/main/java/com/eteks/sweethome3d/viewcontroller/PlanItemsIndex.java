@@ -0,0 +1,311 @@
+/*
+ * PlanItemsIndex.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.viewcontroller;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.eteks.sweethome3d.model.Elevatable;
+import com.eteks.sweethome3d.model.Level;
+
+/**
+ * A spatial index of the items of a home collection displayed in the plan.
+ * Items are dispatched per level in the cells of a uniform grid, in order to find quickly
+ * the items close to a given point without testing each item of the collection.
+ * The bounds of an item are computed lazily at the next search once it was invalidated.
+ * @author Emmanuel Puybaret
+ */
+abstract class PlanItemsIndex<T extends Elevatable> {
+  private static final float CELL_SIZE                 = 250; // cm
+  private static final int   MAX_CELL_COUNT_PER_ITEM   = 256;
+
+  private final Map<Level, Map<Long, List<T>>> levelCells;
+  private final Map<Level, List<T>>            levelLargeItems;
+  private final Map<T, IndexedItem>            indexedItems;
+  private final Map<T, Boolean>                invalidItems;
+  private Map<T, Integer>                      itemIndices;
+
+  public PlanItemsIndex() {
+    this.levelCells = new HashMap<Level, Map<Long, List<T>>>();
+    this.levelLargeItems = new HashMap<Level, List<T>>();
+    this.indexedItems = new IdentityHashMap<T, IndexedItem>();
+    this.invalidItems = new IdentityHashMap<T, Boolean>();
+  }
+
+  /**
+   * Returns the indexed items in their order in home.
+   */
+  protected abstract Collection<T> getItems();
+
+  /**
+   * Returns the bounds of the area where the given <code>item</code> may be found
+   * with a point, including the texts displayed around it.
+   */
+  protected abstract Rectangle2D getItemBounds(T item);
+
+  /**
+   * Notifies this index that the items of the indexed collection were added, removed or reordered.
+   */
+  public void itemsChanged() {
+    this.itemIndices = null;
+  }
+
+  /**
+   * Notifies this index that the bounds of the given <code>item</code> changed.
+   */
+  public void invalidateItem(T item) {
+    this.invalidItems.put(item, Boolean.TRUE);
+  }
+
+  /**
+   * Notifies this index that the bounds of all its items changed.
+   */
+  public void invalidateAllItems() {
+    this.levelCells.clear();
+    this.levelLargeItems.clear();
+    this.indexedItems.clear();
+    this.invalidItems.clear();
+    this.itemIndices = null;
+  }
+
+  /**
+   * Returns the items at a viewable level or at no level which bounds intersect the square
+   * centered at the point (<code>x</code>, <code>y</code>) with a given <code>margin</code>.
+   * Returned items are a superset of the items containing that point, listed in their order in home.
+   */
+  public List<T> getItemsAt(float x, float y, float margin) {
+    update();
+    double xMin = x - margin;
+    double yMin = y - margin;
+    double xMax = x + margin;
+    double yMax = y + margin;
+    int minCellX = getCellCoordinate(xMin);
+    int minCellY = getCellCoordinate(yMin);
+    int maxCellX = getCellCoordinate(xMax);
+    int maxCellY = getCellCoordinate(yMax);
+    Map<T, Boolean> foundItems = new IdentityHashMap<T, Boolean>();
+    for (Map.Entry<Level, Map<Long, List<T>>> levelEntry : this.levelCells.entrySet()) {
+      Level level = levelEntry.getKey();
+      if (level == null || level.isViewable()) {
+        Map<Long, List<T>> cells = levelEntry.getValue();
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+          for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+            List<T> cellItems = cells.get(getCellKey(cellX, cellY));
+            if (cellItems != null) {
+              addItemsIntersectingRectangle(cellItems, xMin, yMin, xMax, yMax, foundItems);
+            }
+          }
+        }
+      }
+    }
+    for (Map.Entry<Level, List<T>> levelEntry : this.levelLargeItems.entrySet()) {
+      Level level = levelEntry.getKey();
+      if (level == null || level.isViewable()) {
+        addItemsIntersectingRectangle(levelEntry.getValue(), xMin, yMin, xMax, yMax, foundItems);
+      }
+    }
+
+    List<T> items = new ArrayList<T>(foundItems.keySet());
+    if (items.size() > 1) {
+      final Map<T, Integer> itemIndices = this.itemIndices;
+      Collections.sort(items, new Comparator<T>() {
+          public int compare(T item1, T item2) {
+            return itemIndices.get(item1) - itemIndices.get(item2);
+          }
+        });
+    }
+    return items;
+  }
+
+  private void addItemsIntersectingRectangle(List<T> items,
+                                             double xMin, double yMin, double xMax, double yMax,
+                                             Map<T, Boolean> foundItems) {
+    for (T item : items) {
+      Rectangle2D bounds = this.indexedItems.get(item).bounds;
+      if (bounds == null
+          || bounds.getMinX() <= xMax
+              && bounds.getMaxX() >= xMin
+              && bounds.getMinY() <= yMax
+              && bounds.getMaxY() >= yMin) {
+        foundItems.put(item, Boolean.TRUE);
+      }
+    }
+  }
+
+  /**
+   * Updates item indices and the cells of invalidated items.
+   */
+  private void update() {
+    if (this.itemIndices == null) {
+      Collection<T> items = getItems();
+      this.itemIndices = new IdentityHashMap<T, Integer>(items.size());
+      int i = 0;
+      for (T item : items) {
+        this.itemIndices.put(item, i++);
+        if (!this.indexedItems.containsKey(item)) {
+          this.invalidItems.put(item, Boolean.TRUE);
+        }
+      }
+      // Remove items that don't belong anymore to the indexed collection
+      for (Iterator<Map.Entry<T, IndexedItem>> it = this.indexedItems.entrySet().iterator(); it.hasNext(); ) {
+        Map.Entry<T, IndexedItem> entry = it.next();
+        if (!this.itemIndices.containsKey(entry.getKey())) {
+          removeItemFromCells(entry.getKey(), entry.getValue());
+          it.remove();
+        }
+      }
+    }
+
+    if (!this.invalidItems.isEmpty()) {
+      for (T item : this.invalidItems.keySet()) {
+        IndexedItem indexedItem = this.indexedItems.remove(item);
+        if (indexedItem != null) {
+          removeItemFromCells(item, indexedItem);
+        }
+        if (this.itemIndices.containsKey(item)) {
+          indexedItem = new IndexedItem(item.getLevel(), getItemBounds(item));
+          addItemToCells(item, indexedItem);
+          this.indexedItems.put(item, indexedItem);
+        }
+      }
+      this.invalidItems.clear();
+    }
+  }
+
+  private void addItemToCells(T item, IndexedItem indexedItem) {
+    if (indexedItem.large) {
+      List<T> largeItems = this.levelLargeItems.get(indexedItem.level);
+      if (largeItems == null) {
+        largeItems = new ArrayList<T>();
+        this.levelLargeItems.put(indexedItem.level, largeItems);
+      }
+      largeItems.add(item);
+    } else {
+      Map<Long, List<T>> cells = this.levelCells.get(indexedItem.level);
+      if (cells == null) {
+        cells = new HashMap<Long, List<T>>();
+        this.levelCells.put(indexedItem.level, cells);
+      }
+      for (int cellX = indexedItem.minCellX; cellX <= indexedItem.maxCellX; cellX++) {
+        for (int cellY = indexedItem.minCellY; cellY <= indexedItem.maxCellY; cellY++) {
+          Long cellKey = getCellKey(cellX, cellY);
+          List<T> cellItems = cells.get(cellKey);
+          if (cellItems == null) {
+            cellItems = new ArrayList<T>(4);
+            cells.put(cellKey, cellItems);
+          }
+          cellItems.add(item);
+        }
+      }
+    }
+  }
+
+  private void removeItemFromCells(T item, IndexedItem indexedItem) {
+    if (indexedItem.large) {
+      List<T> largeItems = this.levelLargeItems.get(indexedItem.level);
+      removeItem(largeItems, item);
+      if (largeItems.isEmpty()) {
+        this.levelLargeItems.remove(indexedItem.level);
+      }
+    } else {
+      Map<Long, List<T>> cells = this.levelCells.get(indexedItem.level);
+      for (int cellX = indexedItem.minCellX; cellX <= indexedItem.maxCellX; cellX++) {
+        for (int cellY = indexedItem.minCellY; cellY <= indexedItem.maxCellY; cellY++) {
+          Long cellKey = getCellKey(cellX, cellY);
+          List<T> cellItems = cells.get(cellKey);
+          removeItem(cellItems, item);
+          if (cellItems.isEmpty()) {
+            cells.remove(cellKey);
+          }
+        }
+      }
+      if (cells.isEmpty()) {
+        this.levelCells.remove(indexedItem.level);
+      }
+    }
+  }
+
+  /**
+   * Removes the given <code>item</code> from <code>items</code> comparing references.
+   */
+  private void removeItem(List<T> items, T item) {
+    for (int i = items.size() - 1; i >= 0; i--) {
+      if (items.get(i) == item) {
+        items.remove(i);
+        break;
+      }
+    }
+  }
+
+  private static int getCellCoordinate(double value) {
+    return (int)Math.floor(value / CELL_SIZE);
+  }
+
+  private static Long getCellKey(int cellX, int cellY) {
+    return ((long)cellX << 32) | (cellY & 0xFFFFFFFFL);
+  }
+
+  /**
+   * The level, the bounds and the cells of an indexed item.
+   */
+  private static class IndexedItem {
+    private final Level       level;
+    private final Rectangle2D bounds;
+    private final boolean     large;
+    private final int         minCellX;
+    private final int         minCellY;
+    private final int         maxCellX;
+    private final int         maxCellY;
+
+    public IndexedItem(Level level, Rectangle2D bounds) {
+      this.level = level;
+      if (isFinite(bounds.getMinX()) && isFinite(bounds.getMinY())
+          && isFinite(bounds.getMaxX()) && isFinite(bounds.getMaxY())) {
+        this.bounds = bounds;
+        this.minCellX = getCellCoordinate(bounds.getMinX());
+        this.minCellY = getCellCoordinate(bounds.getMinY());
+        this.maxCellX = getCellCoordinate(bounds.getMaxX());
+        this.maxCellY = getCellCoordinate(bounds.getMaxY());
+        // Store items spread over too many cells apart
+        this.large = (long)(this.maxCellX - this.minCellX + 1) * (this.maxCellY - this.minCellY + 1) > MAX_CELL_COUNT_PER_ITEM;
+      } else {
+        this.minCellX = 0;
+        this.minCellY = 0;
+        this.maxCellX = -1;
+        this.maxCellY = -1;
+        // Keep items with undefined bounds among the items always returned
+        this.bounds = null;
+        this.large = true;
+      }
+    }
+
+    private static boolean isFinite(double value) {
+      return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+  }
+}
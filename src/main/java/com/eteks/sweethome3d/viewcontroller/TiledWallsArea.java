@@ -0,0 +1,260 @@
+/*
+ * TiledWallsArea.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.viewcontroller;
+
+import java.awt.geom.Area;
+import java.awt.geom.GeneralPath;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Wall;
+
+/**
+ * The area covered by the walls at a given level, maintained incrementally.
+ * Walls are dispatched in square tiles according to their middle point, and the area of each tile
+ * is merged with the ones of its neighbors along a quadtree. Once a wall is modified,
+ * only the area of its tile and the areas of the ancestors of that tile are computed again.
+ * @author Emmanuel Puybaret
+ */
+class TiledWallsArea {
+  private static final float TILE_SIZE = 500; // cm
+  // Tile coordinates shifted 31 times are equal to -1 or 0, which gives at most 4 nodes at the top
+  private static final int   DEPTH     = 32;
+
+  private final boolean               includeBaseboards;
+  private final Map<Wall, Long>       wallTiles;
+  private final List<Map<Long, Node>> depthNodes;
+  private Level                       level;
+  private Area                        area;
+
+  /**
+   * Creates an empty walls area.
+   * @param includeBaseboards if <code>true</code> the area will include the baseboards of walls
+   */
+  public TiledWallsArea(boolean includeBaseboards) {
+    this.includeBaseboards = includeBaseboards;
+    this.wallTiles = new IdentityHashMap<Wall, Long>();
+    this.depthNodes = new ArrayList<Map<Long, Node>>(DEPTH);
+    for (int i = 0; i < DEPTH; i++) {
+      this.depthNodes.add(new HashMap<Long, Node>());
+    }
+  }
+
+  /**
+   * Adds the given <code>wall</code> to this area.
+   */
+  public void addWall(Wall wall) {
+    int tileX = getTileCoordinate((wall.getXStart() + wall.getXEnd()) / 2);
+    int tileY = getTileCoordinate((wall.getYStart() + wall.getYEnd()) / 2);
+    Long tileKey = getNodeKey(tileX, tileY);
+    Node tile = this.depthNodes.get(0).get(tileKey);
+    if (tile == null) {
+      tile = new Node();
+      tile.walls = new ArrayList<Wall>();
+      tile.tileCount = 1;
+      this.depthNodes.get(0).put(tileKey, tile);
+      for (int depth = 1; depth < DEPTH; depth++) {
+        Long nodeKey = getNodeKey(tileX >> depth, tileY >> depth);
+        Node node = this.depthNodes.get(depth).get(nodeKey);
+        if (node == null) {
+          node = new Node();
+          this.depthNodes.get(depth).put(nodeKey, node);
+        }
+        node.tileCount++;
+      }
+    }
+    tile.walls.add(wall);
+    this.wallTiles.put(wall, tileKey);
+    invalidateTile(tileX, tileY);
+  }
+
+  /**
+   * Removes the given <code>wall</code> from this area.
+   */
+  public void removeWall(Wall wall) {
+    Long tileKey = this.wallTiles.remove(wall);
+    if (tileKey != null) {
+      int tileX = (int)(tileKey >> 32);
+      int tileY = (int)(long)tileKey;
+      invalidateTile(tileX, tileY);
+      Node tile = this.depthNodes.get(0).get(tileKey);
+      for (int i = tile.walls.size() - 1; i >= 0; i--) {
+        if (tile.walls.get(i) == wall) {
+          tile.walls.remove(i);
+          break;
+        }
+      }
+      if (tile.walls.isEmpty()) {
+        this.depthNodes.get(0).remove(tileKey);
+        for (int depth = 1; depth < DEPTH; depth++) {
+          Long nodeKey = getNodeKey(tileX >> depth, tileY >> depth);
+          Node node = this.depthNodes.get(depth).get(nodeKey);
+          if (--node.tileCount == 0) {
+            this.depthNodes.get(depth).remove(nodeKey);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Notifies this area that the shape of the given <code>wall</code> changed.
+   */
+  public void invalidateWall(Wall wall) {
+    if (this.wallTiles.containsKey(wall)) {
+      removeWall(wall);
+      addWall(wall);
+    }
+  }
+
+  /**
+   * Forces the computation of the area of all the walls.
+   */
+  public void invalidateAllWalls() {
+    for (Map<Long, Node> nodes : this.depthNodes) {
+      for (Node node : nodes.values()) {
+        node.area = null;
+      }
+    }
+    this.area = null;
+  }
+
+  /**
+   * Returns the area covered by the walls of this object at the given <code>level</code>.
+   * The returned area shouldn't be modified.
+   */
+  public Area getArea(Level level) {
+    if (level != this.level) {
+      invalidateAllWalls();
+      this.level = level;
+    }
+    if (this.area == null) {
+      Area area = null;
+      int topDepth = DEPTH - 1;
+      for (Map.Entry<Long, Node> entry : this.depthNodes.get(topDepth).entrySet()) {
+        long nodeKey = entry.getKey();
+        Area nodeArea = getNodeArea(topDepth, (int)(nodeKey >> 32), (int)nodeKey, entry.getValue());
+        if (area == null) {
+          area = nodeArea;
+        } else {
+          area = new Area(area);
+          area.add(nodeArea);
+        }
+      }
+      this.area = area != null
+          ? area
+          : new Area();
+    }
+    return this.area;
+  }
+
+  /**
+   * Returns the area of the walls in the given node, computing it if necessary.
+   */
+  private Area getNodeArea(int depth, int nodeX, int nodeY, Node node) {
+    if (node.area == null) {
+      if (depth == 0) {
+        Area tileArea = new Area();
+        for (Wall wall : node.walls) {
+          if (wall.isAtLevel(this.level)) {
+            tileArea.add(new Area(getPath(wall.getPoints(this.includeBaseboards))));
+          }
+        }
+        node.area = tileArea;
+      } else {
+        Area nodeArea = null;
+        boolean nodeAreaShared = false;
+        Map<Long, Node> childNodes = this.depthNodes.get(depth - 1);
+        for (int i = 0; i < 2; i++) {
+          for (int j = 0; j < 2; j++) {
+            int childX = nodeX * 2 + i;
+            int childY = nodeY * 2 + j;
+            Node childNode = childNodes.get(getNodeKey(childX, childY));
+            if (childNode != null) {
+              Area childArea = getNodeArea(depth - 1, childX, childY, childNode);
+              if (nodeArea == null) {
+                // Share the area of a single child
+                nodeArea = childArea;
+                nodeAreaShared = true;
+              } else {
+                if (nodeAreaShared) {
+                  nodeArea = new Area(nodeArea);
+                  nodeAreaShared = false;
+                }
+                nodeArea.add(childArea);
+              }
+            }
+          }
+        }
+        node.area = nodeArea != null
+            ? nodeArea
+            : new Area();
+      }
+    }
+    return node.area;
+  }
+
+  /**
+   * Invalidates the area of the given tile and the areas of its ancestors.
+   */
+  private void invalidateTile(int tileX, int tileY) {
+    for (int depth = 0; depth < DEPTH; depth++) {
+      Node node = this.depthNodes.get(depth).get(getNodeKey(tileX >> depth, tileY >> depth));
+      if (node != null) {
+        node.area = null;
+      }
+    }
+    this.area = null;
+  }
+
+  private static int getTileCoordinate(float value) {
+    return (int)Math.floor(value / TILE_SIZE);
+  }
+
+  private static Long getNodeKey(int x, int y) {
+    return ((long)x << 32) | (y & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Returns the shape matching the coordinates in <code>points</code> array.
+   */
+  private static GeneralPath getPath(float [][] points) {
+    GeneralPath path = new GeneralPath();
+    path.moveTo(points [0][0], points [0][1]);
+    for (int i = 1; i < points.length; i++) {
+      path.lineTo(points [i][0], points [i][1]);
+    }
+    path.closePath();
+    return path;
+  }
+
+  /**
+   * A tile of walls or a node grouping 4 nodes of the quadtree.
+   */
+  private static class Node {
+    private int        tileCount;
+    private List<Wall> walls;
+    private Area       area;
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * AutoRecoveryManagerTest.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Method;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.eteks.sweethome3d.model.Home;
+
+/**
+ * Tests how <code>AutoRecoveryManager</code> reads the journals of recovered homes.
+ * @author Emmanuel Puybaret
+ */
+public class AutoRecoveryManagerTest {
+  private File journalFile;
+
+  @Before
+  public void createJournalFile() throws IOException {
+    this.journalFile = File.createTempFile("home", ".journal");
+  }
+
+  @After
+  public void deleteJournalFile() {
+    this.journalFile.delete();
+  }
+
+  @Test
+  public void testJournalEntries() throws Exception {
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(this.journalFile));
+    writeEntry(out, "first");
+    writeEntry(out, "second");
+    out.close();
+    assertEquals("Wrong recovered home", "second", readJournal(new Home()).getName());
+  }
+
+  @Test
+  public void testTruncatedJournal() throws Exception {
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(this.journalFile));
+    writeEntry(out, "first");
+    // Write an entry partially
+    out.writeInt(1000);
+    out.write(new byte [100]);
+    out.close();
+    assertEquals("Wrong recovered home", "first", readJournal(new Home()).getName());
+  }
+
+  @Test(timeout = 10000)
+  public void testCorruptJournal() throws Exception {
+    // Check negative lengths, and among them -4 which would point to the same entry
+    for (int length : new int [] {-4, -1, -100, Integer.MIN_VALUE}) {
+      DataOutputStream out = new DataOutputStream(new FileOutputStream(this.journalFile));
+      writeEntry(out, "first");
+      out.writeInt(length);
+      out.write(new byte [100]);
+      writeEntry(out, "ignored");
+      out.close();
+      assertEquals("Wrong recovered home for length " + length, "first", readJournal(new Home()).getName());
+
+      out = new DataOutputStream(new FileOutputStream(this.journalFile));
+      out.writeInt(length);
+      writeEntry(out, "ignored");
+      out.close();
+      Home recoveredHome = new Home();
+      assertSame("Wrong recovered home for length " + length, recoveredHome, readJournal(recoveredHome));
+    }
+  }
+
+  /**
+   * Writes to <code>out</code> an entry containing a home with the given <code>name</code>.
+   */
+  private void writeEntry(DataOutputStream out, String name) throws IOException {
+    Home home = new Home();
+    home.setName(name);
+    ByteArrayOutputStream entryOut = new ByteArrayOutputStream();
+    ObjectOutputStream objectOut = new ObjectOutputStream(entryOut);
+    objectOut.writeObject(home);
+    objectOut.close();
+    out.writeInt(entryOut.size());
+    entryOut.writeTo(out);
+  }
+
+  /**
+   * Returns the home read by the private <code>readJournal</code> method of <code>AutoRecoveryManager</code>.
+   */
+  private Home readJournal(Home recoveredHome) throws Exception {
+    Method readJournalMethod = AutoRecoveryManager.class.getDeclaredMethod("readJournal", File.class, Home.class);
+    readJournalMethod.setAccessible(true);
+    return (Home)readJournalMethod.invoke(null, this.journalFile, recoveredHome);
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * HomeSaveBenchmark.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
+import com.eteks.sweethome3d.model.Content;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.tools.TemporaryURLContent;
+
+/**
+ * Benchmark of the time spent to save homes containing an increasing count of pieces
+ * with <code>DefaultHomeOutputStream</code>, compared to the time spent to serialize
+ * these homes once. Run it with <code>mvn test -Pbenchmark -Dtest=HomeSaveBenchmark</code>.
+ * @author Emmanuel Puybaret
+ */
+public class HomeSaveBenchmark {
+  private static final int [] FURNITURE_COUNTS = {1000, 5000, 10000, 20000, 40000};
+  private static final int    CONTENT_COUNT = 50;
+  private static final int    WARMUP_ITERATIONS = 3;
+  private static final int    MEASURED_ITERATIONS = 5;
+
+  private static File []    contentFiles;
+  private static Content [] icons;
+  private static Content [] models;
+
+  @BeforeClass
+  public static void createContents() throws IOException {
+    Random random = new Random(0);
+    contentFiles = new File [CONTENT_COUNT * 2];
+    icons = new Content [CONTENT_COUNT];
+    models = new Content [CONTENT_COUNT];
+    for (int i = 0; i < contentFiles.length; i++) {
+      byte [] data = new byte [i < CONTENT_COUNT ? 4096 : 65536];
+      random.nextBytes(data);
+      contentFiles [i] = File.createTempFile("content", ".tmp");
+      OutputStream out = new FileOutputStream(contentFiles [i]);
+      out.write(data);
+      out.close();
+      Content content = new TemporaryURLContent(contentFiles [i].toURI().toURL());
+      if (i < CONTENT_COUNT) {
+        icons [i] = content;
+      } else {
+        models [i - CONTENT_COUNT] = content;
+      }
+    }
+  }
+
+  @AfterClass
+  public static void deleteContents() {
+    for (File file : contentFiles) {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void benchmarkSaveTime() throws Exception {
+    // Check first that a saved home can be read back
+    Home home = createHome(FURNITURE_COUNTS [0]);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DefaultHomeOutputStream homeOut = createHomeOutputStream(out, true);
+    homeOut.writeHome(home);
+    homeOut.close();
+    DefaultHomeInputStream homeIn = new DefaultHomeInputStream(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals("Wrong furniture count", FURNITURE_COUNTS [0], homeIn.readHome().getFurniture().size());
+    homeIn.close();
+
+    System.out.println("Pieces  Serialization (ms)  Save Home (ms)  Save Home + Home.xml (ms)  Size (KB)");
+    for (int furnitureCount : FURNITURE_COUNTS) {
+      final Home measuredHome = createHome(furnitureCount);
+      final CountingOutputStream countingOut = new CountingOutputStream();
+      double serializationTime = measure(new Task() {
+          public void run() throws IOException {
+            ObjectOutputStream objectOut = new ObjectOutputStream(countingOut);
+            objectOut.writeObject(measuredHome);
+            objectOut.close();
+          }
+        });
+      double saveTime = measure(new Task() {
+          public void run() throws IOException {
+            DefaultHomeOutputStream homeOut = createHomeOutputStream(countingOut, false);
+            homeOut.writeHome(measuredHome);
+            homeOut.close();
+          }
+        });
+      double saveWithXmlTime = measure(new Task() {
+          public void run() throws IOException {
+            countingOut.count = 0;
+            DefaultHomeOutputStream homeOut = createHomeOutputStream(countingOut, true);
+            homeOut.writeHome(measuredHome);
+            homeOut.close();
+          }
+        });
+      System.out.printf("%6d  %18.1f  %14.1f  %25.1f  %9d%n", furnitureCount,
+          serializationTime, saveTime, saveWithXmlTime, countingOut.count / 1024);
+    }
+  }
+
+  /**
+   * Returns a stream that saves homes in a <code>Home</code> entry, followed by a 
+   * <code>Home.xml</code> entry like the default recorder of Sweet Home 3D if <code>xmlEntry</code> is <code>true</code>.
+   */
+  private DefaultHomeOutputStream createHomeOutputStream(OutputStream out, boolean xmlEntry) throws IOException {
+    return new DefaultHomeOutputStream(out, 0, ContentRecording.INCLUDE_TEMPORARY_CONTENT,
+        true, xmlEntry ? new HomeXMLExporter() : null, false);
+  }
+
+  /**
+   * Returns a home containing <code>furnitureCount</code> pieces which share a few contents.
+   */
+  private Home createHome(int furnitureCount) {
+    Home home = new Home();
+    for (int i = 0; i < furnitureCount; i++) {
+      CatalogPieceOfFurniture catalogPiece = new CatalogPieceOfFurniture(null, "Piece " + i, null,
+          icons [i % CONTENT_COUNT], models [i % CONTENT_COUNT], 50, 50, 80, 0, true, 
+          new float [][] {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}}, null, true, null, null);
+      HomePieceOfFurniture piece = new HomePieceOfFurniture(catalogPiece);
+      piece.setX(i % 200 * 60);
+      piece.setY(i / 200 * 60);
+      home.addPieceOfFurniture(piece);
+    }
+    return home;
+  }
+
+  /**
+   * Returns the average time in milliseconds spent to run the given <code>task</code>.
+   */
+  private double measure(Task task) throws Exception {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      task.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      task.run();
+    }
+    return (System.nanoTime() - start) / 1E6 / MEASURED_ITERATIONS;
+  }
+
+  private static interface Task {
+    public void run() throws Exception;
+  }
+
+  /**
+   * An output stream that counts written bytes without storing them.
+   */
+  private static class CountingOutputStream extends OutputStream {
+    private long count;
+
+    @Override
+    public void write(int b) {
+      this.count++;
+    }
+
+    @Override
+    public void write(byte [] b, int off, int len) {
+      this.count += len;
+    }
+  }
+}
@@ -0,0 +1,436 @@
+/*
+ * ParallelZipOutputStreamTest.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
+import com.eteks.sweethome3d.model.Content;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.tools.TemporaryURLContent;
+import com.eteks.sweethome3d.tools.URLContent;
+
+/**
+ * Tests that the files written by <code>ParallelZipOutputStream</code> can be read back
+ * with <code>ZipFile</code>, <code>ZipInputStream</code> and <code>DefaultHomeInputStream</code>.
+ * @author Emmanuel Puybaret
+ */
+public class ParallelZipOutputStreamTest {
+  private static final int LARGE_DATA_SIZE = 3 * 1024 * 1024;
+
+  private List<File> files = new ArrayList<File>();
+  private int        temporaryEntryFileCount;
+
+  @Before
+  public void countTemporaryEntryFiles() {
+    this.temporaryEntryFileCount = getTemporaryEntryFileCount();
+  }
+
+  @After
+  public void deleteFiles() {
+    for (File file : this.files) {
+      file.delete();
+    }
+    assertEquals("Temporary files not deleted", this.temporaryEntryFileCount, getTemporaryEntryFileCount());
+  }
+
+  /**
+   * Tests that entries compressed in parallel are written in the order they were added,
+   * with entries of any size, compressible or not.
+   */
+  @Test
+  public void testEntriesOrder() throws IOException {
+    Random random = new Random(0);
+    Map<String, byte []> entries = new LinkedHashMap<String, byte []>();
+    for (int i = 0; i < 60; i++) {
+      int size = i % 10 == 9
+          ? LARGE_DATA_SIZE + random.nextInt(1000)
+          : random.nextInt(50000);
+      entries.put("entry" + i, i % 3 == 0
+          ? createRandomData(random, size)
+          : (i % 3 == 1
+              ? createCompressibleData(random, size)
+              : createJpegData(random, size)));
+    }
+    entries.put("empty", new byte [0]);
+
+    File zipFile = createTemporaryFile();
+    ParallelZipOutputStream zipOut = new ParallelZipOutputStream(new FileOutputStream(zipFile), 5, 4);
+    for (Map.Entry<String, byte []> entry : entries.entrySet()) {
+      zipOut.putNextEntry(entry.getKey(), new ByteArrayContent(entry.getValue()));
+    }
+    zipOut.close();
+
+    assertZipFileEntries(zipFile, entries);
+    assertZipInputStreamEntries(zipFile, entries);
+  }
+
+  /**
+   * Tests entries written with <code>putNextEntry(ZipEntry)</code> which sizes are stored
+   * in data descriptors, mixed with entries compressed in parallel.
+   */
+  @Test
+  public void testDataDescriptors() throws IOException {
+    Random random = new Random(1);
+    Map<String, byte []> entries = new LinkedHashMap<String, byte []>();
+    File zipFile = createTemporaryFile();
+    ParallelZipOutputStream zipOut = new ParallelZipOutputStream(new FileOutputStream(zipFile), 5, 4);
+    for (int i = 0; i < 20; i++) {
+      String name = "entry" + i;
+      byte [] data = createCompressibleData(random, i % 5 == 0 ? LARGE_DATA_SIZE : random.nextInt(20000));
+      entries.put(name, data);
+      if (i % 2 == 0) {
+        zipOut.putNextEntry(new ZipEntry(name));
+        zipOut.write(data);
+      } else {
+        zipOut.putNextEntry(name, new ByteArrayContent(data));
+      }
+    }
+    zipOut.close();
+
+    assertZipFileEntries(zipFile, entries);
+    assertZipInputStreamEntries(zipFile, entries);
+  }
+
+  /**
+   * Tests that the entries of a zip file are copied without being decompressed.
+   */
+  @Test
+  public void testRawCopy() throws IOException {
+    Random random = new Random(2);
+    Map<String, byte []> entries = new LinkedHashMap<String, byte []>();
+    File sourceFile = createTemporaryFile();
+    ZipOutputStream sourceOut = new ZipOutputStream(new FileOutputStream(sourceFile));
+    for (int i = 0; i < 10; i++) {
+      String name = "source" + i;
+      byte [] data = createCompressibleData(random, random.nextInt(50000));
+      entries.put(name, data);
+      sourceOut.putNextEntry(new ZipEntry(name));
+      sourceOut.write(data);
+    }
+    sourceOut.close();
+
+    File zipFile = createTemporaryFile();
+    ParallelZipOutputStream zipOut = new ParallelZipOutputStream(new FileOutputStream(zipFile), 5, 4);
+    URLContent sourceContent = new URLContent(new URL("jar:" + sourceFile.toURI() + "!/source0"));
+    for (ContentDigestManager.ZipEntryData zipEntry : ContentDigestManager.getInstance().getZipURLEntries(sourceContent)) {
+      assertTrue("Entry not copied", zipOut.putNextEntry(zipEntry.getName(), sourceFile, zipEntry));
+    }
+    zipOut.close();
+
+    assertZipFileEntries(zipFile, entries);
+    assertZipInputStreamEntries(zipFile, entries);
+  }
+
+  /**
+   * Tests that stored entries of a zip file are copied without being decompressed
+   * only if their data is already compressed.
+   */
+  @Test
+  public void testStoredEntriesRawCopy() throws IOException {
+    Random random = new Random(5);
+    Map<String, byte []> entries = new LinkedHashMap<String, byte []>();
+    File sourceFile = createTemporaryFile();
+    ZipOutputStream sourceOut = new ZipOutputStream(new FileOutputStream(sourceFile));
+    for (int i = 0; i < 10; i++) {
+      String name = "source" + i;
+      byte [] data = i % 2 == 0
+          ? createJpegData(random, random.nextInt(50000))
+          : createCompressibleData(random, random.nextInt(50000));
+      entries.put(name, data);
+      ZipEntry sourceEntry = new ZipEntry(name);
+      sourceEntry.setMethod(ZipEntry.STORED);
+      sourceEntry.setSize(data.length);
+      CRC32 crc = new CRC32();
+      crc.update(data);
+      sourceEntry.setCrc(crc.getValue());
+      sourceOut.putNextEntry(sourceEntry);
+      sourceOut.write(data);
+    }
+    sourceOut.close();
+
+    File zipFile = createTemporaryFile();
+    ParallelZipOutputStream zipOut = new ParallelZipOutputStream(new FileOutputStream(zipFile), 5, 4);
+    URLContent sourceContent = new URLContent(new URL("jar:" + sourceFile.toURI() + "!/source0"));
+    int i = 0;
+    for (ContentDigestManager.ZipEntryData zipEntry : ContentDigestManager.getInstance().getZipURLEntries(sourceContent)) {
+      boolean copied = zipOut.putNextEntry(zipEntry.getName(), sourceFile, zipEntry);
+      assertEquals("Wrong copy of " + zipEntry.getName(), i++ % 2 == 0, copied);
+      if (!copied) {
+        zipOut.putNextEntry(zipEntry.getName(), new ByteArrayContent(entries.get(zipEntry.getName())));
+      }
+    }
+    zipOut.close();
+
+    assertZipFileEntries(zipFile, entries);
+    assertZipInputStreamEntries(zipFile, entries);
+    ZipFile zip = new ZipFile(zipFile);
+    try {
+      assertEquals("Entry not stored", ZipEntry.STORED, zip.getEntry("source0").getMethod());
+      assertEquals("Entry not compressed", ZipEntry.DEFLATED, zip.getEntry("source1").getMethod());
+    } finally {
+      zip.close();
+    }
+  }
+
+  /**
+   * Tests that a ZIP64 end of central directory is written when entry count is too large.
+   */
+  @Test
+  public void testZip64EntryCount() throws IOException {
+    int entryCount = 70000;
+    File zipFile = createTemporaryFile();
+    ParallelZipOutputStream zipOut = new ParallelZipOutputStream(new FileOutputStream(zipFile), 5, 4);
+    for (int i = 0; i < entryCount; i++) {
+      if (i % 1000 == 0) {
+        zipOut.putNextEntry("entry" + i, new ByteArrayContent(new byte [] {(byte)i}));
+      } else {
+        zipOut.putNextEntry(new ZipEntry("entry" + i));
+        zipOut.write(i);
+      }
+    }
+    zipOut.close();
+
+    ZipFile zip = new ZipFile(zipFile);
+    try {
+      assertEquals("Wrong entry count", entryCount, zip.size());
+      Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+      for (int i = 0; i < entryCount; i++) {
+        ZipEntry zipEntry = zipEntries.nextElement();
+        assertEquals("Wrong entry order", "entry" + i, zipEntry.getName());
+        if (i % 7919 == 0) {
+          assertArrayEquals("Wrong data", new byte [] {(byte)i}, readFully(zip.getInputStream(zipEntry)));
+        }
+      }
+    } finally {
+      zip.close();
+    }
+  }
+
+  /**
+   * Tests that a home saved with large contents compressed in parallel can be read back.
+   */
+  @Test
+  public void testHomeRoundTrip() throws Exception {
+    Random random = new Random(3);
+    List<byte []> data = new ArrayList<byte []>();
+    Home home = new Home();
+    for (int i = 0; i < 8; i++) {
+      int size = i < 4 ? LARGE_DATA_SIZE : random.nextInt(10000) + 1;
+      byte [] iconData = createJpegData(random, random.nextInt(5000) + 4);
+      byte [] modelData = i % 2 == 0
+          ? createRandomData(random, size)
+          : createCompressibleData(random, size);
+      data.add(iconData);
+      data.add(modelData);
+      CatalogPieceOfFurniture catalogPiece = new CatalogPieceOfFurniture(null, "Piece " + i, null,
+          createTemporaryContent(iconData), createTemporaryContent(modelData), 50, 50, 80, 0, true,
+          new float [][] {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}}, null, true, null, null);
+      home.addPieceOfFurniture(new HomePieceOfFurniture(catalogPiece));
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DefaultHomeOutputStream homeOut = new DefaultHomeOutputStream(out, 5,
+        ContentRecording.INCLUDE_TEMPORARY_CONTENT, true, new HomeXMLExporter(), true);
+    homeOut.writeHome(home);
+    homeOut.close();
+
+    DefaultHomeInputStream homeIn = new DefaultHomeInputStream(new ByteArrayInputStream(out.toByteArray()));
+    Home readHome = homeIn.readHome();
+    homeIn.close();
+    List<HomePieceOfFurniture> furniture = readHome.getFurniture();
+    assertEquals("Wrong furniture count", 8, furniture.size());
+    for (int i = 0; i < furniture.size(); i++) {
+      HomePieceOfFurniture piece = furniture.get(i);
+      assertArrayEquals("Wrong icon", data.get(i * 2), readFully(piece.getIcon().openStream()));
+      assertArrayEquals("Wrong model", data.get(i * 2 + 1), readFully(piece.getModel().openStream()));
+    }
+  }
+
+  /**
+   * Tests that temporary files are deleted when the compression of entries fails.
+   */
+  @Test
+  public void testFailedCompression() throws IOException {
+    Random random = new Random(4);
+    ParallelZipOutputStream zipOut = new ParallelZipOutputStream(new ByteArrayOutputStream(), 5, 4);
+    try {
+      for (int i = 0; i < 4; i++) {
+        zipOut.putNextEntry("entry" + i, new ByteArrayContent(createCompressibleData(random, LARGE_DATA_SIZE)));
+      }
+      zipOut.putNextEntry("failing", new Content() {
+          public InputStream openStream() throws IOException {
+            throw new IOException("Unreadable");
+          }
+        });
+      zipOut.close();
+      fail("Failing entry written");
+    } catch (IOException ex) {
+      assertEquals("Wrong exception", "Unreadable", ex.getMessage());
+    } finally {
+      zipOut.dispose();
+    }
+  }
+
+  /**
+   * Checks that the entries of the given zip file are listed in its central directory
+   * in the expected order with the expected data.
+   */
+  private void assertZipFileEntries(File zipFile, Map<String, byte []> entries) throws IOException {
+    ZipFile zip = new ZipFile(zipFile);
+    try {
+      Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+      for (Map.Entry<String, byte []> entry : entries.entrySet()) {
+        ZipEntry zipEntry = zipEntries.nextElement();
+        assertEquals("Wrong entry order", entry.getKey(), zipEntry.getName());
+        assertArrayEquals("Wrong data in " + entry.getKey(), entry.getValue(), readFully(zip.getInputStream(zipEntry)));
+      }
+      assertFalse("Too many entries", zipEntries.hasMoreElements());
+    } finally {
+      zip.close();
+    }
+  }
+
+  /**
+   * Checks that the local entries of the given zip file are in the expected order
+   * with the expected data.
+   */
+  private void assertZipInputStreamEntries(File zipFile, Map<String, byte []> entries) throws IOException {
+    ZipInputStream zipIn = new ZipInputStream(new FileInputStream(zipFile));
+    try {
+      for (Map.Entry<String, byte []> entry : entries.entrySet()) {
+        ZipEntry zipEntry = zipIn.getNextEntry();
+        assertEquals("Wrong entry order", entry.getKey(), zipEntry.getName());
+        assertArrayEquals("Wrong data in " + entry.getKey(), entry.getValue(), readFully(zipIn));
+      }
+      assertNull("Too many entries", zipIn.getNextEntry());
+    } finally {
+      zipIn.close();
+    }
+  }
+
+  private byte [] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte [] buffer = new byte [8192];
+    int length;
+    while ((length = in.read(buffer)) != -1) {
+      out.write(buffer, 0, length);
+    }
+    if (!(in instanceof ZipInputStream)) {
+      in.close();
+    }
+    return out.toByteArray();
+  }
+
+  private byte [] createRandomData(Random random, int size) {
+    byte [] data = new byte [size];
+    random.nextBytes(data);
+    return data;
+  }
+
+  private byte [] createCompressibleData(Random random, int size) {
+    byte [] data = new byte [size];
+    for (int i = 0; i < size; i++) {
+      data [i] = (byte)('a' + random.nextInt(16));
+    }
+    return data;
+  }
+
+  /**
+   * Returns compressible data starting with JPEG signature, that should be stored.
+   */
+  private byte [] createJpegData(Random random, int size) {
+    byte [] data = createCompressibleData(random, Math.max(size, 3));
+    data [0] = (byte)0xFF;
+    data [1] = (byte)0xD8;
+    data [2] = (byte)0xFF;
+    return data;
+  }
+
+  private File createTemporaryFile() throws IOException {
+    File file = File.createTempFile("test", ".zip");
+    this.files.add(file);
+    return file;
+  }
+
+  private Content createTemporaryContent(byte [] data) throws IOException {
+    File file = createTemporaryFile();
+    OutputStream out = new FileOutputStream(file);
+    out.write(data);
+    out.close();
+    return new TemporaryURLContent(file.toURI().toURL());
+  }
+
+  private int getTemporaryEntryFileCount() {
+    String [] entryFiles = new File(System.getProperty("java.io.tmpdir")).list(new FilenameFilter() {
+        public boolean accept(File dir, String name) {
+          return name.startsWith("entry") && name.endsWith(".tmp");
+        }
+      });
+    return entryFiles != null ? entryFiles.length : 0;
+  }
+
+  /**
+   * A content which data is stored in memory.
+   */
+  private static class ByteArrayContent implements Content {
+    private final byte [] data;
+
+    public ByteArrayContent(byte [] data) {
+      this.data = data;
+    }
+
+    public InputStream openStream() throws IOException {
+      return new ByteArrayInputStream(this.data);
+    }
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * DAELoaderBenchmark.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Benchmark of the time and the peak heap memory spent to load generated DAE files of increasing size
+ * with <code>DAELoader</code>, compared to the time and the memory spent only to parse their number arrays
+ * from the text buffered for each element, as <code>DAELoader</code> did before.
+ * Generated files contain only geometries, because the nodes of a visual scene can't be created
+ * when Java 3D can't be initialized in a headless environment.
+ * Run it with <code>mvn test -Pbenchmark -Dtest=DAELoaderBenchmark</code>.
+ * @author Emmanuel Puybaret
+ */
+public class DAELoaderBenchmark {
+  private static final int [] VERTEX_COUNTS = {10000, 50000, 200000, 400000};
+  private static final int    MESH_COUNT = 4;
+  private static final int    WARMUP_ITERATIONS = 2;
+  private static final int    MEASURED_ITERATIONS = 3;
+
+  @Test
+  public void benchmarkLoading() throws Exception {
+    System.out.println("Vertices  Size (MB)  Buffered text parsing (ms)  Peak heap (MB)"
+        + "  DAELoader (ms)  Peak heap (MB)");
+    for (int vertexCount : VERTEX_COUNTS) {
+      final File file = File.createTempFile("model", ".dae");
+      try {
+        writeModel(file, vertexCount, new Random(vertexCount));
+        final URL url = file.toURI().toURL();
+        // Check first that the file is parsed
+        assertEquals("Wrong float count", MESH_COUNT * vertexCount * 6, parseWithBufferedText(file));
+        assertNotNull("No scene", new DAELoader().load(url));
+
+        double bufferedTextTime = measure(new Task() {
+            public Object run() throws Exception {
+              return parseWithBufferedText(file);
+            }
+          });
+        long bufferedTextPeakHeap = measurePeakHeap(new Task() {
+            public Object run() throws Exception {
+              return parseWithBufferedText(file);
+            }
+          });
+        Task loadingTask = new Task() {
+            public Object run() throws Exception {
+              return new DAELoader().load(url);
+            }
+          };
+        double loaderTime = measure(loadingTask);
+        long loaderPeakHeap = measurePeakHeap(loadingTask);
+        System.out.printf("%8d  %9d  %26.1f  %14d  %14.1f  %14d%n", MESH_COUNT * vertexCount, file.length() >> 20,
+            bufferedTextTime, bufferedTextPeakHeap >> 20, loaderTime, loaderPeakHeap >> 20);
+      } finally {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Writes to the given file a DAE model of <code>MESH_COUNT</code> meshes of <code>vertexCount</code> vertices.
+   */
+  private void writeModel(File file, int vertexCount, Random random) throws IOException {
+    Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    try {
+      out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<COLLADA xmlns=\"http://www.collada.org/2005/11/COLLADASchema\" version=\"1.4.1\">\n"
+          + "<asset><unit meter=\"0.01\" name=\"centimeter\"/><up_axis>Y_UP</up_axis></asset>\n"
+          + "<library_geometries>\n");
+      for (int i = 0; i < MESH_COUNT; i++) {
+        out.write("<geometry id=\"mesh" + i + "\"><mesh>\n");
+        writeSource(out, "mesh" + i + "-positions", vertexCount, random, 100);
+        writeSource(out, "mesh" + i + "-normals", vertexCount, random, 1);
+        out.write("<vertices id=\"mesh" + i + "-vertices\">"
+            + "<input semantic=\"POSITION\" source=\"#mesh" + i + "-positions\"/></vertices>\n");
+        int triangleCount = vertexCount - 2;
+        out.write("<triangles count=\"" + triangleCount + "\">"
+            + "<input semantic=\"VERTEX\" source=\"#mesh" + i + "-vertices\" offset=\"0\"/>"
+            + "<input semantic=\"NORMAL\" source=\"#mesh" + i + "-normals\" offset=\"1\"/>\n<p>");
+        for (int j = 0; j < triangleCount; j++) {
+          for (int k = 0; k < 3; k++) {
+            out.write(String.valueOf(j + k));
+            out.write(' ');
+            out.write(String.valueOf(j + k));
+            out.write(k == 2 && j % 10 == 9 ? '\n' : ' ');
+          }
+        }
+        out.write("</p></triangles>\n</mesh></geometry>\n");
+      }
+      // No visual scene to avoid building nodes that require Java 3D to be initialized
+      out.write("</library_geometries>\n</COLLADA>\n");
+    } finally {
+      out.close();
+    }
+  }
+
+  private void writeSource(Writer out, String id, int vertexCount, Random random, float scale) throws IOException {
+    out.write("<source id=\"" + id + "\"><float_array id=\"" + id + "-array\" count=\"" + vertexCount * 3 + "\">");
+    for (int i = 0; i < vertexCount; i++) {
+      out.write(String.format(Locale.US, "%.6f %.6f %.6f", random.nextFloat() * scale,
+          random.nextFloat() * scale, random.nextFloat() * scale));
+      out.write(i % 4 == 3 ? '\n' : ' ');
+    }
+    out.write("</float_array><technique_common><accessor source=\"#" + id + "-array\" count=\"" + vertexCount
+        + "\" stride=\"3\"><param name=\"X\" type=\"float\"/><param name=\"Y\" type=\"float\"/>"
+        + "<param name=\"Z\" type=\"float\"/></accessor></technique_common></source>\n");
+  }
+
+  /**
+   * Parses the number arrays of the given file from the text buffered for each element,
+   * the way the previous versions of <code>DAELoader</code> did, and returns the count of parsed floats.
+   */
+  private int parseWithBufferedText(File file) throws Exception {
+    final List<float []> floatArrays = new ArrayList<float []>();
+    final List<int []> integerArrays = new ArrayList<int []>();
+    InputStream in = new BufferedInputStream(new FileInputStream(file));
+    try {
+      SAXParserFactory.newInstance().newSAXParser().parse(in, new DefaultHandler() {
+          private final StringBuilder buffer = new StringBuilder();
+
+          @Override
+          public void startElement(String uri, String localName, String name, Attributes attributes) {
+            this.buffer.setLength(0);
+          }
+
+          @Override
+          public void characters(char [] ch, int start, int length) {
+            this.buffer.append(ch, start, length);
+          }
+
+          @Override
+          public void endElement(String uri, String localName, String name) {
+            if ("float_array".equals(name)) {
+              String [] floatValues = this.buffer.toString().trim().split("\\s");
+              float [] floats = new float [floatValues.length];
+              int floatCount = 0;
+              for (String floatValue : floatValues) {
+                if (floatValue.length() > 0) {
+                  floats [floatCount++] = Float.parseFloat(floatValue);
+                }
+              }
+              floatArrays.add(floatCount == floats.length ? floats : trim(floats, floatCount));
+            } else if ("p".equals(name)) {
+              String [] intValues = this.buffer.toString().trim().split("\\s");
+              int [] integers = new int [intValues.length];
+              int intCount = 0;
+              for (String intValue : intValues) {
+                if (intValue.length() > 0) {
+                  integers [intCount++] = Integer.parseInt(intValue);
+                }
+              }
+              integerArrays.add(integers);
+            }
+          }
+        });
+    } finally {
+      in.close();
+    }
+    int floatCount = 0;
+    for (float [] floats : floatArrays) {
+      floatCount += floats.length;
+    }
+    return floatCount;
+  }
+
+  private float [] trim(float [] floats, int length) {
+    float [] trimmedFloats = new float [length];
+    System.arraycopy(floats, 0, trimmedFloats, 0, length);
+    return trimmedFloats;
+  }
+
+  /**
+   * Returns the average time in milliseconds spent to run the given <code>task</code>.
+   */
+  private double measure(Task task) throws Exception {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      task.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      task.run();
+    }
+    return (System.nanoTime() - start) / 1E6 / MEASURED_ITERATIONS;
+  }
+
+  /**
+   * Returns the maximum of the peak heap memory in bytes used to run the given <code>task</code>,
+   * measured as the sum of the peak usage of heap memory pools.
+   */
+  private long measurePeakHeap(Task task) throws Exception {
+    long peakHeap = 0;
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      System.gc();
+      List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          pool.resetPeakUsage();
+          heapPools.add(pool);
+        }
+      }
+      Object result = task.run();
+      long heap = 0;
+      for (MemoryPoolMXBean pool : heapPools) {
+        heap += pool.getPeakUsage().getUsed();
+      }
+      peakHeap = Math.max(peakHeap, heap);
+      assertNotNull(result);
+    }
+    return peakHeap;
+  }
+
+  private static interface Task {
+    public Object run() throws Exception;
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * HomeOBJExporterTest.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.eteks.sweethome3d.io.HomeFileRecorder;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Selectable;
+import com.eteks.sweethome3d.model.Wall;
+import com.eteks.sweethome3d.viewcontroller.Object3DFactory;
+
+/**
+ * Tests the export of homes to OBJ files with <code>HomeOBJExporter</code> without user interface.
+ * Run it with <code>-Dj3d.rend=noop</code> in headless mode.
+ * @author Emmanuel Puybaret
+ */
+public class HomeOBJExporterTest {
+  private File temporaryFolder;
+
+  @Before
+  public void createFolder() throws IOException {
+    this.temporaryFolder = File.createTempFile("export", "test");
+    this.temporaryFolder.delete();
+    this.temporaryFolder.mkdirs();
+  }
+
+  @After
+  public void deleteFolder() {
+    for (File file : this.temporaryFolder.listFiles()) {
+      file.delete();
+    }
+    this.temporaryFolder.delete();
+  }
+
+  @Test
+  public void testExportWithThreads() throws Exception {
+    Home home = createHome();
+    File sequentialFile = new File(this.temporaryFolder, "sequential.obj");
+    new HomeOBJExporter(new Object3DBranchFactory(), 1).exportToFile(home, sequentialFile.getPath(), "Test", true);
+    File parallelFile = new File(this.temporaryFolder, "parallel.obj");
+    new HomeOBJExporter(new Object3DBranchFactory(), 4).exportToFile(home, parallelFile.getPath(), "Test", true);
+
+    String exportedText = readOBJFile(sequentialFile);
+    assertTrue("Missing ground", exportedText.contains("g ground"));
+    assertTrue("Missing walls", exportedText.contains("g wall_"));
+    assertTrue("Missing room", exportedText.contains("g room_"));
+    assertEquals("Different exported files", exportedText, readOBJFile(parallelFile));
+  }
+
+  @Test
+  public void testFailedExport() throws Exception {
+    Object3DFactory failingFactory = new Object3DFactory() {
+        private Object3DBranchFactory factory = new Object3DBranchFactory();
+
+        public Object createObject3D(Home home, Selectable item, boolean waitForLoading) {
+          if (item instanceof Room) {
+            throw new IllegalStateException("Can't create room");
+          }
+          return this.factory.createObject3D(home, item, waitForLoading);
+        }
+      };
+    for (int threadCount : new int [] {1, 4}) {
+      File objFile = new File(this.temporaryFolder, "failed.obj");
+      try {
+        new HomeOBJExporter(failingFactory, threadCount).exportToFile(createHome(), objFile.getPath(), "Test", true);
+        fail("Export didn't fail");
+      } catch (IllegalStateException ex) {
+        // Expected exception
+      }
+      assertFalse("Partial OBJ file kept", objFile.exists());
+    }
+  }
+
+  @Test
+  public void testMain() throws Exception {
+    File homeFile = new File(this.temporaryFolder, "home.sh3d");
+    new HomeFileRecorder().writeHome(createHome(), homeFile.getPath());
+    File objFile = new File(this.temporaryFolder, "home.obj");
+    // Run main method in an other JVM without j3d.rend and java.awt.headless properties
+    List<String> command = new ArrayList<String>();
+    command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(HomeOBJExporter.class.getName());
+    command.add(homeFile.getPath());
+    command.add(objFile.getPath());
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    byte [] output = readAll(process);
+    assertEquals("Export failed: " + new String(output, "ISO-8859-1"), 0, process.waitFor());
+    String exportedText = readOBJFile(objFile);
+    assertTrue("Missing walls", exportedText.contains("g wall_"));
+
+    File exportedFile = new File(this.temporaryFolder, "exported.obj");
+    new HomeOBJExporter().exportToFile(new HomeFileRecorder().readHome(homeFile.getPath()), 
+        exportedFile.getPath(), "Exported from home.sh3d", true);
+    assertEquals("Different exported files", readOBJFile(exportedFile), exportedText);
+  }
+
+  /**
+   * Returns the content of the given OBJ file, with the name of its MTL file removed.
+   */
+  private String readOBJFile(File objFile) throws IOException {
+    String mtlFileName = objFile.getName().replace(".obj", ".mtl");
+    return new String(Files.readAllBytes(objFile.toPath()), "ISO-8859-1").replace(mtlFileName, "");
+  }
+
+  private byte [] readAll(Process process) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte [] buffer = new byte [8192];
+    for (int size; (size = process.getInputStream().read(buffer)) != -1; ) {
+      out.write(buffer, 0, size);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Returns a home containing a square room surrounded by walls.
+   */
+  private Home createHome() {
+    Home home = new Home();
+    float [][] points = {{0, 0}, {500, 0}, {500, 400}, {0, 400}};
+    for (int i = 0; i < points.length; i++) {
+      float [] start = points [i];
+      float [] end = points [(i + 1) % points.length];
+      home.addWall(new Wall(start [0], start [1], end [0], end [1], 10, 250));
+    }
+    home.addRoom(new Room(points));
+    return home;
+  }
+}
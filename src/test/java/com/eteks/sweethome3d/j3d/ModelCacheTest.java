@@ -0,0 +1,156 @@
+/*
+ * ModelCacheTest.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.imageio.ImageIO;
+import javax.media.j3d.BranchGroup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.eteks.sweethome3d.tools.URLContent;
+
+/**
+ * Tests that the models read from <code>ModelCache</code> are equal to the ones parsed by loaders.
+ * Run it with <code>-Dj3d.rend=noop</code> in headless mode.
+ * @author Emmanuel Puybaret
+ */
+public class ModelCacheTest {
+  private static final byte [] DIGEST = {1, 2, 3, 4};
+  private static final String  MODEL =
+        "mtllib model.mtl\n"
+      + "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\n"
+      + "vt 0 0\nvt 1 0\nvt 1 1\nvt 0 1\n"
+      + "usemtl textured\n"
+      + "f 1/1 2/2 3/3 4/4\n"
+      + "usemtl plain\n"
+      + "f 1 3 2\n";
+  private static final String  MATERIALS =
+        "newmtl textured\nKd 1 1 1\nmap_Kd sub/tex.png\n"
+      + "newmtl plain\nKd 0.2 0.4 0.6\nKs 0.5 0.5 0.5\nNs 20\nd 0.5\n";
+  private static final int     RED   = 0xFFFF0000;
+  private static final int     GREEN = 0xFF00FF00;
+
+  private File temporaryFolder;
+  private File cacheFolder;
+
+  @Before
+  public void createFolders() throws IOException {
+    this.temporaryFolder = File.createTempFile("model", "test");
+    this.temporaryFolder.delete();
+    this.temporaryFolder.mkdirs();
+    this.cacheFolder = new File(this.temporaryFolder, "cache");
+  }
+
+  @After
+  public void deleteFolders() {
+    deleteFile(this.temporaryFolder);
+  }
+
+  private void deleteFile(File file) {
+    File [] files = file.listFiles();
+    if (files != null) {
+      for (File child : files) {
+        deleteFile(child);
+      }
+    }
+    file.delete();
+  }
+
+  @Test
+  public void testCachedModelEqualsParsedModel() throws Exception {
+    File zipFile = createZipFile("model1.zip", new String [] {"7/model.obj", "7/model.mtl", "7/sub/tex.png"},
+        MODEL.getBytes("UTF-8"), MATERIALS.getBytes("UTF-8"), createImage(RED));
+    URLContent content = new URLContent(new URL("jar:" + zipFile.toURI().toURL() + "!/7/model.obj"));
+    BranchGroup parsedModel = parseModel(content);
+    assertTrue("Missing texture", SceneGraphDumper.dump(parsedModel).contains("/7/sub/tex.png"));
+
+    ModelCache modelCache = new ModelCache(this.cacheFolder, 1 << 20, "test");
+    modelCache.writeModel(content, DIGEST, parsedModel);
+    BranchGroup cachedModel = modelCache.readModel(content, DIGEST, false);
+    assertNotNull("Model not cached", cachedModel);
+    assertEquals("Different cached model", SceneGraphDumper.dump(parsedModel), SceneGraphDumper.dump(cachedModel));
+  }
+
+  @Test
+  public void testCachedModelInOtherDirectory() throws Exception {
+    File zipFile1 = createZipFile("model1.zip", new String [] {"7/model.obj", "7/model.mtl", "7/sub/tex.png"},
+        MODEL.getBytes("UTF-8"), MATERIALS.getBytes("UTF-8"), createImage(RED));
+    // Store the same model in an other directory of a zip file which contains an unrelated image
+    // at the path of the texture of the first model
+    File zipFile2 = createZipFile("model2.zip", new String [] {"3/model.obj", "3/model.mtl", "3/sub/tex.png", "7/sub/tex.png"},
+        MODEL.getBytes("UTF-8"), MATERIALS.getBytes("UTF-8"), createImage(RED), createImage(GREEN));
+    URLContent content1 = new URLContent(new URL("jar:" + zipFile1.toURI().toURL() + "!/7/model.obj"));
+    URLContent content2 = new URLContent(new URL("jar:" + zipFile2.toURI().toURL() + "!/3/model.obj"));
+
+    ModelCache modelCache = new ModelCache(this.cacheFolder, 1 << 20, "test");
+    modelCache.writeModel(content1, DIGEST, parseModel(content1));
+    BranchGroup cachedModel = modelCache.readModel(content2, DIGEST, false);
+    assertNotNull("Model not cached", cachedModel);
+    assertEquals("Different cached model", SceneGraphDumper.dump(parseModel(content2)), SceneGraphDumper.dump(cachedModel));
+  }
+
+  private BranchGroup parseModel(URLContent content) throws Exception {
+    OBJLoader loader = new OBJLoader();
+    loader.setUseCaches(false);
+    return loader.load(content.getURL()).getSceneGroup();
+  }
+
+  private File createZipFile(String name, String [] entryNames, byte [] ... entries) throws IOException {
+    File zipFile = new File(this.temporaryFolder, name);
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile));
+    try {
+      for (int i = 0; i < entryNames.length; i++) {
+        out.putNextEntry(new ZipEntry(entryNames [i]));
+        out.write(entries [i]);
+        out.closeEntry();
+      }
+    } finally {
+      out.close();
+    }
+    return zipFile;
+  }
+
+  private byte [] createImage(int color) throws IOException {
+    BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
+    for (int x = 0; x < 2; x++) {
+      for (int y = 0; y < 2; y++) {
+        image.setRGB(x, y, color);
+      }
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", out);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,271 @@
+/*
+ * OBJLoaderBenchmark.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.vecmath.Point3f;
+import javax.vecmath.TexCoord2f;
+import javax.vecmath.Vector3f;
+
+import org.junit.Test;
+
+/**
+ * Benchmark of the time spent to parse generated OBJ files of increasing size with <code>OBJTokenizer</code>,
+ * compared to the time spent to parse them with the <code>StreamTokenizer</code> and the
+ * <code>Float.parseFloat</code> calls used by <code>OBJLoader</code> before. Both tokenizers are used
+ * to parse vertices and faces the same way the previous versions of <code>OBJLoader</code> did,
+ * without building a scene that requires Java 3D.
+ * Run it with <code>mvn test -Pbenchmark -Dtest=OBJLoaderBenchmark</code>.
+ * @author Emmanuel Puybaret
+ */
+public class OBJLoaderBenchmark {
+  private static final int [] GRID_SIZES = {50, 100, 200, 400};
+  private static final int    WARMUP_ITERATIONS = 3;
+  private static final int    MEASURED_ITERATIONS = 5;
+
+  @Test
+  public void benchmarkParsingTime() throws Exception {
+    System.out.println("Vertices  Size (KB)  StreamTokenizer (ms)  OBJTokenizer (ms)");
+    for (int gridSize : GRID_SIZES) {
+      final File file = File.createTempFile("model", ".obj");
+      try {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1");
+        try {
+          new OBJModelGenerator(gridSize).writeModel(out, gridSize);
+        } finally {
+          out.close();
+        }
+        // Check first that both tokenizers read the same data
+        ParsedModel model = parseWithStreamTokenizer(file);
+        assertEquals("Wrong vertex count", gridSize * gridSize, model.vertices.size());
+        assertEquals("Different data", model, parseWithOBJTokenizer(file));
+
+        double streamTokenizerTime = measure(new Task() {
+            public void run() throws IOException {
+              parseWithStreamTokenizer(file);
+            }
+          });
+        double objTokenizerTime = measure(new Task() {
+            public void run() throws IOException {
+              parseWithOBJTokenizer(file);
+            }
+          });
+        System.out.printf("%8d  %9d  %20.1f  %17.1f%n", gridSize * gridSize, file.length() / 1024,
+            streamTokenizerTime, objTokenizerTime);
+      } finally {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Returns the data read in the given file with a <code>StreamTokenizer</code>.
+   */
+  private ParsedModel parseWithStreamTokenizer(File file) throws IOException {
+    ParsedModel model = new ParsedModel();
+    Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "ISO-8859-1"));
+    StreamTokenizer tokenizer = OBJTokenizerTest.createStreamTokenizer(reader);
+    try {
+      while (tokenizer.nextToken() != StreamTokenizer.TT_EOF) {
+        if (tokenizer.ttype == StreamTokenizer.TT_WORD) {
+          if ("v".equals(tokenizer.sval)) {
+            model.vertices.add(new Point3f(parseNumber(tokenizer), parseNumber(tokenizer), parseNumber(tokenizer)));
+          } else if ("vn".equals(tokenizer.sval)) {
+            model.normals.add(new Vector3f(parseNumber(tokenizer), parseNumber(tokenizer), parseNumber(tokenizer)));
+          } else if ("vt".equals(tokenizer.sval)) {
+            model.textureCoordinates.add(new TexCoord2f(parseNumber(tokenizer), parseNumber(tokenizer)));
+          } else if ("f".equals(tokenizer.sval)) {
+            tokenizer.ordinaryChar('/');
+            while (tokenizer.nextToken() == StreamTokenizer.TT_WORD) {
+              model.indices.add(Integer.parseInt(tokenizer.sval));
+              if (tokenizer.nextToken() == '/') {
+                if (tokenizer.nextToken() == StreamTokenizer.TT_WORD) {
+                  model.indices.add(Integer.parseInt(tokenizer.sval));
+                  tokenizer.nextToken();
+                }
+                model.indices.add(parseInteger(tokenizer));
+              } else {
+                tokenizer.pushBack();
+              }
+            }
+            tokenizer.pushBack();
+            tokenizer.wordChars('/', '/');
+          }
+          skipLine(tokenizer);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return model;
+  }
+
+  private float parseNumber(StreamTokenizer tokenizer) throws IOException {
+    skipBackSlash(tokenizer);
+    tokenizer.nextToken();
+    return Float.parseFloat(tokenizer.sval);
+  }
+
+  private int parseInteger(StreamTokenizer tokenizer) throws IOException {
+    tokenizer.nextToken();
+    return Integer.parseInt(tokenizer.sval);
+  }
+
+  private void skipBackSlash(StreamTokenizer tokenizer) throws IOException {
+    tokenizer.ordinaryChar('\\');
+    if (tokenizer.nextToken() == '\\') {
+      tokenizer.nextToken();
+    } else {
+      tokenizer.pushBack();
+    }
+    tokenizer.wordChars('\\', '\\');
+  }
+
+  private void skipLine(StreamTokenizer tokenizer) throws IOException {
+    while (tokenizer.ttype != StreamTokenizer.TT_EOL
+        && tokenizer.ttype != StreamTokenizer.TT_EOF) {
+      tokenizer.nextToken();
+    }
+  }
+
+  /**
+   * Returns the data read in the given file with an <code>OBJTokenizer</code>.
+   */
+  private ParsedModel parseWithOBJTokenizer(File file) throws IOException {
+    ParsedModel model = new ParsedModel();
+    OBJTokenizer tokenizer = new OBJTokenizer(new FileInputStream(file));
+    try {
+      while (tokenizer.nextToken() != OBJTokenizer.TT_EOF) {
+        if (tokenizer.getTokenType() == OBJTokenizer.TT_WORD) {
+          if (tokenizer.isWord("v")) {
+            model.vertices.add(new Point3f(parseNumber(tokenizer), parseNumber(tokenizer), parseNumber(tokenizer)));
+          } else if (tokenizer.isWord("vn")) {
+            model.normals.add(new Vector3f(parseNumber(tokenizer), parseNumber(tokenizer), parseNumber(tokenizer)));
+          } else if (tokenizer.isWord("vt")) {
+            model.textureCoordinates.add(new TexCoord2f(parseNumber(tokenizer), parseNumber(tokenizer)));
+          } else if (tokenizer.isWord("f")) {
+            tokenizer.ordinaryChar('/');
+            while (tokenizer.nextToken() == OBJTokenizer.TT_WORD) {
+              model.indices.add(tokenizer.getInteger());
+              if (tokenizer.nextToken() == '/') {
+                if (tokenizer.nextToken() == OBJTokenizer.TT_WORD) {
+                  model.indices.add(tokenizer.getInteger());
+                  tokenizer.nextToken();
+                }
+                tokenizer.nextToken();
+                model.indices.add(tokenizer.getInteger());
+              } else {
+                tokenizer.pushBack();
+              }
+            }
+            tokenizer.pushBack();
+            tokenizer.wordChars('/', '/');
+          }
+          skipLine(tokenizer);
+        }
+      }
+    } finally {
+      tokenizer.close();
+    }
+    return model;
+  }
+
+  private float parseNumber(OBJTokenizer tokenizer) throws IOException {
+    skipBackSlash(tokenizer);
+    tokenizer.nextToken();
+    return tokenizer.getNumber();
+  }
+
+  private void skipBackSlash(OBJTokenizer tokenizer) throws IOException {
+    tokenizer.ordinaryChar('\\');
+    if (tokenizer.nextToken() == '\\') {
+      tokenizer.nextToken();
+    } else {
+      tokenizer.pushBack();
+    }
+    tokenizer.wordChars('\\', '\\');
+  }
+
+  private void skipLine(OBJTokenizer tokenizer) throws IOException {
+    while (tokenizer.getTokenType() != OBJTokenizer.TT_EOL
+        && tokenizer.getTokenType() != OBJTokenizer.TT_EOF) {
+      tokenizer.nextToken();
+    }
+  }
+
+  /**
+   * Returns the average time in milliseconds spent to run the given <code>task</code>.
+   */
+  private double measure(Task task) throws Exception {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      task.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      task.run();
+    }
+    return (System.nanoTime() - start) / 1E6 / MEASURED_ITERATIONS;
+  }
+
+  private static interface Task {
+    public void run() throws Exception;
+  }
+
+  /**
+   * The data read in an OBJ file.
+   */
+  private static class ParsedModel {
+    private List<Point3f>    vertices = new ArrayList<Point3f>();
+    private List<Vector3f>   normals = new ArrayList<Vector3f>();
+    private List<TexCoord2f> textureCoordinates = new ArrayList<TexCoord2f>();
+    private List<Integer>    indices = new ArrayList<Integer>();
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof ParsedModel) {
+        ParsedModel model = (ParsedModel)obj;
+        return this.vertices.equals(model.vertices)
+            && this.normals.equals(model.normals)
+            && this.textureCoordinates.equals(model.textureCoordinates)
+            && this.indices.equals(model.indices);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return this.vertices.hashCode();
+    }
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * OBJLoaderTest.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sun.j3d.loaders.Scene;
+
+/**
+ * Tests that the scenes built by <code>OBJLoader</code> when a model is parsed in parallel chunks
+ * are equal to the ones built by the sequential parser, including for the models which
+ * make the parallel parser fall back to sequential parsing.
+ * Run it with <code>-Dj3d.rend=noop</code> in headless mode.
+ * @author Emmanuel Puybaret
+ */
+public class OBJLoaderTest {
+  private static final String QUAD_COORDINATES =
+        "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\n"
+      + "vt 0 0\nvt 0.5 0\nvt 0.5 1\nvt 0 1\n"
+      + "vn 0 0 1\n";
+
+  @Test
+  public void testParallelParsing() throws Exception {
+    byte [] content = generateModel(new OBJModelGenerator(0, false), 150);
+    assertTrue("Model not split in chunks", getChunkCount(content) > 2);
+    assertSameScenes(content);
+  }
+
+  @Test
+  public void testContinuationLinesFallback() throws Exception {
+    byte [] content = generateModel(new OBJModelGenerator(0, true), 150);
+    assertNull("Model with continuation lines split in chunks", getChunks(content));
+    assertSameScenes(content);
+  }
+
+  @Test
+  public void testLineWithoutWordFallback() throws Exception {
+    String model = new String(generateModel(new OBJModelGenerator(0, false), 150), "ISO-8859-1");
+    int middle = model.indexOf('\n', model.length() / 2) + 1;
+    byte [] content = (model.substring(0, middle) + "\f\n" + model.substring(middle)).getBytes("ISO-8859-1");
+    assertNull("Model with a line without word split in chunks", getChunks(content));
+    String error = getSequentialDump(content);
+    assertTrue("Line without word not reported", error.startsWith("Error"));
+    assertSameDumps(error, getParallelDump(content));
+  }
+
+  @Test
+  public void testBadLineFallback() throws Exception {
+    String model = new String(generateModel(new OBJModelGenerator(0, false), 150), "ISO-8859-1");
+    int middle = model.lastIndexOf("\nv ", model.length() / 4) + 1;
+    byte [] content = (model.substring(0, middle) + "v 1 x 2\n" + model.substring(middle)).getBytes("ISO-8859-1");
+    assertTrue("Model not split in chunks", getChunkCount(content) > 2);
+    String error = getSequentialDump(content);
+    assertTrue("Bad line not reported", error.startsWith("Error"));
+    assertSameDumps(error, getParallelDump(content));
+  }
+
+  @Test
+  public void testLoadLargeFile() throws Exception {
+    // Files bigger than 4 MB are parsed in parallel when more than one processor is available
+    byte [] content = generateModel(new OBJModelGenerator(1, false), 300);
+    assertTrue("Model too small", content.length > 4 * 1024 * 1024);
+    File file = File.createTempFile("model", ".obj");
+    try {
+      OutputStream out = new FileOutputStream(file);
+      try {
+        out.write(content);
+      } finally {
+        out.close();
+      }
+      Scene sequentialScene = new OBJLoader().load(new InputStreamReader(new ByteArrayInputStream(content), "ISO-8859-1"));
+      assertSameDumps(SceneGraphDumper.dump(sequentialScene.getSceneGroup()),
+          SceneGraphDumper.dump(new OBJLoader().load(file.toURI().toURL()).getSceneGroup()));
+      assertSameDumps(SceneGraphDumper.dump(sequentialScene.getSceneGroup()),
+          SceneGraphDumper.dump(new OBJLoader().load(file.getPath()).getSceneGroup()));
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testNumbersWithExponents() throws Exception {
+    assertSameScenes(QUAD_COORDINATES + "f 1/1/1 2/2/1 3/3/1 4/4/1\n",
+          "v 0e0 0 0\nv 1E0 0.0 0\nv 10e-1 +1 0e+5\nv 0 1.0E+0 0\n"
+        + "vt 0 0\nvt 5e-1 0\nvt 0.05E1 1\nvt 0 1\n"
+        + "vn 0 0 1e0\n"
+        + "f 1/1/1 2/2/1 3/3/1 4/4/1\n");
+  }
+
+  @Test
+  public void testNegativeIndices() throws Exception {
+    assertSameScenes(QUAD_COORDINATES + "f 1/1/1 2/2/1 3/3/1 4/4/1\n",
+        QUAD_COORDINATES + "f -4/-4/-1 -3/-3/-1 -2/-2/-1 -1/-1/-1\n");
+    assertSameScenes(QUAD_COORDINATES + "f 1/1/1 2/2/1 3/3/1\nf 1/1/1 3/3/1 4/4/1\n",
+        QUAD_COORDINATES + "f 1/1/1 -3/-3/-1 3/3/1\nf -4/1/-1 3/-2/1 -1/4/1\n");
+  }
+
+  @Test
+  public void testOmittedIndices() throws Exception {
+    // Omitted texture coordinates
+    String dump = assertSameScenes(QUAD_COORDINATES + "f 1//1 2//1 3//1 4//1\n",
+        QUAD_COORDINATES.replaceAll("vt [^\n]*\n", "") + "f 1//1 2//1 3//1 4//1\n");
+    assertTrue("Unexpected texture coordinates", dump.indexOf("with texture coordinates") == -1);
+    // Omitted normals
+    dump = assertSameScenes(QUAD_COORDINATES + "f 1/1 2/2 3/3 4/4\n",
+        QUAD_COORDINATES.replaceAll("vn [^\n]*\n", "") + "f 1/1 2/2 3/3 4/4\n");
+    assertTrue("Missing texture coordinates", dump.indexOf("with texture coordinates") != -1);
+    // Omitted texture coordinates and normals
+    assertSameScenes(QUAD_COORDINATES + "f 1 2 3 4\n",
+        QUAD_COORDINATES.replaceAll("v[tn] [^\n]*\n", "") + "f 1 2 3 4\n");
+  }
+
+  @Test
+  public void testNamesWithSpaces() throws Exception {
+    File folder = File.createTempFile("model", "test");
+    folder.delete();
+    folder.mkdirs();
+    try {
+      writeFile(new File(folder, "my materials.mtl"), "newmtl red paint\nKd 1 0 0\n");
+      writeFile(new File(folder, "blue.mtl"), "newmtl blue\nKd 0 0 1\n");
+      writeFile(new File(folder, "green.mtl"), "newmtl green\nKd 0 1 0\n");
+      File modelFile = new File(folder, "model.obj");
+      writeFile(modelFile, "mtllib my materials.mtl\nmtllib blue.mtl green.mtl\n" + QUAD_COORDINATES
+          + "g red quad\nusemtl red paint\nf 1 2 3\n"
+          + "g blue quad\nusemtl blue\nf 1 3 4\n"
+          + "g green quad\nusemtl green\nf 2 3 4\n");
+      String dump = SceneGraphDumper.dump(new OBJLoader().load(modelFile.getPath()).getSceneGroup());
+      assertTrue("Missing red material", dump.indexOf("(1.0, 0.0, 0.0)") != -1);
+      assertTrue("Missing blue material", dump.indexOf("(0.0, 0.0, 1.0)") != -1);
+      assertTrue("Missing green material", dump.indexOf("(0.0, 1.0, 0.0)") != -1);
+      assertEquals("Wrong shape count", 3, dump.split("Shape3D").length - 1);
+    } finally {
+      for (File file : folder.listFiles()) {
+        file.delete();
+      }
+      folder.delete();
+    }
+  }
+
+  private void writeFile(File file, String text) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(text.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Checks that the scenes parsed from the given models are equal and returns their dump.
+   */
+  private String assertSameScenes(String expectedModel, String model) throws Exception {
+    String expectedDump = getSequentialDump(expectedModel.getBytes("ISO-8859-1"));
+    assertTrue("Can't parse " + expectedModel, !expectedDump.startsWith("Error"));
+    assertSameDumps(expectedDump, getSequentialDump(model.getBytes("ISO-8859-1")));
+    return expectedDump;
+  }
+
+  private byte [] generateModel(OBJModelGenerator generator, int gridSize) throws IOException {
+    StringWriter out = new StringWriter();
+    generator.writeModel(out, gridSize);
+    return out.toString().getBytes("ISO-8859-1");
+  }
+
+  /**
+   * Checks that the scene parsed sequentially from <code>content</code> is equal to the one
+   * parsed with the parallel parser of <code>OBJLoader</code>.
+   */
+  private void assertSameScenes(byte [] content) throws Exception {
+    assertSameDumps(getSequentialDump(content), getParallelDump(content));
+  }
+
+  /**
+   * Returns the dump of the scene parsed sequentially from <code>content</code> or its parsing error.
+   */
+  private String getSequentialDump(byte [] content) throws Exception {
+    try {
+      Scene scene = new OBJLoader().load(new InputStreamReader(new ByteArrayInputStream(content), "ISO-8859-1"));
+      return SceneGraphDumper.dump(scene.getSceneGroup());
+    } catch (RuntimeException ex) {
+      return "Error " + ex;
+    }
+  }
+
+  /**
+   * Returns the dump of the scene parsed from <code>content</code> with the parallel parser 
+   * of <code>OBJLoader</code> or its parsing error.
+   */
+  private String getParallelDump(byte [] content) throws Exception {
+    try {
+      return SceneGraphDumper.dump(parseInParallel(content).getSceneGroup());
+    } catch (RuntimeException ex) {
+      return "Error " + ex;
+    }
+  }
+
+  private void assertSameDumps(String expectedDump, String dump) {
+    if (!expectedDump.equals(dump)) {
+      // Don't build an assertion message with the whole dumps
+      int i = 0;
+      while (i < Math.min(expectedDump.length(), dump.length())
+          && expectedDump.charAt(i) == dump.charAt(i)) {
+        i++;
+      }
+      fail("Different scenes at character " + i + ": "
+          + expectedDump.substring(Math.max(0, i - 100), Math.min(expectedDump.length(), i + 100)));
+    }
+  }
+
+  /**
+   * Returns the scene parsed from <code>content</code> with the parallel parser of <code>OBJLoader</code>,
+   * whatever the count of available processors.
+   */
+  private Scene parseInParallel(byte [] content) throws Exception {
+    return (Scene)invoke(new OBJLoader(), "parseObjectContent", new Class<?> [] {byte [].class, URL.class}, content, null);
+  }
+
+  /**
+   * Returns the chunks the parallel parser of <code>OBJLoader</code> splits <code>content</code> in.
+   */
+  private List<?> getChunks(byte [] content) throws Exception {
+    OBJLoader loader = new OBJLoader();
+    invoke(loader, "initializeParsing", new Class<?> [0]);
+    return (List<?>)invoke(loader, "splitObjectContent", new Class<?> [] {byte [].class, URL.class}, content, null);
+  }
+
+  private int getChunkCount(byte [] content) throws Exception {
+    List<?> chunks = getChunks(content);
+    return chunks != null ? chunks.size() : 0;
+  }
+
+  private Object invoke(OBJLoader loader, String methodName, Class<?> [] parameterTypes, Object ... parameters) throws Exception {
+    Method method = OBJLoader.class.getDeclaredMethod(methodName, parameterTypes);
+    method.setAccessible(true);
+    try {
+      return method.invoke(loader, parameters);
+    } catch (InvocationTargetException ex) {
+      throw (Exception)ex.getCause();
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * OBJModelGenerator.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A generator of OBJ models made of a grid of textured quads, split in groups
+ * using different materials, with comments and continuation lines.
+ * @author Emmanuel Puybaret
+ */
+class OBJModelGenerator {
+  private static final int GROUP_ROW_COUNT = 50;
+
+  private final Random  random;
+  private final boolean continuationLines;
+
+  /**
+   * Creates a generator of models with numbers computed from the given <code>seed</code>.
+   */
+  public OBJModelGenerator(long seed) {
+    this(seed, true);
+  }
+
+  /**
+   * Creates a generator of models with numbers computed from the given <code>seed</code>,
+   * which writes some vertices on continued lines if <code>continuationLines</code> is <code>true</code>.
+   */
+  public OBJModelGenerator(long seed, boolean continuationLines) {
+    this.random = new Random(seed);
+    this.continuationLines = continuationLines;
+  }
+
+  /**
+   * Writes to <code>out</code> a model of <code>gridSize</code> x <code>gridSize</code> vertices.
+   */
+  public void writeModel(Writer out, int gridSize) throws IOException {
+    out.write("# Generated model\n");
+    for (int i = 0; i < gridSize; i++) {
+      for (int j = 0; j < gridSize; j++) {
+        out.write("v ");
+        out.write(getNumber(i * 10 + this.random.nextFloat()));
+        out.write(' ');
+        out.write(getNumber(this.random.nextFloat() * 5));
+        if (this.random.nextInt(100) == 0
+            && this.continuationLines) {
+          out.write(" \\\n");
+        } else {
+          out.write(' ');
+        }
+        out.write(getNumber(-j * 10 - this.random.nextFloat()));
+        out.write('\n');
+        out.write("vn ");
+        out.write(getNumber(this.random.nextFloat() * 2 - 1));
+        out.write(' ');
+        out.write(getNumber(this.random.nextFloat()));
+        out.write(' ');
+        out.write(getNumber(this.random.nextFloat() * 2 - 1));
+        out.write('\n');
+        out.write("vt ");
+        out.write(getNumber((float)i / gridSize));
+        out.write(' ');
+        out.write(getNumber((float)j / gridSize));
+        out.write('\n');
+      }
+    }
+    for (int i = 0; i < gridSize - 1; i++) {
+      if (i % GROUP_ROW_COUNT == 0) {
+        out.write("\ng group" + i / GROUP_ROW_COUNT + "\n");
+        out.write("usemtl material" + i / GROUP_ROW_COUNT % 4 + "\n");
+      }
+      for (int j = 0; j < gridSize - 1; j++) {
+        int index = i * gridSize + j + 1;
+        int [] indices = {index, index + 1, index + gridSize + 1, index + gridSize};
+        out.write('f');
+        boolean withTextureCoordinates = this.random.nextInt(10) != 0;
+        for (int vertexIndex : indices) {
+          out.write(' ');
+          out.write(String.valueOf(vertexIndex));
+          out.write(withTextureCoordinates ? "/" + vertexIndex + "/" : "//");
+          out.write(String.valueOf(vertexIndex));
+        }
+        out.write(this.random.nextInt(20) == 0 ? "\r\n" : "\n");
+      }
+      if (this.random.nextInt(10) == 0) {
+        out.write("# Row " + i + "\n");
+      }
+    }
+  }
+
+  /**
+   * Returns the given number formatted with a variable count of decimals,
+   * and sometimes with an exponent.
+   */
+  private String getNumber(float number) {
+    switch (this.random.nextInt(8)) {
+      case 0 :
+        return String.valueOf(number);
+      case 1 :
+        return String.format(Locale.US, "%e", number);
+      case 2 :
+        return String.valueOf(Math.round(number));
+      default :
+        return String.format(Locale.US, "%." + (1 + this.random.nextInt(6)) + "f", number);
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * OBJTokenizerTest.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that <code>OBJTokenizer</code> returns the same tokens and numbers as the
+ * <code>StreamTokenizer</code> and the number parsing previously used by <code>OBJLoader</code>.
+ * @author Emmanuel Puybaret
+ */
+public class OBJTokenizerTest {
+  private static final String CHARACTERS = "vfgl0123456789.-+eE/\\# \t\r\n\u00e9";
+
+  @Test
+  public void testGeneratedModelTokens() throws IOException {
+    StringWriter out = new StringWriter();
+    new OBJModelGenerator(0).writeModel(out, 100);
+    String model = out.toString();
+    assertSameTokens(model, new Random(0), false);
+    assertSameTokens(model, new Random(1), true);
+  }
+
+  @Test
+  public void testRandomTokens() throws IOException {
+    Random random = new Random(0);
+    for (int i = 0; i < 2000; i++) {
+      StringBuilder text = new StringBuilder();
+      for (int j = random.nextInt(200); j > 0; j--) {
+        text.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+      }
+      assertSameTokens(text.toString(), random, true);
+    }
+  }
+
+  @Test
+  public void testNumbers() {
+    Random random = new Random(0);
+    for (int i = 0; i < 200000; i++) {
+      String number;
+      switch (i % 6) {
+        case 0 :
+          number = String.valueOf(Float.intBitsToFloat(random.nextInt()));
+          break;
+        case 1 :
+          number = String.format(Locale.US, "%." + random.nextInt(10) + "f", random.nextFloat() * 1000 - 500);
+          break;
+        case 2 :
+          number = String.format(Locale.US, "%." + random.nextInt(10) + "e", random.nextGaussian() * 1E5);
+          break;
+        case 3 :
+          number = String.valueOf(random.nextDouble() * 2 - 1);
+          break;
+        case 4 :
+          number = String.valueOf(random.nextInt(2000000) - 1000000);
+          break;
+        default :
+          number = String.valueOf(random.nextLong());
+          break;
+      }
+      char [] characters = (" " + number + " ").toCharArray();
+      // Float instances are equal only if their bits are equal
+      assertEquals("Different float for " + number, parseFloat(number), parseFloat(characters));
+      assertEquals("Different integer for " + number, parseInteger(number), parseInteger(characters));
+    }
+  }
+
+  private Object parseFloat(String number) {
+    try {
+      return Float.parseFloat(number);
+    } catch (NumberFormatException ex) {
+      return ex.getClass();
+    }
+  }
+
+  private Object parseFloat(char [] characters) {
+    try {
+      return OBJTokenizer.parseFloat(characters, 1, characters.length - 1);
+    } catch (NumberFormatException ex) {
+      return ex.getClass();
+    }
+  }
+
+  private Object parseInteger(String number) {
+    try {
+      return Integer.parseInt(number);
+    } catch (NumberFormatException ex) {
+      return ex.getClass();
+    }
+  }
+
+  private Object parseInteger(char [] characters) {
+    try {
+      return OBJTokenizer.parseInteger(characters, 1, characters.length - 1);
+    } catch (NumberFormatException ex) {
+      return ex.getClass();
+    }
+  }
+
+  /**
+   * Checks that <code>OBJTokenizer</code> instances reading <code>text</code> from a stream
+   * and from a reader return the same tokens as a <code>StreamTokenizer</code> configured
+   * like the one of the previous versions of <code>OBJLoader</code>.
+   * @param syntaxChanges if <code>true</code>, the tokenizers are randomly switched to
+   *            the syntax used to parse faces and continuation lines, and tokens pushed back
+   */
+  private void assertSameTokens(String text, Random random, boolean syntaxChanges) throws IOException {
+    byte [] bytes = text.getBytes("ISO-8859-1");
+    StreamTokenizer expectedTokenizer = createStreamTokenizer(
+        new InputStreamReader(new ByteArrayInputStream(bytes), "ISO-8859-1"));
+    OBJTokenizer [] tokenizers = {new OBJTokenizer(new ByteArrayInputStream(bytes)),
+                                  new OBJTokenizer(new StringReader(text)),
+                                  new OBJTokenizer(bytes, 0, bytes.length)};
+    int tokenCount = 0;
+    do {
+      if (syntaxChanges) {
+        int change = random.nextInt(8);
+        char c = change < 2 ? '/' : '\\';
+        if (change == 0 || change == 2) {
+          expectedTokenizer.ordinaryChar(c);
+          for (OBJTokenizer tokenizer : tokenizers) {
+            tokenizer.ordinaryChar(c);
+          }
+        } else if (change == 1 || change == 3) {
+          expectedTokenizer.wordChars(c, c);
+          for (OBJTokenizer tokenizer : tokenizers) {
+            tokenizer.wordChars(c, c);
+          }
+        } else if (change == 4 && tokenCount > 0) {
+          expectedTokenizer.pushBack();
+          for (OBJTokenizer tokenizer : tokenizers) {
+            tokenizer.pushBack();
+          }
+        }
+      }
+      expectedTokenizer.nextToken();
+      tokenCount++;
+      String expectedWord = expectedTokenizer.ttype == StreamTokenizer.TT_WORD ? expectedTokenizer.sval : null;
+      for (OBJTokenizer tokenizer : tokenizers) {
+        if (tokenizer.nextToken() != expectedTokenizer.ttype
+            || (expectedWord == null ? tokenizer.getWord() != null : !expectedWord.equals(tokenizer.getWord()))
+            || tokenizer.getLineNumber() != expectedTokenizer.lineno()) {
+          fail("Different token " + tokenCount + ": expected " + expectedTokenizer + " but was "
+              + tokenizer.getTokenType() + " " + tokenizer.getWord() + " at line " + tokenizer.getLineNumber());
+        }
+      }
+    } while (expectedTokenizer.ttype != StreamTokenizer.TT_EOF);
+  }
+
+  /**
+   * Returns a tokenizer created like <code>OBJLoader</code> did before it used <code>OBJTokenizer</code>.
+   */
+  static StreamTokenizer createStreamTokenizer(Reader reader) {
+    StreamTokenizer tokenizer = new StreamTokenizer(reader);
+    tokenizer.resetSyntax();
+    tokenizer.eolIsSignificant(true);
+    tokenizer.wordChars('!', '~');
+    tokenizer.wordChars(0x80, 0xFF);
+    tokenizer.whitespaceChars(' ', ' ');
+    tokenizer.whitespaceChars('\n', '\n');
+    tokenizer.whitespaceChars('\r', '\r');
+    tokenizer.whitespaceChars('\t', '\t');
+    return tokenizer;
+  }
+}
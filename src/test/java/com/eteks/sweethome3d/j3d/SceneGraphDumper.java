@@ -0,0 +1,186 @@
+/*
+ * SceneGraphDumper.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Enumeration;
+
+import javax.media.j3d.Appearance;
+import javax.media.j3d.ColoringAttributes;
+import javax.media.j3d.Geometry;
+import javax.media.j3d.GeometryArray;
+import javax.media.j3d.GeometryStripArray;
+import javax.media.j3d.Group;
+import javax.media.j3d.ImageComponent2D;
+import javax.media.j3d.IndexedGeometryArray;
+import javax.media.j3d.Link;
+import javax.media.j3d.Material;
+import javax.media.j3d.Node;
+import javax.media.j3d.PolygonAttributes;
+import javax.media.j3d.Shape3D;
+import javax.media.j3d.Texture;
+import javax.media.j3d.Transform3D;
+import javax.media.j3d.TransformGroup;
+import javax.media.j3d.TransparencyAttributes;
+import javax.vecmath.Color3f;
+
+/**
+ * A utility that describes the nodes, geometries and appearances of a 3D scene graph
+ * in a text, to compare scenes built in different ways.
+ * @author Emmanuel Puybaret
+ */
+class SceneGraphDumper {
+  private SceneGraphDumper() {
+  }
+
+  /**
+   * Returns a description of the given <code>node</code> and its children.
+   */
+  public static String dump(Node node) {
+    StringBuilder dump = new StringBuilder();
+    dumpNode(dump, node, "");
+    return dump.toString();
+  }
+
+  private static void dumpNode(StringBuilder dump, Node node, String indent) {
+    dump.append(indent).append(node.getClass().getSimpleName()).append(" ").append(node.getName()).append("\n");
+    if (node instanceof TransformGroup) {
+      Transform3D transform = new Transform3D();
+      ((TransformGroup)node).getTransform(transform);
+      double [] matrix = new double [16];
+      transform.get(matrix);
+      dump.append(indent).append(" transform ").append(Arrays.toString(matrix)).append("\n");
+    }
+    if (node instanceof Group) {
+      for (Enumeration<?> it = ((Group)node).getAllChildren(); it.hasMoreElements(); ) {
+        dumpNode(dump, (Node)it.nextElement(), indent + "  ");
+      }
+    } else if (node instanceof Link) {
+      dumpNode(dump, ((Link)node).getSharedGroup(), indent + "  ");
+    } else if (node instanceof Shape3D) {
+      Shape3D shape = (Shape3D)node;
+      dumpAppearance(dump, shape.getAppearance(), indent + "  ");
+      for (int i = 0; i < shape.numGeometries(); i++) {
+        dumpGeometry(dump, shape.getGeometry(i), indent + "  ");
+      }
+    }
+  }
+
+  private static void dumpAppearance(StringBuilder dump, Appearance appearance, String indent) {
+    if (appearance == null) {
+      return;
+    }
+    dump.append(indent).append("Appearance ").append(appearance.getName()).append("\n");
+    Material material = appearance.getMaterial();
+    if (material != null) {
+      Color3f ambientColor = new Color3f();
+      material.getAmbientColor(ambientColor);
+      Color3f diffuseColor = new Color3f();
+      material.getDiffuseColor(diffuseColor);
+      Color3f specularColor = new Color3f();
+      material.getSpecularColor(specularColor);
+      Color3f emissiveColor = new Color3f();
+      material.getEmissiveColor(emissiveColor);
+      dump.append(indent).append(" material ").append(ambientColor).append(diffuseColor)
+          .append(specularColor).append(emissiveColor).append(" ").append(material.getShininess())
+          .append(" ").append(material.getLightingEnable()).append("\n");
+    }
+    ColoringAttributes coloringAttributes = appearance.getColoringAttributes();
+    if (coloringAttributes != null) {
+      Color3f color = new Color3f();
+      coloringAttributes.getColor(color);
+      dump.append(indent).append(" coloring ").append(color).append(" ")
+          .append(coloringAttributes.getShadeModel()).append("\n");
+    }
+    TransparencyAttributes transparencyAttributes = appearance.getTransparencyAttributes();
+    if (transparencyAttributes != null) {
+      dump.append(indent).append(" transparency ").append(transparencyAttributes.getTransparencyMode())
+          .append(" ").append(transparencyAttributes.getTransparency()).append("\n");
+    }
+    PolygonAttributes polygonAttributes = appearance.getPolygonAttributes();
+    if (polygonAttributes != null) {
+      dump.append(indent).append(" polygon ").append(polygonAttributes.getCullFace()).append(" ")
+          .append(polygonAttributes.getBackFaceNormalFlip()).append("\n");
+    }
+    Texture texture = appearance.getTexture();
+    if (texture != null) {
+      dump.append(indent).append(" texture ").append(texture.getUserData());
+      ImageComponent2D imageComponent = (ImageComponent2D)texture.getImage(0);
+      if (imageComponent != null) {
+        BufferedImage image = imageComponent.getImage();
+        dump.append(" ").append(image.getWidth()).append("x").append(image.getHeight()).append(" ")
+            .append(Arrays.hashCode(image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth())));
+      }
+      dump.append("\n");
+    }
+  }
+
+  private static void dumpGeometry(StringBuilder dump, Geometry geometry, String indent) {
+    dump.append(indent).append(geometry.getClass().getSimpleName());
+    if (geometry instanceof GeometryArray) {
+      GeometryArray geometryArray = (GeometryArray)geometry;
+      int vertexFormat = geometryArray.getVertexFormat();
+      int vertexCount = geometryArray.getVertexCount();
+      dump.append(" ").append(vertexFormat).append(" ").append(vertexCount)
+          .append((vertexFormat & GeometryArray.NORMALS) != 0 ? " with normals" : "")
+          .append((vertexFormat & GeometryArray.TEXTURE_COORDINATE_2) != 0 ? " with texture coordinates" : "")
+          .append("\n");
+      if (geometryArray instanceof GeometryStripArray) {
+        int [] stripVertexCounts = new int [((GeometryStripArray)geometryArray).getNumStrips()];
+        ((GeometryStripArray)geometryArray).getStripVertexCounts(stripVertexCounts);
+        dump.append(indent).append(" strips ").append(Arrays.toString(stripVertexCounts)).append("\n");
+      }
+      if (geometryArray instanceof IndexedGeometryArray) {
+        IndexedGeometryArray indexedGeometryArray = (IndexedGeometryArray)geometryArray;
+        int [] indices = new int [indexedGeometryArray.getIndexCount()];
+        indexedGeometryArray.getCoordinateIndices(0, indices);
+        dump.append(indent).append(" indices ").append(Arrays.toString(indices)).append("\n");
+      }
+      if ((vertexFormat & GeometryArray.BY_REFERENCE) != 0) {
+        if ((vertexFormat & GeometryArray.INTERLEAVED) != 0) {
+          dump.append(indent).append(" vertices ").append(Arrays.toString(geometryArray.getInterleavedVertices())).append("\n");
+        } else {
+          dump.append(indent).append(" coordinates ").append(Arrays.toString(geometryArray.getCoordRefFloat())).append("\n");
+          dump.append(indent).append(" normals ").append(Arrays.toString(geometryArray.getNormalRefFloat())).append("\n");
+          if ((vertexFormat & GeometryArray.TEXTURE_COORDINATE_2) != 0) {
+            dump.append(indent).append(" texture coordinates ").append(Arrays.toString(geometryArray.getTexCoordRefFloat(0))).append("\n");
+          }
+        }
+      } else {
+        float [] coordinates = new float [vertexCount * 3];
+        geometryArray.getCoordinates(0, coordinates);
+        dump.append(indent).append(" coordinates ").append(Arrays.toString(coordinates)).append("\n");
+        if ((vertexFormat & GeometryArray.NORMALS) != 0) {
+          float [] normals = new float [vertexCount * 3];
+          geometryArray.getNormals(0, normals);
+          dump.append(indent).append(" normals ").append(Arrays.toString(normals)).append("\n");
+        }
+        if ((vertexFormat & GeometryArray.TEXTURE_COORDINATE_2) != 0) {
+          float [] textureCoordinates = new float [vertexCount * 2];
+          geometryArray.getTextureCoordinates(0, 0, textureCoordinates);
+          dump.append(indent).append(" texture coordinates ").append(Arrays.toString(textureCoordinates)).append("\n");
+        }
+      }
+    } else {
+      dump.append("\n");
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * TiledWallsAreaBenchmark.java 18 oct. 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.viewcontroller;
+
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Area;
+import java.awt.geom.GeneralPath;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.eteks.sweethome3d.model.Wall;
+
+/**
+ * Benchmark of the time spent to update the area covered by walls after a wall is moved
+ * with <code>TiledWallsArea</code>, compared to the time spent to build that area again
+ * from all the walls as <code>PlanController</code> did before.
+ * Run it with <code>mvn test -Pbenchmark -Dtest=TiledWallsAreaBenchmark</code>.
+ * @author Emmanuel Puybaret
+ */
+public class TiledWallsAreaBenchmark {
+  private static final int [] GRID_SIZES = {5, 10, 20, 40};
+  private static final float  ROOM_SIZE = 400;
+  private static final int    WARMUP_ITERATIONS = 3;
+  private static final int    MEASURED_ITERATIONS = 5;
+
+  @Test
+  public void benchmarkWallsArea() throws Exception {
+    // Check first that both areas are equal after a wall is moved
+    List<Wall> walls = createWalls(GRID_SIZES [0]);
+    TiledWallsArea tiledArea = createTiledWallsArea(walls);
+    tiledArea.getArea(null);
+    moveWall(walls.get(walls.size() / 2), tiledArea);
+    assertTrue("Different areas", getWallsArea(walls).equals(tiledArea.getArea(null)));
+
+    System.out.println("Walls  Full rebuild (ms)  Tiled build (ms)  Tiled update after move (ms)");
+    for (int gridSize : GRID_SIZES) {
+      final List<Wall> measuredWalls = createWalls(gridSize);
+      final Wall movedWall = measuredWalls.get(measuredWalls.size() / 2);
+      double fullRebuildTime = measure(new Task() {
+          public void run() {
+            moveWall(movedWall, null);
+            getWallsArea(measuredWalls);
+          }
+        });
+      double tiledBuildTime = measure(new Task() {
+          public void run() {
+            createTiledWallsArea(measuredWalls).getArea(null);
+          }
+        });
+      final TiledWallsArea measuredTiledArea = createTiledWallsArea(measuredWalls);
+      measuredTiledArea.getArea(null);
+      double tiledUpdateTime = measure(new Task() {
+          public void run() {
+            moveWall(movedWall, measuredTiledArea);
+            measuredTiledArea.getArea(null);
+          }
+        });
+      System.out.printf("%5d  %17.2f  %16.2f  %28.2f%n", measuredWalls.size(),
+          fullRebuildTime, tiledBuildTime, tiledUpdateTime);
+    }
+  }
+
+  /**
+   * Returns the walls of a grid of <code>gridSize</code> x <code>gridSize</code> rooms.
+   */
+  private List<Wall> createWalls(int gridSize) {
+    List<Wall> walls = new ArrayList<Wall>();
+    for (int i = 0; i <= gridSize; i++) {
+      for (int j = 0; j < gridSize; j++) {
+        walls.add(new Wall(j * ROOM_SIZE, i * ROOM_SIZE, (j + 1) * ROOM_SIZE, i * ROOM_SIZE, 10, 250));
+        walls.add(new Wall(i * ROOM_SIZE, j * ROOM_SIZE, i * ROOM_SIZE, (j + 1) * ROOM_SIZE, 10, 250));
+      }
+    }
+    return walls;
+  }
+
+  private TiledWallsArea createTiledWallsArea(List<Wall> walls) {
+    TiledWallsArea tiledArea = new TiledWallsArea(false);
+    for (Wall wall : walls) {
+      tiledArea.addWall(wall);
+    }
+    return tiledArea;
+  }
+
+  /**
+   * Moves the given <code>wall</code> back and forth, and notifies <code>tiledArea</code> if it's not <code>null</code>.
+   */
+  private void moveWall(Wall wall, TiledWallsArea tiledArea) {
+    float dx = wall.getXStart() % ROOM_SIZE == 0 ? 20 : -20;
+    wall.setXStart(wall.getXStart() + dx);
+    wall.setXEnd(wall.getXEnd() + dx);
+    if (tiledArea != null) {
+      tiledArea.invalidateWall(wall);
+    }
+  }
+
+  /**
+   * Returns the area of the given walls computed from scratch.
+   */
+  private Area getWallsArea(List<Wall> walls) {
+    Area wallsArea = new Area();
+    for (Wall wall : walls) {
+      float [][] points = wall.getPoints(false);
+      GeneralPath path = new GeneralPath();
+      path.moveTo(points [0][0], points [0][1]);
+      for (int i = 1; i < points.length; i++) {
+        path.lineTo(points [i][0], points [i][1]);
+      }
+      path.closePath();
+      wallsArea.add(new Area(path));
+    }
+    return wallsArea;
+  }
+
+  /**
+   * Returns the average time in milliseconds spent to run the given <code>task</code>.
+   */
+  private double measure(Task task) throws Exception {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      task.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      task.run();
+    }
+    return (System.nanoTime() - start) / 1E6 / MEASURED_ITERATIONS;
+  }
+
+  private static interface Task {
+    public void run() throws Exception;
+  }
+}